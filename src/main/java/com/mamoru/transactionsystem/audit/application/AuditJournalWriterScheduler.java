@@ -0,0 +1,31 @@
+package com.mamoru.transactionsystem.audit.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.audit.mode", havingValue = "JOURNAL")
+public class AuditJournalWriterScheduler {
+    
+    private final AuditTrailService auditTrailService;
+    
+    /**
+     * Background writer bulk-loading journaled audit records into the audit tables.
+     */
+    @Scheduled(fixedDelayString = "${app.audit.writer-interval-ms:200}")
+    public void loadJournaledRecords() {
+        try {
+            int loaded;
+            do {
+                loaded = auditTrailService.loadPendingBatch();
+            } while (loaded > 0);
+        } catch (Exception e) {
+            log.error("Error loading audit journal", e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.mamoru.transactionsystem.audit.application;
+
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import com.mamoru.transactionsystem.audit.infrastructure.journal.AuditJournal;
+import com.mamoru.transactionsystem.audit.infrastructure.repository.AuditRecordRepository;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind audit trail. In JOURNAL mode the account and inventory transaction rows of a database
+ * transaction are not inserted by it; they are appended to the local {@link AuditJournal} just before
+ * it commits, and a background writer bulk-loads the rows of committed transactions with COPY.
+ * <p>
+ * The journal frame is made durable before the database commit, tagged with the Postgres transaction id,
+ * and followed by an outcome frame afterwards. On startup every frame left in the journal is loaded again:
+ * transactions without an outcome frame were interrupted by a crash and are looked up with
+ * {@code pg_xact_status}. Loading skips rows that are already present, so replays insert nothing twice.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AuditTrailService {
+    
+    private final AuditJournal auditJournal;
+    private final AuditRecordRepository auditRecordRepository;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final Queue<AuditJournal.JournaledTransaction> committed = new ConcurrentLinkedQueue<>();
+    private final Map<Long, AuditJournal.JournaledTransaction> inDoubt = new ConcurrentHashMap<>();
+    private final AtomicLong pendingRecords = new AtomicLong();
+    
+    @PostConstruct
+    void init() {
+        Gauge.builder("audit.journal.pending", pendingRecords, AtomicLong::get)
+                .description("Journaled audit records not yet loaded into the audit tables")
+                .register(meterRegistry);
+        if (!isWriteBehind()) {
+            return;
+        }
+        
+        AppConfig.Audit config = appConfig.getAudit();
+        AuditJournal.Recovery recovery = auditJournal.open(Path.of(config.getJournalDirectory()), config.getSegmentSizeBytes());
+        for (AuditJournal.JournaledTransaction transaction : recovery.transactions()) {
+            Boolean outcome = recovery.outcomes().get(transaction.transactionId());
+            if (outcome == null) {
+                inDoubt.put(transaction.transactionId(), transaction);
+                pendingRecords.addAndGet(transaction.records().size());
+            } else if (outcome) {
+                enqueue(transaction);
+            } else {
+                auditJournal.release(transaction.segment());
+            }
+        }
+        log.info("Opened audit journal with {} records to load and {} transactions to look up",
+                pendingRecords.get(), inDoubt.size());
+    }
+    
+    public boolean isWriteBehind() {
+        return appConfig.getAudit().getMode() == AppConfig.Audit.Mode.JOURNAL;
+    }
+    
+    /**
+     * Journals audit records of the current transaction; they are written when it commits.
+     * Must be called inside the transaction that made the recorded changes.
+     */
+    public void record(List<AuditRecord> records) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Audit records must be journaled inside a transaction");
+        }
+        
+        TransactionAudit audit = (TransactionAudit) TransactionSynchronizationManager.getResource(this);
+        if (audit == null) {
+            audit = new TransactionAudit();
+            TransactionSynchronizationManager.bindResource(this, audit);
+            TransactionSynchronizationManager.registerSynchronization(audit);
+        }
+        audit.records.addAll(records);
+    }
+    
+    /**
+     * Loads the oldest batch of committed records into the audit tables.
+     * @return the number of records loaded
+     */
+    @Transactional
+    public int loadPendingBatch() {
+        resolveInDoubt();
+        
+        List<AuditJournal.JournaledTransaction> batch = new ArrayList<>();
+        Map<AuditRecordType, List<AuditRecord>> recordsByType = new EnumMap<>(AuditRecordType.class);
+        int recordCount = 0;
+        AuditJournal.JournaledTransaction transaction;
+        while (recordCount < appConfig.getAudit().getBatchSize() && (transaction = committed.poll()) != null) {
+            batch.add(transaction);
+            for (AuditRecord record : transaction.records()) {
+                recordsByType.computeIfAbsent(record.getType(), type -> new ArrayList<>()).add(record);
+            }
+            recordCount += transaction.records().size();
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        
+        // Journal segments may only be released once the rows are committed; a failed load is retried
+        int loaded = recordCount;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    batch.forEach(loadedTransaction -> auditJournal.release(loadedTransaction.segment()));
+                    pendingRecords.addAndGet(-loaded);
+                } else {
+                    committed.addAll(batch);
+                }
+            }
+        });
+        recordsByType.forEach(auditRecordRepository::load);
+        
+        log.debug("Loaded {} audit records of {} transactions", recordCount, batch.size());
+        return recordCount;
+    }
+    
+    /**
+     * Looks up the outcome of transactions that were journaled but whose outcome frame is missing.
+     */
+    private void resolveInDoubt() {
+        if (inDoubt.isEmpty()) {
+            return;
+        }
+        
+        auditRecordRepository.findTransactionStatuses(inDoubt.keySet()).forEach((transactionId, status) -> {
+            if ("in progress".equals(status)) {
+                return;
+            }
+            AuditJournal.JournaledTransaction transaction = inDoubt.remove(transactionId);
+            if (transaction == null) {
+                return;
+            }
+            if ("aborted".equals(status)) {
+                auditJournal.release(transaction.segment());
+                pendingRecords.addAndGet(-transaction.records().size());
+                return;
+            }
+            if (status == null) {
+                log.warn("Outcome of journaled transaction {} is no longer known; loading its audit records", transactionId);
+            }
+            committed.add(transaction);
+        });
+    }
+    
+    private void enqueue(AuditJournal.JournaledTransaction transaction) {
+        committed.add(transaction);
+        pendingRecords.addAndGet(transaction.records().size());
+    }
+    
+    /**
+     * Collects the records of one transaction and journals them around its commit.
+     */
+    private final class TransactionAudit implements TransactionSynchronization {
+        
+        private final List<AuditRecord> records = new ArrayList<>();
+        private long transactionId;
+        private AuditJournal.Position position;
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            transactionId = auditRecordRepository.currentTransactionId();
+            position = auditJournal.appendTransaction(transactionId, records);
+            auditJournal.awaitDurable(position.sequence());
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AuditTrailService.this);
+            if (position == null) {
+                return;
+            }
+            
+            AuditJournal.JournaledTransaction transaction =
+                    new AuditJournal.JournaledTransaction(position.segment(), transactionId, List.copyOf(records));
+            if (status == STATUS_COMMITTED) {
+                auditJournal.appendOutcome(transactionId, true);
+                enqueue(transaction);
+            } else if (status == STATUS_ROLLED_BACK) {
+                auditJournal.appendOutcome(transactionId, false);
+                auditJournal.release(position.segment());
+            } else {
+                // The commit failed in a way that leaves its outcome unknown; the database knows it
+                inDoubt.put(transactionId, transaction);
+                pendingRecords.addAndGet(records.size());
+            }
+        }
+    }
+}
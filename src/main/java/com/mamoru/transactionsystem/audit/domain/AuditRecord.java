@@ -0,0 +1,38 @@
+package com.mamoru.transactionsystem.audit.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One audit trail row on its way through the local journal, either an account transaction
+ * or an inventory transaction. The id and timestamp are fixed when the record is made,
+ * so loading the same record twice inserts it once.
+ */
+@Value
+@Builder
+public class AuditRecord {
+    
+    AuditRecordType type;
+    UUID id;
+    
+    /**
+     * The account or inventory the row belongs to.
+     */
+    UUID subjectId;
+    
+    String transactionType;
+    
+    /**
+     * Amount and balances of an account transaction, or quantities of an inventory transaction.
+     */
+    BigDecimal amount;
+    BigDecimal before;
+    BigDecimal after;
+    
+    String referenceId;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package com.mamoru.transactionsystem.audit.domain;
+
+public enum AuditRecordType {
+    ACCOUNT_TRANSACTION,
+    INVENTORY_TRANSACTION
+}
@@ -0,0 +1,329 @@
+package com.mamoru.transactionsystem.audit.infrastructure.journal;
+
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of audit records in memory-mapped segment files.
+ * <p>
+ * Each frame is a length, a CRC32 and a payload. The unwritten rest of a segment is zero-filled, so a zero
+ * length ends it, and a frame whose checksum does not match is a write torn by a crash and ends it too.
+ * Appending only copies bytes into the mapping; {@link #awaitDurable} forces the mapping to disk, and callers
+ * waiting at the same time share one force, so concurrent transactions are fsynced in batches.
+ * <p>
+ * The records of one database transaction are written as one frame, followed by an outcome frame once the
+ * transaction has committed or rolled back. A full segment is deleted once every transaction in it is released.
+ */
+@Component
+@Slf4j
+public class AuditJournal {
+    
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final byte TRANSACTION_FRAME = 1;
+    private static final byte OUTCOME_FRAME = 2;
+    
+    private final Object forceLock = new Object();
+    private volatile long durableSequence;
+    
+    // Guarded by this
+    private final Map<Long, Integer> unreleasedBySegment = new HashMap<>();
+    private Path directory;
+    private int segmentSize;
+    private long segmentNumber;
+    private MappedByteBuffer segment;
+    private long appendedSequence;
+    
+    /**
+     * Reads back the frames of the segments left in the directory and starts a new segment after them.
+     * The transactions read back stay unreleased until the caller releases them.
+     */
+    public synchronized Recovery open(Path directory, int segmentSize) {
+        try {
+            Files.createDirectories(directory);
+            this.directory = directory;
+            this.segmentSize = segmentSize;
+            
+            List<JournaledTransaction> transactions = new ArrayList<>();
+            Map<Long, Boolean> outcomes = new HashMap<>();
+            long lastSegment = 0;
+            for (Path path : listSegments()) {
+                long number = segmentNumber(path);
+                lastSegment = Math.max(lastSegment, number);
+                unreleasedBySegment.put(number, 0);
+                readSegment(path, number, transactions, outcomes);
+            }
+            transactions.forEach(transaction -> unreleasedBySegment.merge(transaction.segment(), 1, Integer::sum));
+            
+            startSegment(lastSegment + 1);
+            new ArrayList<>(unreleasedBySegment.keySet()).forEach(this::deleteIfReleased);
+            return new Recovery(transactions, outcomes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Audit journal could not be opened in " + directory, e);
+        }
+    }
+    
+    /**
+     * Appends the records of one database transaction. They are not durable before {@link #awaitDurable}.
+     */
+    public synchronized Position appendTransaction(long transactionId, List<AuditRecord> records) {
+        long segment = append(encodeTransaction(transactionId, records));
+        unreleasedBySegment.merge(segment, 1, Integer::sum);
+        return new Position(segment, appendedSequence);
+    }
+    
+    /**
+     * Appends whether a journaled transaction committed. Needs no fsync of its own: a lost outcome is
+     * resolved from the database on the next start.
+     */
+    public synchronized void appendOutcome(long transactionId, boolean committed) {
+        append(encodeOutcome(transactionId, committed));
+    }
+    
+    /**
+     * Blocks until every frame up to the given sequence is on disk.
+     */
+    public void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            // Frames in earlier segments were forced when the segment was sealed
+            MappedByteBuffer toForce;
+            long target;
+            synchronized (this) {
+                toForce = segment;
+                target = appendedSequence;
+            }
+            toForce.force();
+            durableSequence = target;
+        }
+    }
+    
+    /**
+     * Marks a journaled transaction as loaded or discarded, deleting its segment when nothing in it is left.
+     */
+    public synchronized void release(long segment) {
+        unreleasedBySegment.computeIfPresent(segment, (number, unreleased) -> unreleased - 1);
+        deleteIfReleased(segment);
+    }
+    
+    @PreDestroy
+    synchronized void close() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+    
+    private long append(byte[] payload) {
+        if (segment == null) {
+            throw new IllegalStateException("Audit journal is not open");
+        }
+        int frameSize = FRAME_HEADER_BYTES + payload.length;
+        if (frameSize > segmentSize) {
+            throw new IllegalArgumentException(
+                String.format("Audit journal frame of %d bytes does not fit in a segment of %d bytes", frameSize, segmentSize));
+        }
+        if (segment.remaining() < frameSize) {
+            segment.force();
+            long sealed = segmentNumber;
+            startSegment(segmentNumber + 1);
+            deleteIfReleased(sealed);
+        }
+        
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        segment.putInt(payload.length).putInt((int) checksum.getValue()).put(payload);
+        appendedSequence++;
+        return segmentNumber;
+    }
+    
+    private void startSegment(long number) {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Audit journal segment could not be created: " + path, e);
+        }
+        segmentNumber = number;
+        unreleasedBySegment.put(number, 0);
+        syncDirectory();
+        log.debug("Started audit journal segment {}", path.getFileName());
+    }
+    
+    private void deleteIfReleased(long number) {
+        Integer unreleased = unreleasedBySegment.get(number);
+        if (number == segmentNumber || unreleased == null || unreleased > 0) {
+            return;
+        }
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try {
+            Files.deleteIfExists(path);
+            unreleasedBySegment.remove(number);
+            log.debug("Deleted audit journal segment {}", path.getFileName());
+        } catch (IOException e) {
+            log.warn("Audit journal segment {} could not be deleted", path.getFileName(), e);
+        }
+    }
+    
+    /**
+     * Makes a newly created segment file survive a crash along with the frames written into it.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Audit journal directory {} could not be synced", directory, e);
+        }
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+    
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private void readSegment(Path path, long number, List<JournaledTransaction> transactions,
+                             Map<Long, Boolean> outcomes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+                int length = buffer.getInt();
+                int expectedChecksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32 checksum = new CRC32();
+                checksum.update(payload);
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    log.warn("Audit journal segment {} ends in a torn frame", path.getFileName());
+                    break;
+                }
+                decode(payload, number, transactions, outcomes);
+            }
+        }
+    }
+    
+    private static byte[] encodeTransaction(long transactionId, List<AuditRecord> records) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + records.size() * 160);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TRANSACTION_FRAME);
+            out.writeLong(transactionId);
+            out.writeInt(records.size());
+            for (AuditRecord record : records) {
+                out.writeUTF(record.getType().name());
+                out.writeLong(record.getId().getMostSignificantBits());
+                out.writeLong(record.getId().getLeastSignificantBits());
+                out.writeLong(record.getSubjectId().getMostSignificantBits());
+                out.writeLong(record.getSubjectId().getLeastSignificantBits());
+                out.writeUTF(record.getTransactionType());
+                out.writeUTF(record.getAmount().toPlainString());
+                out.writeUTF(record.getBefore().toPlainString());
+                out.writeUTF(record.getAfter().toPlainString());
+                out.writeBoolean(record.getReferenceId() != null);
+                if (record.getReferenceId() != null) {
+                    out.writeUTF(record.getReferenceId());
+                }
+                out.writeUTF(record.getCreatedAt().toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    private static byte[] encodeOutcome(long transactionId, boolean committed) {
+        return ByteBuffer.allocate(10).put(OUTCOME_FRAME).putLong(transactionId).put((byte) (committed ? 1 : 0)).array();
+    }
+    
+    private static void decode(byte[] payload, long segment, List<JournaledTransaction> transactions,
+                               Map<Long, Boolean> outcomes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte kind = in.readByte();
+        long transactionId = in.readLong();
+        if (kind == OUTCOME_FRAME) {
+            outcomes.put(transactionId, in.readBoolean());
+            return;
+        }
+        
+        int count = in.readInt();
+        List<AuditRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AuditRecord.AuditRecordBuilder record = AuditRecord.builder()
+                    .type(AuditRecordType.valueOf(in.readUTF()))
+                    .id(new UUID(in.readLong(), in.readLong()))
+                    .subjectId(new UUID(in.readLong(), in.readLong()))
+                    .transactionType(in.readUTF())
+                    .amount(new BigDecimal(in.readUTF()))
+                    .before(new BigDecimal(in.readUTF()))
+                    .after(new BigDecimal(in.readUTF()));
+            if (in.readBoolean()) {
+                record.referenceId(in.readUTF());
+            }
+            records.add(record.createdAt(LocalDateTime.parse(in.readUTF())).build());
+        }
+        transactions.add(new JournaledTransaction(segment, transactionId, records));
+    }
+    
+    /**
+     * Where a transaction was appended: its segment, and the sequence to wait for to make it durable.
+     */
+    public record Position(long segment, long sequence) {
+    }
+    
+    /**
+     * The records of one database transaction, identified by its Postgres transaction id.
+     */
+    public record JournaledTransaction(long segment, long transactionId, List<AuditRecord> records) {
+    }
+    
+    /**
+     * What was left in the journal: the transactions, and the outcomes that were written for them.
+     */
+    public record Recovery(List<JournaledTransaction> transactions, Map<Long, Boolean> outcomes) {
+    }
+}
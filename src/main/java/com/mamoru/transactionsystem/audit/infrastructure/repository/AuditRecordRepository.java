@@ -0,0 +1,109 @@
+package com.mamoru.transactionsystem.audit.infrastructure.repository;
+
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Loads journaled audit records into the audit tables with COPY. Rows are copied into a temporary
+ * table and inserted from there, skipping ids that are already present, so a batch replayed after
+ * a crash is loaded once.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AuditRecordRepository {
+    
+    private static final String CURRENT_TRANSACTION_ID = "SELECT pg_current_xact_id()::text::bigint";
+    
+    /**
+     * 'committed', 'aborted' or 'in progress'; null once the transaction is too old for Postgres to know.
+     */
+    private static final String TRANSACTION_STATUSES =
+            "SELECT x, pg_xact_status(x::text::xid8) FROM unnest(?::bigint[]) AS x";
+    
+    private static final String ACCOUNT_TRANSACTION_COLUMNS =
+            "id, account_id, transaction_type, amount, balance_before, balance_after, reference_id, created_at";
+    
+    private static final String INVENTORY_TRANSACTION_COLUMNS =
+            "id, inventory_id, transaction_type, quantity, quantity_before, quantity_after, reference_id, created_at";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Returns the id of the current database transaction, assigning one if it has none yet.
+     */
+    public long currentTransactionId() {
+        return jdbcTemplate.queryForObject(CURRENT_TRANSACTION_ID, Long.class);
+    }
+    
+    public Map<Long, String> findTransactionStatuses(Collection<Long> transactionIds) {
+        String ids = transactionIds.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+        Map<Long, String> statuses = new HashMap<>();
+        jdbcTemplate.query(TRANSACTION_STATUSES,
+                (RowCallbackHandler) resultSet -> statuses.put(resultSet.getLong(1), resultSet.getString(2)), ids);
+        return statuses;
+    }
+    
+    /**
+     * Loads records of one type. Must run in a transaction, which the temporary table lives for.
+     * @return the number of rows inserted
+     */
+    public int load(AuditRecordType type, List<AuditRecord> records) {
+        String table = type == AuditRecordType.ACCOUNT_TRANSACTION ? "account_transactions" : "inventory_transactions";
+        String columns = type == AuditRecordType.ACCOUNT_TRANSACTION
+                ? ACCOUNT_TRANSACTION_COLUMNS
+                : INVENTORY_TRANSACTION_COLUMNS;
+        String loadTable = "audit_load_" + table;
+        
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE " + loadTable + " (LIKE " + table + ") ON COMMIT DROP");
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn("COPY " + loadTable + " (" + columns + ") FROM STDIN", new StringReader(toCopyText(records)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return jdbcTemplate.update("INSERT INTO " + table + " (" + columns + ") " +
+                "SELECT " + columns + " FROM " + loadTable + " ON CONFLICT DO NOTHING");
+    }
+    
+    private static String toCopyText(List<AuditRecord> records) {
+        StringBuilder text = new StringBuilder(records.size() * 160);
+        for (AuditRecord record : records) {
+            text.append(record.getId()).append('\t')
+                    .append(record.getSubjectId()).append('\t')
+                    .append(escape(record.getTransactionType())).append('\t')
+                    .append(record.getAmount().toPlainString()).append('\t')
+                    .append(record.getBefore().toPlainString()).append('\t')
+                    .append(record.getAfter().toPlainString()).append('\t')
+                    .append(record.getReferenceId() == null ? "\\N" : escape(record.getReferenceId())).append('\t')
+                    .append(record.getCreatedAt()).append('\n');
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Escapes a value for the COPY text format.
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("\t", "\\t")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r");
+    }
+}
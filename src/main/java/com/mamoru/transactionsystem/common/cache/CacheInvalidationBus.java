@@ -0,0 +1,78 @@
+package com.mamoru.transactionsystem.common.cache;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Tells every instance which cached entities changed, over Postgres NOTIFY on the {@value #CHANNEL} channel.
+ * Notifications are transactional: they are delivered once the writing transaction commits and dropped
+ * if it rolls back. Each instance receives them through {@link CacheInvalidationListener}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationBus {
+    
+    static final String CHANNEL = "cache_invalidation";
+    
+    private static final String NOTIFY = "SELECT pg_notify('" + CHANNEL + "', ?)";
+    
+    private static final char SEPARATOR = ':';
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final AppConfig appConfig;
+    
+    private final Map<String, LocalCache> caches = new ConcurrentHashMap<>();
+    
+    /**
+     * Registers the local cache of an entity.
+     * @param evict evicts one key, as passed to {@link #publish}
+     * @param clear empties the cache, used when changes may have been missed
+     */
+    public void register(String entity, Consumer<String> evict, Runnable clear) {
+        caches.put(entity, new LocalCache(evict, clear));
+    }
+    
+    /**
+     * Announces a change of the entity once the current transaction commits. Does nothing unless
+     * invalidation is enabled for the entity: NOTIFY takes a database-wide lock at commit, so it is
+     * only worth sending for entities some instance caches.
+     */
+    public void publish(String entity, Object key) {
+        AppConfig.CacheInvalidation config = appConfig.getCacheInvalidation();
+        if (!config.isEnabled() || !config.getEntities().contains(entity)) {
+            return;
+        }
+        jdbcTemplate.query(NOTIFY, (RowCallbackHandler) rs -> { }, entity + SEPARATOR + key);
+    }
+    
+    void dispatch(String payload) {
+        int separator = payload.indexOf(SEPARATOR);
+        LocalCache cache = separator > 0 ? caches.get(payload.substring(0, separator)) : null;
+        if (cache == null) {
+            log.debug("Ignoring cache invalidation: {}", payload);
+            return;
+        }
+        cache.evict().accept(payload.substring(separator + 1));
+    }
+    
+    void clearAll() {
+        caches.values().forEach(cache -> cache.clear().run());
+    }
+    
+    List<String> registeredEntities() {
+        return List.copyOf(caches.keySet());
+    }
+    
+    private record LocalCache(Consumer<String> evict, Runnable clear) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.mamoru.transactionsystem.common.cache;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+/**
+ * Listens for cache invalidations on a connection of its own, outside the pool, and evicts the keys
+ * from the local caches. Notifications sent while it is not listening are lost, so the local caches
+ * are cleared every time it (re)connects.
+ * <p>
+ * Waiting for notifications never writes to the socket, so a connection whose peer vanished without
+ * closing it would look idle forever. The connection therefore uses TCP keepalive and a socket timeout,
+ * and the listener runs {@code SELECT 1} every health-check interval, reconnecting when it fails.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.cache-invalidation.enabled", havingValue = "true")
+public class CacheInvalidationListener {
+    
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final DataSourceProperties dataSourceProperties;
+    private final AppConfig appConfig;
+    
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread listener;
+    
+    @PostConstruct
+    void start() {
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+    
+    @PreDestroy
+    void stop() {
+        running = false;
+        listener.interrupt();
+        Connection current = connection;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (SQLException e) {
+                log.debug("Error closing cache invalidation connection", e);
+            }
+        }
+    }
+    
+    private void listen() {
+        AppConfig.CacheInvalidation config = appConfig.getCacheInvalidation();
+        while (running) {
+            try (Connection listening = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    connectionProperties(config))) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + CacheInvalidationBus.CHANNEL);
+                }
+                cacheInvalidationBus.clearAll();
+                log.info("Listening for cache invalidations of {}", cacheInvalidationBus.registeredEntities());
+                
+                PGConnection pgConnection = listening.unwrap(PGConnection.class);
+                long nextHealthCheck = System.currentTimeMillis() + config.getHealthCheckIntervalMs();
+                while (running) {
+                    // Blocks up to the poll interval; a connection closed by the server fails here
+                    PGNotification[] notifications = pgConnection.getNotifications((int) config.getPollIntervalMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                    if (System.currentTimeMillis() >= nextHealthCheck) {
+                        // A half-open connection fails here, at the latest when the socket timeout expires
+                        try (Statement statement = listening.createStatement()) {
+                            statement.execute("SELECT 1");
+                        }
+                        nextHealthCheck = System.currentTimeMillis() + config.getHealthCheckIntervalMs();
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cache invalidation listener lost its connection, reconnecting in {} ms",
+                            config.getReconnectDelayMs(), e);
+                    sleep(config.getReconnectDelayMs());
+                }
+            } finally {
+                connection = null;
+            }
+        }
+    }
+    
+    private Properties connectionProperties(AppConfig.CacheInvalidation config) {
+        Properties properties = new Properties();
+        String username = dataSourceProperties.determineUsername();
+        String password = dataSourceProperties.determinePassword();
+        if (username != null) {
+            properties.setProperty("user", username);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        properties.setProperty("tcpKeepAlive", "true");
+        // Longer than a poll and a health check, so only a connection that stopped answering times out
+        long timeoutMs = 2 * Math.max(config.getPollIntervalMs(), config.getHealthCheckIntervalMs());
+        properties.setProperty("socketTimeout", String.valueOf(Math.max(1, timeoutMs / 1000)));
+        return properties;
+    }
+    
+    private void dispatch(String payload) {
+        try {
+            cacheInvalidationBus.dispatch(payload);
+        } catch (RuntimeException e) {
+            log.error("Error handling cache invalidation: {}", payload, e);
+        }
+    }
+    
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
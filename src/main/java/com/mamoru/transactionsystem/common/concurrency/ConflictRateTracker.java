@@ -0,0 +1,79 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks an exponentially weighted conflict rate per key.
+ * <p>
+ * A key turns hot once its rate reaches the hot threshold and cools down again when it falls below half of it,
+ * so a key does not flap between lock modes on every call. Only keys that have conflicted at least once are
+ * tracked; the bounded cache evicts keys that have been idle for a while.
+ */
+public class ConflictRateTracker {
+    
+    private final double alpha;
+    private final double hotThreshold;
+    private final double coolThreshold;
+    private final Cache<String, ConflictRate> rates;
+    
+    public ConflictRateTracker(double alpha, double hotThreshold, long maxKeys, Duration idleExpiry) {
+        this.alpha = alpha;
+        this.hotThreshold = hotThreshold;
+        this.coolThreshold = hotThreshold / 2;
+        this.rates = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleExpiry)
+                .build();
+    }
+    
+    public boolean isHot(String key) {
+        ConflictRate rate = rates.getIfPresent(key);
+        return rate != null && rate.hot;
+    }
+    
+    public double rate(String key) {
+        ConflictRate rate = rates.getIfPresent(key);
+        return rate == null ? 0 : rate.get();
+    }
+    
+    public void recordConflict(String key) {
+        rates.get(key, k -> new ConflictRate()).record(1);
+    }
+    
+    public void recordSuccess(String key) {
+        ConflictRate rate = rates.getIfPresent(key);
+        if (rate != null) {
+            rate.record(0);
+        }
+    }
+    
+    public long hotKeyCount() {
+        return rates.asMap().values().stream().filter(rate -> rate.hot).count();
+    }
+    
+    private final class ConflictRate {
+        
+        private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+        private volatile boolean hot;
+        
+        private double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+        
+        private void record(double sample) {
+            long current;
+            double updated;
+            do {
+                current = bits.get();
+                double rate = Double.longBitsToDouble(current);
+                updated = rate + alpha * (sample - rate);
+            } while (!bits.compareAndSet(current, Double.doubleToLongBits(updated)));
+            
+            hot = hot ? updated >= coolThreshold : updated >= hotThreshold;
+        }
+    }
+}
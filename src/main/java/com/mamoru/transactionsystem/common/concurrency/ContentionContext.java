@@ -0,0 +1,34 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+/**
+ * Tells a {@link ContentionManaged} method how to read the row it is about to update.
+ */
+public final class ContentionContext {
+    
+    private static final ThreadLocal<Boolean> PESSIMISTIC = new ThreadLocal<>();
+    
+    private ContentionContext() {
+    }
+    
+    /**
+     * Whether the current call should lock its row with {@code SELECT ... FOR UPDATE}
+     * instead of relying on the optimistic version check.
+     */
+    public static boolean isPessimistic() {
+        return Boolean.TRUE.equals(PESSIMISTIC.get());
+    }
+    
+    static Boolean setPessimistic(boolean pessimistic) {
+        Boolean previous = PESSIMISTIC.get();
+        PESSIMISTIC.set(pessimistic);
+        return previous;
+    }
+    
+    static void restore(Boolean previous) {
+        if (previous == null) {
+            PESSIMISTIC.remove();
+        } else {
+            PESSIMISTIC.set(previous);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that updates a single versioned row identified by its first argument.
+ * Calls are routed through the {@link ContentionManager}, which retries optimistic locking
+ * conflicts and switches keys that keep conflicting to pessimistic row locks.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ContentionManaged {
+    
+    /**
+     * Name of the contended resource, e.g. {@code account}. Used as metric tag and key prefix.
+     */
+    String value();
+}
@@ -0,0 +1,29 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes {@link ContentionManaged} methods through the {@link ContentionManager}. Ordered ahead of the
+ * transaction interceptor, so every retry runs in a fresh transaction of its own.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class ContentionManagedAspect {
+    
+    private final ContentionManager contentionManager;
+    
+    @Around("@annotation(contentionManaged)")
+    public Object manageContention(ProceedingJoinPoint joinPoint, ContentionManaged contentionManaged) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        String key = contentionManaged.value() + ":" + (args.length > 0 ? args[0] : "");
+        return contentionManager.execute(contentionManaged.value(), key, joinPoint::proceed);
+    }
+}
@@ -0,0 +1,144 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs updates of contended rows, replacing the fixed three attempts with a 100 ms sleep.
+ * <p>
+ * Each optimistic locking conflict feeds a per-key conflict rate. A call that owns its transaction is retried
+ * after a decorrelated jitter backoff (a random delay between the base delay and three times the previous one,
+ * capped), and its last attempt always locks the row pessimistically, so it cannot fail on a version conflict.
+ * Once a key is hot, every call on it locks the row with {@code SELECT ... FOR UPDATE} from the first attempt:
+ * writers queue on the row lock instead of failing and sleeping. The rate decays with each successful call,
+ * so a key that cools down goes back to optimistic locking.
+ * <p>
+ * A call that joins a caller's transaction cannot be retried, because the conflict marks the whole transaction
+ * for rollback. It is flushed before returning, so a conflict still shows up here and counts against its key,
+ * and hot keys are locked pessimistically all the same.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContentionManager {
+    
+    private final AppConfig appConfig;
+    private final EntityManager entityManager;
+    private final MeterRegistry meterRegistry;
+    
+    private ConflictRateTracker tracker;
+    
+    @FunctionalInterface
+    public interface ContendedCall {
+        Object proceed() throws Throwable;
+    }
+    
+    @PostConstruct
+    void init() {
+        AppConfig.Contention config = appConfig.getContention();
+        tracker = new ConflictRateTracker(config.getEwmaAlpha(), config.getHotThreshold(),
+                config.getTrackedKeys(), Duration.ofMillis(config.getKeyIdleMs()));
+        Gauge.builder("contention.hot.keys", tracker, ConflictRateTracker::hotKeyCount)
+                .description("Keys currently updated under pessimistic row locks")
+                .register(meterRegistry);
+    }
+    
+    public Object execute(String resource, String key, ContendedCall call) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return executeInCallerTransaction(resource, key, call);
+        }
+        
+        AppConfig.Contention config = appConfig.getContention();
+        long delay = config.getBaseDelayMs();
+        for (int attempt = 1; ; attempt++) {
+            boolean pessimistic = tracker.isHot(key) || attempt == config.getMaxAttempts();
+            try {
+                Object result = proceed(resource, pessimistic, call);
+                tracker.recordSuccess(key);
+                return result;
+            } catch (Throwable e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                recordConflict(resource, key);
+                if (attempt >= config.getMaxAttempts()) {
+                    throw e;
+                }
+                delay = nextDelay(delay, config);
+                log.debug("Version conflict on {} (attempt {}), retrying in {} ms", key, attempt, delay);
+                Thread.sleep(delay);
+            }
+        }
+    }
+    
+    /**
+     * Current conflict rate of a key, between 0 and 1.
+     */
+    public double conflictRate(String key) {
+        return tracker.rate(key);
+    }
+    
+    private Object executeInCallerTransaction(String resource, String key, ContendedCall call) throws Throwable {
+        try {
+            Object result = proceed(resource, tracker.isHot(key), () -> {
+                Object value = call.proceed();
+                entityManager.flush();
+                return value;
+            });
+            tracker.recordSuccess(key);
+            return result;
+        } catch (Throwable e) {
+            if (isConflict(e)) {
+                recordConflict(resource, key);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Decorrelated jitter: a random delay between the base delay and three times the previous delay, capped.
+     */
+    private long nextDelay(long previousDelay, AppConfig.Contention config) {
+        long upperBound = Math.max(config.getBaseDelayMs(), previousDelay * 3);
+        return Math.min(config.getMaxDelayMs(),
+                ThreadLocalRandom.current().nextLong(config.getBaseDelayMs(), upperBound + 1));
+    }
+    
+    private Object proceed(String resource, boolean pessimistic, ContendedCall call) throws Throwable {
+        if (pessimistic) {
+            meterRegistry.counter("contention.pessimistic.calls", "resource", resource).increment();
+        }
+        Boolean previous = ContentionContext.setPessimistic(pessimistic);
+        try {
+            return call.proceed();
+        } finally {
+            ContentionContext.restore(previous);
+        }
+    }
+    
+    private void recordConflict(String resource, String key) {
+        tracker.recordConflict(key);
+        Counter.builder("contention.conflicts")
+                .description("Optimistic locking conflicts by resource")
+                .tag("resource", resource)
+                .register(meterRegistry)
+                .increment();
+    }
+    
+    private boolean isConflict(Throwable e) {
+        return e instanceof OptimisticLockingFailureException || e instanceof OptimisticLockException;
+    }
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "app")
 @Getter
@@ -13,12 +16,121 @@ public class AppConfig {
     
     private Reconciliation reconciliation = new Reconciliation();
     private Currency currency = new Currency();
+    private MerchantAccount merchantAccount = new MerchantAccount();
+    private UserAccount userAccount = new UserAccount();
+    private Inventory inventory = new Inventory();
+    private Idempotency idempotency = new Idempotency();
+    private IdGenerator idGenerator = new IdGenerator();
+    private Contention contention = new Contention();
+    private Ledger ledger = new Ledger();
+    private Partition partition = new Partition();
+    private AccountHistory accountHistory = new AccountHistory();
+    private BalanceSnapshot balanceSnapshot = new BalanceSnapshot();
+    private Audit audit = new Audit();
+    private SalesRollup salesRollup = new SalesRollup();
+    private ProductCache productCache = new ProductCache();
+    private CacheInvalidation cacheInvalidation = new CacheInvalidation();
     
     @Getter
     @Setter
     public static class Reconciliation {
         private String cron;
         private boolean enabled;
+        
+        /**
+         * SET_BASED reconciles all merchants in one pass over a daily sales aggregate and the merchant balances,
+         * committing one page of merchants at a time; PARALLEL reconciles each merchant in its own transaction on a pool of workers.
+         */
+        private Mode mode = Mode.SET_BASED;
+        
+        /**
+         * Merchants reconciled concurrently by a PARALLEL run. Each worker holds one pooled connection,
+         * so this should stay well below the connection pool size.
+         */
+        private int parallelism = 4;
+        
+        /**
+         * Merchant ids read per page by a PARALLEL run; merchants reconciled and committed per transaction
+         * by a SET_BASED run.
+         */
+        private int pageSize = 1000;
+        
+        /**
+         * Rows the report export cursor fetches per round trip, which bounds the rows held in memory.
+         */
+        private int exportFetchSize = 1000;
+        
+        private Backfill backfill = new Backfill();
+        
+        private Cluster cluster = new Cluster();
+        
+        public enum Mode {
+            SET_BASED,
+            PARALLEL
+        }
+        
+        @Getter
+        @Setter
+        public static class Backfill {
+            /**
+             * Report dates of a backfill job reconciled concurrently. Each holds one pooled connection
+             * for the whole set-based pass over its date.
+             */
+            private int parallelism = 2;
+            
+            /**
+             * Attempts per report date before it is marked failed; a resume retries failed dates.
+             */
+            private int maxAttempts = 3;
+            
+            /**
+             * Longest date range a single job may cover.
+             */
+            private int maxDays = 366;
+            
+            /**
+             * Resume jobs left running by a previous instance at startup.
+             */
+            private boolean resumeOnStartup = true;
+        }
+        
+        @Getter
+        @Setter
+        public static class Cluster {
+            /**
+             * Spread each run across instances: merchants are split into shards that instances lease from a table,
+             * instead of every instance reconciling every merchant.
+             */
+            private boolean enabled = false;
+            
+            /**
+             * Shards per report date. More shards spread the work more evenly and lose less of it when an instance dies.
+             */
+            private int shards = 16;
+            
+            /**
+             * How long a lease lasts without being renewed; an instance that died loses its shards after this.
+             */
+            private long leaseDurationMs = 120000;
+            
+            private long renewIntervalMs = 30000;
+            
+            /**
+             * Claims per shard, including takeovers, before it is left incomplete instead of claimed again.
+             */
+            private int maxAttempts = 3;
+            
+            /**
+             * How often instances look for incomplete shards whose lease expired, and how many days back.
+             */
+            private long takeoverIntervalMs = 60000;
+            private int takeoverLookbackDays = 7;
+            
+            /**
+             * Lease owner name of this instance; defaults to the host name and process id.
+             */
+            private String owner = "";
+        }
     }
     
     @Getter
@@ -26,5 +138,312 @@ public class AppConfig {
     public static class Currency {
         private String defaultCurrency = "USD";
     }
+    
+    @Getter
+    @Setter
+    public static class MerchantAccount {
+        /**
+         * Number of sub-balance rows each merchant balance is split into. Like the credit mode, only used
+         * while the ledger is disabled; the ledger credits merchants with inserts.
+         * 1 keeps the classic single-row balance updated under optimistic locking.
+         */
+        private int balanceStripes = 1;
+        
+        /**
+         * SYNC credits the merchant inside the order transaction;
+         * JOURNAL only appends a credit journal entry that a background applier settles in batches.
+         */
+        private CreditMode creditMode = CreditMode.SYNC;
+        
+        private Journal journal = new Journal();
+        
+        public enum CreditMode {
+            SYNC,
+            JOURNAL
+        }
+
+        @Getter
+        @Setter
+        public static class Journal {
+            private boolean applierEnabled = true;
+            private long applyIntervalMs = 1000;
+            private int batchSize = 500;
+            private boolean cleanupEnabled = true;
+            private long cleanupIntervalMs = 3600000;
+            /**
+             * How long applied entries are kept before the cleanup deletes them.
+             */
+            private int retentionHours = 168;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class UserAccount {
+        /**
+         * OPTIMISTIC loads the account, checks the balance in Java and saves under a version check;
+         * GUARDED_UPDATE debits with one conditional UPDATE that only succeeds if the balance covers the amount.
+         * Only used while the ledger is disabled.
+         */
+        private DebitStrategy debitStrategy = DebitStrategy.OPTIMISTIC;
+        
+        public enum DebitStrategy {
+            OPTIMISTIC,
+            GUARDED_UPDATE
+        }
+    }
+    
+    @Getter
+    @Setter
+    public static class Inventory {
+        /**
+         * OPTIMISTIC pre-checks the stock, then loads and saves the inventory under a version check;
+         * GUARDED_UPDATE deducts with one conditional UPDATE that only succeeds if the stock covers the quantity;
+         * IN_MEMORY_RESERVATION takes stock from an in-process counter and flushes deductions write-behind.
+         */
+        private DeductionStrategy deductionStrategy = DeductionStrategy.OPTIMISTIC;
+        
+        private Reservation reservation = new Reservation();
+        
+        public enum DeductionStrategy {
+            OPTIMISTIC,
+            GUARDED_UPDATE,
+            IN_MEMORY_RESERVATION
+        }
+        
+        @Getter
+        @Setter
+        public static class Reservation {
+            private boolean flusherEnabled = true;
+            private long flushIntervalMs = 200;
+            private int batchSize = 1000;
+        }
+    }
+    
+    @Getter
+    @Setter
+    public static class Idempotency {
+        /**
+         * How long a key and its stored response are kept.
+         */
+        private long ttlHours = 24;
+        
+        /**
+         * Maximum number of keys held in the in-memory cache in front of the idempotency_keys table.
+         */
+        private int cacheMaxSize = 10000;
+        
+        /**
+         * How long a retry waits for the in-flight original on the same instance before getting a conflict.
+         */
+        private long inFlightWaitMs = 10000;
+        
+        /**
+         * Claims still in progress after this long are treated as lost and may be taken over.
+         */
+        private long inProgressTimeoutMs = 60000;
+        
+        private boolean cleanupEnabled = true;
+        private long cleanupIntervalMs = 3600000;
+    }
+    
+    @Getter
+    @Setter
+    public static class IdGenerator {
+        /**
+         * Node id (0-1023) embedded in generated references. Must be unique per running instance,
+         * otherwise two instances can generate the same order number in the same millisecond.
+         * May only be left unset for local runs, which then use node id 0.
+         */
+        private Integer nodeId;
+    }
+    
+    @Getter
+    @Setter
+    public static class Contention {
+        /**
+         * Attempts per call that owns its transaction. The last attempt always locks the row pessimistically.
+         */
+        private int maxAttempts = 5;
+        
+        /**
+         * Lower bound and cap of the decorrelated jitter backoff between attempts.
+         */
+        private long baseDelayMs = 5;
+        private long maxDelayMs = 200;
+        
+        /**
+         * Conflict rate (0-1) at which a key switches to pessimistic row locks; it switches back below half of it.
+         */
+        private double hotThreshold = 0.3;
+        
+        /**
+         * Weight of the latest call in the exponentially weighted conflict rate.
+         */
+        private double ewmaAlpha = 0.2;
+        
+        private long trackedKeys = 100000;
+        private long keyIdleMs = 600000;
+    }
+    
+    @Getter
+    @Setter
+    public static class Ledger {
+        /**
+         * Keep user and merchant balances in the ledger: every balance movement is journaled as a debit and
+         * a credit leg, and balances are read from the journal. When false, balances are updated in place on
+         * accounts and merchants and nothing is journaled. Not to be switched on a database in use, since
+         * each mode ignores the balances the other one wrote.
+         */
+        private boolean enabled = true;
+        
+        /**
+         * Fold journal entries into the materialized per-account balances in the background.
+         */
+        private boolean refreshEnabled = true;
+        private long refreshIntervalMs = 5000;
+    }
+    
+    @Getter
+    @Setter
+    public static class Partition {
+        private boolean maintenanceEnabled = true;
+        private long maintenanceIntervalMs = 3600000;
+        
+        /**
+         * Monthly partitions kept created beyond the current month.
+         */
+        private int monthsAhead = 3;
+        
+        /**
+         * Months kept attached before the current one; older partitions are detached. 0 keeps all partitions.
+         */
+        private int retentionMonths = 0;
+    }
+    
+    @Getter
+    @Setter
+    public static class AccountHistory {
+        private int defaultPageSize = 50;
+        private int maxPageSize = 500;
+        
+        /**
+         * Rows the export cursor fetches per round trip, which bounds the rows held in memory.
+         */
+        private int exportFetchSize = 1000;
+    }
+    
+    @Getter
+    @Setter
+    public static class BalanceSnapshot {
+        private boolean enabled = true;
+        
+        /**
+         * Minutes between snapshot cutoffs, counted from midnight. Should divide a day evenly.
+         */
+        private int intervalMinutes = 60;
+        
+        /**
+         * How long after a cutoff its snapshot is taken, so transactions running at the cutoff have committed.
+         */
+        private long settleDelayMs = 300000;
+        private long checkIntervalMs = 60000;
+    }
+    
+    @Getter
+    @Setter
+    public static class Audit {
+        /**
+         * SYNC inserts account and inventory transaction rows inside the business transaction;
+         * JOURNAL appends them to a local journal file that a background writer loads into the tables with COPY.
+         */
+        private Mode mode = Mode.SYNC;
+        
+        /**
+         * Directory of the journal segment files. Must be on local disk and kept across restarts.
+         */
+        private String journalDirectory = "data/audit-journal";
+        private int segmentSizeBytes = 64 * 1024 * 1024;
+        
+        private long writerIntervalMs = 200;
+        private int batchSize = 5000;
+        
+        public enum Mode {
+            SYNC,
+            JOURNAL
+        }
+    }
+    
+    @Getter
+    @Setter
+    public static class SalesRollup {
+        /**
+         * BATCHED appends a delta row that a background applier folds into the rollup;
+         * INLINE upserts the merchant's daily sales row inside the order transaction, which locks
+         * that row for the rest of every order of a busy merchant.
+         */
+        private Mode mode = Mode.BATCHED;
+        
+        private boolean applierEnabled = true;
+        private long applyIntervalMs = 1000;
+        private int batchSize = 1000;
+        
+        private boolean verifierEnabled = true;
+        private long verifyIntervalMs = 3600000;
+        
+        /**
+         * Days recomputed from orders per verification, picked at random from the last verifyLookbackDays days.
+         */
+        private int verifySampleDays = 3;
+        private int verifyLookbackDays = 35;
+        
+        public enum Mode {
+            INLINE,
+            BATCHED
+        }
+    }
+    
+    @Getter
+    @Setter
+    public static class ProductCache {
+        private boolean enabled = true;
+        
+        /**
+         * Upper bound on the estimated memory held by cached product snapshots.
+         */
+        private long maxWeightBytes = 16 * 1024 * 1024;
+        
+        /**
+         * How long a snapshot is served before it is reloaded. Orders never charge a cached price,
+         * so a snapshot made stale by a change on another instance only delays name changes.
+         */
+        private long ttlSeconds = 300;
+    }
+    
+    @Getter
+    @Setter
+    public static class CacheInvalidation {
+        /**
+         * Publish entity changes with NOTIFY and listen for them, so every instance evicts what another one changed.
+         */
+        private boolean enabled = false;
+        
+        /**
+         * Entities whose changes are published. Only product has a cache so far.
+         */
+        private List<String> entities = new ArrayList<>(List.of("product"));
+        
+        /**
+         * How long the listener waits for notifications per poll, which bounds how long shutdown waits for it.
+         */
+        private long pollIntervalMs = 500;
+        private long reconnectDelayMs = 5000;
+        
+        /**
+         * How often the listener checks its connection with SELECT 1, which bounds how long a connection
+         * that silently died goes unnoticed together with the socket timeout of twice this interval.
+         */
+        private long healthCheckIntervalMs = 30000;
+    }
 }
 
@@ -0,0 +1,8 @@
+package com.mamoru.transactionsystem.common.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
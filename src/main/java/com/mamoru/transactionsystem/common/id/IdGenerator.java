@@ -0,0 +1,22 @@
+package com.mamoru.transactionsystem.common.id;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Generates the business references handed out by the system, such as order numbers and payment transaction ids.
+ */
+public interface IdGenerator {
+    
+    /**
+     * Returns a new unique reference of the form {@code PREFIX-XXXXXXXXXXXXX}.
+     * References from the same generator sort in the order they were issued.
+     */
+    String nextId(String prefix);
+    
+    /**
+     * Returns when a reference was issued, as encoded in the reference itself.
+     * @return the issue time, or empty if the reference was not issued by this generator
+     */
+    Optional<Instant> issuedAt(String reference);
+}
@@ -0,0 +1,136 @@
+package com.mamoru.transactionsystem.common.id;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style generator: 41 bits of milliseconds since 2024-01-01, a 10 bit node id and a 12 bit sequence,
+ * rendered as 13 Crockford base32 characters.
+ * <p>
+ * The last issued timestamp and sequence live in a single {@link AtomicLong} advanced with compare-and-set, so
+ * ids are unique and strictly increasing per node without locking. When the 4096 ids of a millisecond are used
+ * up, or the wall clock steps back, the generator keeps counting from the last issued value and runs slightly
+ * ahead of the clock until the clock catches up. Ids are unique across instances as long as each instance has
+ * its own node id, and roughly time-ordered across instances, which keeps inserts into the order number index
+ * at its right edge.
+ */
+@Component
+@Slf4j
+public class SnowflakeIdGenerator implements IdGenerator {
+    
+    static final long EPOCH_MILLIS = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int ENCODED_LENGTH = 13;
+    private static final char[] CROCKFORD_BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    
+    private final long nodeBits;
+    private final LongSupplier clock;
+    
+    /**
+     * Last issued milliseconds since the epoch, shifted left by the sequence bits, plus the sequence.
+     */
+    private final AtomicLong lastIssued = new AtomicLong();
+    
+    /**
+     * Profiles that may run without a configured node id; at least one of them has to be active explicitly.
+     */
+    static final Set<String> LOCAL_PROFILES = Set.of("local", "test");
+    
+    @Autowired
+    public SnowflakeIdGenerator(AppConfig appConfig, Environment environment) {
+        this(resolveNodeId(appConfig.getIdGenerator().getNodeId(), environment.getActiveProfiles()),
+                System::currentTimeMillis);
+    }
+    
+    SnowflakeIdGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException(
+                String.format("Node id must be between 0 and %d, got %d", MAX_NODE_ID, nodeId));
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+    
+    /**
+     * Returns the configured node id, or 0 for a local run without one.
+     * @throws IllegalStateException if no node id is configured and no profile or a non-local profile is active
+     */
+    static int resolveNodeId(Integer configured, String[] activeProfiles) {
+        if (configured != null) {
+            log.info("Reference generator started with node id {}", configured);
+            return configured;
+        }
+        // Deployments often run without any profile, so that is not taken as a local run
+        if (activeProfiles.length == 0 || !Arrays.stream(activeProfiles).allMatch(LOCAL_PROFILES::contains)) {
+            throw new IllegalStateException(String.format(
+                "ID_GENERATOR_NODE_ID must be set to a node id unique per instance for profiles %s",
+                Arrays.toString(activeProfiles)));
+        }
+        log.warn("ID_GENERATOR_NODE_ID is not set, using node id 0; only one instance may run this way");
+        return 0;
+    }
+    
+    @Override
+    public String nextId(String prefix) {
+        long id = nextLong();
+        int offset = prefix.length() + 1;
+        char[] chars = new char[offset + ENCODED_LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        chars[prefix.length()] = '-';
+        for (int i = chars.length - 1; i >= offset; i--) {
+            chars[i] = CROCKFORD_BASE32[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    @Override
+    public Optional<Instant> issuedAt(String reference) {
+        int offset = reference.lastIndexOf('-') + 1;
+        if (offset == 0 || reference.length() - offset != ENCODED_LENGTH) {
+            return Optional.empty();
+        }
+        
+        long id = 0;
+        for (int i = offset; i < reference.length(); i++) {
+            int digit = Arrays.binarySearch(CROCKFORD_BASE32, reference.charAt(i));
+            // The leading character only carries the top three bits of a positive long
+            if (digit < 0 || (i == offset && digit > 7)) {
+                return Optional.empty();
+            }
+            id = (id << 5) | digit;
+        }
+        return Optional.of(Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS));
+    }
+    
+    /**
+     * Returns the next id as a positive long; later calls always return larger values.
+     */
+    long nextLong() {
+        long candidate = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = lastIssued.get();
+            // A sequence overflow carries into the timestamp bits, borrowing the next millisecond
+            next = candidate > previous ? candidate : previous + 1;
+        } while (!lastIssued.compareAndSet(previous, next));
+        
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+    }
+}
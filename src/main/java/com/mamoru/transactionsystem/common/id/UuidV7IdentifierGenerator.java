@@ -0,0 +1,24 @@
+package com.mamoru.transactionsystem.common.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+
+import java.util.EnumSet;
+
+/**
+ * Hibernate side of {@link UuidV7}: assigns ids from the shared {@link UuidV7Generator} before the insert.
+ */
+public class UuidV7IdentifierGenerator implements BeforeExecutionGenerator {
+    
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return UuidV7Generator.next();
+    }
+    
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EnumSet.of(EventType.INSERT);
+    }
+}
@@ -0,0 +1,28 @@
+package com.mamoru.transactionsystem.common.partition;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.partition.maintenance-enabled", havingValue = "true", matchIfMissing = true)
+public class PartitionMaintenanceScheduler {
+    
+    private final PartitionMaintenanceService partitionMaintenanceService;
+    
+    /**
+     * Pre-creates future monthly partitions and detaches expired ones. Runs once at startup, then periodically.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.partition.maintenance-interval-ms:3600000}")
+    public void maintainPartitions() {
+        try {
+            partitionMaintenanceService.maintain();
+        } catch (Exception e) {
+            log.error("Error maintaining table partitions", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mamoru.transactionsystem.common.partition;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of the history tables in shape: creates partitions for the coming months
+ * ahead of time, so inserts never hit a missing range, and detaches partitions past the retention period.
+ * Detached partitions remain as plain tables to be archived or dropped.
+ * <p>
+ * Partitions are detached concurrently, which only takes a SHARE UPDATE EXCLUSIVE lock on the parent table,
+ * so order placement keeps writing while old months are detached. A concurrent detach cannot run inside
+ * a transaction, so {@link #maintain()} must be called without one. A detach interrupted halfway leaves the
+ * partition pending; the next run finalizes it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionMaintenanceService {
+    
+    /**
+     * Payments come before orders: an orders partition can only be detached once no attached payment references it.
+     */
+    static final List<String> PARTITIONED_TABLES =
+            List.of("account_transactions", "inventory_transactions", "payments", "orders");
+    
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    
+    private static final String ENSURE_PARTITIONS = "SELECT ensure_monthly_partitions(?, ?::date, ?::date)";
+    
+    static final String FIND_PARTITIONS =
+            "SELECT child.relname FROM pg_inherits i " +
+            "JOIN pg_class child ON child.oid = i.inhrelid " +
+            "JOIN pg_class parent ON parent.oid = i.inhparent " +
+            "WHERE parent.relname = ? AND NOT i.inhdetachpending ORDER BY child.relname";
+    
+    static final String FIND_DETACH_PENDING =
+            "SELECT child.relname FROM pg_inherits i " +
+            "JOIN pg_class child ON child.oid = i.inhrelid " +
+            "JOIN pg_class parent ON parent.oid = i.inhparent " +
+            "WHERE parent.relname = ? AND i.inhdetachpending";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final AppConfig appConfig;
+    
+    public void maintain() {
+        maintain(LocalDate.now());
+    }
+    
+    void maintain(LocalDate today) {
+        AppConfig.Partition config = appConfig.getPartition();
+        YearMonth currentMonth = YearMonth.from(today);
+        for (String table : PARTITIONED_TABLES) {
+            Integer created = jdbcTemplate.queryForObject(ENSURE_PARTITIONS, Integer.class, table,
+                    currentMonth.atDay(1), currentMonth.plusMonths(config.getMonthsAhead()).atDay(1));
+            if (created != null && created > 0) {
+                log.info("Created {} monthly partitions of {}", created, table);
+            }
+            
+            if (config.getRetentionMonths() > 0) {
+                detachBefore(table, currentMonth.minusMonths(config.getRetentionMonths()));
+            }
+        }
+    }
+    
+    private void detachBefore(String table, YearMonth oldestKept) {
+        for (String partition : jdbcTemplate.queryForList(FIND_DETACH_PENDING, String.class, table)) {
+            jdbcTemplate.execute(String.format("ALTER TABLE \"%s\" DETACH PARTITION \"%s\" FINALIZE", table, partition));
+            log.info("Finalized interrupted detach of partition {} from {}", partition, table);
+        }
+        
+        String prefix = table + "_p";
+        for (String partition : jdbcTemplate.queryForList(FIND_PARTITIONS, String.class, table)) {
+            YearMonth month = monthOf(partition, prefix);
+            if (month != null && month.isBefore(oldestKept)) {
+                jdbcTemplate.execute(String.format("ALTER TABLE \"%s\" DETACH PARTITION \"%s\" CONCURRENTLY", table, partition));
+                log.info("Detached partition {} from {}", partition, table);
+            }
+        }
+    }
+    
+    /**
+     * Returns the month a partition covers, or null for partitions not named by the maintenance function.
+     */
+    private static YearMonth monthOf(String partition, String prefix) {
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(prefix.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
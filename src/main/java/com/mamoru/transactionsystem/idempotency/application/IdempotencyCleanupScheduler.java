@@ -0,0 +1,31 @@
+package com.mamoru.transactionsystem.idempotency.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.idempotency.cleanup-enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyCleanupScheduler {
+    
+    private final IdempotencyService idempotencyService;
+    
+    /**
+     * Deletes idempotency keys past their retention period.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        try {
+            int deleted = idempotencyService.purgeExpired();
+            if (deleted > 0) {
+                log.info("Deleted {} expired idempotency keys", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Error deleting expired idempotency keys", e);
+        }
+    }
+}
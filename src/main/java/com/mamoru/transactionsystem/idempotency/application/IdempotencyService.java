@@ -0,0 +1,285 @@
+package com.mamoru.transactionsystem.idempotency.application;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.IdempotencyConflictException;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.idempotency.domain.IdempotencyRecord;
+import com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus;
+import com.mamoru.transactionsystem.idempotency.infrastructure.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Makes requests carrying an {@code Idempotency-Key} header safe to retry.
+ * <p>
+ * The first request with a key claims it in the {@code idempotency_keys} table, runs, and stores its
+ * response. A bounded in-memory cache holds a future per key, so a retry arriving on the same instance
+ * while the original is still running waits for it instead of hitting the table. Retries of a completed
+ * request replay the stored response without running the request again. Failed requests release their
+ * claim, so nothing is stored for them and the client can retry with the same key.
+ * <p>
+ * The request and the completion of its claim run in one transaction, so a key is never left in progress
+ * by a request that committed. That makes it safe to take over a claim left in progress by a lost request.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+    
+    public static final String SCOPE_ORDER = "ORDER";
+    public static final String SCOPE_RECHARGE = "RECHARGE";
+    
+    private static final int MAX_KEY_LENGTH = 255;
+    
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+    
+    private final AtomicLong storedKeys = new AtomicLong();
+    private TransactionTemplate transactionTemplate;
+    private Cache<String, InFlightRequest> requests;
+    private Counter replayedFromMemory;
+    private Counter replayedFromDatabase;
+    private Counter executed;
+    
+    @PostConstruct
+    void init() {
+        AppConfig.Idempotency config = appConfig.getIdempotency();
+        requests = Caffeine.newBuilder()
+                .maximumSize(config.getCacheMaxSize())
+                .expireAfterWrite(Duration.ofHours(config.getTtlHours()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, requests, "idempotency");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        
+        replayedFromMemory = requestCounter("replayed_memory");
+        replayedFromDatabase = requestCounter("replayed_database");
+        executed = requestCounter("executed");
+        Gauge.builder("idempotency.keys.stored", storedKeys, AtomicLong::get)
+                .description("Rows in the idempotency_keys table")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Runs a request at most once per key.
+     * @param scope the operation the key belongs to
+     * @param ownerId the user the key belongs to; keys of different users never collide
+     * @param key the client-supplied key, or null to run the request without idempotency
+     * @param request the request payload; reusing a key with a different payload is rejected
+     * @param responseType the response body type, used to replay a stored response
+     * @param action runs the request
+     * @return the response of the first request with this key
+     * @throws IdempotencyConflictException if the key is in use by a different or still running request
+     */
+    public <T> ResponseEntity<T> execute(String scope, UUID ownerId, String key, Object request,
+                                         TypeReference<T> responseType, Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                String.format("Idempotency-Key must be at most %d characters", MAX_KEY_LENGTH));
+        }
+        
+        String requestHash = fingerprint(scope, request);
+        String cacheKey = scope + ":" + ownerId + ":" + key;
+        InFlightRequest inFlight = new InFlightRequest(requestHash);
+        InFlightRequest existing = requests.get(cacheKey, ignored -> inFlight);
+        if (existing != inFlight) {
+            replayedFromMemory.increment();
+            return toResponse(awaitOriginal(existing, requestHash), responseType);
+        }
+        
+        UUID claimId = UuidV7Generator.next();
+        try {
+            StoredResponse stored = claimOrLoad(scope, ownerId, key, requestHash, claimId);
+            if (stored != null) {
+                inFlight.response.complete(stored);
+                replayedFromDatabase.increment();
+                return toResponse(stored, responseType);
+            }
+        } catch (RuntimeException e) {
+            requests.invalidate(cacheKey);
+            inFlight.response.completeExceptionally(e);
+            throw e;
+        }
+        
+        InFlightResult<T> result;
+        try {
+            result = transactionTemplate.execute(status -> {
+                ResponseEntity<T> response = action.get();
+                StoredResponse stored = new StoredResponse(response.getStatusCode().value(), write(response.getBody()));
+                if (idempotencyKeyRepository.complete(claimId, stored.status, stored.body, LocalDateTime.now()) != 1) {
+                    // Taken over as abandoned by a request that runs instead; rolling back keeps it at most once
+                    throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+                }
+                return new InFlightResult<>(response, stored);
+            });
+        } catch (RuntimeException e) {
+            // Nothing was committed for a failed request, so the client may retry with the same key
+            idempotencyKeyRepository.release(claimId);
+            requests.invalidate(cacheKey);
+            inFlight.response.completeExceptionally(e);
+            throw e;
+        }
+        
+        inFlight.response.complete(result.stored());
+        executed.increment();
+        return result.response();
+    }
+    
+    /**
+     * Deletes keys past their retention period and refreshes the stored keys gauge.
+     * @return the number of keys deleted
+     */
+    public int purgeExpired() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        storedKeys.set(idempotencyKeyRepository.count());
+        return deleted;
+    }
+    
+    /**
+     * Claims the key in the table, or loads the response stored for it.
+     * @return the stored response, or null if this request now holds the key and must run
+     */
+    private StoredResponse claimOrLoad(String scope, UUID ownerId, String key, String requestHash, UUID claimId) {
+        if (claim(claimId, scope, ownerId, key, requestHash)) {
+            return null;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        IdempotencyRecord record = idempotencyKeyRepository
+                .findByScopeAndOwnerIdAndIdempotencyKey(scope, ownerId, key)
+                .orElse(null);
+        if (record == null || record.isExpired(now)
+                || record.isAbandoned(now.minus(Duration.ofMillis(appConfig.getIdempotency().getInProgressTimeoutMs())))) {
+            if (record != null) {
+                log.warn("Taking over {} idempotency key {} left by an expired or lost request", scope, key);
+                idempotencyKeyRepository.deleteStale(record.getId(), now);
+            }
+            if (claim(claimId, scope, ownerId, key, requestHash)) {
+                return null;
+            }
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        }
+        
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+        }
+        if (record.getStatus() == IdempotencyStatus.IN_PROGRESS) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        }
+        return new StoredResponse(record.getResponseStatus(), record.getResponseBody());
+    }
+    
+    private boolean claim(UUID claimId, String scope, UUID ownerId, String key, String requestHash) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(appConfig.getIdempotency().getTtlHours());
+        return idempotencyKeyRepository.tryClaim(claimId, scope, ownerId, key, requestHash, expiresAt) == 1;
+    }
+    
+    private StoredResponse awaitOriginal(InFlightRequest original, String requestHash) {
+        if (!original.requestHash.equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency-Key was already used for a different request");
+        }
+        
+        try {
+            return original.response.get(appConfig.getIdempotency().getInFlightWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            // The original failed; a duplicate of it gets the same failure
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Original request failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        }
+    }
+    
+    private <T> ResponseEntity<T> toResponse(StoredResponse stored, TypeReference<T> responseType) {
+        try {
+            T body = stored.body == null ? null : objectMapper.readValue(stored.body, responseType);
+            return ResponseEntity.status(stored.status).body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response could not be read", e);
+        }
+    }
+    
+    private String write(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response could not be stored", e);
+        }
+    }
+    
+    /**
+     * SHA-256 of the scope and the JSON form of the request, used to tell a retry from a different request.
+     */
+    String fingerprint(String scope, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(scope.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Request fingerprint could not be computed", e);
+        }
+    }
+    
+    private Counter requestCounter(String outcome) {
+        return Counter.builder("idempotency.requests")
+                .description("Requests carrying an Idempotency-Key by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    private static final class InFlightRequest {
+        
+        private final String requestHash;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        
+        private InFlightRequest(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+    
+    private record StoredResponse(int status, String body) {
+    }
+    
+    private record InFlightResult<T>(ResponseEntity<T> response, StoredResponse stored) {
+    }
+}
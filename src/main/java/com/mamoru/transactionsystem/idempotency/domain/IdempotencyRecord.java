@@ -0,0 +1,85 @@
+package com.mamoru.transactionsystem.idempotency.domain;
+
+import com.mamoru.transactionsystem.common.id.UuidV7;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A client-supplied idempotency key together with the response of the request it was first used for.
+ */
+@Entity
+@Table(name = "idempotency_keys", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_idempotency_keys_scope_owner_key", columnNames = {"scope", "owner_id", "idempotency_key"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    
+    @Id
+    @UuidV7
+    private UUID id;
+    
+    @Column(nullable = false, length = 30)
+    private String scope;
+    
+    @Column(name = "owner_id", nullable = false)
+    private UUID ownerId;
+    
+    @Column(name = "idempotency_key", nullable = false, length = 255)
+    private String idempotencyKey;
+    
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private IdempotencyStatus status;
+    
+    @Column(name = "response_status")
+    private Integer responseStatus;
+    
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    private String responseBody;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Checks if the key has outlived its retention period and may be reused.
+     * @param now the current time
+     * @return true if the key is expired
+     */
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt.isBefore(now);
+    }
+    
+    /**
+     * Checks if the request holding the key has been in progress for so long that it was most likely lost.
+     * @param startedBefore claims older than this are considered abandoned
+     * @return true if the claim is abandoned
+     */
+    public boolean isAbandoned(LocalDateTime startedBefore) {
+        return status == IdempotencyStatus.IN_PROGRESS && createdAt.isBefore(startedBefore);
+    }
+}
@@ -0,0 +1,6 @@
+package com.mamoru.transactionsystem.idempotency.domain;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
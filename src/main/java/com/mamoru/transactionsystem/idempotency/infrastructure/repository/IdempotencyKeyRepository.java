@@ -0,0 +1,74 @@
+package com.mamoru.transactionsystem.idempotency.infrastructure.repository;
+
+import com.mamoru.transactionsystem.idempotency.domain.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyRecord, UUID> {
+    
+    Optional<IdempotencyRecord> findByScopeAndOwnerIdAndIdempotencyKey(String scope, UUID ownerId, String idempotencyKey);
+    
+    /**
+     * Claims a key for a request about to run. Returns 0 if the key is already claimed.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys " +
+                   "(id, scope, owner_id, idempotency_key, request_hash, status, created_at, expires_at) " +
+                   "VALUES (:id, :scope, :ownerId, :idempotencyKey, :requestHash, 'IN_PROGRESS', CURRENT_TIMESTAMP, :expiresAt) " +
+                   "ON CONFLICT (scope, owner_id, idempotency_key) DO NOTHING",
+           nativeQuery = true)
+    int tryClaim(@Param("id") UUID id,
+                 @Param("scope") String scope,
+                 @Param("ownerId") UUID ownerId,
+                 @Param("idempotencyKey") String idempotencyKey,
+                 @Param("requestHash") String requestHash,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * Stores the response of the request holding the claim. Runs inside the request's own transaction, so the
+     * response is stored if and only if the request commits. Returns 0 if the claim was taken over meanwhile.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus.COMPLETED, " +
+           "r.responseStatus = :responseStatus, r.responseBody = :responseBody, r.completedAt = :completedAt " +
+           "WHERE r.id = :id AND r.status = com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus.IN_PROGRESS")
+    int complete(@Param("id") UUID id,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("responseBody") String responseBody,
+                 @Param("completedAt") LocalDateTime completedAt);
+    
+    /**
+     * Releases a claim whose request failed, so the client can retry with the same key.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id " +
+           "AND r.status = com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus.IN_PROGRESS")
+    int release(@Param("id") UUID id);
+    
+    /**
+     * Deletes an expired key, or a claim still in progress whose request was lost. A completed key that is
+     * not expired is kept, including one whose request completed after it was found abandoned.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND (r.expiresAt < :now " +
+           "OR r.status = com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus.IN_PROGRESS)")
+    int deleteStale(@Param("id") UUID id, @Param("now") LocalDateTime now);
+    
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,28 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.balance-snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class BalanceSnapshotScheduler {
+    
+    private final BalanceSnapshotService balanceSnapshotService;
+    
+    /**
+     * Checks for a newly settled snapshot cutoff. Checking more often than the interval only costs one lookup.
+     */
+    @Scheduled(fixedDelayString = "${app.balance-snapshot.check-interval-ms:60000}")
+    public void takeSnapshots() {
+        try {
+            balanceSnapshotService.takeSnapshots();
+        } catch (Exception e) {
+            log.error("Error taking balance snapshots", e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.ledger.domain.BalanceSnapshot;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.infrastructure.repository.BalanceSnapshotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Point-in-time balances. Snapshots are taken on cutoffs aligned to the snapshot interval from midnight,
+ * so a balance at any time costs one snapshot lookup plus a replay of at most one interval of the account's
+ * ledger entries, and end-of-day balances are read straight from the midnight snapshot.
+ * <p>
+ * A cutoff is only snapshotted once the settle delay has passed, so order transactions that were still
+ * running at the cutoff have committed their entries by then. Entries are stamped at the start of their
+ * transaction, so the delay has to cover a whole transaction.
+ * <p>
+ * Cutoffs are measured with the database's clock, which also stamps ledger entries and the baseline snapshots,
+ * so the application's clock or time zone never shifts an entry across a cutoff.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceSnapshotService {
+    
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final AppConfig appConfig;
+    
+    /**
+     * Snapshots every settled cutoff after the latest one snapshotted, oldest first, so a scheduler that
+     * missed cutoffs, for instance while no instance was running, leaves no gaps behind.
+     * @return the number of snapshots written
+     */
+    @Transactional
+    public int takeSnapshots() {
+        return takeSnapshots(balanceSnapshotRepository.currentTime());
+    }
+    
+    int takeSnapshots(LocalDateTime now) {
+        LocalDateTime latest = latestSettledCutoff(now);
+        LocalDateTime previous = balanceSnapshotRepository.findLatestCutoff().orElse(null);
+        if (previous == null) {
+            return 0;
+        }
+        
+        int written = 0;
+        while (latest.isAfter(previous)) {
+            LocalDateTime cutoff = nextCutoff(previous);
+            int taken = balanceSnapshotRepository.insertSnapshots(previous, cutoff);
+            log.info("Took {} balance snapshots as of {}", taken, cutoff);
+            written += taken;
+            previous = cutoff;
+        }
+        return written;
+    }
+    
+    /**
+     * Returns an account's balance from all ledger entries created before the given time.
+     * @return the balance, or empty if the time is before snapshots begin
+     */
+    @Transactional(readOnly = true)
+    public Optional<BigDecimal> getBalanceAsOf(LedgerAccount account, LocalDateTime time) {
+        LocalDateTime earliest = balanceSnapshotRepository.findEarliestCutoff().orElse(null);
+        if (earliest == null || time.isBefore(earliest)) {
+            return Optional.empty();
+        }
+        
+        // Accounts opened after snapshots began start from zero
+        BalanceSnapshot base = balanceSnapshotRepository
+                .findLatestAtOrBefore(account.getType(), account.getId(), time)
+                .orElse(new BalanceSnapshot(earliest, BigDecimal.ZERO));
+        if (!time.isAfter(base.getAsOf())) {
+            return Optional.of(base.getBalance());
+        }
+        BigDecimal replayed = balanceSnapshotRepository.sumEntries(account.getType(), account.getId(), base.getAsOf(), time);
+        return Optional.of(base.getBalance().add(replayed));
+    }
+    
+    /**
+     * When snapshots begin; balances as of earlier times are unknown.
+     */
+    @Transactional(readOnly = true)
+    public Optional<LocalDateTime> getEarliestCutoff() {
+        return balanceSnapshotRepository.findEarliestCutoff();
+    }
+    
+    LocalDateTime latestSettledCutoff(LocalDateTime now) {
+        return cutoffAtOrBefore(now.minus(Duration.ofMillis(appConfig.getBalanceSnapshot().getSettleDelayMs())));
+    }
+    
+    /**
+     * The first cutoff after the given one. Cutoffs restart at every midnight, even when the interval does not
+     * divide a day evenly.
+     */
+    LocalDateTime nextCutoff(LocalDateTime cutoff) {
+        LocalDateTime next = cutoff.plusMinutes(appConfig.getBalanceSnapshot().getIntervalMinutes());
+        LocalDateTime nextMidnight = cutoff.toLocalDate().plusDays(1).atStartOfDay();
+        return cutoffAtOrBefore(next.isBefore(nextMidnight) ? next : nextMidnight);
+    }
+    
+    private LocalDateTime cutoffAtOrBefore(LocalDateTime time) {
+        int intervalMinutes = appConfig.getBalanceSnapshot().getIntervalMinutes();
+        LocalDateTime midnight = time.toLocalDate().atStartOfDay();
+        long minutes = Duration.between(midnight, time).toMinutes();
+        return midnight.plusMinutes(minutes / intervalMinutes * intervalMinutes);
+    }
+}
@@ -0,0 +1,31 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.ledger.refresh-enabled", havingValue = "true", matchIfMissing = true)
+public class LedgerBalanceRefreshScheduler {
+    
+    private final LedgerService ledgerService;
+    
+    /**
+     * Materializes ledger balances from the journal.
+     */
+    @Scheduled(fixedDelayString = "${app.ledger.refresh-interval-ms:5000}")
+    public void refreshBalances() {
+        try {
+            int updated = ledgerService.refreshBalances();
+            if (updated > 0) {
+                log.debug("Refreshed {} ledger balances", updated);
+            }
+        } catch (Exception e) {
+            log.error("Error refreshing ledger balances", e);
+        }
+    }
+}
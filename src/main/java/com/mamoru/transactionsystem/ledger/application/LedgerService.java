@@ -0,0 +1,108 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerDirection;
+import com.mamoru.transactionsystem.ledger.domain.LedgerEntry;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.infrastructure.repository.LedgerJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Double-entry ledger. Every balance movement is appended to {@code ledger_entries} as a debit and a credit
+ * leg in the transaction that moves the money; nothing in the journal is ever updated. Per-account balances
+ * are materialized into {@code ledger_balances} by a periodic refresh, and a balance is read as the
+ * materialized balance plus the entries not folded into it yet.
+ * <p>
+ * While the ledger is enabled it holds the balances of user and merchant accounts: moving money only inserts
+ * entries, so concurrent credits to one account never wait on each other. Checks that must not overdraw an
+ * account, such as a debit, serialize on the account's lock instead of a balance row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerService {
+    
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final AppConfig appConfig;
+    
+    /**
+     * Journals a posting in the caller's transaction.
+     */
+    @Transactional
+    public void post(LedgerPosting posting) {
+        post(List.of(posting));
+    }
+    
+    /**
+     * Journals several postings in the caller's transaction with one JDBC batch.
+     */
+    @Transactional
+    public void post(List<LedgerPosting> postings) {
+        if (!appConfig.getLedger().isEnabled() || postings.isEmpty()) {
+            return;
+        }
+        
+        List<LedgerEntry> entries = new ArrayList<>(postings.size() * 2);
+        for (LedgerPosting posting : postings) {
+            UUID journalId = UuidV7Generator.next();
+            entries.add(leg(journalId, posting, posting.getDebitAccount(), LedgerDirection.DEBIT));
+            entries.add(leg(journalId, posting, posting.getCreditAccount(), LedgerDirection.CREDIT));
+        }
+        ledgerJdbcRepository.insertEntries(entries);
+        
+        log.debug("Journaled {} ledger postings", postings.size());
+    }
+    
+    /**
+     * Returns the current ledger balance of an account: credits minus debits.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(LedgerAccount account) {
+        return ledgerJdbcRepository.findBalance(account.getType(), account.getId());
+    }
+    
+    /**
+     * Takes the account's lock for the rest of the caller's transaction and returns the account's balance,
+     * which no other locking transaction can lower until then. Postings that credit the account do not
+     * take the lock; they can only raise the balance.
+     */
+    @Transactional
+    public BigDecimal lockBalance(LedgerAccount account) {
+        ledgerJdbcRepository.lockAccount(account.getType(), account.getId());
+        return ledgerJdbcRepository.findBalance(account.getType(), account.getId());
+    }
+    
+    /**
+     * Folds journal entries of finished transactions into the materialized balances.
+     * @return the number of balances changed
+     */
+    @Transactional
+    public int refreshBalances() {
+        return ledgerJdbcRepository.refreshBalances();
+    }
+    
+    private LedgerEntry leg(UUID journalId, LedgerPosting posting, LedgerAccount account,
+                            LedgerDirection direction) {
+        return LedgerEntry.builder()
+                .id(UuidV7Generator.next())
+                .journalId(journalId)
+                .accountType(account.getType())
+                .accountId(account.getId())
+                .direction(direction)
+                .amount(posting.getAmount())
+                .currency(posting.getCurrency())
+                .postingType(posting.getPostingType())
+                .referenceId(posting.getReferenceId())
+                .build();
+    }
+}
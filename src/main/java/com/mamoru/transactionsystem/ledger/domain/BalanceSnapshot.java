@@ -0,0 +1,15 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An account's balance from all ledger entries created before {@code asOf}.
+ */
+@Value
+public class BalanceSnapshot {
+    LocalDateTime asOf;
+    BigDecimal balance;
+}
@@ -0,0 +1,26 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+/**
+ * An account in the ledger. User accounts are keyed by user id, merchant accounts by merchant id;
+ * the payment gateway is a single clearing account.
+ */
+@Value
+public class LedgerAccount {
+    
+    public static final LedgerAccount GATEWAY = new LedgerAccount(LedgerAccountType.GATEWAY, new UUID(0, 0));
+    
+    LedgerAccountType type;
+    UUID id;
+    
+    public static LedgerAccount user(UUID userId) {
+        return new LedgerAccount(LedgerAccountType.USER, userId);
+    }
+    
+    public static LedgerAccount merchant(UUID merchantId) {
+        return new LedgerAccount(LedgerAccountType.MERCHANT, merchantId);
+    }
+}
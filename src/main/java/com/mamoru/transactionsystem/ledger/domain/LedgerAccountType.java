@@ -0,0 +1,7 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+public enum LedgerAccountType {
+    USER,
+    MERCHANT,
+    GATEWAY
+}
@@ -0,0 +1,59 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One leg of a ledger posting. Entries are only ever inserted, in JDBC batches by the ledger repository;
+ * the entity exists for reads.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+    
+    @Id
+    private UUID id;
+    
+    @Column(name = "journal_id", nullable = false)
+    private UUID journalId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "account_type", nullable = false, length = 20)
+    private LedgerAccountType accountType;
+    
+    @Column(name = "account_id", nullable = false)
+    private UUID accountId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 6)
+    private LedgerDirection direction;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(nullable = false, length = 3)
+    private String currency;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "posting_type", nullable = false, length = 30)
+    private LedgerPostingType postingType;
+    
+    @Column(name = "reference_id", length = 100)
+    private String referenceId;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,27 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * A transfer between two ledger accounts, journaled as one debit and one credit leg of the same amount.
+ */
+@Value
+public class LedgerPosting {
+    
+    LedgerPostingType postingType;
+    LedgerAccount debitAccount;
+    LedgerAccount creditAccount;
+    BigDecimal amount;
+    String currency;
+    String referenceId;
+    
+    public static LedgerPosting transfer(LedgerPostingType postingType, LedgerAccount from, LedgerAccount to,
+                                         BigDecimal amount, String currency, String referenceId) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Ledger posting amount must be positive");
+        }
+        return new LedgerPosting(postingType, from, to, amount, currency, referenceId);
+    }
+}
@@ -0,0 +1,6 @@
+package com.mamoru.transactionsystem.ledger.domain;
+
+public enum LedgerPostingType {
+    RECHARGE,
+    ORDER_PAYMENT
+}
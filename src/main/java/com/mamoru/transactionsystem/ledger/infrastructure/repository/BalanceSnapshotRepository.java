@@ -0,0 +1,88 @@
+package com.mamoru.transactionsystem.ledger.infrastructure.repository;
+
+import com.mamoru.transactionsystem.ledger.domain.BalanceSnapshot;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccountType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class BalanceSnapshotRepository {
+    
+    private static final String SIGNED_AMOUNT = "CASE direction WHEN 'CREDIT' THEN amount ELSE -amount END";
+    
+    /**
+     * Every account with entries in the interval gets a snapshot: its previous snapshot plus the interval's entries.
+     * Accounts without entries keep their previous snapshot, which is still their balance.
+     */
+    private static final String INSERT_SNAPSHOTS =
+            "INSERT INTO balance_snapshots (account_type, account_id, as_of, balance) " +
+            "SELECT d.account_type, d.account_id, ?, COALESCE(s.balance, 0) + d.delta " +
+            "FROM (SELECT account_type, account_id, SUM(" + SIGNED_AMOUNT + ") AS delta " +
+            "      FROM ledger_entries WHERE created_at >= ? AND created_at < ? " +
+            "      GROUP BY account_type, account_id) d " +
+            "LEFT JOIN LATERAL (SELECT b.balance FROM balance_snapshots b " +
+            "                   WHERE b.account_type = d.account_type AND b.account_id = d.account_id " +
+            "                   ORDER BY b.as_of DESC LIMIT 1) s ON TRUE " +
+            "ON CONFLICT (account_type, account_id, as_of) DO NOTHING";
+    
+    private static final String FIND_LATEST_AT_OR_BEFORE =
+            "SELECT as_of, balance FROM balance_snapshots " +
+            "WHERE account_type = ? AND account_id = ? AND as_of <= ? ORDER BY as_of DESC LIMIT 1";
+    
+    private static final String SUM_ENTRIES =
+            "SELECT COALESCE(SUM(" + SIGNED_AMOUNT + "), 0) FROM ledger_entries " +
+            "WHERE account_type = ? AND account_id = ? AND created_at >= ? AND created_at < ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * The database's current time, the clock ledger entries and snapshot cutoffs are both measured with.
+     */
+    public LocalDateTime currentTime() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", Timestamp.class).toLocalDateTime();
+    }
+    
+    public Optional<LocalDateTime> findEarliestCutoff() {
+        return toLocalDateTime(jdbcTemplate.queryForObject("SELECT MIN(as_of) FROM balance_snapshots", Timestamp.class));
+    }
+    
+    public Optional<LocalDateTime> findLatestCutoff() {
+        return toLocalDateTime(jdbcTemplate.queryForObject("SELECT MAX(as_of) FROM balance_snapshots", Timestamp.class));
+    }
+    
+    /**
+     * Snapshots every account with ledger entries created in [from, cutoff) at the cutoff.
+     * @return the number of snapshots written
+     */
+    public int insertSnapshots(LocalDateTime from, LocalDateTime cutoff) {
+        return jdbcTemplate.update(INSERT_SNAPSHOTS,
+                Timestamp.valueOf(cutoff), Timestamp.valueOf(from), Timestamp.valueOf(cutoff));
+    }
+    
+    public Optional<BalanceSnapshot> findLatestAtOrBefore(LedgerAccountType accountType, UUID accountId,
+                                                          LocalDateTime time) {
+        return jdbcTemplate.query(FIND_LATEST_AT_OR_BEFORE,
+                (rs, rowNum) -> new BalanceSnapshot(rs.getTimestamp("as_of").toLocalDateTime(), rs.getBigDecimal("balance")),
+                accountType.name(), accountId, Timestamp.valueOf(time)).stream().findFirst();
+    }
+    
+    /**
+     * Sums an account's ledger entries created in [from, to), credits minus debits.
+     */
+    public BigDecimal sumEntries(LedgerAccountType accountType, UUID accountId, LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.queryForObject(SUM_ENTRIES, BigDecimal.class,
+                accountType.name(), accountId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+    
+    private static Optional<LocalDateTime> toLocalDateTime(Timestamp timestamp) {
+        return Optional.ofNullable(timestamp).map(Timestamp::toLocalDateTime);
+    }
+}
@@ -0,0 +1,109 @@
+package com.mamoru.transactionsystem.ledger.infrastructure.repository;
+
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccountType;
+import com.mamoru.transactionsystem.ledger.domain.LedgerEntry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to the ledger. Entries are written with batched inserts instead of JPA,
+ * so posting a journal costs one round trip however many legs it has.
+ * <p>
+ * Entries are stamped with the database's clock, as balance snapshot cutoffs are, at the start of the writing
+ * transaction, so all legs a transaction posts fall on the same side of a cutoff.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LedgerJdbcRepository {
+    
+    private static final String INSERT_ENTRY =
+            "INSERT INTO ledger_entries " +
+            "(id, journal_id, account_type, account_id, direction, amount, currency, posting_type, reference_id, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, LOCALTIMESTAMP)";
+    
+    private static final String LOCK_WATERMARK =
+            "SELECT applied_below::text FROM ledger_snapshot_watermark WHERE id = 1 FOR UPDATE";
+    
+    /**
+     * Every transaction with an id below the xmin of a fresh snapshot has finished, so its entries are final.
+     */
+    private static final String FINISHED_TRANSACTIONS_BELOW =
+            "SELECT pg_snapshot_xmin(pg_current_snapshot())::text";
+    
+    private static final String FOLD_ENTRIES_INTO_BALANCES =
+            "INSERT INTO ledger_balances (account_type, account_id, balance, currency, entry_count, refreshed_at) " +
+            "SELECT account_type, account_id, " +
+            "       SUM(CASE direction WHEN 'CREDIT' THEN amount ELSE -amount END), MIN(currency), COUNT(*), CURRENT_TIMESTAMP " +
+            "FROM ledger_entries " +
+            "WHERE tx_id >= ?::xid8 AND tx_id < ?::xid8 " +
+            "GROUP BY account_type, account_id " +
+            "ON CONFLICT (account_type, account_id) DO UPDATE SET " +
+            "    balance = ledger_balances.balance + EXCLUDED.balance, " +
+            "    entry_count = ledger_balances.entry_count + EXCLUDED.entry_count, " +
+            "    refreshed_at = EXCLUDED.refreshed_at";
+    
+    private static final String ADVANCE_WATERMARK =
+            "UPDATE ledger_snapshot_watermark SET applied_below = ?::xid8, refreshed_at = CURRENT_TIMESTAMP WHERE id = 1";
+    
+    private static final String FIND_BALANCE =
+            "SELECT COALESCE((SELECT b.balance FROM ledger_balances b " +
+            "                 WHERE b.account_type = ? AND b.account_id = ?), 0) " +
+            "     + COALESCE((SELECT SUM(CASE e.direction WHEN 'CREDIT' THEN e.amount ELSE -e.amount END) " +
+            "                 FROM ledger_entries e " +
+            "                 WHERE e.account_type = ? AND e.account_id = ? " +
+            "                   AND e.tx_id >= (SELECT w.applied_below FROM ledger_snapshot_watermark w WHERE w.id = 1)), 0)";
+    
+    /**
+     * Transaction-scoped advisory lock keyed by the account; no row is locked or written.
+     */
+    private static final String LOCK_ACCOUNT = "SELECT 1 FROM pg_advisory_xact_lock(hashtextextended(?, 0))";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public void insertEntries(List<LedgerEntry> entries) {
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, entries, entries.size(), (statement, entry) -> {
+            statement.setObject(1, entry.getId());
+            statement.setObject(2, entry.getJournalId());
+            statement.setString(3, entry.getAccountType().name());
+            statement.setObject(4, entry.getAccountId());
+            statement.setString(5, entry.getDirection().name());
+            statement.setBigDecimal(6, entry.getAmount());
+            statement.setString(7, entry.getCurrency());
+            statement.setString(8, entry.getPostingType().name());
+            statement.setString(9, entry.getReferenceId());
+        });
+    }
+    
+    /**
+     * Folds the entries of all transactions finished since the last refresh into the balance snapshots
+     * and advances the watermark. Must run in a transaction; concurrent refreshes queue on the watermark row.
+     * @return the number of balances changed
+     */
+    public int refreshBalances() {
+        String appliedBelow = jdbcTemplate.queryForObject(LOCK_WATERMARK, String.class);
+        String finishedBelow = jdbcTemplate.queryForObject(FINISHED_TRANSACTIONS_BELOW, String.class);
+        int updated = jdbcTemplate.update(FOLD_ENTRIES_INTO_BALANCES, appliedBelow, finishedBelow);
+        jdbcTemplate.update(ADVANCE_WATERMARK, finishedBelow);
+        return updated;
+    }
+    
+    /**
+     * Returns the snapshot balance plus the entries not folded into it yet, as of one consistent read.
+     */
+    public BigDecimal findBalance(LedgerAccountType accountType, UUID accountId) {
+        return jdbcTemplate.queryForObject(FIND_BALANCE, BigDecimal.class,
+                accountType.name(), accountId, accountType.name(), accountId);
+    }
+    
+    /**
+     * Blocks until no other transaction holds the account's lock, then holds it until the current transaction ends.
+     */
+    public void lockAccount(LedgerAccountType accountType, UUID accountId) {
+        jdbcTemplate.queryForObject(LOCK_ACCOUNT, Integer.class, accountType.name() + ":" + accountId);
+    }
+}
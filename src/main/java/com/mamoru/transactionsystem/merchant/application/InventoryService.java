@@ -1,6 +1,14 @@
 package com.mamoru.transactionsystem.merchant.application;
 
+import com.mamoru.transactionsystem.audit.application.AuditTrailService;
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import com.mamoru.transactionsystem.common.concurrency.ContentionContext;
+import com.mamoru.transactionsystem.common.concurrency.ContentionManaged;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
 import com.mamoru.transactionsystem.merchant.domain.Inventory;
 import com.mamoru.transactionsystem.merchant.domain.InventoryTransaction;
 import com.mamoru.transactionsystem.merchant.domain.InventoryTransactionType;
@@ -8,15 +16,20 @@ import com.mamoru.transactionsystem.merchant.domain.Product;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryTransactionRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -27,6 +40,10 @@ public class InventoryService {
     private final InventoryRepository inventoryRepository;
     private final InventoryTransactionRepository inventoryTransactionRepository;
     private final ProductRepository productRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final AuditTrailService auditTrailService;
+    private final AppConfig appConfig;
+    private final EntityManager entityManager;
     
     @Transactional(readOnly = true)
     public Inventory getInventoryByProductId(UUID productId) {
@@ -35,6 +52,16 @@ public class InventoryService {
                 .orElseThrow(() -> new ResourceNotFoundException("Inventory", "productId", productId));
     }
     
+    /**
+     * Loads the inventories of several products, together with the current product rows, with one query.
+     * Products without an inventory are simply absent from the result.
+     */
+    @Transactional(readOnly = true)
+    public List<Inventory> getInventoriesByProductIds(Collection<UUID> productIds) {
+        log.debug("Fetching inventories for {} products", productIds.size());
+        return inventoryRepository.findByProductIdInWithLock(productIds);
+    }
+    
     @Transactional(readOnly = true)
     public List<Inventory> getInventoriesByMerchantId(UUID merchantId) {
         log.debug("Fetching all inventories for merchant ID: {}", merchantId);
@@ -46,14 +73,14 @@ public class InventoryService {
     }
     
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
+    @ContentionManaged("inventory")
     public Inventory addInventory(UUID productId, Integer quantity, String referenceId) {
         log.info("Adding inventory for product ID: {}, quantity: {}", productId, quantity);
         
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
         
-        Inventory inventory = inventoryRepository.findByProductIdWithLock(productId)
+        Inventory inventory = lockInventory(productId)
                 .orElseGet(() -> {
                     Inventory newInventory = Inventory.builder()
                             .product(product)
@@ -66,6 +93,7 @@ public class InventoryService {
         
         inventory.addQuantity(quantity);
         inventory = inventoryRepository.save(inventory);
+        stockReservationEngine.onStockAdded(productId, quantity);
         
         Integer quantityAfter = inventory.getQuantity();
         
@@ -78,18 +106,22 @@ public class InventoryService {
                 .quantityAfter(quantityAfter)
                 .referenceId(referenceId)
                 .build();
-        inventoryTransactionRepository.save(transaction);
+        saveAuditTrail(transaction);
         
         log.info("Inventory added successfully. Quantity before: {}, after: {}", quantityBefore, quantityAfter);
         return inventory;
     }
     
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
+    @ContentionManaged("inventory")
     public Inventory deductInventory(UUID productId, Integer quantity, String referenceId) {
         log.info("Deducting inventory for product ID: {}, quantity: {}", productId, quantity);
         
-        Inventory inventory = inventoryRepository.findByProductIdWithLock(productId)
+        if (isGuardedDeduction()) {
+            return deductInventoryGuarded(productId, quantity, referenceId);
+        }
+        
+        Inventory inventory = lockInventory(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Inventory", "productId", productId));
         
         Integer quantityBefore = inventory.getQuantity();
@@ -108,10 +140,136 @@ public class InventoryService {
                 .quantityAfter(quantityAfter)
                 .referenceId(referenceId)
                 .build();
-        inventoryTransactionRepository.save(transaction);
+        saveAuditTrail(transaction);
+        
+        log.info("Inventory deducted successfully. Quantity before: {}, after: {}", quantityBefore, quantityAfter);
+        return inventory;
+    }
+    
+    /**
+     * Whether deductions are checked by the conditional UPDATE itself, making a separate stock pre-check redundant.
+     */
+    public boolean isGuardedDeduction() {
+        return appConfig.getInventory().getDeductionStrategy() == AppConfig.Inventory.DeductionStrategy.GUARDED_UPDATE;
+    }
+
+    /**
+     * Deducts several quantities from an already loaded inventory with a single update,
+     * writing one audit row per reference with the running quantity.
+     */
+    @Transactional
+    public Inventory deductInventoryBatch(Inventory inventory, Map<String, Integer> quantitiesByReference) {
+        log.info("Deducting {} quantities from inventory ID: {}", quantitiesByReference.size(), inventory.getId());
+
+        int totalQuantity = quantitiesByReference.values().stream().mapToInt(Integer::intValue).sum();
+        Integer quantityBefore = inventory.getQuantity();
+        
+        inventory.deductQuantity(totalQuantity);
+        inventory = inventoryRepository.save(inventory);
+        
+        // Create audit trail, one entry per reference
+        List<InventoryTransaction> transactions = new ArrayList<>(quantitiesByReference.size());
+        int runningQuantity = quantityBefore;
+        for (Map.Entry<String, Integer> deduction : quantitiesByReference.entrySet()) {
+            transactions.add(InventoryTransaction.builder()
+                    .inventory(inventory)
+                    .transactionType(InventoryTransactionType.DEDUCT)
+                    .quantity(deduction.getValue())
+                    .quantityBefore(runningQuantity)
+                    .quantityAfter(runningQuantity - deduction.getValue())
+                    .referenceId(deduction.getKey())
+                    .build());
+            runningQuantity -= deduction.getValue();
+        }
+        saveAuditTrail(transactions);
+        
+        log.info("Inventory deducted successfully. Quantity before: {}, after: {}", quantityBefore, inventory.getQuantity());
+        return inventory;
+    }
+    
+    /**
+     * Loads the inventory for an update: under an optimistic version check, or with a row lock
+     * when the contention manager has found the product to be hot.
+     */
+    private Optional<Inventory> lockInventory(UUID productId) {
+        return ContentionContext.isPessimistic()
+                ? inventoryRepository.findByProductIdForUpdate(productId)
+                : inventoryRepository.findByProductIdWithLock(productId);
+    }
+    
+    /**
+     * Deducts with a single conditional UPDATE ... RETURNING. The stock check happens in the
+     * database, so there is no read beforehand and no version conflict to retry; the audit row
+     * is built from the returned quantity.
+     */
+    private Inventory deductInventoryGuarded(UUID productId, Integer quantity, String referenceId) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to deduct must be positive");
+        }
+        
+        InventoryRepository.StockUpdate update = inventoryRepository.deductIfSufficient(productId, quantity)
+                .orElseThrow(() -> deductionRejected(productId, quantity));
+        
+        Integer quantityAfter = update.getQuantity();
+        Integer quantityBefore = quantityAfter + quantity;
+        
+        Inventory inventory = inventoryRepository.getReferenceById(update.getId());
+        if (Hibernate.isInitialized(inventory)) {
+            // A copy loaded earlier in this transaction still holds the pre-deduction quantity
+            entityManager.refresh(inventory);
+        }
+        
+        // Create audit trail
+        InventoryTransaction transaction = InventoryTransaction.builder()
+                .inventory(inventory)
+                .transactionType(InventoryTransactionType.DEDUCT)
+                .quantity(quantity)
+                .quantityBefore(quantityBefore)
+                .quantityAfter(quantityAfter)
+                .referenceId(referenceId)
+                .build();
+        saveAuditTrail(transaction);
         
         log.info("Inventory deducted successfully. Quantity before: {}, after: {}", quantityBefore, quantityAfter);
         return inventory;
     }
+    
+    private void saveAuditTrail(InventoryTransaction transaction) {
+        if (auditTrailService.isWriteBehind()) {
+            auditTrailService.record(List.of(toAuditRecord(transaction)));
+        } else {
+            inventoryTransactionRepository.save(transaction);
+        }
+    }
+    
+    private void saveAuditTrail(List<InventoryTransaction> transactions) {
+        if (auditTrailService.isWriteBehind()) {
+            auditTrailService.record(transactions.stream().map(this::toAuditRecord).toList());
+        } else {
+            inventoryTransactionRepository.saveAll(transactions);
+        }
+    }
+    
+    private AuditRecord toAuditRecord(InventoryTransaction transaction) {
+        return AuditRecord.builder()
+                .type(AuditRecordType.INVENTORY_TRANSACTION)
+                .id(UuidV7Generator.next())
+                .subjectId(transaction.getInventory().getId())
+                .transactionType(transaction.getTransactionType().name())
+                .amount(BigDecimal.valueOf(transaction.getQuantity()))
+                .before(BigDecimal.valueOf(transaction.getQuantityBefore()))
+                .after(BigDecimal.valueOf(transaction.getQuantityAfter()))
+                .referenceId(transaction.getReferenceId())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+    
+    private RuntimeException deductionRejected(UUID productId, Integer quantity) {
+        Inventory inventory = inventoryRepository.findByProductId(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Inventory", "productId", productId));
+        return new InvalidOperationException(
+            String.format("Insufficient stock. Available: %d, Requested: %d", 
+                inventory.getQuantity(), quantity));
+    }
 }
 
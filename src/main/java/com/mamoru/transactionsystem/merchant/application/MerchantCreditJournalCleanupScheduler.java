@@ -0,0 +1,36 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.merchant-account.journal.cleanup-enabled", havingValue = "true", matchIfMissing = true)
+public class MerchantCreditJournalCleanupScheduler {
+    
+    private final MerchantCreditJournalService merchantCreditJournalService;
+    
+    /**
+     * Deletes applied journal entries past their retention period, one batch per transaction.
+     */
+    @Scheduled(fixedDelayString = "${app.merchant-account.journal.cleanup-interval-ms:3600000}")
+    public void purgeAppliedEntries() {
+        try {
+            int deleted = 0;
+            int batch;
+            do {
+                batch = merchantCreditJournalService.purgeAppliedBatch();
+                deleted += batch;
+            } while (batch > 0);
+            if (deleted > 0) {
+                log.info("Deleted {} applied merchant credit journal entries", deleted);
+            }
+        } catch (Exception e) {
+            log.error("Error deleting applied merchant credit journal entries", e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.merchant-account.journal.applier-enabled", havingValue = "true", matchIfMissing = true)
+public class MerchantCreditJournalScheduler {
+    
+    private final MerchantCreditJournalService merchantCreditJournalService;
+    
+    /**
+     * Background applier for the merchant credit journal.
+     * Runs regardless of the credit mode so entries left over after switching back to SYNC still settle.
+     */
+    @Scheduled(fixedDelayString = "${app.merchant-account.journal.apply-interval-ms:1000}")
+    public void applyPendingCredits() {
+        try {
+            int applied;
+            do {
+                applied = merchantCreditJournalService.applyPendingBatch();
+            } while (applied > 0);
+        } catch (Exception e) {
+            log.error("Error applying merchant credit journal", e);
+        } finally {
+            merchantCreditJournalService.refreshBacklogMetrics();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.domain.MerchantCreditJournalEntry;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantCreditJournalRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settles the merchant credit journal: pending entries are grouped per merchant
+ * and applied as one summed credit per merchant and batch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MerchantCreditJournalService {
+    
+    private final MerchantCreditJournalRepository merchantCreditJournalRepository;
+    private final MerchantService merchantService;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final AtomicLong pendingEntries = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("merchant.credit.journal.pending", pendingEntries, AtomicLong::get)
+                .description("Merchant credit journal entries not yet applied to merchant balances")
+                .register(meterRegistry);
+        Gauge.builder("merchant.credit.journal.lag", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest pending merchant credit journal entry")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Applies the oldest batch of pending entries that no other applier is working on.
+     * @return the number of entries applied
+     */
+    @Transactional
+    public int applyPendingBatch() {
+        List<MerchantCreditJournalEntry> entries = merchantCreditJournalRepository
+                .lockPendingBatch(appConfig.getMerchantAccount().getJournal().getBatchSize());
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        
+        int applied = apply(entries);
+        log.debug("Applied {} merchant credit journal entries", applied);
+        return applied;
+    }
+    
+    /**
+     * Synchronously applies every pending entry of one merchant so its balance is settled.
+     * @return the number of entries applied
+     */
+    @Transactional
+    public int drain(UUID merchantId) {
+        List<MerchantCreditJournalEntry> entries = merchantCreditJournalRepository.lockPendingByMerchantId(merchantId);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        
+        int applied = apply(entries);
+        log.info("Drained {} pending credit journal entries for merchant ID: {}", applied, merchantId);
+        return applied;
+    }
+    
+    /**
+     * Deletes one batch of entries applied longer ago than the retention period. Applied entries are already
+     * part of the merchant balances and are only kept for inspection.
+     * @return the number of entries deleted
+     */
+    @Transactional
+    public int purgeAppliedBatch() {
+        AppConfig.MerchantAccount.Journal config = appConfig.getMerchantAccount().getJournal();
+        return merchantCreditJournalRepository.deleteAppliedBefore(
+                LocalDateTime.now().minusHours(config.getRetentionHours()), config.getBatchSize());
+    }
+    
+    /**
+     * Refreshes the backlog gauges from the journal table.
+     */
+    @Transactional(readOnly = true)
+    public void refreshBacklogMetrics() {
+        MerchantCreditJournalRepository.JournalBacklog backlog = merchantCreditJournalRepository.findBacklog();
+        pendingEntries.set(backlog.getPending());
+        lagSeconds.set(backlog.getOldestCreatedAt() == null
+                ? 0
+                : Math.max(0, Duration.between(backlog.getOldestCreatedAt(), LocalDateTime.now()).toSeconds()));
+    }
+    
+    private int apply(List<MerchantCreditJournalEntry> entries) {
+        Map<UUID, BigDecimal> creditsByMerchant = new LinkedHashMap<>();
+        for (MerchantCreditJournalEntry entry : entries) {
+            creditsByMerchant.merge(entry.getMerchant().getId(), entry.getAmount(), BigDecimal::add);
+        }
+        
+        creditsByMerchant.forEach(merchantService::applyCredit);
+        
+        merchantCreditJournalRepository.markApplied(
+                entries.stream().map(MerchantCreditJournalEntry::getId).toList(),
+                LocalDateTime.now());
+        return entries.size();
+    }
+}
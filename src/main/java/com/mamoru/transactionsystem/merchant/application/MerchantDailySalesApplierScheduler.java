@@ -0,0 +1,32 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.sales-rollup.applier-enabled", havingValue = "true", matchIfMissing = true)
+public class MerchantDailySalesApplierScheduler {
+    
+    private final MerchantDailySalesService merchantDailySalesService;
+    
+    /**
+     * Background applier for merchant daily sales deltas.
+     * Runs regardless of the rollup mode so deltas left over after switching back to INLINE still apply.
+     */
+    @Scheduled(fixedDelayString = "${app.sales-rollup.apply-interval-ms:1000}")
+    public void applyPendingDeltas() {
+        try {
+            int applied;
+            do {
+                applied = merchantDailySalesService.applyPendingBatch();
+            } while (applied > 0);
+        } catch (Exception e) {
+            log.error("Error applying merchant daily sales deltas", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.domain.MerchantDailySales;
+import com.mamoru.transactionsystem.merchant.domain.MerchantSale;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantDailySalesRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Maintains the merchant daily sales rollup: completed sales per merchant and day, counted on the day the
+ * order was created. In INLINE mode the order transaction upserts the merchant's row for the day; in BATCHED
+ * mode it appends a delta row, so concurrent orders of one merchant do not queue on that row, and a
+ * background applier folds the deltas into the rollup. Reads include deltas not applied yet.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MerchantDailySalesService {
+    
+    private final MerchantDailySalesRepository merchantDailySalesRepository;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * Adds the sales of completed orders to the rollup.
+     * Must be called in the transaction that completes the orders.
+     */
+    @Transactional
+    public void recordSales(List<MerchantSale> sales) {
+        // One row per merchant and day, in key order so concurrent upserts lock rows in the same order
+        Map<MerchantDailySalesKey, MerchantDailySales> dailySales = new TreeMap<>(MerchantDailySalesKey.ORDER);
+        for (MerchantSale sale : sales) {
+            MerchantDailySalesKey key = new MerchantDailySalesKey(sale.getMerchantId(), sale.getOrderCreatedAt().toLocalDate());
+            dailySales.merge(key, new MerchantDailySales(key.merchantId(), key.salesDate(), sale.getAmount(), 1),
+                    (existing, added) -> new MerchantDailySales(key.merchantId(), key.salesDate(),
+                            existing.getSalesValue().add(added.getSalesValue()), existing.getOrderCount() + 1));
+        }
+        if (dailySales.isEmpty()) {
+            return;
+        }
+        
+        List<MerchantDailySales> rows = new ArrayList<>(dailySales.values());
+        if (appConfig.getSalesRollup().getMode() == AppConfig.SalesRollup.Mode.BATCHED) {
+            merchantDailySalesRepository.insertDeltas(rows);
+        } else {
+            merchantDailySalesRepository.upsert(rows);
+        }
+    }
+    
+    /**
+     * Applies the oldest batch of pending deltas that no other applier is working on.
+     * @return the number of deltas applied
+     */
+    @Transactional
+    public int applyPendingBatch() {
+        int applied = merchantDailySalesRepository.applyDeltas(appConfig.getSalesRollup().getBatchSize());
+        if (applied > 0) {
+            log.debug("Applied {} merchant daily sales deltas", applied);
+        }
+        return applied;
+    }
+    
+    /**
+     * Returns a merchant's completed sales value for the day.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getSalesValue(UUID merchantId, LocalDate salesDate) {
+        return merchantDailySalesRepository.findSalesValue(merchantId, salesDate);
+    }
+    
+    /**
+     * Recomputes randomly sampled days of the lookback window from orders and reports where the rollup drifted.
+     * @return the number of merchant days that differ
+     */
+    @Transactional(readOnly = true)
+    public int verifySampledDays() {
+        AppConfig.SalesRollup config = appConfig.getSalesRollup();
+        LocalDate today = LocalDate.now();
+        int drifted = 0;
+        for (int i = 0; i < config.getVerifySampleDays(); i++) {
+            drifted += verify(today.minusDays(ThreadLocalRandom.current().nextInt(config.getVerifyLookbackDays())));
+        }
+        return drifted;
+    }
+    
+    /**
+     * Recomputes one day from orders and reports every merchant whose rollup differs.
+     * @return the number of merchants that differ
+     */
+    @Transactional(readOnly = true)
+    public int verify(LocalDate salesDate) {
+        List<MerchantDailySalesRepository.Drift> drift = merchantDailySalesRepository.findDrift(salesDate);
+        for (MerchantDailySalesRepository.Drift merchant : drift) {
+            log.error("Merchant daily sales drifted for merchant ID: {} on date: {}. Orders: {} ({} orders), Rollup: {} ({} orders)",
+                    merchant.merchantId(), salesDate, merchant.expectedValue(), merchant.expectedCount(),
+                    merchant.rollupValue(), merchant.rollupCount());
+        }
+        if (!drift.isEmpty()) {
+            meterRegistry.counter("merchant.daily.sales.drift").increment(drift.size());
+        }
+        log.debug("Verified merchant daily sales on date: {}, {} merchants drifted", salesDate, drift.size());
+        return drift.size();
+    }
+    
+    private record MerchantDailySalesKey(UUID merchantId, LocalDate salesDate) {
+        
+        static final Comparator<MerchantDailySalesKey> ORDER = Comparator
+                .comparing(MerchantDailySalesKey::merchantId)
+                .thenComparing(MerchantDailySalesKey::salesDate);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.sales-rollup.verifier-enabled", havingValue = "true", matchIfMissing = true)
+public class MerchantDailySalesVerifierScheduler {
+    
+    private final MerchantDailySalesService merchantDailySalesService;
+    
+    /**
+     * Periodically recomputes a sample of days from orders to catch drift in the merchant daily sales rollup.
+     */
+    @Scheduled(fixedDelayString = "${app.sales-rollup.verify-interval-ms:3600000}",
+               initialDelayString = "${app.sales-rollup.verify-interval-ms:3600000}")
+    public void verifySampledDays() {
+        try {
+            int drifted = merchantDailySalesService.verifySampledDays();
+            if (drifted > 0) {
+                log.error("Merchant daily sales verification found {} drifted merchant days", drifted);
+            }
+        } catch (Exception e) {
+            log.error("Error verifying merchant daily sales", e);
+        }
+    }
+}
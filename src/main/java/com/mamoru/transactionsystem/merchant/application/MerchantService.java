@@ -1,13 +1,19 @@
 package com.mamoru.transactionsystem.merchant.application;
 
+import com.mamoru.transactionsystem.common.concurrency.ContentionContext;
+import com.mamoru.transactionsystem.common.concurrency.ContentionManaged;
+import com.mamoru.transactionsystem.common.config.AppConfig;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import com.mamoru.transactionsystem.merchant.domain.MerchantCreditJournalEntry;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantBalanceStripeRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantCreditJournalRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +26,10 @@ import java.util.UUID;
 public class MerchantService {
     
     private final MerchantRepository merchantRepository;
+    private final MerchantBalanceStripeRepository merchantBalanceStripeRepository;
+    private final MerchantCreditJournalRepository merchantCreditJournalRepository;
+    private final LedgerService ledgerService;
+    private final AppConfig appConfig;
     
     @Transactional
     public Merchant createMerchant(Merchant merchant) {
@@ -36,12 +46,61 @@ public class MerchantService {
                 .orElseThrow(() -> new ResourceNotFoundException("Merchant", "id", merchantId));
     }
     
+    /**
+     * Returns a reference to the merchant without loading it, for setting associations.
+     */
+    public Merchant getMerchantReference(UUID merchantId) {
+        return merchantRepository.getReferenceById(merchantId);
+    }
+    
+    /**
+     * Returns the merchant's total balance: the ledger balance while the ledger holds balances,
+     * otherwise the base account balance plus all balance stripes.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getAccountBalance(UUID merchantId) {
+        Merchant merchant = getMerchantById(merchantId);
+        if (appConfig.getLedger().isEnabled()) {
+            return ledgerService.getBalance(LedgerAccount.merchant(merchantId));
+        }
+        BigDecimal stripedBalance = merchantBalanceStripeRepository.sumBalanceByMerchantId(merchantId);
+        return merchant.getAccountBalance().add(stripedBalance);
+    }
+    
+    /**
+     * Credits the merchant for a sale. In JOURNAL credit mode this only appends a pending
+     * journal entry; the balance is settled later by {@link MerchantCreditJournalService}.
+     * While the ledger holds balances nothing is written here: the order payment the caller journals
+     * is the credit, and the returned merchant is an uninitialized reference.
+     */
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
-    public Merchant creditMerchantAccount(UUID merchantId, BigDecimal amount) {
+    @ContentionManaged("merchant")
+    public Merchant creditMerchantAccount(UUID merchantId, BigDecimal amount, String referenceId) {
         log.info("Crediting merchant account for merchant ID: {} with amount: {}", merchantId, amount);
         
-        Merchant merchant = merchantRepository.findByIdWithLock(merchantId)
+        if (appConfig.getLedger().isEnabled()) {
+            return merchantRepository.getReferenceById(merchantId);
+        }
+        if (appConfig.getMerchantAccount().getCreditMode() == AppConfig.MerchantAccount.CreditMode.JOURNAL) {
+            return appendCreditJournalEntry(merchantId, amount, referenceId);
+        }
+        return applyCredit(merchantId, amount);
+    }
+    
+    /**
+     * Applies a credit to the merchant balance immediately, bypassing the credit journal.
+     */
+    @Transactional
+    @ContentionManaged("merchant")
+    public Merchant applyCredit(UUID merchantId, BigDecimal amount) {
+        int stripes = appConfig.getMerchantAccount().getBalanceStripes();
+        if (stripes > 1) {
+            return creditBalanceStripe(merchantId, amount, stripes);
+        }
+        
+        Merchant merchant = (ContentionContext.isPessimistic()
+                ? merchantRepository.findByIdForUpdate(merchantId)
+                : merchantRepository.findByIdWithLock(merchantId))
                 .orElseThrow(() -> new ResourceNotFoundException("Merchant", "id", merchantId));
         
         merchant.credit(amount);
@@ -50,5 +109,48 @@ public class MerchantService {
         log.info("Merchant account credited successfully. New balance: {}", merchant.getAccountBalance());
         return merchant;
     }
+    
+    private Merchant appendCreditJournalEntry(UUID merchantId, BigDecimal amount, String referenceId) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Credit amount must be positive");
+        }
+
+        Merchant merchant = merchantRepository.getReferenceById(merchantId);
+        MerchantCreditJournalEntry entry = MerchantCreditJournalEntry.builder()
+                .merchant(merchant)
+                .amount(amount)
+                .referenceId(referenceId)
+                .build();
+        merchantCreditJournalRepository.save(entry);
+
+        log.info("Merchant credit journaled for settlement. Reference: {}", referenceId);
+        return merchant;
+    }
+    
+    /**
+     * Credits one of the merchant's balance stripes with a single atomic upsert.
+     * The merchant row itself is not read or written, so concurrent credits no longer
+     * collide on its version; the returned merchant is an uninitialized reference.
+     */
+    private Merchant creditBalanceStripe(UUID merchantId, BigDecimal amount, int stripes) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Credit amount must be positive");
+        }
+        
+        int stripeIndex = selectStripe(stripes);
+        merchantBalanceStripeRepository.addToStripe(UuidV7Generator.next(), merchantId, stripeIndex, amount);
+        
+        log.info("Merchant account credited successfully on balance stripe {}", stripeIndex);
+        return merchantRepository.getReferenceById(merchantId);
+    }
+    
+    /**
+     * Picks a stripe from a mixed hash of the calling thread, the same way LongAdder spreads
+     * its cells: concurrent request threads land on different rows, one thread keeps reusing one.
+     */
+    private int selectStripe(int stripes) {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) stripes);
+    }
 }
 
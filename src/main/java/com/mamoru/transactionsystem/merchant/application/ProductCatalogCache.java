@@ -0,0 +1,119 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mamoru.transactionsystem.common.cache.CacheInvalidationBus;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.domain.ProductSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-process cache of product snapshots keyed by merchant and SKU, bounded by their estimated size in bytes.
+ * Caffeine evicts with W-TinyLFU, so a scan over rarely ordered products does not push out the popular ones.
+ * Hits and misses are published as the {@code cache.gets} metric with {@code cache=products}.
+ * Changes are published on the {@link CacheInvalidationBus}, so other instances evict them too.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCatalogCache {
+    
+    private static final String CACHE_NAME = "products";
+    private static final String CACHE_ENTITY = "product";
+    
+    /**
+     * Rough size of a snapshot and its key without the strings: object headers, the UUIDs and the price.
+     */
+    private static final int FIXED_ENTRY_BYTES = 256;
+    
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    
+    private Cache<ProductKey, ProductSnapshot> products;
+    
+    @PostConstruct
+    void init() {
+        AppConfig.ProductCache config = appConfig.getProductCache();
+        products = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .weigher((ProductKey key, ProductSnapshot product) -> weigh(product))
+                .expireAfterWrite(Duration.ofSeconds(config.getTtlSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, CACHE_NAME);
+        cacheInvalidationBus.register(CACHE_ENTITY, this::evict, this::invalidateAll);
+    }
+    
+    /**
+     * Returns the cached snapshots of the merchant's SKUs and loads the missing ones with one call to the loader.
+     * SKUs the loader does not return are absent from the result and are not cached.
+     */
+    public List<ProductSnapshot> getAll(UUID merchantId, Collection<String> skus,
+                                        Function<Collection<String>, List<ProductSnapshot>> loader) {
+        if (!appConfig.getProductCache().isEnabled()) {
+            return loader.apply(skus);
+        }
+        Set<ProductKey> keys = skus.stream()
+                .map(sku -> new ProductKey(merchantId, sku))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<ProductKey, ProductSnapshot> found = products.getAll(keys, missing ->
+                loader.apply(missing.stream().map(ProductKey::sku).toList()).stream()
+                        .collect(Collectors.toMap(product -> new ProductKey(merchantId, product.getSku()), product -> product)));
+        return new ArrayList<>(found.values());
+    }
+    
+    /**
+     * Evicts the product now and again once the surrounding transaction ends, so a snapshot of the old row
+     * loaded by a concurrent reader before the commit does not stay cached, and tells the other instances.
+     */
+    public void invalidate(UUID merchantId, String sku) {
+        ProductKey key = new ProductKey(merchantId, sku);
+        products.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    products.invalidate(key);
+                }
+            });
+        }
+        cacheInvalidationBus.publish(CACHE_ENTITY, key.merchantId() + "/" + key.sku());
+    }
+    
+    public void invalidateAll() {
+        products.invalidateAll();
+    }
+    
+    /**
+     * Evicts a key published by another instance, formatted as merchant ID, slash, SKU.
+     */
+    private void evict(String key) {
+        int separator = key.indexOf('/');
+        products.invalidate(new ProductKey(UUID.fromString(key.substring(0, separator)), key.substring(separator + 1)));
+    }
+    
+    private static int weigh(ProductSnapshot product) {
+        int chars = 2 * product.getSku().length() + product.getName().length() + product.getCurrency().length();
+        return FIXED_ENTRY_BYTES + 2 * chars;
+    }
+    
+    private record ProductKey(UUID merchantId, String sku) {
+    }
+}
@@ -3,6 +3,7 @@ package com.mamoru.transactionsystem.merchant.application;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
 import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.domain.ProductSnapshot;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,6 +23,7 @@ public class ProductService {
     
     private final ProductRepository productRepository;
     private final MerchantRepository merchantRepository;
+    private final ProductCatalogCache productCatalogCache;
     
     @Transactional
     public Product createProduct(UUID merchantId, Product product) {
@@ -35,6 +39,7 @@ public class ProductService {
         
         product.setMerchant(merchant);
         Product savedProduct = productRepository.save(product);
+        productCatalogCache.invalidate(merchantId, savedProduct.getSku());
         
         log.info("Product created successfully with ID: {}", savedProduct.getId());
         return savedProduct;
@@ -55,6 +60,44 @@ public class ProductService {
                     "Product", "merchantId and sku", merchantId + "/" + sku));
     }
     
+    /**
+     * Loads all products of a merchant matching the given SKUs with one query.
+     * SKUs without a product are simply absent from the result.
+     */
+    @Transactional(readOnly = true)
+    public List<Product> getProductsByMerchantIdAndSkus(UUID merchantId, Collection<String> skus) {
+        log.debug("Fetching {} products by merchant ID: {}", skus.size(), merchantId);
+        return productRepository.findByMerchantIdAndSkuIn(merchantId, skus);
+    }
+    
+    /**
+     * Snapshots of the merchant's products matching the given SKUs, served from the catalog cache;
+     * only the SKUs missing from it are loaded, with one query. SKUs without a product are absent from the result.
+     * A cached price can be stale, so callers charging for a product read the price from its row.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductSnapshot> getProductSnapshots(UUID merchantId, Collection<String> skus) {
+        return productCatalogCache.getAll(merchantId, skus, missing -> {
+            log.debug("Loading {} product snapshots by merchant ID: {}", missing.size(), merchantId);
+            return productRepository.findByMerchantIdAndSkuIn(merchantId, missing).stream()
+                    .map(ProductSnapshot::from)
+                    .toList();
+        });
+    }
+    
+    @Transactional
+    public Product updatePrice(UUID merchantId, UUID productId, BigDecimal price) {
+        log.info("Updating price of product ID: {} for merchant ID: {} to {}", productId, merchantId, price);
+        
+        Product product = productRepository.findById(productId)
+                .filter(found -> found.getMerchant().getId().equals(merchantId))
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        product.setPrice(price);
+        productCatalogCache.invalidate(merchantId, product.getSku());
+        
+        return product;
+    }
+    
     @Transactional(readOnly = true)
     public List<Product> getProductsByMerchantId(UUID merchantId) {
         log.debug("Fetching all products for merchant ID: {}", merchantId);
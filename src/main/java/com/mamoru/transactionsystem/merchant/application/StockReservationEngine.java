@@ -0,0 +1,290 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.merchant.domain.Inventory;
+import com.mamoru.transactionsystem.merchant.domain.InventoryTransaction;
+import com.mamoru.transactionsystem.merchant.domain.InventoryTransactionType;
+import com.mamoru.transactionsystem.merchant.domain.StockReservation;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryTransactionRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.StockReservationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stock reservation engine for flash-sale inventory.
+ * <p>
+ * Each product's available stock is mirrored into an atomic counter holding the inventory quantity
+ * minus all unflushed reservations. Orders take stock with a lock-free compare-and-set on that
+ * counter and insert a {@link StockReservation} in their own transaction; if the transaction rolls
+ * back the quantity is handed back to the counter. A background flusher later deducts the summed
+ * reservations from the inventory rows in batches with guarded updates; reservations the inventory
+ * row no longer covers are parked for an operator instead of blocking the flusher.
+ * <p>
+ * Counters are built lazily from the database, so after a restart they are rebuilt from the
+ * inventory table plus the reservations that were committed but not flushed yet. The counters are
+ * local to this process: the mode assumes a single instance, or that each SKU is routed to one instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationEngine {
+    
+    private final InventoryRepository inventoryRepository;
+    private final InventoryTransactionRepository inventoryTransactionRepository;
+    private final StockReservationRepository stockReservationRepository;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final ConcurrentMap<UUID, StockCounter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong pendingReservations = new AtomicLong();
+    
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("inventory.reservation.pending", pendingReservations, AtomicLong::get)
+                .description("Stock reservations not yet deducted from inventory rows")
+                .register(meterRegistry);
+    }
+    
+    public boolean isEnabled() {
+        return appConfig.getInventory().getDeductionStrategy()
+                == AppConfig.Inventory.DeductionStrategy.IN_MEMORY_RESERVATION;
+    }
+    
+    /**
+     * Reserves stock for an order. Must be called inside the order transaction.
+     * @return the reservation token, persisted with the order
+     * @throws InvalidOperationException if the available stock does not cover the quantity
+     */
+    public StockReservation reserve(UUID productId, Integer quantity, String referenceId) {
+        return tryReserve(productId, quantity, referenceId)
+                .orElseThrow(() -> new InvalidOperationException(
+                    String.format("Insufficient stock. Available: %d, Requested: %d",
+                        getAvailableStock(productId), quantity)));
+    }
+    
+    /**
+     * Reserves stock for an order if enough is available. Must be called inside the order transaction.
+     * @return the reservation token, or empty if the available stock does not cover the quantity
+     */
+    public Optional<StockReservation> tryReserve(UUID productId, Integer quantity, String referenceId) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity to reserve must be positive");
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Stock reservations must be taken inside a transaction");
+        }
+        
+        StockCounter counter = counterFor(productId);
+        if (!counter.tryTake(quantity)) {
+            return Optional.empty();
+        }
+        
+        // Hand the stock back if the order transaction does not commit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    counter.release(quantity);
+                }
+            }
+        });
+        
+        StockReservation reservation = StockReservation.builder()
+                .inventory(inventoryRepository.getReferenceById(counter.inventoryId))
+                .productId(productId)
+                .quantity(quantity)
+                .referenceId(referenceId)
+                .build();
+        reservation = stockReservationRepository.save(reservation);
+        
+        log.debug("Reserved {} units of product ID: {}, remaining: {}", quantity, productId, counter.available.get());
+        return Optional.of(reservation);
+    }
+    
+    /**
+     * Makes restocked quantity available to the counter of a product once the restock commits.
+     */
+    public void onStockAdded(UUID productId, int quantity) {
+        StockCounter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    counter.release(quantity);
+                }
+            });
+        } else {
+            counter.release(quantity);
+        }
+    }
+    
+    /**
+     * Returns the stock that can still be reserved for a product.
+     */
+    public int getAvailableStock(UUID productId) {
+        return counterFor(productId).available.get();
+    }
+    
+    /**
+     * Deducts the oldest batch of unflushed reservations from their inventory rows,
+     * one guarded update per inventory, writes the audit trail per reservation and deletes the deducted reservations.
+     * If an inventory row does not cover its whole batch, its reservations are deducted one by one
+     * and those that do not fit are parked.
+     * @return the number of reservations flushed or parked
+     */
+    @Transactional
+    public int flushPendingBatch() {
+        List<StockReservation> reservations = stockReservationRepository
+                .lockPendingBatch(appConfig.getInventory().getReservation().getBatchSize());
+        if (reservations.isEmpty()) {
+            return 0;
+        }
+        
+        Map<UUID, List<StockReservation>> reservationsByInventory = new LinkedHashMap<>();
+        for (StockReservation reservation : reservations) {
+            reservationsByInventory.computeIfAbsent(reservation.getInventory().getId(), id -> new ArrayList<>())
+                    .add(reservation);
+        }
+        
+        List<InventoryTransaction> transactions = new ArrayList<>(reservations.size());
+        List<UUID> flushed = new ArrayList<>(reservations.size());
+        List<UUID> parked = new ArrayList<>();
+        reservationsByInventory.forEach((inventoryId, inventoryReservations) -> {
+            Inventory inventory = inventoryRepository.getReferenceById(inventoryId);
+            UUID productId = inventoryReservations.get(0).getProductId();
+            int total = inventoryReservations.stream().mapToInt(StockReservation::getQuantity).sum();
+            
+            Optional<InventoryRepository.StockUpdate> update = inventoryRepository.deductIfSufficient(productId, total);
+            if (update.isPresent()) {
+                int runningQuantity = update.get().getQuantity() + total;
+                for (StockReservation reservation : inventoryReservations) {
+                    transactions.add(deductTransaction(inventory, reservation, runningQuantity));
+                    flushed.add(reservation.getId());
+                    runningQuantity -= reservation.getQuantity();
+                }
+                return;
+            }
+            
+            for (StockReservation reservation : inventoryReservations) {
+                Optional<InventoryRepository.StockUpdate> single =
+                        inventoryRepository.deductIfSufficient(productId, reservation.getQuantity());
+                if (single.isPresent()) {
+                    transactions.add(deductTransaction(inventory, reservation, single.get().getQuantity() + reservation.getQuantity()));
+                    flushed.add(reservation.getId());
+                } else {
+                    log.warn("Parking stock reservation {} of {} units for product ID: {}, inventory does not cover it",
+                            reservation.getReferenceId(), reservation.getQuantity(), productId);
+                    parked.add(reservation.getId());
+                }
+            }
+        });
+        inventoryTransactionRepository.saveAll(transactions);
+        
+        if (!flushed.isEmpty()) {
+            stockReservationRepository.deleteFlushed(flushed);
+        }
+        if (!parked.isEmpty()) {
+            stockReservationRepository.markParked(parked, LocalDateTime.now());
+            meterRegistry.counter("inventory.reservation.parked").increment(parked.size());
+        }
+        
+        log.debug("Flushed {} and parked {} stock reservations of {} inventories",
+                flushed.size(), parked.size(), reservationsByInventory.size());
+        return reservations.size();
+    }
+    
+    /**
+     * Refreshes the pending reservation gauge from the reservation table.
+     */
+    @Transactional(readOnly = true)
+    public void refreshBacklogMetrics() {
+        pendingReservations.set(stockReservationRepository.countPending());
+    }
+    
+    private StockCounter counterFor(UUID productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        
+        // Two threads may load the same product concurrently; both read the same state and the first one wins
+        StockCounter loaded = loadCounter(productId);
+        StockCounter existing = counters.putIfAbsent(productId, loaded);
+        return existing != null ? existing : loaded;
+    }
+    
+    private StockCounter loadCounter(UUID productId) {
+        InventoryRepository.StockLevel stockLevel = inventoryRepository.findStockLevelByProductId(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Inventory", "productId", productId));
+        int available = (int) (stockLevel.getQuantity() - stockLevel.getUnflushed());
+        
+        log.info("Loaded stock counter for product ID: {}. Inventory: {}, unflushed reservations: {}",
+                productId, stockLevel.getQuantity(), stockLevel.getUnflushed());
+        return new StockCounter(stockLevel.getId(), available);
+    }
+    
+    private static InventoryTransaction deductTransaction(Inventory inventory, StockReservation reservation,
+                                                          int quantityBefore) {
+        return InventoryTransaction.builder()
+                .inventory(inventory)
+                .transactionType(InventoryTransactionType.DEDUCT)
+                .quantity(reservation.getQuantity())
+                .quantityBefore(quantityBefore)
+                .quantityAfter(quantityBefore - reservation.getQuantity())
+                .referenceId(reservation.getReferenceId())
+                .build();
+    }
+    
+    private static final class StockCounter {
+        
+        private final UUID inventoryId;
+        private final AtomicInteger available;
+        
+        private StockCounter(UUID inventoryId, int available) {
+            this.inventoryId = inventoryId;
+            this.available = new AtomicInteger(available);
+        }
+        
+        private boolean tryTake(int quantity) {
+            while (true) {
+                int current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+        
+        private void release(int quantity) {
+            available.addAndGet(quantity);
+        }
+    }
+}
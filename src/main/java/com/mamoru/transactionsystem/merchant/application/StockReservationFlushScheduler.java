@@ -0,0 +1,34 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.inventory.reservation.flusher-enabled", havingValue = "true", matchIfMissing = true)
+public class StockReservationFlushScheduler {
+    
+    private final StockReservationEngine stockReservationEngine;
+    
+    /**
+     * Write-behind flusher for in-memory stock reservations.
+     * Runs regardless of the deduction strategy so reservations left over after switching modes still reach the inventory.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.reservation.flush-interval-ms:200}")
+    public void flushReservations() {
+        try {
+            int flushed;
+            do {
+                flushed = stockReservationEngine.flushPendingBatch();
+            } while (flushed > 0);
+        } catch (Exception e) {
+            log.error("Error flushing stock reservations", e);
+        } finally {
+            stockReservationEngine.refreshBacklogMetrics();
+        }
+    }
+}
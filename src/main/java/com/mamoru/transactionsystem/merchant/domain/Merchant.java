@@ -1,5 +1,6 @@
 package com.mamoru.transactionsystem.merchant.domain;
 
+import com.mamoru.transactionsystem.common.id.UuidV7;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +22,7 @@ import java.util.UUID;
 public class Merchant {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
     
     @Column(nullable = false, length = 255)
@@ -0,0 +1,63 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import com.mamoru.transactionsystem.common.id.UuidV7;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One sub-balance of a striped merchant account.
+ * The merchant's total balance is its base {@code accountBalance} plus the sum of all its stripes.
+ * Stripes are only ever incremented with a single atomic upsert, so they carry no version column.
+ */
+@Entity
+@Table(name = "merchant_balance_stripes", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_merchant_balance_stripes_merchant_stripe",
+        columnNames = {"merchant_id", "stripe_index"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MerchantBalanceStripe {
+    
+    @Id
+    @UuidV7
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "merchant_id", nullable = false)
+    private Merchant merchant;
+    
+    @Column(name = "stripe_index", nullable = false)
+    private Integer stripeIndex;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal balance = BigDecimal.ZERO;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,60 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import com.mamoru.transactionsystem.common.id.UuidV7;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A merchant credit that has been recorded but not necessarily applied to the merchant balance yet.
+ * Entries are settled in batches; {@code appliedAt} is set once the amount is part of the balance.
+ */
+@Entity
+@Table(name = "merchant_credit_journal")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MerchantCreditJournalEntry {
+    
+    @Id
+    @UuidV7
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "merchant_id", nullable = false)
+    private Merchant merchant;
+    
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+    
+    @Column(name = "reference_id", length = 100)
+    private String referenceId;
+    
+    @Column(name = "applied_at")
+    private LocalDateTime appliedAt;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Checks if the entry has already been applied to the merchant balance.
+     * @return true if the entry is settled
+     */
+    public boolean isApplied() {
+        return appliedAt != null;
+    }
+}
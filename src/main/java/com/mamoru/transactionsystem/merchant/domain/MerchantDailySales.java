@@ -0,0 +1,18 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Completed sales of one merchant on one day.
+ */
+@Value
+public class MerchantDailySales {
+    UUID merchantId;
+    LocalDate salesDate;
+    BigDecimal salesValue;
+    long orderCount;
+}
@@ -0,0 +1,17 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Sale of a completed order, counted in the merchant daily sales rollup on the day the order was created.
+ */
+@Value
+public class MerchantSale {
+    UUID merchantId;
+    LocalDateTime orderCreatedAt;
+    BigDecimal amount;
+}
@@ -1,5 +1,6 @@
 package com.mamoru.transactionsystem.merchant.domain;
 
+import com.mamoru.transactionsystem.common.id.UuidV7;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -23,7 +24,7 @@ import java.util.UUID;
 public class Product {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,35 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * An immutable copy of a product's catalog fields, safe to share across transactions and threads.
+ */
+@Value
+public class ProductSnapshot {
+    UUID id;
+    UUID merchantId;
+    String sku;
+    String name;
+    BigDecimal price;
+    String currency;
+    
+    public static ProductSnapshot from(Product product) {
+        return new ProductSnapshot(product.getId(), product.getMerchant().getId(), product.getSku(),
+                product.getName(), product.getPrice(), product.getCurrency());
+    }
+    
+    /**
+     * Calculates the total price for a given quantity.
+     * @throws IllegalArgumentException if quantity is not positive
+     */
+    public BigDecimal calculateTotalPrice(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        return price.multiply(BigDecimal.valueOf(quantity));
+    }
+}
@@ -0,0 +1,55 @@
+package com.mamoru.transactionsystem.merchant.domain;
+
+import com.mamoru.transactionsystem.common.id.UuidV7;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Stock taken from the in-memory reservation counter of a product.
+ * The row commits together with the order and is deleted once the quantity has been deducted from the
+ * inventory row, or gets {@code parkedAt} set if the inventory row no longer covered it.
+ */
+@Entity
+@Table(name = "stock_reservations")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockReservation {
+    
+    @Id
+    @UuidV7
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "inventory_id", nullable = false)
+    private Inventory inventory;
+    
+    @Column(name = "product_id", nullable = false)
+    private UUID productId;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    @Column(name = "reference_id", length = 100)
+    private String referenceId;
+    
+    @Column(name = "parked_at")
+    private LocalDateTime parkedAt;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
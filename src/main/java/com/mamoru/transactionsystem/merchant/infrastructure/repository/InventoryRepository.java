@@ -9,6 +9,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,5 +28,49 @@ public interface InventoryRepository extends JpaRepository<Inventory, UUID> {
     @Lock(LockModeType.OPTIMISTIC)
     @Query("SELECT i FROM Inventory i WHERE i.product.id = :productId")
     Optional<Inventory> findByProductIdWithLock(@Param("productId") UUID productId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i WHERE i.product.id = :productId")
+    Optional<Inventory> findByProductIdForUpdate(@Param("productId") UUID productId);
+    
+    @Lock(LockModeType.OPTIMISTIC)
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.product WHERE i.product.id IN :productIds")
+    List<Inventory> findByProductIdInWithLock(@Param("productIds") Collection<UUID> productIds);
+    
+    /**
+     * Deducts stock with one conditional statement, bumping the version so optimistic
+     * writers notice the change. Returns no row if the inventory is missing or the stock is too low.
+     */
+    @Query(value = "UPDATE inventory SET quantity = quantity - :quantity, version = version + 1, " +
+                   "updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE product_id = :productId AND quantity >= :quantity " +
+                   "RETURNING id, quantity",
+           nativeQuery = true)
+    Optional<StockUpdate> deductIfSufficient(@Param("productId") UUID productId, @Param("quantity") int quantity);
+    
+    /**
+     * Reads the inventory quantity and the reservations not yet deducted from it in one statement,
+     * so both come from the same snapshot even while the flusher commits between them.
+     */
+    @Query(value = "SELECT i.id, i.quantity, " +
+                   "COALESCE((SELECT SUM(r.quantity) FROM stock_reservations r " +
+                   "WHERE r.product_id = i.product_id AND r.parked_at IS NULL), 0) AS unflushed " +
+                   "FROM inventory i WHERE i.product_id = :productId",
+           nativeQuery = true)
+    Optional<StockLevel> findStockLevelByProductId(@Param("productId") UUID productId);
+    
+    interface StockUpdate {
+        UUID getId();
+        
+        Integer getQuantity();
+    }
+    
+    interface StockLevel {
+        UUID getId();
+        
+        Integer getQuantity();
+        
+        Long getUnflushed();
+    }
 }
 
@@ -0,0 +1,38 @@
+package com.mamoru.transactionsystem.merchant.infrastructure.repository;
+
+import com.mamoru.transactionsystem.merchant.domain.MerchantBalanceStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MerchantBalanceStripeRepository extends JpaRepository<MerchantBalanceStripe, UUID> {
+    
+    List<MerchantBalanceStripe> findByMerchantId(UUID merchantId);
+    
+    /**
+     * Atomically adds an amount to one stripe, creating the stripe row on first use.
+     * Concurrent credits only serialize when they land on the same stripe.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO merchant_balance_stripes " +
+                   "(id, merchant_id, stripe_index, balance, created_at, updated_at) " +
+                   "VALUES (:id, :merchantId, :stripeIndex, :amount, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP) " +
+                   "ON CONFLICT (merchant_id, stripe_index) DO UPDATE " +
+                   "SET balance = merchant_balance_stripes.balance + EXCLUDED.balance, " +
+                   "updated_at = CURRENT_TIMESTAMP",
+           nativeQuery = true)
+    int addToStripe(@Param("id") UUID id,
+                    @Param("merchantId") UUID merchantId,
+                    @Param("stripeIndex") int stripeIndex,
+                    @Param("amount") BigDecimal amount);
+    
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM MerchantBalanceStripe s WHERE s.merchant.id = :merchantId")
+    BigDecimal sumBalanceByMerchantId(@Param("merchantId") UUID merchantId);
+}
@@ -0,0 +1,56 @@
+package com.mamoru.transactionsystem.merchant.infrastructure.repository;
+
+import com.mamoru.transactionsystem.merchant.domain.MerchantCreditJournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MerchantCreditJournalRepository extends JpaRepository<MerchantCreditJournalEntry, UUID> {
+    
+    /**
+     * Locks the oldest pending entries, skipping rows another applier is already settling.
+     */
+    @Query(value = "SELECT * FROM merchant_credit_journal WHERE applied_at IS NULL " +
+                   "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<MerchantCreditJournalEntry> lockPendingBatch(@Param("limit") int limit);
+    
+    /**
+     * Locks every pending entry of one merchant, waiting for a concurrent applier to finish with them.
+     */
+    @Query(value = "SELECT * FROM merchant_credit_journal WHERE merchant_id = :merchantId " +
+                   "AND applied_at IS NULL ORDER BY created_at FOR UPDATE",
+           nativeQuery = true)
+    List<MerchantCreditJournalEntry> lockPendingByMerchantId(@Param("merchantId") UUID merchantId);
+    
+    @Modifying
+    @Query("UPDATE MerchantCreditJournalEntry e SET e.appliedAt = :appliedAt WHERE e.id IN :ids")
+    int markApplied(@Param("ids") Collection<UUID> ids, @Param("appliedAt") LocalDateTime appliedAt);
+    
+    /**
+     * Deletes up to {@code limit} entries applied before the given time.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM merchant_credit_journal WHERE id IN (" +
+                   "SELECT id FROM merchant_credit_journal WHERE applied_at < :appliedBefore LIMIT :limit)",
+           nativeQuery = true)
+    int deleteAppliedBefore(@Param("appliedBefore") LocalDateTime appliedBefore, @Param("limit") int limit);
+    
+    @Query("SELECT COUNT(e) AS pending, MIN(e.createdAt) AS oldestCreatedAt " +
+           "FROM MerchantCreditJournalEntry e WHERE e.appliedAt IS NULL")
+    JournalBacklog findBacklog();
+    
+    interface JournalBacklog {
+        long getPending();
+        
+        LocalDateTime getOldestCreatedAt();
+    }
+}
@@ -0,0 +1,136 @@
+package com.mamoru.transactionsystem.merchant.infrastructure.repository;
+
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.merchant.domain.MerchantDailySales;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The merchant daily sales rollup and its pending deltas. Reads add the deltas that are not applied yet,
+ * so they return the same totals in either rollup mode.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MerchantDailySalesRepository {
+    
+    private static final String ADD_TO_ROLLUP =
+            "ON CONFLICT (merchant_id, sales_date) DO UPDATE SET " +
+            "sales_value = merchant_daily_sales.sales_value + EXCLUDED.sales_value, " +
+            "order_count = merchant_daily_sales.order_count + EXCLUDED.order_count, " +
+            "updated_at = EXCLUDED.updated_at";
+    
+    private static final String UPSERT =
+            "INSERT INTO merchant_daily_sales (merchant_id, sales_date, sales_value, order_count, updated_at) " +
+            "VALUES (?, ?, ?, ?, LOCALTIMESTAMP) " + ADD_TO_ROLLUP;
+    
+    private static final String INSERT_DELTA =
+            "INSERT INTO merchant_daily_sales_deltas (id, merchant_id, sales_date, sales_value, order_count) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    
+    /**
+     * Removes the oldest deltas no other applier is working on and adds them to the rollup, one upsert
+     * per merchant and day, in the same statement.
+     */
+    private static final String APPLY_DELTAS =
+            "WITH applied AS (" +
+            "    DELETE FROM merchant_daily_sales_deltas WHERE id IN (" +
+            "        SELECT id FROM merchant_daily_sales_deltas ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "    RETURNING merchant_id, sales_date, sales_value, order_count), " +
+            "upserted AS (" +
+            "    INSERT INTO merchant_daily_sales (merchant_id, sales_date, sales_value, order_count, updated_at) " +
+            "    SELECT merchant_id, sales_date, SUM(sales_value), SUM(order_count), LOCALTIMESTAMP FROM applied " +
+            "    GROUP BY merchant_id, sales_date ORDER BY merchant_id, sales_date " +
+            "    " + ADD_TO_ROLLUP + " RETURNING 1) " +
+            "SELECT COUNT(*) FROM applied";
+    
+    private static final String SELECT_SALES_VALUE =
+            "SELECT COALESCE(SUM(sales_value), 0) FROM (" +
+            "    SELECT sales_value FROM merchant_daily_sales WHERE merchant_id = ? AND sales_date = ? " +
+            "    UNION ALL " +
+            "    SELECT sales_value FROM merchant_daily_sales_deltas WHERE merchant_id = ? AND sales_date = ?) s";
+    
+    /**
+     * Merchants whose rollup for the day differs from the completed orders created that day.
+     */
+    private static final String SELECT_DRIFT =
+            "SELECT COALESCE(o.merchant_id, r.merchant_id) AS merchant_id, " +
+            "       o.sales_value AS expected_value, o.order_count AS expected_count, " +
+            "       r.sales_value AS rollup_value, r.order_count AS rollup_count " +
+            "FROM (SELECT merchant_id, SUM(total_amount) AS sales_value, COUNT(*) AS order_count FROM orders " +
+            "      WHERE status = 'COMPLETED' AND created_at >= ? AND created_at < ? GROUP BY merchant_id) o " +
+            "FULL JOIN (SELECT merchant_id, SUM(sales_value) AS sales_value, SUM(order_count) AS order_count FROM (" +
+            "               SELECT merchant_id, sales_value, order_count FROM merchant_daily_sales WHERE sales_date = ? " +
+            "               UNION ALL " +
+            "               SELECT merchant_id, sales_value, order_count FROM merchant_daily_sales_deltas WHERE sales_date = ?) s " +
+            "           GROUP BY merchant_id) r ON r.merchant_id = o.merchant_id " +
+            "WHERE o.sales_value IS DISTINCT FROM r.sales_value OR o.order_count IS DISTINCT FROM r.order_count";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Adds sales to the rollup rows directly. Rows are locked in the order given.
+     */
+    public void upsert(List<MerchantDailySales> sales) {
+        jdbcTemplate.batchUpdate(UPSERT, sales, sales.size(), (statement, daily) -> {
+            statement.setObject(1, daily.getMerchantId());
+            statement.setDate(2, Date.valueOf(daily.getSalesDate()));
+            statement.setBigDecimal(3, daily.getSalesValue());
+            statement.setLong(4, daily.getOrderCount());
+        });
+    }
+    
+    /**
+     * Appends sales as deltas for the applier, without touching the rollup rows.
+     */
+    public void insertDeltas(List<MerchantDailySales> sales) {
+        jdbcTemplate.batchUpdate(INSERT_DELTA, sales, sales.size(), (statement, daily) -> {
+            statement.setObject(1, UuidV7Generator.next());
+            statement.setObject(2, daily.getMerchantId());
+            statement.setDate(3, Date.valueOf(daily.getSalesDate()));
+            statement.setBigDecimal(4, daily.getSalesValue());
+            statement.setLong(5, daily.getOrderCount());
+        });
+    }
+    
+    /**
+     * Applies up to {@code limit} of the oldest deltas to the rollup.
+     * @return the number of deltas applied
+     */
+    public int applyDeltas(int limit) {
+        Integer applied = jdbcTemplate.queryForObject(APPLY_DELTAS, Integer.class, limit);
+        return applied == null ? 0 : applied;
+    }
+    
+    public BigDecimal findSalesValue(UUID merchantId, LocalDate salesDate) {
+        Date date = Date.valueOf(salesDate);
+        return jdbcTemplate.queryForObject(SELECT_SALES_VALUE, BigDecimal.class, merchantId, date, merchantId, date);
+    }
+    
+    /**
+     * Recomputes the day from orders and returns the merchants whose rollup differs.
+     */
+    public List<Drift> findDrift(LocalDate salesDate) {
+        Date date = Date.valueOf(salesDate);
+        return jdbcTemplate.query(SELECT_DRIFT, (rs, rowNum) -> new Drift(
+                        rs.getObject("merchant_id", UUID.class),
+                        rs.getBigDecimal("expected_value"), rs.getLong("expected_count"),
+                        rs.getBigDecimal("rollup_value"), rs.getLong("rollup_count")),
+                Timestamp.valueOf(salesDate.atStartOfDay()), Timestamp.valueOf(salesDate.plusDays(1).atStartOfDay()),
+                date, date);
+    }
+    
+    /**
+     * Completed orders of a merchant and day compared with the rollup; values are null where there are none.
+     */
+    public record Drift(UUID merchantId, BigDecimal expectedValue, long expectedCount,
+                        BigDecimal rollupValue, long rollupCount) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.mamoru.transactionsystem.merchant.infrastructure.repository;
 
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
@@ -19,6 +20,25 @@ public interface MerchantRepository extends JpaRepository<Merchant, UUID> {
     @Query("SELECT m FROM Merchant m WHERE m.id = :id")
     Optional<Merchant> findByIdWithLock(@Param("id") UUID id);
     
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Merchant m WHERE m.id = :id")
+    Optional<Merchant> findByIdForUpdate(@Param("id") UUID id);
+    
     List<Merchant> findAll();
+    
+    /**
+     * Merchant ids after the given one in id order, for keyset paging over all merchants.
+     */
+    @Query("SELECT m.id FROM Merchant m WHERE m.id > :afterId ORDER BY m.id")
+    List<UUID> findIdsAfter(@Param("afterId") UUID afterId, Pageable pageable);
+    
+    /**
+     * Merchant ids of one shard after the given one in id order. Merchants are assigned to shards by a hash
+     * of their id, since time-ordered ids would put all recent merchants into the same id range.
+     */
+    @Query(value = "SELECT m.id FROM merchants m WHERE mod(hashtext(CAST(m.id AS text)) & 2147483647, :shardCount) = :shard " +
+            "AND m.id > :afterId ORDER BY m.id LIMIT :limit", nativeQuery = true)
+    List<UUID> findShardIdsAfter(@Param("shard") int shard, @Param("shardCount") int shardCount,
+                                 @Param("afterId") UUID afterId, @Param("limit") int limit);
 }
 
@@ -5,6 +5,7 @@ import com.mamoru.transactionsystem.merchant.domain.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +21,8 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
     
     Optional<Product> findByMerchantIdAndSku(UUID merchantId, String sku);
     
+    List<Product> findByMerchantIdAndSkuIn(UUID merchantId, Collection<String> skus);
+    
     boolean existsByMerchantAndSku(Merchant merchant, String sku);
     
     boolean existsByMerchantIdAndSku(UUID merchantId, String sku);
@@ -0,0 +1,40 @@
+package com.mamoru.transactionsystem.merchant.infrastructure.repository;
+
+import com.mamoru.transactionsystem.merchant.domain.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, UUID> {
+    
+    /**
+     * Locks the oldest unflushed reservations, skipping rows another flusher is already working on.
+     */
+    @Query(value = "SELECT * FROM stock_reservations WHERE parked_at IS NULL " +
+                   "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<StockReservation> lockPendingBatch(@Param("limit") int limit);
+    
+    @Query("SELECT COUNT(r) FROM StockReservation r WHERE r.parkedAt IS NULL")
+    long countPending();
+    
+    /**
+     * Deletes reservations whose quantity has been deducted from the inventory; the inventory transactions
+     * written with the deduction keep the record.
+     */
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.id IN :ids")
+    int deleteFlushed(@Param("ids") Collection<UUID> ids);
+    
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.parkedAt = :parkedAt WHERE r.id IN :ids")
+    int markParked(@Param("ids") Collection<UUID> ids, @Param("parkedAt") LocalDateTime parkedAt);
+}
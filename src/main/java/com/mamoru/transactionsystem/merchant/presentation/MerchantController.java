@@ -15,6 +15,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.UUID;
 
 @RestController
@@ -59,11 +60,12 @@ public class MerchantController {
         log.info("Fetching merchant with ID: {}", merchantId);
         
         Merchant merchant = merchantService.getMerchantById(merchantId);
+        BigDecimal accountBalance = merchantService.getAccountBalance(merchantId);
         
         MerchantResponse response = MerchantResponse.builder()
                 .id(merchant.getId())
                 .name(merchant.getName())
-                .accountBalance(merchant.getAccountBalance())
+                .accountBalance(accountBalance)
                 .currency(merchant.getCurrency())
                 .createdAt(merchant.getCreatedAt())
                 .updatedAt(merchant.getUpdatedAt())
@@ -3,6 +3,7 @@ package com.mamoru.transactionsystem.merchant.presentation;
 import com.mamoru.transactionsystem.common.dto.ApiResponse;
 import com.mamoru.transactionsystem.merchant.application.ProductService;
 import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.presentation.dto.ProductPriceRequest;
 import com.mamoru.transactionsystem.merchant.presentation.dto.ProductRequest;
 import com.mamoru.transactionsystem.merchant.presentation.dto.ProductResponse;
 import io.swagger.v3.oas.annotations.Operation;
@@ -104,5 +105,29 @@ public class ProductController {
         
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    @PatchMapping("/{productId}/price")
+    @Operation(summary = "Update product price", description = "Changes the price charged for the product on new orders")
+    public ResponseEntity<ApiResponse<ProductResponse>> updatePrice(
+            @Parameter(description = "Merchant ID", required = true) @PathVariable UUID merchantId,
+            @Parameter(description = "Product ID", required = true) @PathVariable UUID productId,
+            @Valid @RequestBody ProductPriceRequest request) {
+        log.info("Updating price of product ID: {} for merchant ID: {}", productId, merchantId);
+        
+        Product product = productService.updatePrice(merchantId, productId, request.getPrice());
+        
+        ProductResponse response = ProductResponse.builder()
+                .id(product.getId())
+                .merchantId(product.getMerchant().getId())
+                .sku(product.getSku())
+                .name(product.getName())
+                .price(product.getPrice())
+                .currency(product.getCurrency())
+                .createdAt(product.getCreatedAt())
+                .updatedAt(product.getUpdatedAt())
+                .build();
+        
+        return ResponseEntity.ok(ApiResponse.success("Product price updated successfully", response));
+    }
 }
 
@@ -1,5 +1,7 @@
 package com.mamoru.transactionsystem.payment.gateway.application;
 
+import com.mamoru.transactionsystem.common.id.IdGenerator;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -11,9 +13,12 @@ import java.util.UUID;
  * In production, this would integrate with a real banking API.
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class PaymentGatewayService {
     
+    private final IdGenerator idGenerator;
+    
     /**
      * Processes a recharge request through the mocked payment gateway.
      * 
@@ -33,7 +38,7 @@ public class PaymentGatewayService {
             Thread.sleep(100);
             
             // Generate mock transaction ID
-            String transactionId = "TXN-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+            String transactionId = idGenerator.nextId("TXN");
             
             log.info("Recharge processed successfully. Transaction ID: {}", transactionId);
             return transactionId;
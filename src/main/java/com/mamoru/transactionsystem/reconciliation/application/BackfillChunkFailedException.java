@@ -0,0 +1,19 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationBackfillRepository;
+import lombok.Getter;
+
+/**
+ * Thrown out of a chunk's transaction so it rolls back, carrying the chunk so its failure can be
+ * recorded in a new transaction.
+ */
+@Getter
+class BackfillChunkFailedException extends RuntimeException {
+    
+    private final transient ReconciliationBackfillRepository.Chunk chunk;
+    
+    BackfillChunkFailedException(ReconciliationBackfillRepository.Chunk chunk, Throwable cause) {
+        super("Reconciliation backfill failed for date: " + chunk.reportDate(), cause);
+        this.chunk = chunk;
+    }
+}
@@ -0,0 +1,158 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.merchant.application.MerchantService;
+import com.mamoru.transactionsystem.reconciliation.domain.OrderDiscrepancy;
+import com.mamoru.transactionsystem.reconciliation.domain.OrderDiscrepancyType;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.OrderDrillDownRepository;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.OrderDrillDownRepository.OrderAmount;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Drills a merchant's day down to the orders behind a reconciliation discrepancy. The completed orders,
+ * the merchant credits and the payments of the day are streamed sorted by order number and merge-joined
+ * in one pass, so memory stays constant however many orders the merchant has.
+ * <p>
+ * Rows are matched within the day they were created at; an order whose credit was written after
+ * midnight shows as a missing credit on one day and a credit without order on the next.
+ * <p>
+ * Merchant credits are read from the ledger, so drill-downs are refused while it is disabled rather than
+ * reporting every order as a missing credit.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderDrillDownService {
+    
+    private final OrderDrillDownRepository orderDrillDownRepository;
+    private final MerchantService merchantService;
+    private final AppConfig appConfig;
+    
+    /**
+     * Passes every order number of the merchant's day whose order, credits and payments disagree to the consumer,
+     * in order number order.
+     * @return the number of discrepancies found
+     * @throws InvalidOperationException if the ledger is disabled
+     */
+    @Transactional(readOnly = true)
+    public long findDiscrepancies(UUID merchantId, LocalDate reportDate, Consumer<OrderDiscrepancy> consumer) {
+        requireLedger();
+        int fetchSize = appConfig.getReconciliation().getExportFetchSize();
+        
+        try (Stream<OrderAmount> orders = orderDrillDownRepository.streamCompletedOrders(merchantId, reportDate, fetchSize);
+             Stream<OrderAmount> credits = orderDrillDownRepository.streamCredits(merchantId, reportDate, fetchSize);
+             Stream<OrderAmount> payments = orderDrillDownRepository.streamPayments(merchantId, reportDate, fetchSize)) {
+            long found = merge(orders.iterator(), credits.iterator(), payments.iterator(), consumer);
+            log.info("Found {} order discrepancies for merchant ID: {} on date: {}", found, merchantId, reportDate);
+            return found;
+        }
+    }
+    
+    /**
+     * @throws InvalidOperationException if the ledger is disabled
+     * @throws com.mamoru.transactionsystem.common.exception.ResourceNotFoundException if the merchant does not exist
+     */
+    public void validateRequest(UUID merchantId) {
+        requireLedger();
+        merchantService.getMerchantById(merchantId);
+    }
+    
+    private void requireLedger() {
+        if (!appConfig.getLedger().isEnabled()) {
+            throw new InvalidOperationException("Order drill-down reads merchant credits from the ledger, which is disabled");
+        }
+    }
+    
+    /**
+     * Merge-joins three iterators, each sorted by order number with at most one row per order number.
+     */
+    static long merge(Iterator<OrderAmount> orders, Iterator<OrderAmount> credits, Iterator<OrderAmount> payments,
+                      Consumer<OrderDiscrepancy> consumer) {
+        OrderAmount order = next(orders);
+        OrderAmount credit = next(credits);
+        OrderAmount payment = next(payments);
+        long found = 0;
+        
+        while (order != null || credit != null || payment != null) {
+            String orderNumber = min(min(key(order), key(credit)), key(payment));
+            OrderAmount matchedOrder = orderNumber.equals(key(order)) ? order : null;
+            OrderAmount matchedCredit = orderNumber.equals(key(credit)) ? credit : null;
+            OrderAmount matchedPayment = orderNumber.equals(key(payment)) ? payment : null;
+            
+            EnumSet<OrderDiscrepancyType> types = EnumSet.noneOf(OrderDiscrepancyType.class);
+            if (matchedOrder != null) {
+                if (matchedCredit == null) {
+                    types.add(OrderDiscrepancyType.MISSING_CREDIT);
+                } else if (matchedCredit.amount().compareTo(matchedOrder.amount()) != 0) {
+                    types.add(OrderDiscrepancyType.CREDIT_AMOUNT_MISMATCH);
+                }
+                if (matchedPayment == null) {
+                    types.add(OrderDiscrepancyType.MISSING_PAYMENT);
+                } else if (matchedPayment.amount().compareTo(matchedOrder.amount()) != 0) {
+                    types.add(OrderDiscrepancyType.PAYMENT_AMOUNT_MISMATCH);
+                }
+            } else {
+                if (matchedCredit != null) {
+                    types.add(OrderDiscrepancyType.CREDIT_WITHOUT_ORDER);
+                }
+                if (matchedPayment != null) {
+                    types.add(OrderDiscrepancyType.PAYMENT_WITHOUT_ORDER);
+                }
+            }
+            if (!types.isEmpty()) {
+                consumer.accept(new OrderDiscrepancy(orderNumber, types, amount(matchedOrder), amount(matchedCredit),
+                        amount(matchedPayment)));
+                found++;
+            }
+            
+            if (matchedOrder != null) {
+                order = next(orders);
+            }
+            if (matchedCredit != null) {
+                credit = next(credits);
+            }
+            if (matchedPayment != null) {
+                payment = next(payments);
+            }
+        }
+        return found;
+    }
+    
+    private static OrderAmount next(Iterator<OrderAmount> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+    
+    private static String key(OrderAmount row) {
+        return row == null ? null : row.orderNumber();
+    }
+    
+    private static BigDecimal amount(OrderAmount row) {
+        return row == null ? null : row.amount();
+    }
+    
+    /**
+     * The smaller of two order numbers, null meaning exhausted. Java compares order numbers by UTF-16 code unit,
+     * which matches the byte order the queries sort in for the ASCII order numbers this system generates.
+     */
+    private static String min(String left, String right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return left.compareTo(right) <= 0 ? left : right;
+    }
+}
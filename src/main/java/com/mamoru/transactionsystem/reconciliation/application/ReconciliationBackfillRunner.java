@@ -0,0 +1,196 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillJob;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillProgress;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs backfill jobs on a fixed pool of workers shared by all jobs. Every job gets one worker per configured
+ * thread; workers take pending chunks of the job until none is left, so a job's dates are reconciled
+ * concurrently and a second job queues behind the first. When the last worker of a job exits the job is
+ * finished and progress listeners get the final counts.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationBackfillRunner {
+    
+    private final ReconciliationBackfillService reconciliationBackfillService;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final Map<UUID, AtomicInteger> activeWorkers = new ConcurrentHashMap<>();
+    private final Map<UUID, List<Consumer<ReconciliationBackfillProgress>>> listeners = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    
+    @PostConstruct
+    void init() {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(appConfig.getReconciliation().getBackfill().getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-backfill-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        // Chunks in flight roll back and stay pending for the next start
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Resumes the jobs a previous instance left running. Instances resuming the same job share its chunks.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeRunningJobs() {
+        if (!appConfig.getReconciliation().getBackfill().isResumeOnStartup()) {
+            return;
+        }
+        try {
+            for (ReconciliationBackfillJob job : reconciliationBackfillService.getRunningJobs()) {
+                log.info("Resuming reconciliation backfill job ID: {}", job.getId());
+                start(job);
+            }
+        } catch (Exception e) {
+            log.error("Error resuming reconciliation backfill jobs", e);
+        }
+    }
+    
+    public ReconciliationBackfillJob startJob(LocalDate fromDate, LocalDate toDate, List<UUID> merchantIds,
+                                              boolean replaceExisting) {
+        ReconciliationBackfillJob job = reconciliationBackfillService.createJob(fromDate, toDate, merchantIds, replaceExisting);
+        start(job);
+        return job;
+    }
+    
+    /**
+     * Retries the failed chunks of the job, and its pending ones if no worker of this instance runs them.
+     */
+    public ReconciliationBackfillJob resumeJob(UUID jobId) {
+        ReconciliationBackfillJob job = reconciliationBackfillService.reopenJob(jobId);
+        start(job);
+        return job;
+    }
+    
+    /**
+     * Registers a listener called on a worker thread after every chunk of the job and once the job finishes.
+     * @return removes the listener
+     */
+    public Runnable subscribe(UUID jobId, Consumer<ReconciliationBackfillProgress> listener) {
+        listeners.compute(jobId, (id, jobListeners) -> {
+            List<Consumer<ReconciliationBackfillProgress>> updated = jobListeners != null ? jobListeners : new CopyOnWriteArrayList<>();
+            updated.add(listener);
+            return updated;
+        });
+        return () -> listeners.computeIfPresent(jobId, (id, jobListeners) -> {
+            jobListeners.remove(listener);
+            return jobListeners.isEmpty() ? null : jobListeners;
+        });
+    }
+    
+    private void start(ReconciliationBackfillJob job) {
+        int parallelism = appConfig.getReconciliation().getBackfill().getParallelism();
+        AtomicInteger workers = new AtomicInteger(parallelism);
+        if (activeWorkers.putIfAbsent(job.getId(), workers) != null) {
+            log.info("Reconciliation backfill job ID: {} is already running", job.getId());
+            return;
+        }
+        for (int i = 0; i < parallelism; i++) {
+            executor.execute(() -> work(job, workers));
+        }
+    }
+    
+    private void work(ReconciliationBackfillJob job, AtomicInteger workers) {
+        try {
+            while (!Thread.currentThread().isInterrupted() && runNextChunk(job)) {
+                publish(job.getId());
+            }
+        } finally {
+            if (workers.decrementAndGet() == 0) {
+                activeWorkers.remove(job.getId());
+                finish(job);
+            }
+        }
+    }
+    
+    /**
+     * @return whether a chunk was run, successfully or not
+     */
+    private boolean runNextChunk(ReconciliationBackfillJob job) {
+        try {
+            if (reconciliationBackfillService.runNextChunk(job).isEmpty()) {
+                return false;
+            }
+            meterRegistry.counter("reconciliation.backfill.chunks", "outcome", "completed").increment();
+            return true;
+        } catch (BackfillChunkFailedException e) {
+            log.error("Error in reconciliation backfill job ID: {} on date: {}", job.getId(), e.getChunk().reportDate(), e.getCause());
+            meterRegistry.counter("reconciliation.backfill.chunks", "outcome", "failed").increment();
+            try {
+                reconciliationBackfillService.recordChunkFailure(e.getChunk(), e);
+                return true;
+            } catch (Exception recordError) {
+                // The chunk stays pending with its attempts unchanged until the job is resumed
+                log.error("Error recording failure of reconciliation backfill job ID: {}", job.getId(), recordError);
+                return false;
+            }
+        } catch (Exception e) {
+            log.error("Error running reconciliation backfill job ID: {}", job.getId(), e);
+            return false;
+        }
+    }
+    
+    private void finish(ReconciliationBackfillJob job) {
+        try {
+            ReconciliationBackfillProgress progress = reconciliationBackfillService.finishJob(job.getId());
+            notify(job.getId(), progress);
+            if (progress.getJob().getStatus() != BackfillJobStatus.RUNNING) {
+                listeners.remove(job.getId());
+            }
+        } catch (Exception e) {
+            log.error("Error finishing reconciliation backfill job ID: {}", job.getId(), e);
+        }
+    }
+    
+    private void publish(UUID jobId) {
+        if (!listeners.containsKey(jobId)) {
+            return;
+        }
+        try {
+            notify(jobId, reconciliationBackfillService.getProgress(jobId));
+        } catch (Exception e) {
+            log.warn("Error reading progress of reconciliation backfill job ID: {}", jobId, e);
+        }
+    }
+    
+    private void notify(UUID jobId, ReconciliationBackfillProgress progress) {
+        for (Consumer<ReconciliationBackfillProgress> listener : listeners.getOrDefault(jobId, List.of())) {
+            try {
+                listener.accept(progress);
+            } catch (Exception e) {
+                log.warn("Error notifying progress of reconciliation backfill job ID: {}", jobId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.ledger.application.BalanceSnapshotService;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillJob;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillProgress;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationBackfillRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Backfill jobs re-run set-based reconciliation over a range of report dates, one chunk per date.
+ * Each chunk runs in its own transaction, which holds the lock on the chunk row and marks it completed,
+ * so workers on any instance can share a job and a crash loses only the chunks in flight.
+ * <p>
+ * Only dates covered by balance snapshots can be backfilled. Earlier dates would be reconciled against
+ * the current balances, and with {@code replaceExisting} that would overwrite the reports of those dates.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationBackfillService {
+    
+    private final ReconciliationBackfillRepository reconciliationBackfillRepository;
+    private final ReconciliationService reconciliationService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final AppConfig appConfig;
+    
+    /**
+     * Creates a running job with a pending chunk for every date from {@code fromDate} to {@code toDate} inclusive.
+     * @param merchantIds the merchants to reconcile, or null for all merchants
+     */
+    @Transactional
+    public ReconciliationBackfillJob createJob(LocalDate fromDate, LocalDate toDate, List<UUID> merchantIds,
+                                               boolean replaceExisting) {
+        if (fromDate.isAfter(toDate)) {
+            throw new InvalidOperationException("Backfill fromDate must not be after toDate");
+        }
+        if (!toDate.isBefore(LocalDate.now())) {
+            throw new InvalidOperationException("Backfill toDate must be before today");
+        }
+        int maxDays = appConfig.getReconciliation().getBackfill().getMaxDays();
+        if (ChronoUnit.DAYS.between(fromDate, toDate) + 1 > maxDays) {
+            throw new InvalidOperationException("Backfill range must not exceed " + maxDays + " days");
+        }
+        if (merchantIds != null && merchantIds.isEmpty()) {
+            throw new InvalidOperationException("Backfill merchantIds must not be empty; omit it for all merchants");
+        }
+        requireSnapshotCoverage(fromDate);
+        
+        ReconciliationBackfillJob job = reconciliationBackfillRepository.insertJob(fromDate, toDate,
+                merchantIds == null ? null : merchantIds.stream().distinct().toList(), replaceExisting);
+        log.info("Created reconciliation backfill job ID: {} from {} to {}", job.getId(), fromDate, toDate);
+        return job;
+    }
+    
+    @Transactional(readOnly = true)
+    public ReconciliationBackfillJob getJob(UUID jobId) {
+        return reconciliationBackfillRepository.findJob(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("ReconciliationBackfillJob", "id", jobId));
+    }
+    
+    @Transactional(readOnly = true)
+    public ReconciliationBackfillProgress getProgress(UUID jobId) {
+        return reconciliationBackfillRepository.findProgress(getJob(jobId));
+    }
+    
+    @Transactional(readOnly = true)
+    public List<ReconciliationBackfillJob> getRunningJobs() {
+        return reconciliationBackfillRepository.findJobsByStatus(BackfillJobStatus.RUNNING);
+    }
+    
+    /**
+     * Locks the next pending chunk of the job, reconciles its date and marks it completed, all in one transaction.
+     * @return the chunk run, or empty when no pending chunk is left unlocked
+     * @throws BackfillChunkFailedException if the chunk failed; its transaction is rolled back
+     */
+    @Transactional
+    public Optional<ReconciliationBackfillRepository.Chunk> runNextChunk(ReconciliationBackfillJob job) {
+        Optional<ReconciliationBackfillRepository.Chunk> next = reconciliationBackfillRepository.lockNextPendingChunk(job.getId());
+        if (next.isEmpty()) {
+            return next;
+        }
+        
+        ReconciliationBackfillRepository.Chunk chunk = next.get();
+        try {
+            requireSnapshotCoverage(chunk.reportDate());
+            Map<ReconciliationStatus, Long> counts = reconciliationService.reconcileMerchants(chunk.reportDate(),
+                    job.getMerchantIds(), job.isReplaceExisting(), new ReconciliationRun(chunk.reportDate()));
+            long discrepancies = counts.getOrDefault(ReconciliationStatus.DISCREPANCY, 0L);
+            reconciliationBackfillRepository.completeChunk(chunk.id(),
+                    counts.getOrDefault(ReconciliationStatus.MATCHED, 0L) + discrepancies, discrepancies);
+        } catch (RuntimeException e) {
+            throw new BackfillChunkFailedException(chunk, e);
+        }
+        return next;
+    }
+    
+    @Transactional
+    public void recordChunkFailure(ReconciliationBackfillRepository.Chunk chunk, Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        reconciliationBackfillRepository.recordChunkFailure(chunk.id(), cause.toString(),
+                appConfig.getReconciliation().getBackfill().getMaxAttempts());
+    }
+    
+    /**
+     * Marks the job completed, or failed if any chunk ran out of attempts, once no chunk is pending.
+     * Chunks still pending are being run elsewhere, and the job stays running.
+     */
+    @Transactional
+    public ReconciliationBackfillProgress finishJob(UUID jobId) {
+        ReconciliationBackfillProgress progress = getProgress(jobId);
+        if (progress.getPendingChunks() > 0) {
+            return progress;
+        }
+        
+        BackfillJobStatus status = progress.getFailedChunks() > 0 ? BackfillJobStatus.FAILED : BackfillJobStatus.COMPLETED;
+        reconciliationBackfillRepository.updateJobStatus(jobId, status, LocalDateTime.now());
+        log.info("Reconciliation backfill job ID: {} {}. Chunks completed: {}, failed: {}, merchants reconciled: {}",
+                jobId, status, progress.getCompletedChunks(), progress.getFailedChunks(), progress.getMerchantsReconciled());
+        return getProgress(jobId);
+    }
+    
+    /**
+     * Makes the failed chunks of the job pending again and the job running.
+     * @throws InvalidOperationException if the job already completed
+     */
+    @Transactional
+    public ReconciliationBackfillJob reopenJob(UUID jobId) {
+        ReconciliationBackfillJob job = getJob(jobId);
+        if (job.getStatus() == BackfillJobStatus.COMPLETED) {
+            throw new InvalidOperationException("Reconciliation backfill job " + jobId + " already completed");
+        }
+        
+        int reopened = reconciliationBackfillRepository.reopenFailedChunks(jobId);
+        reconciliationBackfillRepository.updateJobStatus(jobId, BackfillJobStatus.RUNNING, null);
+        log.info("Reopened {} failed chunks of reconciliation backfill job ID: {}", reopened, jobId);
+        return getJob(jobId);
+    }
+    
+    /**
+     * @throws InvalidOperationException if the ledger is disabled or balance snapshots do not reach back to the
+     * start of the date
+     */
+    private void requireSnapshotCoverage(LocalDate date) {
+        if (!appConfig.getLedger().isEnabled()) {
+            throw new InvalidOperationException("Backfill needs balance snapshots, which are not kept while the ledger is disabled");
+        }
+        LocalDateTime earliestCutoff = balanceSnapshotService.getEarliestCutoff()
+                .orElseThrow(() -> new InvalidOperationException("Backfill needs balance snapshots, and none were taken yet"));
+        if (date.atStartOfDay().isBefore(earliestCutoff)) {
+            throw new InvalidOperationException("Backfill dates must not be before " + earliestCutoff.toLocalDate()
+                    + ", the first day covered by balance snapshots");
+        }
+    }
+}
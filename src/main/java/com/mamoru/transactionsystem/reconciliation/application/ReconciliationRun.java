@@ -0,0 +1,97 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one reconciliation run over all merchants. Counters are updated by the worker threads
+ * while the run is in progress and can be read at any time.
+ */
+public class ReconciliationRun {
+    
+    /**
+     * Failed merchant ids kept for reporting; further failures are only counted.
+     */
+    static final int MAX_FAILED_MERCHANT_IDS = 100;
+    
+    @Getter
+    private final LocalDate reportDate;
+    @Getter
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    @Getter
+    private volatile LocalDateTime finishedAt;
+    
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong discrepancies = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final ConcurrentLinkedQueue<UUID> failedMerchantIds = new ConcurrentLinkedQueue<>();
+    
+    ReconciliationRun(LocalDate reportDate) {
+        this.reportDate = reportDate;
+    }
+    
+    void recordSubmitted() {
+        submitted.incrementAndGet();
+    }
+    
+    void recordSubmitted(long count) {
+        submitted.addAndGet(count);
+    }
+    
+    void recordCompleted(ReconciliationStatus status) {
+        (status == ReconciliationStatus.MATCHED ? matched : discrepancies).incrementAndGet();
+    }
+    
+    /**
+     * Counts every submitted merchant not yet completed as failed, as when a set-based page rolls back.
+     */
+    void recordRemainingFailed() {
+        failed.addAndGet(getSubmitted() - getCompleted());
+    }
+    
+    void recordFailed(UUID merchantId) {
+        if (failed.incrementAndGet() <= MAX_FAILED_MERCHANT_IDS) {
+            failedMerchantIds.add(merchantId);
+        }
+    }
+    
+    void finish() {
+        finishedAt = LocalDateTime.now();
+    }
+    
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+    
+    public long getSubmitted() {
+        return submitted.get();
+    }
+    
+    public long getCompleted() {
+        return matched.get() + discrepancies.get() + failed.get();
+    }
+    
+    public long getMatched() {
+        return matched.get();
+    }
+    
+    public long getDiscrepancies() {
+        return discrepancies.get();
+    }
+    
+    public long getFailed() {
+        return failed.get();
+    }
+    
+    public List<UUID> getFailedMerchantIds() {
+        return List.copyOf(failedMerchantIds);
+    }
+}
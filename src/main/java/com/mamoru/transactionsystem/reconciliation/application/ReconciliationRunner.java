@@ -0,0 +1,273 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReport;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reconciles every merchant for a report date. A SET_BASED run is one pass of
+ * {@link ReconciliationService#reconcileAllMerchants}, committed one page of merchants at a time. In a PARALLEL run merchant ids are read in keyset pages
+ * and fanned out to a fixed pool of workers; each merchant is reconciled in its own transaction, so one failure
+ * does not roll back the others and no connection is held for the whole run.
+ * <p>
+ * Every worker holds at most one pooled connection, so the configured parallelism is the slice of the
+ * connection pool a run can take. Submission blocks while all workers are busy and a small backlog is queued,
+ * keeping memory flat however many merchants there are.
+ * <p>
+ * In a cluster every instance runs the same schedule. Each run then only reconciles the merchant shards the
+ * instance leases, one shard at a time, in either mode, and a run counts the merchants of those shards only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationRunner {
+    
+    /**
+     * Keyset start: sorts before every other UUID in Postgres.
+     */
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    
+    private final ReconciliationService reconciliationService;
+    private final MerchantRepository merchantRepository;
+    private final ReconciliationShardLeases reconciliationShardLeases;
+    private final AppConfig appConfig;
+    private final MeterRegistry meterRegistry;
+    
+    private final AtomicReference<ReconciliationRun> latestRun = new AtomicReference<>();
+    
+    public ReconciliationRun reconcileAllMerchantsForYesterday() {
+        return reconcileAllMerchants(LocalDate.now().minusDays(1));
+    }
+    
+    /**
+     * Reconciles all merchants for the report date and waits for the run to finish.
+     * @throws IllegalStateException if another run is still in progress
+     */
+    public ReconciliationRun reconcileAllMerchants(LocalDate reportDate) {
+        ReconciliationRun run = new ReconciliationRun(reportDate);
+        ReconciliationRun previous = latestRun.get();
+        if ((previous != null && !previous.isFinished()) || !latestRun.compareAndSet(previous, run)) {
+            throw new IllegalStateException("A reconciliation run is already in progress");
+        }
+        
+        try {
+            if (appConfig.getReconciliation().getCluster().isEnabled()) {
+                reconcileLeasedShards(run);
+            } else {
+                reconcile(run, null);
+            }
+        } finally {
+            run.finish();
+        }
+        
+        log.info("Completed reconciliation of {} merchants on date: {}. Matched: {}, Discrepancies: {}, Failed: {}",
+                run.getCompleted(), reportDate, run.getMatched(), run.getDiscrepancies(), run.getFailed());
+        if (run.getFailed() > 0) {
+            log.error("Reconciliation failed for {} merchants on date: {}, including: {}",
+                    run.getFailed(), reportDate, run.getFailedMerchantIds());
+        }
+        return run;
+    }
+    
+    /**
+     * The run in progress, or the last one that finished.
+     */
+    public Optional<ReconciliationRun> getLatestRun() {
+        return Optional.ofNullable(latestRun.get());
+    }
+    
+    /**
+     * Runs the report dates of the last days whose shards are not all completed and have one nobody holds,
+     * such as the shards of an instance that died mid-run.
+     */
+    public void reconcileUnleasedShards() {
+        LocalDate since = LocalDate.now().minusDays(appConfig.getReconciliation().getCluster().getTakeoverLookbackDays());
+        for (LocalDate reportDate : reconciliationShardLeases.findIncompleteDates(since)) {
+            if (reconciliationShardLeases.hasClaimableShards(reportDate)) {
+                log.info("Taking over unleased reconciliation shards on date: {}", reportDate);
+                reconcileAllMerchants(reportDate);
+            }
+        }
+    }
+    
+    private void reconcileLeasedShards(ReconciliationRun run) {
+        LocalDate reportDate = run.getReportDate();
+        reconciliationShardLeases.prepare(reportDate);
+        
+        Optional<ReconciliationShardLeases.ShardLease> lease;
+        while ((lease = reconciliationShardLeases.claim(reportDate)).isPresent()) {
+            ReconciliationShardLeases.ShardLease shard = lease.get();
+            log.info("Reconciling shard {} of {} on date: {} as {}", shard.shard(), shard.shardCount(), reportDate,
+                    reconciliationShardLeases.getOwner());
+            if (reconcile(run, shard)) {
+                reconciliationShardLeases.complete(shard);
+            } else {
+                reconciliationShardLeases.abandon(shard);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reconciles the merchants of the shard, or all merchants when it is null, in the configured mode.
+     * @return whether the shard can be marked completed: false if it was interrupted or any of its merchants failed,
+     * so the shard is retried and reconciles the merchants that have no report yet
+     */
+    private boolean reconcile(ReconciliationRun run, ReconciliationShardLeases.ShardLease shard) {
+        return appConfig.getReconciliation().getMode() == AppConfig.Reconciliation.Mode.SET_BASED
+                ? reconcileSetBased(run, shard)
+                : reconcileInParallel(run, shard);
+    }
+    
+    private boolean reconcileSetBased(ReconciliationRun run, ReconciliationShardLeases.ShardLease shard) {
+        try {
+            Map<ReconciliationStatus, Long> counts;
+            if (shard == null) {
+                counts = reconciliationService.reconcileAllMerchants(run.getReportDate(), run);
+            } else {
+                List<UUID> merchantIds = findShardIds(shard);
+                if (merchantIds.isEmpty()) {
+                    return true;
+                }
+                counts = reconciliationService.reconcileMerchants(run.getReportDate(), merchantIds, false, run);
+            }
+            counts.forEach((status, count) ->
+                    meterRegistry.counter("reconciliation.merchants", "outcome", status.name().toLowerCase()).increment(count));
+            return true;
+        } catch (Exception e) {
+            // Pages committed before the failure keep their reports; only the failed page rolled back
+            long failedBefore = run.getFailed();
+            run.recordRemainingFailed();
+            meterRegistry.counter("reconciliation.merchants", "outcome", "failed").increment(run.getFailed() - failedBefore);
+            log.error("Error during set-based reconciliation on date: {}", run.getReportDate(), e);
+            return false;
+        }
+    }
+    
+    private boolean reconcileInParallel(ReconciliationRun run, ReconciliationShardLeases.ShardLease shard) {
+        LocalDate reportDate = run.getReportDate();
+        AppConfig.Reconciliation config = appConfig.getReconciliation();
+        int parallelism = config.getParallelism();
+        log.info("Starting reconciliation of {} on date: {} with {} workers",
+                shard == null ? "all merchants" : "shard " + shard.shard(), reportDate, parallelism);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, workerThreadFactory());
+        Semaphore backlog = new Semaphore(parallelism * 2);
+        long failedBefore = run.getFailed();
+        try {
+            UUID afterId = FIRST_ID;
+            List<UUID> merchantIds;
+            do {
+                merchantIds = shard == null
+                        ? merchantRepository.findIdsAfter(afterId, PageRequest.of(0, config.getPageSize()))
+                        : merchantRepository.findShardIdsAfter(shard.shard(), shard.shardCount(), afterId, config.getPageSize());
+                for (UUID merchantId : merchantIds) {
+                    backlog.acquire();
+                    run.recordSubmitted();
+                    executor.execute(() -> {
+                        try {
+                            reconcileMerchant(run, merchantId);
+                        } finally {
+                            backlog.release();
+                        }
+                    });
+                }
+                if (!merchantIds.isEmpty()) {
+                    afterId = merchantIds.get(merchantIds.size() - 1);
+                    log.info("Reconciliation on date: {} progress: {} submitted, {} completed, {} failed",
+                            reportDate, run.getSubmitted(), run.getCompleted(), run.getFailed());
+                }
+            } while (merchantIds.size() == config.getPageSize());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Reconciliation on date: {} interrupted after {} merchants were submitted", reportDate, run.getSubmitted());
+            return false;
+        } finally {
+            awaitTermination(executor);
+        }
+        
+        long failed = run.getFailed() - failedBefore;
+        if (failed > 0) {
+            log.warn("{} merchants of {} on date: {} failed", failed,
+                    shard == null ? "the run" : "shard " + shard.shard(), reportDate);
+            return false;
+        }
+        return true;
+    }
+    
+    private List<UUID> findShardIds(ReconciliationShardLeases.ShardLease shard) {
+        int pageSize = appConfig.getReconciliation().getPageSize();
+        List<UUID> merchantIds = new ArrayList<>();
+        List<UUID> page;
+        UUID afterId = FIRST_ID;
+        do {
+            page = merchantRepository.findShardIdsAfter(shard.shard(), shard.shardCount(), afterId, pageSize);
+            merchantIds.addAll(page);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1);
+            }
+        } while (page.size() == pageSize);
+        return merchantIds;
+    }
+    
+    private void reconcileMerchant(ReconciliationRun run, UUID merchantId) {
+        try {
+            ReconciliationReport report = reconciliationService.reconcileMerchant(merchantId, run.getReportDate());
+            run.recordCompleted(report.getStatus());
+            meterRegistry.counter("reconciliation.merchants", "outcome", report.getStatus().name().toLowerCase()).increment();
+        } catch (Exception e) {
+            run.recordFailed(merchantId);
+            meterRegistry.counter("reconciliation.merchants", "outcome", "failed").increment();
+            log.error("Error reconciling merchant ID: {}", merchantId, e);
+        }
+    }
+    
+    private void awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // Workers already submitted still finish; their transactions are short
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private ThreadFactory workerThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
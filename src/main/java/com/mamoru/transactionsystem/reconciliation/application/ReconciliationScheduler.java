@@ -15,7 +15,7 @@ import java.time.LocalDate;
 @ConditionalOnProperty(value = "app.reconciliation.enabled", havingValue = "true", matchIfMissing = true)
 public class ReconciliationScheduler {
     
-    private final ReconciliationService reconciliationService;
+    private final ReconciliationRunner reconciliationRunner;
     private final AppConfig appConfig;
     
     /**
@@ -27,7 +27,7 @@ public class ReconciliationScheduler {
         log.info("Starting scheduled daily reconciliation job");
         
         try {
-            reconciliationService.reconcileAllMerchantsForYesterday();
+            reconciliationRunner.reconcileAllMerchantsForYesterday();
             log.info("Scheduled daily reconciliation completed successfully");
         } catch (Exception e) {
             log.error("Error during scheduled daily reconciliation", e);
@@ -1,34 +1,58 @@
 package com.mamoru.transactionsystem.reconciliation.application;
 
+import com.mamoru.transactionsystem.common.config.AppConfig;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.ledger.application.BalanceSnapshotService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.merchant.application.MerchantCreditJournalService;
+import com.mamoru.transactionsystem.merchant.application.MerchantDailySalesService;
 import com.mamoru.transactionsystem.merchant.application.MerchantService;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
-import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
 import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReport;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReportView;
 import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.DailyReconciliationRepository;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationReportExportRepository;
 import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationReportRepository;
-import com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ReconciliationService {
     
+    /**
+     * Keyset start: sorts before every other UUID in Postgres.
+     */
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    
     private final ReconciliationReportRepository reconciliationReportRepository;
     private final MerchantService merchantService;
-    private final MerchantRepository merchantRepository;
-    private final OrderRepository orderRepository;
+    private final MerchantCreditJournalService merchantCreditJournalService;
+    private final MerchantDailySalesService merchantDailySalesService;
+    private final BalanceSnapshotService balanceSnapshotService;
+    private final DailyReconciliationRepository dailyReconciliationRepository;
+    private final ReconciliationReportExportRepository reconciliationReportExportRepository;
+    private final AppConfig appConfig;
+    private final PlatformTransactionManager transactionManager;
     
     @Transactional
     public ReconciliationReport reconcileMerchant(UUID merchantId, LocalDate reportDate) {
@@ -46,36 +70,53 @@ public class ReconciliationService {
             return existingReport;
         }
         
-        // Get account balance
-        BigDecimal accountBalance = merchant.getAccountBalance();
-        
-        // Calculate date range for the report date (full day)
+        // Start of the report date
         LocalDateTime startDate = reportDate.atStartOfDay();
-        LocalDateTime endDate = reportDate.atTime(LocalTime.MAX);
         
-        // Calculate total sales value from completed orders
-        BigDecimal calculatedSalesValue = orderRepository.calculateTotalSalesValue(
-                merchantId, startDate, endDate);
+        // Balances at the start and end of the report date, so the day's sales are compared with that day's change.
+        // Snapshots replay the ledger, which is not written while it is disabled
+        LedgerAccount ledgerAccount = LedgerAccount.merchant(merchantId);
+        Optional<BigDecimal> closingBalance = appConfig.getLedger().isEnabled()
+                ? balanceSnapshotService.getBalanceAsOf(ledgerAccount, reportDate.plusDays(1).atStartOfDay())
+                : Optional.empty();
+        BigDecimal openingBalance = closingBalance.isPresent()
+                ? balanceSnapshotService.getBalanceAsOf(ledgerAccount, startDate).orElse(null)
+                : null;
         
-        // Calculate discrepancy
-        BigDecimal discrepancy = accountBalance.subtract(calculatedSalesValue);
+        BigDecimal accountBalance;
+        if (openingBalance != null) {
+            accountBalance = closingBalance.get();
+        } else {
+            // No snapshots reach back to the report date: fall back to the current balance.
+            // Settle journaled credits so the balance is not behind the orders
+            if (!appConfig.getLedger().isEnabled()) {
+                merchantCreditJournalService.drain(merchantId);
+            }
         
-        // Determine status
-        ReconciliationStatus status = discrepancy.compareTo(BigDecimal.ZERO) == 0
-                ? ReconciliationStatus.MATCHED
-                : ReconciliationStatus.DISCREPANCY;
+            // Get account balance (the ledger balance, or the base balance plus any balance stripes)
+            accountBalance = merchantService.getAccountBalance(merchantId);
+        }
+        
+        // Total sales value of completed orders, from the daily sales rollup
+        BigDecimal calculatedSalesValue = merchantDailySalesService.getSalesValue(merchantId, reportDate);
         
-        // Create reconciliation report
-        ReconciliationReport report = ReconciliationReport.builder()
-                .merchant(merchant)
-                .reportDate(reportDate)
-                .accountBalance(accountBalance)
-                .calculatedSalesValue(calculatedSalesValue)
-                .discrepancy(discrepancy)
-                .status(status)
-                .build();
+        // Calculate discrepancy and determine status
+        BigDecimal discrepancy = discrepancy(openingBalance, accountBalance, calculatedSalesValue);
+        ReconciliationStatus status = status(discrepancy);
         
-        report = reconciliationReportRepository.save(report);
+        // Create reconciliation report. Another instance may have written one since the check above; its report
+        // is kept, as a set-based run keeps existing reports
+        List<ReconciliationStatus> written = dailyReconciliationRepository.insertReports(List.of(
+                new DailyReconciliationRepository.NewReport(UuidV7Generator.next(), merchant.getId(), reportDate,
+                        openingBalance, accountBalance, calculatedSalesValue, discrepancy, status)), false);
+        ReconciliationReport report = reconciliationReportRepository.findByMerchantIdAndReportDate(merchantId, reportDate)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Reconciliation report of merchant " + merchantId + " on " + reportDate + " was not written"));
+        if (written.isEmpty()) {
+            log.warn("Reconciliation report for merchant ID: {} on date: {} was written concurrently; keeping it",
+                    merchantId, reportDate);
+            return report;
+        }
         
         log.info("Reconciliation completed for merchant ID: {}. Status: {}, Discrepancy: {}", 
                 merchantId, status, discrepancy);
@@ -94,31 +135,82 @@ public class ReconciliationService {
         return reconcileMerchant(merchantId, yesterday);
     }
     
-    @Transactional
-    public void reconcileAllMerchantsForYesterday() {
-        log.info("Starting reconciliation for all merchants for yesterday");
-        
-        // Get all merchants
-        List<Merchant> allMerchants = merchantRepository.findAll();
+    /**
+     * Reconciles every merchant for the report date in one pass: merchant balances are read in pages of merchant
+     * ids, merged with the page's sales from the daily sales rollup, and each page's reports are inserted and
+     * committed before the next page is read. Merchants that already have a report for the date keep it.
+     * @return the number of reports written per status
+     */
+    public Map<ReconciliationStatus, Long> reconcileAllMerchants(LocalDate reportDate, ReconciliationRun run) {
+        return reconcileMerchants(reportDate, null, false, run);
+    }
         
-        if (allMerchants.isEmpty()) {
-            log.info("No merchants found to reconcile");
-            return;
-        }
+    /**
+     * Reconciles the given merchants, or all merchants when {@code merchantIds} is null, for the report date
+     * in one set-based pass, committing one page of merchants at a time so no transaction or lock spans the
+     * whole pass; a failure leaves the pages already committed in place. Called inside a transaction, as a
+     * backfill chunk is, every page joins it instead, so with {@code replaceExisting} readers see either all
+     * the old reports of the date or all the new ones.
+     * <p>
+     * Completed merchants are recorded in the run as their page commits.
+     * @return the number of reports written per status; merchants whose existing report was kept are not counted
+     */
+    public Map<ReconciliationStatus, Long> reconcileMerchants(LocalDate reportDate, List<UUID> merchantIds,
+                                                              boolean replaceExisting, ReconciliationRun run) {
+        log.info("Starting set-based reconciliation of {} on date: {}",
+                merchantIds == null ? "all merchants" : merchantIds.size() + " merchants", reportDate);
         
-        log.info("Found {} merchants to reconcile", allMerchants.size());
+        LocalDateTime startDate = reportDate.atStartOfDay();
+        LocalDateTime endDate = reportDate.plusDays(1).atStartOfDay();
+        int pageSize = appConfig.getReconciliation().getPageSize();
         
-        LocalDate yesterday = LocalDate.now().minusDays(1);
+        // Same balances as a single-merchant run: snapshots if the ledger is enabled and they reach back to the
+        // report date, otherwise the current balances with journaled credits settled
+        boolean fromLedger = appConfig.getLedger().isEnabled();
+        LocalDateTime earliestCutoff = fromLedger ? balanceSnapshotService.getEarliestCutoff().orElse(null) : null;
+        boolean fromSnapshots = earliestCutoff != null && !startDate.isBefore(earliestCutoff);
+        if (!fromSnapshots && !fromLedger) {
+            // One transaction per journal batch rather than one for the whole journal
+            int applied;
+            do {
+                applied = merchantCreditJournalService.applyPendingBatch();
+            } while (applied > 0);
+        }
         
-        for (Merchant merchant : allMerchants) {
-            try {
-                reconcileMerchant(merchant.getId(), yesterday);
-            } catch (Exception e) {
-                log.error("Error reconciling merchant ID: {}", merchant.getId(), e);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Map<ReconciliationStatus, Long> counts = new EnumMap<>(ReconciliationStatus.class);
+        UUID afterId = FIRST_ID;
+        List<DailyReconciliationRepository.MerchantBalances> page;
+        do {
+            UUID pageAfterId = afterId;
+            page = fromSnapshots
+                    ? dailyReconciliationRepository.findSnapshotBalances(startDate, endDate, earliestCutoff, merchantIds,
+                            pageAfterId, pageSize)
+                    : fromLedger
+                    ? dailyReconciliationRepository.findCurrentLedgerBalances(merchantIds, pageAfterId, pageSize)
+                    : dailyReconciliationRepository.findCurrentBalances(merchantIds, pageAfterId, pageSize);
+            if (page.isEmpty()) {
+                break;
             }
-        }
+            
+            List<DailyReconciliationRepository.MerchantBalances> balances = page;
+            List<ReconciliationStatus> written = transactionTemplate.execute(status -> {
+                List<ReconciliationStatus> statuses = dailyReconciliationRepository.insertReports(
+                        newReports(reportDate, balances), replaceExisting);
+                run.recordSubmitted(statuses.size());
+                return statuses;
+            });
+            for (ReconciliationStatus status : written) {
+                counts.merge(status, 1L, Long::sum);
+                run.recordCompleted(status);
+            }
+            afterId = page.get(page.size() - 1).merchantId();
+        } while (page.size() == pageSize);
         
-        log.info("Completed reconciliation for all merchants");
+        log.info("Set-based reconciliation on date: {} completed. Matched: {}, Discrepancies: {}", reportDate,
+                counts.getOrDefault(ReconciliationStatus.MATCHED, 0L),
+                counts.getOrDefault(ReconciliationStatus.DISCREPANCY, 0L));
+        return counts;
     }
     
     @Transactional(readOnly = true)
@@ -133,5 +225,76 @@ public class ReconciliationService {
     public List<ReconciliationReport> getReconciliationReportsByMerchant(UUID merchantId) {
         return reconciliationReportRepository.findByMerchantId(merchantId);
     }
+    
+    /**
+     * Passes every report in the range to the consumer, ordered by report date and merchant id,
+     * holding only one fetch of rows in memory at a time.
+     * @param merchantId only this merchant's reports, or null for all merchants
+     */
+    @Transactional(readOnly = true)
+    public void exportReports(LocalDate from, LocalDate to, UUID merchantId, Consumer<ReconciliationReportView> consumer) {
+        validateRange(from, to);
+        reconciliationReportExportRepository.stream(from, to, merchantId,
+                appConfig.getReconciliation().getExportFetchSize(), consumer);
+    }
+    
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    }
+    
+    /**
+     * Balance change over the report date minus its sales; without an opening balance the whole balance is compared.
+     */
+    private static BigDecimal discrepancy(BigDecimal openingBalance, BigDecimal accountBalance, BigDecimal calculatedSalesValue) {
+        return openingBalance != null
+                ? accountBalance.subtract(openingBalance).subtract(calculatedSalesValue)
+                : accountBalance.subtract(calculatedSalesValue);
+    }
+    
+    /**
+     * Merges one page of balances with the sales of its merchants; both are ordered by merchant id and
+     * merchants without sales are absent from the sales.
+     */
+    private List<DailyReconciliationRepository.NewReport> newReports(
+            LocalDate reportDate, List<DailyReconciliationRepository.MerchantBalances> balances) {
+        List<DailyReconciliationRepository.MerchantSales> sales = dailyReconciliationRepository.findSales(reportDate,
+                balances.stream().map(DailyReconciliationRepository.MerchantBalances::merchantId).toList());
+        Iterator<DailyReconciliationRepository.MerchantSales> salesIterator = sales.iterator();
+        DailyReconciliationRepository.MerchantSales nextSales = salesIterator.hasNext() ? salesIterator.next() : null;
+        
+        List<DailyReconciliationRepository.NewReport> reports = new ArrayList<>(balances.size());
+        for (DailyReconciliationRepository.MerchantBalances merchant : balances) {
+            while (nextSales != null && compareIds(nextSales.merchantId(), merchant.merchantId()) < 0) {
+                nextSales = salesIterator.hasNext() ? salesIterator.next() : null;
+            }
+            BigDecimal calculatedSalesValue = BigDecimal.ZERO;
+            if (nextSales != null && nextSales.merchantId().equals(merchant.merchantId())) {
+                calculatedSalesValue = nextSales.salesValue();
+                nextSales = salesIterator.hasNext() ? salesIterator.next() : null;
+            }
+            
+            BigDecimal discrepancy = discrepancy(merchant.openingBalance(), merchant.closingBalance(), calculatedSalesValue);
+            reports.add(new DailyReconciliationRepository.NewReport(UuidV7Generator.next(), merchant.merchantId(),
+                    reportDate, merchant.openingBalance(), merchant.closingBalance(), calculatedSalesValue,
+                    discrepancy, status(discrepancy)));
+        }
+        return reports;
+    }
+    
+    private static ReconciliationStatus status(BigDecimal discrepancy) {
+        return discrepancy.compareTo(BigDecimal.ZERO) == 0
+                ? ReconciliationStatus.MATCHED
+                : ReconciliationStatus.DISCREPANCY;
+    }
+    
+    /**
+     * Orders merchant ids as Postgres does: as unsigned 128-bit values, unlike {@link UUID#compareTo}.
+     */
+    static int compareIds(UUID left, UUID right) {
+        int result = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    }
 }
 
@@ -0,0 +1,149 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationShardLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leases on the merchant shards of a report date for this instance. A claimed lease is renewed in the background
+ * until it is completed or abandoned; an abandoned lease, like the leases of an instance that died, expires and is
+ * claimed again by the next instance looking for work. Every claim counts as an attempt, and a shard claimed the
+ * configured maximum number of times is left incomplete rather than claimed again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReconciliationShardLeases {
+    
+    private final ReconciliationShardLeaseRepository reconciliationShardLeaseRepository;
+    private final AppConfig appConfig;
+    
+    private final Map<ShardLease, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+    private ScheduledExecutorService renewer;
+    
+    @Getter
+    private String owner;
+    
+    @PostConstruct
+    void init() {
+        String configured = appConfig.getReconciliation().getCluster().getOwner();
+        owner = configured != null && !configured.isBlank() ? configured : hostName() + "-" + ProcessHandle.current().pid();
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        renewer.shutdownNow();
+        // Hand unfinished shards back instead of making other instances wait for the leases to expire
+        for (ShardLease lease : List.copyOf(renewals.keySet())) {
+            try {
+                reconciliationShardLeaseRepository.release(lease.reportDate(), lease.shard(), owner);
+            } catch (Exception e) {
+                log.warn("Error releasing reconciliation shard {} on date: {}", lease.shard(), lease.reportDate(), e);
+            }
+        }
+    }
+    
+    /**
+     * Creates the shard rows of the report date with the configured shard count, unless they exist already.
+     */
+    public void prepare(LocalDate reportDate) {
+        reconciliationShardLeaseRepository.createShards(reportDate, appConfig.getReconciliation().getCluster().getShards());
+    }
+    
+    /**
+     * Leases the next shard of the report date nobody holds and starts renewing it.
+     * @return the lease, or empty when every shard is completed, leased or out of attempts
+     */
+    public Optional<ShardLease> claim(LocalDate reportDate) {
+        AppConfig.Reconciliation.Cluster config = appConfig.getReconciliation().getCluster();
+        Optional<ShardLease> lease = reconciliationShardLeaseRepository.claim(reportDate, owner, config.getLeaseDurationMs(),
+                config.getMaxAttempts())
+                .map(claimed -> new ShardLease(reportDate, claimed.shard(), claimed.shardCount()));
+        lease.ifPresent(claimed -> renewals.put(claimed, renewer.scheduleWithFixedDelay(() -> renew(claimed),
+                config.getRenewIntervalMs(), config.getRenewIntervalMs(), TimeUnit.MILLISECONDS)));
+        return lease;
+    }
+    
+    public boolean hasClaimableShards(LocalDate reportDate) {
+        return reconciliationShardLeaseRepository.hasClaimableShards(reportDate,
+                appConfig.getReconciliation().getCluster().getMaxAttempts());
+    }
+    
+    public List<LocalDate> findIncompleteDates(LocalDate since) {
+        return reconciliationShardLeaseRepository.findIncompleteDates(since);
+    }
+    
+    /**
+     * Marks the shard completed so no instance reconciles it again.
+     */
+    public void complete(ShardLease lease) {
+        stopRenewing(lease);
+        if (!reconciliationShardLeaseRepository.complete(lease.reportDate(), lease.shard(), owner)) {
+            // Another instance took the shard over; reports are inserted keeping any existing one, so it only repeats the work
+            log.warn("Lease on reconciliation shard {} on date: {} was lost before it completed", lease.shard(), lease.reportDate());
+        }
+    }
+    
+    /**
+     * Stops renewing the lease and leaves it to expire, so the shard is retried after the lease duration.
+     */
+    public void abandon(ShardLease lease) {
+        stopRenewing(lease);
+    }
+    
+    private void renew(ShardLease lease) {
+        try {
+            if (!reconciliationShardLeaseRepository.renew(lease.reportDate(), lease.shard(), owner,
+                    appConfig.getReconciliation().getCluster().getLeaseDurationMs())) {
+                log.warn("Lease on reconciliation shard {} on date: {} was lost", lease.shard(), lease.reportDate());
+                stopRenewing(lease);
+            }
+        } catch (Exception e) {
+            // Retried on the next interval while the lease lasts
+            log.error("Error renewing lease on reconciliation shard {} on date: {}", lease.shard(), lease.reportDate(), e);
+        }
+    }
+    
+    private void stopRenewing(ShardLease lease) {
+        ScheduledFuture<?> renewal = renewals.remove(lease);
+        if (renewal != null) {
+            renewal.cancel(false);
+        }
+    }
+    
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+    
+    /**
+     * One of {@code shardCount} shards of the merchants, leased by this instance.
+     */
+    public record ShardLease(LocalDate reportDate, int shard, int shardCount) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(value = "app.reconciliation.cluster.enabled", havingValue = "true")
+public class ReconciliationShardTakeoverScheduler {
+    
+    private final ReconciliationRunner reconciliationRunner;
+    
+    /**
+     * Picks up shards whose lease expired, so the work of an instance that died is finished by the others.
+     */
+    @Scheduled(fixedDelayString = "${app.reconciliation.cluster.takeover-interval-ms:60000}",
+               initialDelayString = "${app.reconciliation.cluster.takeover-interval-ms:60000}")
+    public void takeOverUnleasedShards() {
+        try {
+            reconciliationRunner.reconcileUnleasedShards();
+        } catch (IllegalStateException e) {
+            log.debug("Skipping reconciliation shard takeover: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Error taking over reconciliation shards", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+public enum BackfillChunkStatus {
+    PENDING,
+    COMPLETED,
+    FAILED
+}
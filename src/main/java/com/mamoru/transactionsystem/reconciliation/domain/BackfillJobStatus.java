@@ -0,0 +1,7 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+public enum BackfillJobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
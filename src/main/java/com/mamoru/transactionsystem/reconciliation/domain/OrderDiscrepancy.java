@@ -0,0 +1,19 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * An order number of a merchant's day whose completed order, merchant credits and payments disagree.
+ * Amounts are null where there is no such row.
+ */
+@Value
+public class OrderDiscrepancy {
+    String orderNumber;
+    Set<OrderDiscrepancyType> types;
+    BigDecimal orderAmount;
+    BigDecimal creditAmount;
+    BigDecimal paymentAmount;
+}
@@ -0,0 +1,22 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+/**
+ * Ways a completed order, its merchant credit and its payment can disagree.
+ */
+public enum OrderDiscrepancyType {
+    MISSING_CREDIT,
+    MISSING_PAYMENT,
+    
+    /**
+     * A merchant credit whose order number is not a completed order of the day.
+     */
+    CREDIT_WITHOUT_ORDER,
+    
+    /**
+     * A payment of an order of the day that is not completed.
+     */
+    PAYMENT_WITHOUT_ORDER,
+    
+    CREDIT_AMOUNT_MISMATCH,
+    PAYMENT_AMOUNT_MISMATCH
+}
@@ -0,0 +1,34 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A re-run of reconciliation over a range of report dates, split into one chunk per date.
+ */
+@Value
+@Builder
+public class ReconciliationBackfillJob {
+    UUID id;
+    LocalDate fromDate;
+    LocalDate toDate;
+    
+    /**
+     * Merchants to reconcile, or null for all merchants.
+     */
+    List<UUID> merchantIds;
+    
+    /**
+     * Whether existing reports are replaced; otherwise merchants that already have a report keep it.
+     */
+    boolean replaceExisting;
+    
+    BackfillJobStatus status;
+    LocalDateTime createdAt;
+    LocalDateTime finishedAt;
+}
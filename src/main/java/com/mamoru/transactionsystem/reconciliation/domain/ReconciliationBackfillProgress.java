@@ -0,0 +1,20 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+import lombok.Value;
+
+/**
+ * Chunk counts of a backfill job.
+ */
+@Value
+public class ReconciliationBackfillProgress {
+    ReconciliationBackfillJob job;
+    long totalChunks;
+    long completedChunks;
+    long failedChunks;
+    long merchantsReconciled;
+    long discrepancies;
+    
+    public long getPendingChunks() {
+        return totalChunks - completedChunks - failedChunks;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mamoru.transactionsystem.reconciliation.domain;
 
+import com.mamoru.transactionsystem.common.id.UuidV7;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -26,7 +27,7 @@ import java.util.UUID;
 public class ReconciliationReport {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -36,6 +37,15 @@ public class ReconciliationReport {
     @Column(name = "report_date", nullable = false)
     private LocalDate reportDate;
     
+    /**
+     * Balance at the start of the report date, or null if no snapshot reached back that far.
+     */
+    @Column(name = "opening_balance", precision = 19, scale = 2)
+    private BigDecimal openingBalance;
+    
+    /**
+     * Balance at the end of the report date, or the balance when the report was made if there is no opening balance.
+     */
     @Column(name = "account_balance", nullable = false, precision = 19, scale = 2)
     private BigDecimal accountBalance;
     
@@ -58,11 +68,13 @@ public class ReconciliationReport {
     }
     
     /**
-     * Calculates the discrepancy between account balance and calculated sales value.
+     * Calculates the discrepancy between the balance change over the report date and calculated sales value.
+     * Without an opening balance the whole account balance is compared.
      * @return the discrepancy amount (positive means account has more, negative means less)
      */
     public BigDecimal calculateDiscrepancy() {
-        return accountBalance.subtract(calculatedSalesValue);
+        BigDecimal balanceChange = openingBalance == null ? accountBalance : accountBalance.subtract(openingBalance);
+        return balanceChange.subtract(calculatedSalesValue);
     }
     
     /**
@@ -0,0 +1,25 @@
+package com.mamoru.transactionsystem.reconciliation.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only row of a reconciliation report with its merchant's name, as exported.
+ */
+@Value
+public class ReconciliationReportView {
+    UUID id;
+    UUID merchantId;
+    String merchantName;
+    LocalDate reportDate;
+    BigDecimal openingBalance;
+    BigDecimal accountBalance;
+    BigDecimal calculatedSalesValue;
+    BigDecimal discrepancy;
+    ReconciliationStatus status;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,219 @@
+package com.mamoru.transactionsystem.reconciliation.infrastructure;
+
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Set-based reads and writes for reconciling many merchants of a day at once. Balances are read in keyset
+ * pages of merchant ids and the sales of a page's merchants with them, both ordered by merchant id so they
+ * can be merged in one pass, and each page's reports are inserted in one statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DailyReconciliationRepository {
+    
+    private static final String SIGNED_AMOUNT = "CASE e.direction WHEN 'CREDIT' THEN e.amount ELSE -e.amount END";
+    
+    /**
+     * The day's rows of the merchant daily sales rollup, plus deltas not applied yet.
+     */
+    private static final String SELECT_DAILY_SALES =
+            "SELECT merchant_id, SUM(sales_value) AS sales_value FROM (" +
+            "    SELECT merchant_id, sales_value FROM merchant_daily_sales " +
+            "    WHERE sales_date = ? AND merchant_id = ANY(?) " +
+            "    UNION ALL " +
+            "    SELECT merchant_id, sales_value FROM merchant_daily_sales_deltas " +
+            "    WHERE sales_date = ? AND merchant_id = ANY(?)) s " +
+            "GROUP BY merchant_id ORDER BY merchant_id";
+    
+    /**
+     * Balance as of a time: the latest snapshot at or before it, or zero from the earliest cutoff for
+     * merchants without one, plus the ledger entries created since.
+     */
+    private static final String BALANCE_AS_OF =
+            "COALESCE(%1$s.balance, 0) + COALESCE((SELECT SUM(" + SIGNED_AMOUNT + ") FROM ledger_entries e " +
+            "    WHERE e.account_type = 'MERCHANT' AND e.account_id = m.id " +
+            "    AND e.created_at >= COALESCE(%1$s.as_of, ?) AND e.created_at < ?), 0)";
+    
+    private static final String LATEST_SNAPSHOT =
+            "LEFT JOIN LATERAL (SELECT b.as_of, b.balance FROM balance_snapshots b " +
+            "    WHERE b.account_type = 'MERCHANT' AND b.account_id = m.id AND b.as_of <= ? " +
+            "    ORDER BY b.as_of DESC LIMIT 1) %1$s ON TRUE ";
+    
+    private static final String SELECT_SNAPSHOT_BALANCES =
+            "SELECT m.id AS merchant_id, " +
+            BALANCE_AS_OF.formatted("os") + " AS opening_balance, " +
+            BALANCE_AS_OF.formatted("cs") + " AS closing_balance " +
+            "FROM merchants m " +
+            LATEST_SNAPSHOT.formatted("os") +
+            LATEST_SNAPSHOT.formatted("cs") +
+            "WHERE m.id > ? %s ORDER BY m.id LIMIT ?";
+    
+    private static final String SELECT_CURRENT_BALANCES =
+            "SELECT m.id AS merchant_id, NULL AS opening_balance, " +
+            "m.account_balance + COALESCE(s.balance, 0) AS closing_balance " +
+            "FROM merchants m " +
+            "LEFT JOIN (SELECT merchant_id, SUM(balance) AS balance FROM merchant_balance_stripes " +
+            "           GROUP BY merchant_id) s ON s.merchant_id = m.id " +
+            "WHERE m.id > ? %s ORDER BY m.id LIMIT ?";
+    
+    /**
+     * The materialized ledger balance plus the entries not folded into it yet, as the ledger reads a balance.
+     */
+    private static final String SELECT_CURRENT_LEDGER_BALANCES =
+            "SELECT m.id AS merchant_id, NULL AS opening_balance, " +
+            "COALESCE(b.balance, 0) + COALESCE((SELECT SUM(" + SIGNED_AMOUNT + ") FROM ledger_entries e " +
+            "    WHERE e.account_type = 'MERCHANT' AND e.account_id = m.id AND e.tx_id >= w.applied_below), 0) " +
+            "AS closing_balance " +
+            "FROM merchants m " +
+            "CROSS JOIN (SELECT applied_below FROM ledger_snapshot_watermark WHERE id = 1) w " +
+            "LEFT JOIN ledger_balances b ON b.account_type = 'MERCHANT' AND b.account_id = m.id " +
+            "WHERE m.id > ? %s ORDER BY m.id LIMIT ?";
+    
+    private static final String MERCHANT_FILTER = "AND m.id = ANY(?)";
+    
+    /**
+     * One statement per page, so the rows it returns are exactly the reports written; batched inserts
+     * rewritten by the driver do not report per-row counts.
+     */
+    private static final String INSERT_REPORT =
+            "INSERT INTO reconciliation_reports (id, merchant_id, report_date, opening_balance, account_balance, " +
+            "calculated_sales_value, discrepancy, status, created_at) " +
+            "SELECT r.*, ? FROM unnest(?::uuid[], ?::uuid[], ?::date[], ?::numeric[], ?::numeric[], ?::numeric[], " +
+            "?::numeric[], ?::varchar[]) AS r(id, merchant_id, report_date, opening_balance, account_balance, " +
+            "calculated_sales_value, discrepancy, status) ";
+    
+    private static final String KEEP_EXISTING = "ON CONFLICT (merchant_id, report_date) DO NOTHING";
+    
+    private static final String REPLACE_EXISTING =
+            "ON CONFLICT (merchant_id, report_date) DO UPDATE SET " +
+            "opening_balance = EXCLUDED.opening_balance, account_balance = EXCLUDED.account_balance, " +
+            "calculated_sales_value = EXCLUDED.calculated_sales_value, discrepancy = EXCLUDED.discrepancy, " +
+            "status = EXCLUDED.status, created_at = EXCLUDED.created_at";
+    
+    private static final String RETURNING_STATUS = " RETURNING status";
+    
+    private static final RowMapper<MerchantSales> SALES_MAPPER = (rs, rowNum) -> new MerchantSales(
+            rs.getObject("merchant_id", UUID.class), rs.getBigDecimal("sales_value"));
+    
+    private static final RowMapper<MerchantBalances> BALANCES_MAPPER = (rs, rowNum) -> new MerchantBalances(
+            rs.getObject("merchant_id", UUID.class), rs.getBigDecimal("opening_balance"), rs.getBigDecimal("closing_balance"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Finds the completed sales value of the given merchants with sales on the date, ordered by merchant id.
+     */
+    public List<MerchantSales> findSales(LocalDate salesDate, Collection<UUID> merchantIds) {
+        Date date = Date.valueOf(salesDate);
+        UUID[] ids = merchantIds.toArray(new UUID[0]);
+        return query(SELECT_DAILY_SALES, SALES_MAPPER, List.of(date, ids, date, ids));
+    }
+    
+    /**
+     * Finds the snapshot balances at the opening and closing times of the next page of merchants after
+     * {@code afterId}, ordered by merchant id.
+     * @param earliestCutoff when snapshots begin; both times must be at or after it
+     * @param merchantIds the merchants to read, or null for all merchants
+     */
+    public List<MerchantBalances> findSnapshotBalances(LocalDateTime opening, LocalDateTime closing,
+                                                       LocalDateTime earliestCutoff, Collection<UUID> merchantIds,
+                                                       UUID afterId, int limit) {
+        Timestamp earliest = Timestamp.valueOf(earliestCutoff);
+        List<Object> args = new ArrayList<>(List.of(earliest, Timestamp.valueOf(opening), earliest, Timestamp.valueOf(closing),
+                Timestamp.valueOf(opening), Timestamp.valueOf(closing)));
+        return query(paged(SELECT_SNAPSHOT_BALANCES, merchantIds, afterId, limit, args), BALANCES_MAPPER, args);
+    }
+    
+    /**
+     * Finds the current balance, including balance stripes, of the next page of merchants after
+     * {@code afterId}, ordered by merchant id. Opening balances are null.
+     * @param merchantIds the merchants to read, or null for all merchants
+     */
+    public List<MerchantBalances> findCurrentBalances(Collection<UUID> merchantIds, UUID afterId, int limit) {
+        List<Object> args = new ArrayList<>();
+        return query(paged(SELECT_CURRENT_BALANCES, merchantIds, afterId, limit, args), BALANCES_MAPPER, args);
+    }
+    
+    /**
+     * Finds the current ledger balance of the next page of merchants after {@code afterId}, ordered by merchant id.
+     * Opening balances are null.
+     * @param merchantIds the merchants to read, or null for all merchants
+     */
+    public List<MerchantBalances> findCurrentLedgerBalances(Collection<UUID> merchantIds, UUID afterId, int limit) {
+        List<Object> args = new ArrayList<>();
+        return query(paged(SELECT_CURRENT_LEDGER_BALANCES, merchantIds, afterId, limit, args), BALANCES_MAPPER, args);
+    }
+    
+    /**
+     * Inserts reports in one statement. Merchants that already have a report for the date keep it,
+     * or have it overwritten in place when {@code replaceExisting} is set.
+     * @return the status of every report inserted or overwritten; kept reports are left out
+     */
+    public List<ReconciliationStatus> insertReports(List<NewReport> reports, boolean replaceExisting) {
+        String sql = INSERT_REPORT + (replaceExisting ? REPLACE_EXISTING : KEEP_EXISTING) + RETURNING_STATUS;
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setArray(2, connection.createArrayOf("uuid", reports.stream().map(NewReport::id).toArray()));
+            statement.setArray(3, connection.createArrayOf("uuid", reports.stream().map(NewReport::merchantId).toArray()));
+            statement.setArray(4, connection.createArrayOf("date",
+                    reports.stream().map(report -> Date.valueOf(report.reportDate())).toArray()));
+            statement.setArray(5, connection.createArrayOf("numeric", reports.stream().map(NewReport::openingBalance).toArray()));
+            statement.setArray(6, connection.createArrayOf("numeric", reports.stream().map(NewReport::accountBalance).toArray()));
+            statement.setArray(7, connection.createArrayOf("numeric",
+                    reports.stream().map(NewReport::calculatedSalesValue).toArray()));
+            statement.setArray(8, connection.createArrayOf("numeric", reports.stream().map(NewReport::discrepancy).toArray()));
+            statement.setArray(9, connection.createArrayOf("varchar",
+                    reports.stream().map(report -> report.status().name()).toArray()));
+            return statement;
+        }, (rs, rowNum) -> ReconciliationStatus.valueOf(rs.getString("status")));
+    }
+    
+    private static String paged(String sql, Collection<UUID> merchantIds, UUID afterId, int limit, List<Object> args) {
+        args.add(afterId);
+        String filter = "";
+        if (merchantIds != null) {
+            args.add(merchantIds.toArray(new UUID[0]));
+            filter = MERCHANT_FILTER;
+        }
+        args.add(limit);
+        return sql.formatted(filter);
+    }
+    
+    private <T> List<T> query(String sql, RowMapper<T> rowMapper, List<Object> args) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                statement.setObject(i + 1, arg instanceof UUID[] ids ? connection.createArrayOf("uuid", ids) : arg);
+            }
+            return statement;
+        }, rowMapper);
+    }
+    
+    public record MerchantSales(UUID merchantId, BigDecimal salesValue) {
+    }
+    
+    public record MerchantBalances(UUID merchantId, BigDecimal openingBalance, BigDecimal closingBalance) {
+    }
+    
+    public record NewReport(UUID id, UUID merchantId, LocalDate reportDate, BigDecimal openingBalance,
+                            BigDecimal accountBalance, BigDecimal calculatedSalesValue, BigDecimal discrepancy,
+                            ReconciliationStatus status) {
+    }
+}
@@ -0,0 +1,76 @@
+package com.mamoru.transactionsystem.reconciliation.infrastructure;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams a merchant's completed orders, merchant credits and payments of one day, each as one amount per
+ * order number and ordered by order number in byte order, so they can be merged in one pass. Streams are
+ * read through server-side cursors and must be read inside a transaction and closed.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderDrillDownRepository {
+    
+    private static final String BY_ORDER_NUMBER = " ORDER BY order_number COLLATE \"C\"";
+    
+    private static final String SELECT_COMPLETED_ORDERS =
+            "SELECT order_number, SUM(total_amount) AS amount FROM orders " +
+            "WHERE merchant_id = ? AND status = 'COMPLETED' AND created_at >= ? AND created_at < ? " +
+            "GROUP BY order_number" + BY_ORDER_NUMBER;
+    
+    /**
+     * Order payment credits of the merchant in the ledger, read through idx_ledger_entries_account_created_at;
+     * an order credited twice shows as one larger amount.
+     */
+    private static final String SELECT_CREDITS =
+            "SELECT reference_id AS order_number, SUM(amount) AS amount FROM ledger_entries " +
+            "WHERE account_type = 'MERCHANT' AND account_id = ? AND direction = 'CREDIT' " +
+            "AND posting_type = 'ORDER_PAYMENT' AND created_at >= ? AND created_at < ? " +
+            "GROUP BY reference_id" + BY_ORDER_NUMBER;
+    
+    private static final String SELECT_PAYMENTS =
+            "SELECT o.order_number, SUM(p.amount) AS amount FROM orders o JOIN payments p ON p.order_id = o.id " +
+            "WHERE o.merchant_id = ? AND o.created_at >= ? AND o.created_at < ? AND p.status = 'COMPLETED' " +
+            "GROUP BY o.order_number" + BY_ORDER_NUMBER;
+    
+    private static final RowMapper<OrderAmount> ROW_MAPPER = (rs, rowNum) -> new OrderAmount(
+            rs.getString("order_number"), rs.getBigDecimal("amount"));
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public Stream<OrderAmount> streamCompletedOrders(UUID merchantId, LocalDate date, int fetchSize) {
+        return stream(SELECT_COMPLETED_ORDERS, merchantId, date, fetchSize);
+    }
+    
+    public Stream<OrderAmount> streamCredits(UUID merchantId, LocalDate date, int fetchSize) {
+        return stream(SELECT_CREDITS, merchantId, date, fetchSize);
+    }
+    
+    public Stream<OrderAmount> streamPayments(UUID merchantId, LocalDate date, int fetchSize) {
+        return stream(SELECT_PAYMENTS, merchantId, date, fetchSize);
+    }
+    
+    private Stream<OrderAmount> stream(String sql, UUID merchantId, LocalDate date, int fetchSize) {
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, merchantId);
+            statement.setTimestamp(2, Timestamp.valueOf(date.atStartOfDay()));
+            statement.setTimestamp(3, Timestamp.valueOf(date.plusDays(1).atStartOfDay()));
+            return statement;
+        }, ROW_MAPPER);
+    }
+    
+    public record OrderAmount(String orderNumber, BigDecimal amount) {
+    }
+}
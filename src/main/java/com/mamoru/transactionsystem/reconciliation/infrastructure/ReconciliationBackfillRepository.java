@@ -0,0 +1,177 @@
+package com.mamoru.transactionsystem.reconciliation.infrastructure;
+
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillChunkStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillJob;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillProgress;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Backfill jobs and their chunks, one per report date. The chunk rows are the checkpoint of a job:
+ * a chunk is locked while it runs and marked completed in the transaction that writes its reports.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationBackfillRepository {
+    
+    private static final String INSERT_JOB =
+            "INSERT INTO reconciliation_backfill_jobs (id, from_date, to_date, merchant_ids, replace_existing, status, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_CHUNK =
+            "INSERT INTO reconciliation_backfill_chunks (id, job_id, report_date, status) VALUES (?, ?, ?, ?)";
+    
+    private static final String SELECT_JOB =
+            "SELECT id, from_date, to_date, merchant_ids, replace_existing, status, created_at, finished_at " +
+            "FROM reconciliation_backfill_jobs";
+    
+    /**
+     * The earliest pending chunk of the job no other worker has locked.
+     */
+    private static final String LOCK_NEXT_PENDING_CHUNK =
+            "SELECT id, report_date, attempts FROM reconciliation_backfill_chunks " +
+            "WHERE job_id = ? AND status = 'PENDING' ORDER BY report_date LIMIT 1 FOR UPDATE SKIP LOCKED";
+    
+    private static final String COMPLETE_CHUNK =
+            "UPDATE reconciliation_backfill_chunks SET status = 'COMPLETED', merchants_reconciled = ?, discrepancies = ?, " +
+            "last_error = NULL, completed_at = ? WHERE id = ?";
+    
+    /**
+     * Counts a failed attempt; the chunk stays pending for a retry until it runs out of attempts.
+     */
+    private static final String RECORD_CHUNK_FAILURE =
+            "UPDATE reconciliation_backfill_chunks SET attempts = attempts + 1, last_error = ?, " +
+            "status = CASE WHEN attempts + 1 >= ? THEN 'FAILED' ELSE 'PENDING' END WHERE id = ?";
+    
+    private static final String REOPEN_FAILED_CHUNKS =
+            "UPDATE reconciliation_backfill_chunks SET status = 'PENDING', attempts = 0 WHERE job_id = ? AND status = 'FAILED'";
+    
+    private static final String SELECT_PROGRESS =
+            "SELECT COUNT(*) AS total_chunks, " +
+            "       COUNT(*) FILTER (WHERE status = 'COMPLETED') AS completed_chunks, " +
+            "       COUNT(*) FILTER (WHERE status = 'FAILED') AS failed_chunks, " +
+            "       COALESCE(SUM(merchants_reconciled), 0) AS merchants_reconciled, " +
+            "       COALESCE(SUM(discrepancies), 0) AS discrepancies " +
+            "FROM reconciliation_backfill_chunks WHERE job_id = ?";
+    
+    private static final String UPDATE_JOB_STATUS =
+            "UPDATE reconciliation_backfill_jobs SET status = ?, finished_at = ? WHERE id = ?";
+    
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private static final RowMapper<ReconciliationBackfillJob> JOB_MAPPER = (rs, rowNum) -> {
+        Array merchantIds = rs.getArray("merchant_ids");
+        Timestamp finishedAt = rs.getTimestamp("finished_at");
+        return ReconciliationBackfillJob.builder()
+                .id(rs.getObject("id", UUID.class))
+                .fromDate(rs.getDate("from_date").toLocalDate())
+                .toDate(rs.getDate("to_date").toLocalDate())
+                .merchantIds(merchantIds == null ? null : List.of((UUID[]) merchantIds.getArray()))
+                .replaceExisting(rs.getBoolean("replace_existing"))
+                .status(BackfillJobStatus.valueOf(rs.getString("status")))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .finishedAt(finishedAt == null ? null : finishedAt.toLocalDateTime())
+                .build();
+    };
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Inserts a running job with one pending chunk per date of its range.
+     */
+    public ReconciliationBackfillJob insertJob(LocalDate fromDate, LocalDate toDate, List<UUID> merchantIds,
+                                               boolean replaceExisting) {
+        ReconciliationBackfillJob job = ReconciliationBackfillJob.builder()
+                .id(UuidV7Generator.next())
+                .fromDate(fromDate)
+                .toDate(toDate)
+                .merchantIds(merchantIds == null ? null : List.copyOf(merchantIds))
+                .replaceExisting(replaceExisting)
+                .status(BackfillJobStatus.RUNNING)
+                .createdAt(LocalDateTime.now())
+                .build();
+        
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_JOB);
+            statement.setObject(1, job.getId());
+            statement.setDate(2, Date.valueOf(fromDate));
+            statement.setDate(3, Date.valueOf(toDate));
+            statement.setArray(4, merchantIds == null ? null
+                    : connection.createArrayOf("uuid", merchantIds.toArray(new UUID[0])));
+            statement.setBoolean(5, replaceExisting);
+            statement.setString(6, job.getStatus().name());
+            statement.setTimestamp(7, Timestamp.valueOf(job.getCreatedAt()));
+            return statement;
+        });
+        
+        List<LocalDate> reportDates = fromDate.datesUntil(toDate.plusDays(1)).toList();
+        jdbcTemplate.batchUpdate(INSERT_CHUNK, reportDates, reportDates.size(), (statement, reportDate) -> {
+            statement.setObject(1, UuidV7Generator.next());
+            statement.setObject(2, job.getId());
+            statement.setDate(3, Date.valueOf(reportDate));
+            statement.setString(4, BackfillChunkStatus.PENDING.name());
+        });
+        return job;
+    }
+    
+    public Optional<ReconciliationBackfillJob> findJob(UUID jobId) {
+        return jdbcTemplate.query(SELECT_JOB + " WHERE id = ?", JOB_MAPPER, jobId).stream().findFirst();
+    }
+    
+    public List<ReconciliationBackfillJob> findJobsByStatus(BackfillJobStatus status) {
+        return jdbcTemplate.query(SELECT_JOB + " WHERE status = ? ORDER BY id", JOB_MAPPER, status.name());
+    }
+    
+    /**
+     * Locks the next pending chunk of the job until the surrounding transaction ends.
+     */
+    public Optional<Chunk> lockNextPendingChunk(UUID jobId) {
+        return jdbcTemplate.query(LOCK_NEXT_PENDING_CHUNK, (rs, rowNum) -> new Chunk(
+                        rs.getObject("id", UUID.class), jobId, rs.getDate("report_date").toLocalDate(), rs.getInt("attempts")),
+                jobId).stream().findFirst();
+    }
+    
+    public void completeChunk(UUID chunkId, long merchantsReconciled, long discrepancies) {
+        jdbcTemplate.update(COMPLETE_CHUNK, merchantsReconciled, discrepancies, Timestamp.valueOf(LocalDateTime.now()), chunkId);
+    }
+    
+    public void recordChunkFailure(UUID chunkId, String error, int maxAttempts) {
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        jdbcTemplate.update(RECORD_CHUNK_FAILURE, lastError, maxAttempts, chunkId);
+    }
+    
+    /**
+     * Makes the failed chunks of the job pending again with their attempts reset.
+     * @return the number of chunks reopened
+     */
+    public int reopenFailedChunks(UUID jobId) {
+        return jdbcTemplate.update(REOPEN_FAILED_CHUNKS, jobId);
+    }
+    
+    public void updateJobStatus(UUID jobId, BackfillJobStatus status, LocalDateTime finishedAt) {
+        jdbcTemplate.update(UPDATE_JOB_STATUS, status.name(), finishedAt == null ? null : Timestamp.valueOf(finishedAt), jobId);
+    }
+    
+    public ReconciliationBackfillProgress findProgress(ReconciliationBackfillJob job) {
+        return jdbcTemplate.queryForObject(SELECT_PROGRESS, (rs, rowNum) -> new ReconciliationBackfillProgress(job,
+                rs.getLong("total_chunks"), rs.getLong("completed_chunks"), rs.getLong("failed_chunks"),
+                rs.getLong("merchants_reconciled"), rs.getLong("discrepancies")), job.getId());
+    }
+    
+    public record Chunk(UUID id, UUID jobId, LocalDate reportDate, int attempts) {
+    }
+}
@@ -0,0 +1,81 @@
+package com.mamoru.transactionsystem.reconciliation.infrastructure;
+
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReportView;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads reconciliation reports for export over JDBC, joined with the merchant name in the same query
+ * so no merchant is loaded per report.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationReportExportRepository {
+    
+    private static final String SELECT_REPORTS =
+            "SELECT r.id, r.merchant_id, m.name AS merchant_name, r.report_date, r.opening_balance, r.account_balance, " +
+            "r.calculated_sales_value, r.discrepancy, r.status, r.created_at " +
+            "FROM reconciliation_reports r JOIN merchants m ON m.id = r.merchant_id WHERE TRUE";
+    
+    private static final RowMapper<ReconciliationReportView> ROW_MAPPER = (rs, rowNum) -> new ReconciliationReportView(
+            rs.getObject("id", UUID.class),
+            rs.getObject("merchant_id", UUID.class),
+            rs.getString("merchant_name"),
+            rs.getDate("report_date").toLocalDate(),
+            rs.getBigDecimal("opening_balance"),
+            rs.getBigDecimal("account_balance"),
+            rs.getBigDecimal("calculated_sales_value"),
+            rs.getBigDecimal("discrepancy"),
+            ReconciliationStatus.valueOf(rs.getString("status")),
+            rs.getTimestamp("created_at").toLocalDateTime());
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Streams the reports in the range ordered by report date and merchant id, through a server-side cursor
+     * that holds {@code fetchSize} rows at a time. Must run inside a transaction, or the driver reads
+     * the whole result into memory.
+     * @param from inclusive first report date, or null
+     * @param to inclusive last report date, or null
+     * @param merchantId only this merchant's reports, or null for all merchants
+     */
+    public void stream(LocalDate from, LocalDate to, UUID merchantId, int fetchSize,
+                       Consumer<ReconciliationReportView> consumer) {
+        StringBuilder sql = new StringBuilder(SELECT_REPORTS);
+        List<Object> args = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND r.report_date >= ?");
+            args.add(Date.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND r.report_date <= ?");
+            args.add(Date.valueOf(to));
+        }
+        if (merchantId != null) {
+            sql.append(" AND r.merchant_id = ?");
+            args.add(merchantId);
+        }
+        sql.append(" ORDER BY r.report_date, r.merchant_id");
+        
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(ROW_MAPPER.mapRow(resultSet, resultSet.getRow())));
+    }
+}
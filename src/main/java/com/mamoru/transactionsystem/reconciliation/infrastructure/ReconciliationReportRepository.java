@@ -2,6 +2,7 @@ package com.mamoru.transactionsystem.reconciliation.infrastructure;
 
 import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReport;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -15,10 +16,15 @@ public interface ReconciliationReportRepository extends JpaRepository<Reconcilia
     
     Optional<ReconciliationReport> findByMerchantAndReportDate(Merchant merchant, LocalDate reportDate);
     
+    @EntityGraph(attributePaths = "merchant")
     Optional<ReconciliationReport> findByMerchantIdAndReportDate(UUID merchantId, LocalDate reportDate);
     
     List<ReconciliationReport> findByMerchant(Merchant merchant);
     
+    /**
+     * Reports of a merchant with the merchant fetched in the same query, since every response includes its name.
+     */
+    @EntityGraph(attributePaths = "merchant")
     List<ReconciliationReport> findByMerchantId(UUID merchantId);
     
     List<ReconciliationReport> findByReportDate(LocalDate reportDate);
@@ -0,0 +1,113 @@
+package com.mamoru.transactionsystem.reconciliation.infrastructure;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Leases on the merchant shards of a report date. Lease times are taken from the database clock,
+ * so instances with skewed clocks agree on when a lease expires. Every statement commits on its own.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationShardLeaseRepository {
+    
+    private static final String LEASE_UNTIL = "LOCALTIMESTAMP + ? * INTERVAL '1 millisecond'";
+    
+    private static final String CREATE_SHARDS =
+            "INSERT INTO reconciliation_shard_leases (report_date, shard, shard_count) " +
+            "SELECT ?, shard, ? FROM generate_series(0, ? - 1) AS shard " +
+            "ON CONFLICT (report_date, shard) DO NOTHING";
+    
+    private static final String CLAIMABLE =
+            "completed_at IS NULL AND attempts < ? AND (leased_until IS NULL OR leased_until < LOCALTIMESTAMP)";
+    
+    /**
+     * Leases the lowest incomplete shard that is unleased or whose lease expired and has attempts left,
+     * skipping shards another instance is claiming at the same moment, and counts the attempt.
+     */
+    private static final String CLAIM_SHARD =
+            "UPDATE reconciliation_shard_leases l SET owner = ?, leased_until = " + LEASE_UNTIL + ", " +
+            "attempts = l.attempts + 1 " +
+            "FROM (SELECT report_date, shard FROM reconciliation_shard_leases " +
+            "      WHERE report_date = ? AND " + CLAIMABLE + " " +
+            "      ORDER BY shard LIMIT 1 FOR UPDATE SKIP LOCKED) c " +
+            "WHERE l.report_date = c.report_date AND l.shard = c.shard " +
+            "RETURNING l.shard, l.shard_count";
+    
+    private static final String RENEW =
+            "UPDATE reconciliation_shard_leases SET leased_until = " + LEASE_UNTIL + " " +
+            "WHERE report_date = ? AND shard = ? AND owner = ? AND completed_at IS NULL";
+    
+    private static final String COMPLETE =
+            "UPDATE reconciliation_shard_leases SET completed_at = LOCALTIMESTAMP, leased_until = NULL " +
+            "WHERE report_date = ? AND shard = ? AND owner = ? AND completed_at IS NULL";
+    
+    /**
+     * Hands a shard back on shutdown without counting the attempt against it.
+     */
+    private static final String RELEASE =
+            "UPDATE reconciliation_shard_leases SET owner = NULL, leased_until = NULL, attempts = attempts - 1 " +
+            "WHERE report_date = ? AND shard = ? AND owner = ? AND completed_at IS NULL";
+    
+    private static final String SELECT_HAS_CLAIMABLE =
+            "SELECT EXISTS (SELECT 1 FROM reconciliation_shard_leases WHERE report_date = ? AND " + CLAIMABLE + ")";
+    
+    private static final String SELECT_INCOMPLETE_DATES =
+            "SELECT DISTINCT report_date FROM reconciliation_shard_leases " +
+            "WHERE completed_at IS NULL AND report_date >= ? ORDER BY report_date";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Creates the shard rows of the report date unless another instance already did.
+     */
+    public void createShards(LocalDate reportDate, int shardCount) {
+        jdbcTemplate.update(CREATE_SHARDS, Date.valueOf(reportDate), shardCount, shardCount);
+    }
+    
+    /**
+     * @param maxAttempts claims per shard; a shard claimed that often is not leased again
+     */
+    public Optional<ClaimedShard> claim(LocalDate reportDate, String owner, long leaseMs, int maxAttempts) {
+        return jdbcTemplate.query(CLAIM_SHARD, (rs, rowNum) -> new ClaimedShard(rs.getInt("shard"), rs.getInt("shard_count")),
+                owner, leaseMs, Date.valueOf(reportDate), maxAttempts).stream().findFirst();
+    }
+    
+    /**
+     * Extends a lease held by the owner.
+     * @return false if the lease was lost to another instance after expiring, or the shard is completed
+     */
+    public boolean renew(LocalDate reportDate, int shard, String owner, long leaseMs) {
+        return jdbcTemplate.update(RENEW, leaseMs, Date.valueOf(reportDate), shard, owner) == 1;
+    }
+    
+    /**
+     * @return false if the lease was lost to another instance after expiring
+     */
+    public boolean complete(LocalDate reportDate, int shard, String owner) {
+        return jdbcTemplate.update(COMPLETE, Date.valueOf(reportDate), shard, owner) == 1;
+    }
+    
+    public void release(LocalDate reportDate, int shard, String owner) {
+        jdbcTemplate.update(RELEASE, Date.valueOf(reportDate), shard, owner);
+    }
+    
+    public boolean hasClaimableShards(LocalDate reportDate, int maxAttempts) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_HAS_CLAIMABLE, Boolean.class,
+                Date.valueOf(reportDate), maxAttempts));
+    }
+    
+    public List<LocalDate> findIncompleteDates(LocalDate since) {
+        return jdbcTemplate.query(SELECT_INCOMPLETE_DATES, (rs, rowNum) -> rs.getDate("report_date").toLocalDate(),
+                Date.valueOf(since));
+    }
+    
+    public record ClaimedShard(int shard, int shardCount) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.mamoru.transactionsystem.reconciliation.presentation;
+
+import com.mamoru.transactionsystem.common.dto.ApiResponse;
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationBackfillRunner;
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationBackfillService;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillJob;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillProgress;
+import com.mamoru.transactionsystem.reconciliation.presentation.dto.ReconciliationBackfillRequest;
+import com.mamoru.transactionsystem.reconciliation.presentation.dto.ReconciliationBackfillResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/reconciliation/backfills")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Reconciliation", description = "APIs for merchant account reconciliation")
+public class ReconciliationBackfillController {
+    
+    private final ReconciliationBackfillRunner reconciliationBackfillRunner;
+    private final ReconciliationBackfillService reconciliationBackfillService;
+    
+    @PostMapping
+    @Operation(summary = "Start reconciliation backfill",
+               description = "Re-runs reconciliation for every date of the range, optionally for some merchants only, one date per chunk in the background")
+    public ResponseEntity<ApiResponse<ReconciliationBackfillResponse>> startBackfill(
+            @Valid @RequestBody ReconciliationBackfillRequest request) {
+        log.info("Starting reconciliation backfill from {} to {}", request.getFromDate(), request.getToDate());
+        
+        ReconciliationBackfillJob job = reconciliationBackfillRunner.startJob(request.getFromDate(), request.getToDate(),
+                request.getMerchantIds(), request.isReplaceExisting());
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Reconciliation backfill started",
+                        toResponse(reconciliationBackfillService.getProgress(job.getId()))));
+    }
+    
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get reconciliation backfill", description = "Retrieves a backfill job with its chunk counts")
+    public ResponseEntity<ApiResponse<ReconciliationBackfillResponse>> getBackfill(
+            @Parameter(description = "Backfill job ID", required = true) @PathVariable UUID jobId) {
+        return ResponseEntity.ok(ApiResponse.success(toResponse(reconciliationBackfillService.getProgress(jobId))));
+    }
+    
+    @GetMapping(value = "/{jobId}/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream reconciliation backfill progress",
+               description = "Sends a progress event now and after every chunk, and completes once the job finishes")
+    public SseEmitter streamProgress(
+            @Parameter(description = "Backfill job ID", required = true) @PathVariable UUID jobId) {
+        ReconciliationBackfillProgress current = reconciliationBackfillService.getProgress(jobId);
+        SseEmitter emitter = new SseEmitter();
+        if (current.getJob().getStatus() != BackfillJobStatus.RUNNING) {
+            send(emitter, current);
+            return emitter;
+        }
+        
+        // Subscribe before reading the progress again, so the final event cannot fall in between
+        Runnable unsubscribe = reconciliationBackfillRunner.subscribe(jobId, progress -> send(emitter, progress));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        send(emitter, reconciliationBackfillService.getProgress(jobId));
+        return emitter;
+    }
+    
+    @PostMapping("/{jobId}/resume")
+    @Operation(summary = "Resume reconciliation backfill",
+               description = "Retries the failed dates of a backfill job and runs its pending ones")
+    public ResponseEntity<ApiResponse<ReconciliationBackfillResponse>> resumeBackfill(
+            @Parameter(description = "Backfill job ID", required = true) @PathVariable UUID jobId) {
+        log.info("Resuming reconciliation backfill job ID: {}", jobId);
+        
+        reconciliationBackfillRunner.resumeJob(jobId);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Reconciliation backfill resumed",
+                        toResponse(reconciliationBackfillService.getProgress(jobId))));
+    }
+    
+    private void send(SseEmitter emitter, ReconciliationBackfillProgress progress) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(toResponse(progress)));
+            if (progress.getJob().getStatus() != BackfillJobStatus.RUNNING) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the stream already completed
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private ReconciliationBackfillResponse toResponse(ReconciliationBackfillProgress progress) {
+        ReconciliationBackfillJob job = progress.getJob();
+        return ReconciliationBackfillResponse.builder()
+                .jobId(job.getId())
+                .fromDate(job.getFromDate())
+                .toDate(job.getToDate())
+                .merchantIds(job.getMerchantIds())
+                .replaceExisting(job.isReplaceExisting())
+                .status(job.getStatus())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .totalChunks(progress.getTotalChunks())
+                .completedChunks(progress.getCompletedChunks())
+                .failedChunks(progress.getFailedChunks())
+                .pendingChunks(progress.getPendingChunks())
+                .merchantsReconciled(progress.getMerchantsReconciled())
+                .discrepancies(progress.getDiscrepancies())
+                .build();
+    }
+}
@@ -1,6 +1,8 @@
 package com.mamoru.transactionsystem.reconciliation.presentation;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mamoru.transactionsystem.common.dto.ApiResponse;
+import com.mamoru.transactionsystem.reconciliation.application.OrderDrillDownService;
 import com.mamoru.transactionsystem.reconciliation.application.ReconciliationService;
 import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReport;
 import com.mamoru.transactionsystem.reconciliation.presentation.dto.ReconciliationReportResponse;
@@ -10,9 +12,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -25,6 +31,8 @@ import java.util.UUID;
 public class ReconciliationController {
     
     private final ReconciliationService reconciliationService;
+    private final OrderDrillDownService orderDrillDownService;
+    private final ObjectMapper objectMapper;
     
     @PostMapping("/run")
     @Operation(summary = "Manually trigger reconciliation", 
@@ -40,6 +48,7 @@ public class ReconciliationController {
                 .merchantId(report.getMerchant().getId())
                 .merchantName(report.getMerchant().getName())
                 .reportDate(report.getReportDate())
+                .openingBalance(report.getOpeningBalance())
                 .accountBalance(report.getAccountBalance())
                 .calculatedSalesValue(report.getCalculatedSalesValue())
                 .discrepancy(report.getDiscrepancy())
@@ -66,6 +75,7 @@ public class ReconciliationController {
                 .merchantId(report.getMerchant().getId())
                 .merchantName(report.getMerchant().getName())
                 .reportDate(report.getReportDate())
+                .openingBalance(report.getOpeningBalance())
                 .accountBalance(report.getAccountBalance())
                 .calculatedSalesValue(report.getCalculatedSalesValue())
                 .discrepancy(report.getDiscrepancy())
@@ -91,6 +101,7 @@ public class ReconciliationController {
                         .merchantId(report.getMerchant().getId())
                         .merchantName(report.getMerchant().getName())
                         .reportDate(report.getReportDate())
+                        .openingBalance(report.getOpeningBalance())
                         .accountBalance(report.getAccountBalance())
                         .calculatedSalesValue(report.getCalculatedSalesValue())
                         .discrepancy(report.getDiscrepancy())
@@ -118,6 +129,7 @@ public class ReconciliationController {
                 .merchantId(report.getMerchant().getId())
                 .merchantName(report.getMerchant().getName())
                 .reportDate(report.getReportDate())
+                .openingBalance(report.getOpeningBalance())
                 .accountBalance(report.getAccountBalance())
                 .calculatedSalesValue(report.getCalculatedSalesValue())
                 .discrepancy(report.getDiscrepancy())
@@ -127,5 +139,32 @@ public class ReconciliationController {
         
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    @GetMapping("/reports/{reportDate}/discrepancies")
+    @Operation(summary = "Drill down into a reconciliation discrepancy", 
+               description = "Streams the orders of the day whose completed order, merchant credit and payment disagree "
+                       + "as newline-delimited JSON, ordered by order number")
+    public ResponseEntity<StreamingResponseBody> getOrderDiscrepancies(
+            @Parameter(description = "Merchant ID", required = true) @PathVariable UUID merchantId,
+            @Parameter(description = "Report date (yyyy-MM-dd)", required = true) 
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate reportDate) {
+        log.info("Drilling down into order discrepancies for merchant ID: {} on date: {}", merchantId, reportDate);
+        
+        // Fail before the response is committed; errors while streaming can only cut the body short
+        orderDrillDownService.validateRequest(merchantId);
+        
+        StreamingResponseBody body = outputStream -> orderDrillDownService.findDiscrepancies(merchantId, reportDate, discrepancy -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(discrepancy));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
 }
 
@@ -0,0 +1,135 @@
+package com.mamoru.transactionsystem.reconciliation.presentation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationService;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReportView;
+import com.mamoru.transactionsystem.reconciliation.presentation.dto.ReconciliationReportResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/reconciliation/reports")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Reconciliation", description = "APIs for merchant account reconciliation")
+public class ReconciliationReportExportController {
+    
+    private static final String CSV_HEADER = "id,merchant_id,merchant_name,report_date,opening_balance,account_balance," +
+            "calculated_sales_value,discrepancy,status,created_at";
+    
+    private final ReconciliationService reconciliationService;
+    private final ObjectMapper objectMapper;
+    
+    @GetMapping("/export")
+    @Operation(summary = "Export reconciliation reports", description = "Streams the reconciliation reports of all merchants, "
+            + "or one merchant, in the range as CSV or newline-delimited JSON, ordered by report date and merchant")
+    public ResponseEntity<StreamingResponseBody> exportReports(
+            @Parameter(description = "Only reports on or after this date (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Only reports on or before this date (yyyy-MM-dd)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Only this merchant's reports")
+            @RequestParam(required = false) UUID merchantId,
+            @Parameter(description = "csv or ndjson")
+            @RequestParam(defaultValue = "csv") String format) {
+        log.info("Exporting reconciliation reports from {} to {} as {}", from, to, format);
+        
+        // Fail before the response is committed; errors while streaming can only cut the body short
+        reconciliationService.validateRange(from, to);
+        boolean csv = switch (format.toLowerCase()) {
+            case "csv" -> true;
+            case "ndjson" -> false;
+            default -> throw new IllegalArgumentException("format must be csv or ndjson");
+        };
+        
+        StreamingResponseBody body = csv
+                ? outputStream -> {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                    writer.write(CSV_HEADER);
+                    writer.write('\n');
+                    reconciliationService.exportReports(from, to, merchantId, report -> writeCsv(writer, report));
+                    writer.flush();
+                }
+                : outputStream -> reconciliationService.exportReports(from, to, merchantId, report -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(toResponse(report)));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("reconciliation-reports." + (csv ? "csv" : "ndjson")).build().toString())
+                .body(body);
+    }
+    
+    private void writeCsv(Writer writer, ReconciliationReportView report) {
+        try {
+            writer.write(report.getId() + "," + report.getMerchantId() + "," + csvField(report.getMerchantName()) + ","
+                    + report.getReportDate() + "," + decimal(report.getOpeningBalance()) + ","
+                    + decimal(report.getAccountBalance()) + "," + decimal(report.getCalculatedSalesValue()) + ","
+                    + decimal(report.getDiscrepancy()) + "," + report.getStatus() + "," + report.getCreatedAt());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Quotes a field containing a separator, quote or line break, doubling its quotes.
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    private static String decimal(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+    
+    private ReconciliationReportResponse toResponse(ReconciliationReportView report) {
+        return ReconciliationReportResponse.builder()
+                .id(report.getId())
+                .merchantId(report.getMerchantId())
+                .merchantName(report.getMerchantName())
+                .reportDate(report.getReportDate())
+                .openingBalance(report.getOpeningBalance())
+                .accountBalance(report.getAccountBalance())
+                .calculatedSalesValue(report.getCalculatedSalesValue())
+                .discrepancy(report.getDiscrepancy())
+                .status(report.getStatus())
+                .createdAt(report.getCreatedAt())
+                .build();
+    }
+}
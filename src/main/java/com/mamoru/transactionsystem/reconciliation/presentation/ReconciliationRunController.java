@@ -0,0 +1,46 @@
+package com.mamoru.transactionsystem.reconciliation.presentation;
+
+import com.mamoru.transactionsystem.common.dto.ApiResponse;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationRun;
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationRunner;
+import com.mamoru.transactionsystem.reconciliation.presentation.dto.ReconciliationRunResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/reconciliation/runs")
+@RequiredArgsConstructor
+@Tag(name = "Reconciliation", description = "APIs for merchant account reconciliation")
+public class ReconciliationRunController {
+    
+    private final ReconciliationRunner reconciliationRunner;
+    
+    @GetMapping("/latest")
+    @Operation(summary = "Get latest reconciliation run",
+               description = "Retrieves the progress and failure counts of the reconciliation run over all merchants in progress, or the last one that finished")
+    public ResponseEntity<ApiResponse<ReconciliationRunResponse>> getLatestRun() {
+        ReconciliationRun run = reconciliationRunner.getLatestRun()
+                .orElseThrow(() -> new ResourceNotFoundException("No reconciliation run since startup"));
+        
+        ReconciliationRunResponse response = ReconciliationRunResponse.builder()
+                .reportDate(run.getReportDate())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .finished(run.isFinished())
+                .submitted(run.getSubmitted())
+                .completed(run.getCompleted())
+                .matched(run.getMatched())
+                .discrepancies(run.getDiscrepancies())
+                .failed(run.getFailed())
+                .failedMerchantIds(run.getFailedMerchantIds())
+                .build();
+        
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+}
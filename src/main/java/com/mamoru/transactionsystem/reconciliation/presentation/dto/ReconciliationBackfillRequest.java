@@ -0,0 +1,33 @@
+package com.mamoru.transactionsystem.reconciliation.presentation.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationBackfillRequest {
+    
+    @NotNull(message = "From date is required")
+    private LocalDate fromDate;
+    
+    @NotNull(message = "To date is required")
+    private LocalDate toDate;
+    
+    /**
+     * Merchants to reconcile; omit for all merchants.
+     */
+    @Size(min = 1, max = 10000, message = "Between 1 and 10000 merchant IDs may be given")
+    private List<UUID> merchantIds;
+    
+    private boolean replaceExisting;
+}
@@ -0,0 +1,33 @@
+package com.mamoru.transactionsystem.reconciliation.presentation.dto;
+
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationBackfillResponse {
+    private UUID jobId;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private List<UUID> merchantIds;
+    private boolean replaceExisting;
+    private BackfillJobStatus status;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private long totalChunks;
+    private long completedChunks;
+    private long failedChunks;
+    private long pendingChunks;
+    private long merchantsReconciled;
+    private long discrepancies;
+}
@@ -20,6 +20,7 @@ public class ReconciliationReportResponse {
     private UUID merchantId;
     private String merchantName;
     private LocalDate reportDate;
+    private BigDecimal openingBalance;
     private BigDecimal accountBalance;
     private BigDecimal calculatedSalesValue;
     private BigDecimal discrepancy;
@@ -0,0 +1,28 @@
+package com.mamoru.transactionsystem.reconciliation.presentation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationRunResponse {
+    private LocalDate reportDate;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private boolean finished;
+    private long submitted;
+    private long completed;
+    private long matched;
+    private long discrepancies;
+    private long failed;
+    private List<UUID> failedMerchantIds;
+}
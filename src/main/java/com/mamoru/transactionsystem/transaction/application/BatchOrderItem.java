@@ -0,0 +1,18 @@
+package com.mamoru.transactionsystem.transaction.application;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+/**
+ * One order line of a batch placed by a single user.
+ */
+@Getter
+@AllArgsConstructor
+public class BatchOrderItem {
+    
+    private final UUID merchantId;
+    private final String sku;
+    private final Integer quantity;
+}
@@ -0,0 +1,30 @@
+package com.mamoru.transactionsystem.transaction.application;
+
+import com.mamoru.transactionsystem.transaction.domain.Order;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of one batch item: the placed order, or the reason the item was rejected.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class BatchOrderResult {
+    
+    private final int index;
+    private final Order order;
+    private final String error;
+    
+    public static BatchOrderResult success(int index, Order order) {
+        return new BatchOrderResult(index, order, null);
+    }
+    
+    public static BatchOrderResult failure(int index, String error) {
+        return new BatchOrderResult(index, null, error);
+    }
+    
+    public boolean isSuccess() {
+        return order != null;
+    }
+}
@@ -1,19 +1,31 @@
 package com.mamoru.transactionsystem.transaction.application;
 
+import com.mamoru.transactionsystem.common.config.AppConfig;
 import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.IdGenerator;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPostingType;
 import com.mamoru.transactionsystem.merchant.application.InventoryService;
+import com.mamoru.transactionsystem.merchant.application.MerchantDailySalesService;
 import com.mamoru.transactionsystem.merchant.application.MerchantService;
 import com.mamoru.transactionsystem.merchant.application.ProductService;
+import com.mamoru.transactionsystem.merchant.application.StockReservationEngine;
 import com.mamoru.transactionsystem.merchant.domain.Inventory;
+import com.mamoru.transactionsystem.merchant.domain.MerchantSale;
 import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.domain.ProductSnapshot;
 import com.mamoru.transactionsystem.transaction.domain.Order;
 import com.mamoru.transactionsystem.transaction.domain.OrderStatus;
 import com.mamoru.transactionsystem.transaction.domain.Payment;
 import com.mamoru.transactionsystem.transaction.domain.PaymentStatus;
 import com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderRepository;
+import com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderValidationSnapshot;
 import com.mamoru.transactionsystem.transaction.infrastructure.repository.PaymentRepository;
 import com.mamoru.transactionsystem.user.application.AccountService;
+import com.mamoru.transactionsystem.user.domain.Account;
 import com.mamoru.transactionsystem.user.domain.User;
 import com.mamoru.transactionsystem.user.infrastructure.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
@@ -22,7 +34,17 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -30,6 +52,12 @@ import java.util.UUID;
 @Slf4j
 public class OrderService {
     
+    /**
+     * How far before and after the time encoded in an order number the order row may have been created.
+     */
+    private static final Duration ORDER_NUMBER_CLOCK_SKEW = Duration.ofHours(1);
+    private static final Duration ORDER_NUMBER_MAX_AGE_AT_INSERT = Duration.ofDays(1);
+    
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final UserRepository userRepository;
@@ -37,33 +65,58 @@ public class OrderService {
     private final InventoryService inventoryService;
     private final MerchantService merchantService;
     private final AccountService accountService;
+    private final StockReservationEngine stockReservationEngine;
+    private final IdGenerator idGenerator;
+    private final LedgerService ledgerService;
+    private final MerchantDailySalesService merchantDailySalesService;
+    private final AppConfig appConfig;
     
     @Transactional
     public Order processOrder(UUID userId, UUID merchantId, String sku, Integer quantity) {
         log.info("Processing order for user ID: {}, merchant ID: {}, SKU: {}, quantity: {}", 
                 userId, merchantId, sku, quantity);
         
-        // 1. Validate user exists
-        User user = userRepository.findById(userId)
+        // 1. Load user, product, stock and balance with one query
+        OrderValidationSnapshot snapshot = orderRepository.findValidationSnapshot(userId, merchantId, sku)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+        User user = snapshot.getUser();
         
         // 2. Validate product exists and get details
-        Product product = productService.getProductByMerchantIdAndSku(merchantId, sku);
+        Product product = snapshot.getProduct();
+        if (product == null) {
+            throw new ResourceNotFoundException("Product", "merchantId and sku", merchantId + "/" + sku);
+        }
         
-        // 3. Validate inventory has sufficient stock
-        Inventory inventory = inventoryService.getInventoryByProductId(product.getId());
-        if (!inventory.hasSufficientStock(quantity)) {
-            throw new InvalidOperationException(
-                String.format("Insufficient stock. Available: %d, Requested: %d", 
-                    inventory.getQuantity(), quantity));
+        // 3. Validate inventory has sufficient stock. A stock reservation takes the stock lock-free, so it is
+        // taken right away; a guarded deduction is only checked here and takes the stock at step 9
+        if (snapshot.getAvailableStock() == null) {
+            throw new ResourceNotFoundException("Inventory", "productId", product.getId());
+        }
+        String orderNumber = generateOrderNumber();
+        boolean stockTakenUpFront = stockReservationEngine.isEnabled();
+        if (stockTakenUpFront) {
+            stockReservationEngine.reserve(product.getId(), quantity, orderNumber);
+        } else {
+            if (snapshot.getAvailableStock() < quantity) {
+                throw new InvalidOperationException(
+                    String.format("Insufficient stock. Available: %d, Requested: %d", 
+                        snapshot.getAvailableStock(), quantity));
+            }
         }
         
         // 4. Calculate total amount
         BigDecimal unitPrice = product.getPrice();
         BigDecimal totalAmount = product.calculateTotalPrice(quantity);
         
-        // 5. Check user account has sufficient balance
-        BigDecimal currentBalance = accountService.getBalanceByUserId(userId);
+        // 5. Check user account has sufficient balance. The account row does not hold the balance while the ledger
+        // does; the debit checks the ledger balance again under the account's lock
+        BigDecimal currentBalance = snapshot.getAccountBalance();
+        if (currentBalance == null) {
+            throw new ResourceNotFoundException("Account", "userId", userId);
+        }
+        if (appConfig.getLedger().isEnabled()) {
+            currentBalance = ledgerService.getBalance(LedgerAccount.user(userId));
+        }
         if (currentBalance.compareTo(totalAmount) < 0) {
             throw new InvalidOperationException(
                 String.format("Insufficient balance. Available: %s, Required: %s", 
@@ -71,9 +124,9 @@ public class OrderService {
         }
         
         // 6. Create order
-        String orderNumber = generateOrderNumber();
         Order order = Order.builder()
                 .orderNumber(orderNumber)
+                .createdAt(issuedAt(orderNumber))
                 .user(user)
                 .product(product)
                 .merchant(product.getMerchant())
@@ -89,25 +142,31 @@ public class OrderService {
             // 7. Process payment: Deduct from user account
             accountService.debitAccount(userId, totalAmount, orderNumber);
             
-            // 8. Credit merchant account
-            merchantService.creditMerchantAccount(merchantId, totalAmount);
+            // 8. Credit merchant account and journal the payment
+            merchantService.creditMerchantAccount(merchantId, totalAmount, orderNumber);
+            ledgerService.post(orderPayment(order, product.getCurrency()));
             
-            // 9. Deduct inventory
-            inventoryService.deductInventory(product.getId(), quantity, orderNumber);
+            // 9. Deduct inventory (unless the stock was already taken up front). Done last, so the inventory
+            // row lock is held only until commit; a guarded deduction that matches no row fails the order
+            if (!stockTakenUpFront) {
+                inventoryService.deductInventory(product.getId(), quantity, orderNumber);
+            }
             
             // 10. Create payment record
             Payment payment = Payment.builder()
                     .order(order)
+                    .createdAt(order.getCreatedAt())
                     .paymentMethod("PREPAID_ACCOUNT")
                     .amount(totalAmount)
                     .status(PaymentStatus.COMPLETED)
-                    .transactionId("PAY-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase())
+                    .transactionId(generatePaymentTransactionId())
                     .build();
             paymentRepository.save(payment);
             
-            // 11. Mark order as completed
+            // 11. Mark order as completed and count it in the merchant's daily sales
             order.markAsCompleted();
             order = orderRepository.save(order);
+            merchantDailySalesService.recordSales(List.of(merchantSale(order)));
             
             log.info("Order processed successfully. Order number: {}", orderNumber);
             return order;
@@ -120,6 +179,7 @@ public class OrderService {
             // Create failed payment record
             Payment payment = Payment.builder()
                     .order(order)
+                    .createdAt(order.getCreatedAt())
                     .paymentMethod("PREPAID_ACCOUNT")
                     .amount(totalAmount)
                     .status(PaymentStatus.FAILED)
@@ -130,6 +190,159 @@ public class OrderService {
         }
     }
     
+    /**
+     * Places a batch of orders for one user in a single transaction.
+     * Products, inventories and the account are loaded once per key and every item is checked
+     * against the running stock and balance. Accepted items are applied with one account debit,
+     * one deduction per inventory and one credit per merchant; rejected items are only reported.
+     */
+    @Transactional
+    public List<BatchOrderResult> processOrderBatch(UUID userId, List<BatchOrderItem> items) {
+        log.info("Processing order batch for user ID: {} with {} items", userId, items.size());
+        
+        // 1. Validate user exists and load the account once
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+        Account account = accountService.getAccountByUserId(userId);
+        
+        // 2. Resolve SKUs to products through the catalog cache, with one query per merchant for the misses
+        Map<UUID, Set<String>> skusByMerchant = new LinkedHashMap<>();
+        for (BatchOrderItem item : items) {
+            skusByMerchant.computeIfAbsent(item.getMerchantId(), id -> new HashSet<>()).add(item.getSku());
+        }
+        Map<String, ProductSnapshot> products = new HashMap<>();
+        skusByMerchant.forEach((merchantId, skus) ->
+                productService.getProductSnapshots(merchantId, skus)
+                        .forEach(product -> products.put(productKey(merchantId, product.getSku()), product)));
+        
+        // 3. Load all inventories with their current product rows in one query. Prices are read from these
+        // rows, as a single order reads them, never from the cache, which may hold a price changed since
+        Map<UUID, Inventory> inventories = new HashMap<>();
+        if (!products.isEmpty()) {
+            inventoryService.getInventoriesByProductIds(products.values().stream().map(ProductSnapshot::getId).toList())
+                    .forEach(inventory -> inventories.put(inventory.getProduct().getId(), inventory));
+        }
+        
+        // 4. Validate every item against the running stock and balance. With stock reservations
+        // the in-memory counter is the running stock, so each accepted item reserves right away
+        boolean reserveStock = stockReservationEngine.isEnabled();
+        Map<UUID, Integer> availableStock = new HashMap<>();
+        inventories.forEach((productId, inventory) -> availableStock.put(productId, inventory.getQuantity()));
+        // The ledger balance is locked up front, so no other order can spend it before the batch debit
+        BigDecimal availableBalance = appConfig.getLedger().isEnabled()
+                ? ledgerService.lockBalance(LedgerAccount.user(userId))
+                : account.getBalance();
+        
+        List<BatchOrderResult> results = new ArrayList<>(items.size());
+        List<Order> orders = new ArrayList<>();
+        for (int index = 0; index < items.size(); index++) {
+            BatchOrderItem item = items.get(index);
+            ProductSnapshot product = products.get(productKey(item.getMerchantId(), item.getSku()));
+            if (product == null) {
+                results.add(BatchOrderResult.failure(index, String.format(
+                        "Product not found with merchantId and sku: '%s'", productKey(item.getMerchantId(), item.getSku()))));
+                continue;
+            }
+            
+            Integer stock = availableStock.get(product.getId());
+            if (stock == null) {
+                results.add(BatchOrderResult.failure(index, String.format(
+                        "Inventory not found with productId: '%s'", product.getId())));
+                continue;
+            }
+            if (!reserveStock && stock < item.getQuantity()) {
+                results.add(BatchOrderResult.failure(index, String.format(
+                        "Insufficient stock. Available: %d, Requested: %d", stock, item.getQuantity())));
+                continue;
+            }
+            
+            Product currentProduct = inventories.get(product.getId()).getProduct();
+            BigDecimal totalAmount = currentProduct.calculateTotalPrice(item.getQuantity());
+            if (availableBalance.compareTo(totalAmount) < 0) {
+                results.add(BatchOrderResult.failure(index, String.format(
+                        "Insufficient balance. Available: %s, Required: %s", availableBalance, totalAmount)));
+                continue;
+            }
+            
+            String orderNumber = generateOrderNumber();
+            if (reserveStock) {
+                if (stockReservationEngine.tryReserve(product.getId(), item.getQuantity(), orderNumber).isEmpty()) {
+                    results.add(BatchOrderResult.failure(index, String.format(
+                            "Insufficient stock. Available: %d, Requested: %d", 
+                            stockReservationEngine.getAvailableStock(product.getId()), item.getQuantity())));
+                    continue;
+                }
+            } else {
+                availableStock.put(product.getId(), stock - item.getQuantity());
+            }
+            availableBalance = availableBalance.subtract(totalAmount);
+            
+            // The inventory's product and a merchant reference give the associations without loading the rows
+            Order order = Order.builder()
+                    .orderNumber(orderNumber)
+                    .createdAt(issuedAt(orderNumber))
+                    .user(user)
+                    .product(currentProduct)
+                    .merchant(merchantService.getMerchantReference(product.getMerchantId()))
+                    .sku(item.getSku())
+                    .quantity(item.getQuantity())
+                    .unitPrice(currentProduct.getPrice())
+                    .totalAmount(totalAmount)
+                    .status(OrderStatus.PENDING)
+                    .build();
+            orders.add(order);
+            results.add(BatchOrderResult.success(index, order));
+        }
+        
+        if (orders.isEmpty()) {
+            log.info("Order batch rejected all {} items for user ID: {}", items.size(), userId);
+            return results;
+        }
+        
+        // 5. Apply accepted items: one debit, one deduction per inventory, one credit per merchant
+        // (reserved stock is deducted later by the reservation flusher)
+        Map<String, BigDecimal> debits = new LinkedHashMap<>();
+        Map<UUID, Map<String, Integer>> deductions = new LinkedHashMap<>();
+        Map<UUID, BigDecimal> credits = new LinkedHashMap<>();
+        for (Order order : orders) {
+            debits.put(order.getOrderNumber(), order.getTotalAmount());
+            if (!reserveStock) {
+                deductions.computeIfAbsent(order.getProduct().getId(), id -> new LinkedHashMap<>())
+                        .put(order.getOrderNumber(), order.getQuantity());
+            }
+            credits.merge(order.getMerchant().getId(), order.getTotalAmount(), BigDecimal::add);
+        }
+        
+        String batchReference = idGenerator.nextId("BAT");
+        accountService.debitAccountBatch(account, debits);
+        deductions.forEach((productId, quantities) ->
+                inventoryService.deductInventoryBatch(inventories.get(productId), quantities));
+        credits.forEach((merchantId, amount) ->
+                merchantService.creditMerchantAccount(merchantId, amount, batchReference));
+        ledgerService.post(orders.stream()
+                .map(order -> orderPayment(order, order.getProduct().getCurrency()))
+                .toList());
+        
+        // 6. Persist orders and payments; inserts are sent as JDBC batches
+        orders.forEach(Order::markAsCompleted);
+        orderRepository.saveAll(orders);
+        merchantDailySalesService.recordSales(orders.stream().map(this::merchantSale).toList());
+        paymentRepository.saveAll(orders.stream()
+                .map(order -> Payment.builder()
+                        .order(order)
+                        .createdAt(order.getCreatedAt())
+                        .paymentMethod("PREPAID_ACCOUNT")
+                        .amount(order.getTotalAmount())
+                        .status(PaymentStatus.COMPLETED)
+                        .transactionId(generatePaymentTransactionId())
+                        .build())
+                .toList());
+        
+        log.info("Order batch {} processed. Succeeded: {}, failed: {}", 
+                batchReference, orders.size(), items.size() - orders.size());
+        return results;
+    }
+    
     @Transactional(readOnly = true)
     public Order getOrderById(UUID orderId) {
         log.debug("Fetching order by ID: {}", orderId);
@@ -140,14 +353,47 @@ public class OrderService {
     @Transactional(readOnly = true)
     public Order getOrderByOrderNumber(String orderNumber) {
         log.debug("Fetching order by order number: {}", orderNumber);
-        return orderRepository.findByOrderNumber(orderNumber)
+        // Order numbers encode when they were issued, which bounds created_at to one or two monthly partitions
+        Optional<LocalDateTime> issuedAt = idGenerator.issuedAt(orderNumber)
+                .map(instant -> LocalDateTime.ofInstant(instant, ZoneId.systemDefault()));
+        Optional<Order> order = issuedAt.isPresent()
+                ? orderRepository.findByOrderNumberAndCreatedAtBetween(orderNumber,
+                    issuedAt.get().minus(ORDER_NUMBER_CLOCK_SKEW), issuedAt.get().plus(ORDER_NUMBER_MAX_AGE_AT_INSERT))
+                : orderRepository.findByOrderNumber(orderNumber);
+        return order
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "orderNumber", orderNumber));
     }
     
+    private LedgerPosting orderPayment(Order order, String currency) {
+        return LedgerPosting.transfer(LedgerPostingType.ORDER_PAYMENT,
+                LedgerAccount.user(order.getUser().getId()), LedgerAccount.merchant(order.getMerchant().getId()),
+                order.getTotalAmount(), currency, order.getOrderNumber());
+    }
+    
+    private MerchantSale merchantSale(Order order) {
+        return new MerchantSale(order.getMerchant().getId(), order.getCreatedAt(), order.getTotalAmount());
+    }
+    
+    /**
+     * When the order number was issued. Orders are stamped with it, so a reused order number has the same
+     * created_at and the partitioned unique key on both rejects it; payments take their order's created_at.
+     */
+    private LocalDateTime issuedAt(String orderNumber) {
+        return idGenerator.issuedAt(orderNumber)
+                .map(instant -> LocalDateTime.ofInstant(instant, ZoneId.systemDefault()))
+                .orElseGet(LocalDateTime::now);
+    }
+    
     private String generateOrderNumber() {
-        return "ORD-" + LocalDateTime.now().format(
-                java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) 
-                + "-" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+        return idGenerator.nextId("ORD");
+    }
+    
+    private String generatePaymentTransactionId() {
+        return idGenerator.nextId("PAY");
+    }
+    
+    private String productKey(UUID merchantId, String sku) {
+        return merchantId + "/" + sku;
     }
 }
 
@@ -1,5 +1,6 @@
 package com.mamoru.transactionsystem.transaction.domain;
 
+import com.mamoru.transactionsystem.common.id.UuidV7;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
 import com.mamoru.transactionsystem.merchant.domain.Product;
 import com.mamoru.transactionsystem.user.domain.User;
@@ -26,7 +27,7 @@ import java.util.UUID;
 public class Order {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
     
     @Column(name = "order_number", nullable = false, unique = true, length = 50)
@@ -69,7 +70,10 @@ public class Order {
     
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // OrderService stamps orders with the time encoded in their order number
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
         updatedAt = LocalDateTime.now();
     }
     
@@ -1,5 +1,6 @@
 package com.mamoru.transactionsystem.transaction.domain;
 
+import com.mamoru.transactionsystem.common.id.UuidV7;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +22,7 @@ import java.util.UUID;
 public class Payment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7
     private UUID id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -51,7 +52,10 @@ public class Payment {
     
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        // OrderService stamps payments with their order's created_at, the key they reference the order by
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
         updatedAt = LocalDateTime.now();
     }
     
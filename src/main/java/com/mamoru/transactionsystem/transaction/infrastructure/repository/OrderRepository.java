@@ -20,6 +20,11 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
     
     Optional<Order> findByOrderNumber(String orderNumber);
     
+    /**
+     * Looks up an order by number within a creation time window, so only the partitions covering it are searched.
+     */
+    Optional<Order> findByOrderNumberAndCreatedAtBetween(String orderNumber, LocalDateTime from, LocalDateTime to);
+    
     List<Order> findByUser(User user);
     
     Page<Order> findByUser(User user, Pageable pageable);
@@ -46,5 +51,21 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
             @Param("merchantId") UUID merchantId,
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
+    
+    /**
+     * Loads the user, the product, its stock and the user's balance for an order in one round trip.
+     * Empty only when the user does not exist; missing product, inventory or account come back as nulls.
+     */
+    @Query("SELECT new com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderValidationSnapshot(" +
+           "u, p, i.quantity, a.balance) " +
+           "FROM User u " +
+           "LEFT JOIN Product p ON p.merchant.id = :merchantId AND p.sku = :sku " +
+           "LEFT JOIN Inventory i ON i.product = p " +
+           "LEFT JOIN Account a ON a.user = u " +
+           "WHERE u.id = :userId")
+    Optional<OrderValidationSnapshot> findValidationSnapshot(
+            @Param("userId") UUID userId,
+            @Param("merchantId") UUID merchantId,
+            @Param("sku") String sku);
 }
 
@@ -0,0 +1,20 @@
+package com.mamoru.transactionsystem.transaction.infrastructure.repository;
+
+import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.user.domain.User;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Everything order placement checks before it writes, read with a single query.
+ * Product, stock and balance are null when the product, its inventory or the user's account does not exist.
+ */
+@Value
+public class OrderValidationSnapshot {
+    
+    User user;
+    Product product;
+    Integer availableStock;
+    BigDecimal accountBalance;
+}
@@ -1,8 +1,15 @@
 package com.mamoru.transactionsystem.transaction.presentation;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.mamoru.transactionsystem.common.dto.ApiResponse;
+import com.mamoru.transactionsystem.idempotency.application.IdempotencyService;
+import com.mamoru.transactionsystem.transaction.application.BatchOrderItem;
+import com.mamoru.transactionsystem.transaction.application.BatchOrderResult;
 import com.mamoru.transactionsystem.transaction.application.OrderService;
 import com.mamoru.transactionsystem.transaction.domain.Order;
+import com.mamoru.transactionsystem.transaction.presentation.dto.BatchOrderItemResponse;
+import com.mamoru.transactionsystem.transaction.presentation.dto.BatchOrderRequest;
+import com.mamoru.transactionsystem.transaction.presentation.dto.BatchOrderResponse;
 import com.mamoru.transactionsystem.transaction.presentation.dto.OrderRequest;
 import com.mamoru.transactionsystem.transaction.presentation.dto.OrderResponse;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,6 +22,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -25,39 +33,59 @@ import java.util.UUID;
 public class OrderController {
     
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
     
     @PostMapping
-    @Operation(summary = "Place an order", description = "Places an order, deducts user balance, credits merchant, and deducts inventory. Requires X-User-Id header.")
+    @Operation(summary = "Place an order", description = "Places an order, deducts user balance, credits merchant, and deducts inventory. Requires X-User-Id header. "
+            + "Retries carrying the same Idempotency-Key replay the original response instead of placing the order again.")
     public ResponseEntity<ApiResponse<OrderResponse>> placeOrder(
             @Parameter(description = "User ID (required in header)", required = true) 
             @RequestHeader("X-User-Id") UUID userId,
+            @Parameter(description = "Client-generated key making the request safe to retry")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody OrderRequest request) {
         log.info("Placing order for user ID: {}, merchant ID: {}, SKU: {}, quantity: {}", 
                 userId, request.getMerchantId(), request.getSku(), request.getQuantity());
         
-        Order order = orderService.processOrder(
-                userId,
-                request.getMerchantId(),
-                request.getSku(),
-                request.getQuantity());
+        return idempotencyService.execute(IdempotencyService.SCOPE_ORDER, userId, idempotencyKey, request,
+                new TypeReference<ApiResponse<OrderResponse>>() {},
+                () -> doPlaceOrder(userId, request));
+    }
         
-        OrderResponse response = OrderResponse.builder()
-                .id(order.getId())
-                .orderNumber(order.getOrderNumber())
-                .userId(order.getUser().getId())
-                .productId(order.getProduct().getId())
-                .merchantId(order.getMerchant().getId())
-                .sku(order.getSku())
-                .quantity(order.getQuantity())
-                .unitPrice(order.getUnitPrice())
-                .totalAmount(order.getTotalAmount())
-                .status(order.getStatus())
-                .createdAt(order.getCreatedAt())
-                .updatedAt(order.getUpdatedAt())
+    @PostMapping("/batch")
+    @Operation(summary = "Place a batch of orders", description = "Places up to 1000 orders for one user in a single transaction and reports success or failure per item. Requires X-User-Id header.")
+    public ResponseEntity<ApiResponse<BatchOrderResponse>> placeOrderBatch(
+            @Parameter(description = "User ID (required in header)", required = true) 
+            @RequestHeader("X-User-Id") UUID userId,
+            @Valid @RequestBody BatchOrderRequest request) {
+        log.info("Placing order batch for user ID: {} with {} orders", userId, request.getOrders().size());
+        
+        List<BatchOrderItem> items = request.getOrders().stream()
+                .map(order -> new BatchOrderItem(order.getMerchantId(), order.getSku(), order.getQuantity()))
+                .toList();
+        
+        List<BatchOrderResult> results = orderService.processOrderBatch(userId, items);
+        
+        List<BatchOrderItemResponse> itemResponses = results.stream()
+                .map(result -> BatchOrderItemResponse.builder()
+                        .index(result.getIndex())
+                        .success(result.isSuccess())
+                        .order(result.isSuccess() ? toOrderResponse(result.getOrder()) : null)
+                        .error(result.getError())
+                        .build())
+                .toList();
+        int succeeded = (int) results.stream().filter(BatchOrderResult::isSuccess).count();
+        
+        BatchOrderResponse response = BatchOrderResponse.builder()
+                .total(results.size())
+                .succeeded(succeeded)
+                .failed(results.size() - succeeded)
+                .results(itemResponses)
                 .build();
         
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(ApiResponse.success("Order placed successfully", response));
+        return ResponseEntity.ok(ApiResponse.success(
+                String.format("Order batch processed: %d succeeded, %d failed", succeeded, results.size() - succeeded),
+                response));
     }
     
     @GetMapping("/{orderId}")
@@ -111,5 +139,33 @@ public class OrderController {
         
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    private ResponseEntity<ApiResponse<OrderResponse>> doPlaceOrder(UUID userId, OrderRequest request) {
+        Order order = orderService.processOrder(
+                userId,
+                request.getMerchantId(),
+                request.getSku(),
+                request.getQuantity());
+        
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Order placed successfully", toOrderResponse(order)));
+    }
+
+    private OrderResponse toOrderResponse(Order order) {
+        return OrderResponse.builder()
+                .id(order.getId())
+                .orderNumber(order.getOrderNumber())
+                .userId(order.getUser().getId())
+                .productId(order.getProduct().getId())
+                .merchantId(order.getMerchant().getId())
+                .sku(order.getSku())
+                .quantity(order.getQuantity())
+                .unitPrice(order.getUnitPrice())
+                .totalAmount(order.getTotalAmount())
+                .status(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .updatedAt(order.getUpdatedAt())
+                .build();
+    }
 }
 
@@ -0,0 +1,17 @@
+package com.mamoru.transactionsystem.transaction.presentation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOrderItemResponse {
+    private int index;
+    private boolean success;
+    private OrderResponse order;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.mamoru.transactionsystem.transaction.presentation.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOrderRequest {
+    
+    @NotEmpty(message = "At least one order is required")
+    @Size(max = 1000, message = "A batch may contain at most 1000 orders")
+    @Valid
+    private List<OrderRequest> orders;
+}
@@ -0,0 +1,19 @@
+package com.mamoru.transactionsystem.transaction.presentation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOrderResponse {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BatchOrderItemResponse> results;
+}
@@ -0,0 +1,19 @@
+package com.mamoru.transactionsystem.user.application;
+
+import com.mamoru.transactionsystem.user.domain.AccountTransactionView;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of account history, newest first.
+ */
+@Value
+public class AccountHistoryPage {
+    List<AccountTransactionView> transactions;
+    
+    /**
+     * Opaque position to continue after this page, or null if this is the last page.
+     */
+    String nextCursor;
+}
@@ -0,0 +1,96 @@
+package com.mamoru.transactionsystem.user.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.user.domain.AccountTransactionView;
+import com.mamoru.transactionsystem.user.infrastructure.repository.AccountTransactionHistoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountHistoryService {
+    
+    private final AccountService accountService;
+    private final AccountTransactionHistoryRepository accountTransactionHistoryRepository;
+    private final AppConfig appConfig;
+    
+    /**
+     * Returns a page of the user's account transactions, newest first.
+     * @param cursor the next cursor of the previous page, or null for the first page
+     * @param limit the page size, or null for the default; capped at the configured maximum
+     */
+    @Transactional(readOnly = true)
+    public AccountHistoryPage getHistory(UUID userId, LocalDateTime from, LocalDateTime to, String cursor, Integer limit) {
+        validateRange(from, to);
+        AppConfig.AccountHistory config = appConfig.getAccountHistory();
+        int pageSize = limit == null ? config.getDefaultPageSize() : Math.min(limit, config.getMaxPageSize());
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        
+        UUID accountId = accountService.getAccountByUserId(userId).getId();
+        Cursor after = cursor == null ? null : Cursor.decode(cursor);
+        
+        // One extra row tells whether another page follows
+        List<AccountTransactionView> rows = accountTransactionHistoryRepository.findPage(accountId, from, to,
+                after == null ? null : after.createdAt, after == null ? null : after.id, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return new AccountHistoryPage(rows, null);
+        }
+        
+        List<AccountTransactionView> page = rows.subList(0, pageSize);
+        AccountTransactionView last = page.get(pageSize - 1);
+        return new AccountHistoryPage(page, new Cursor(last.getCreatedAt(), last.getId()).encode());
+    }
+    
+    /**
+     * Passes every transaction of an account in the range to the consumer, oldest first,
+     * holding only one fetch of rows in memory at a time.
+     */
+    @Transactional(readOnly = true)
+    public void exportHistory(UUID accountId, LocalDateTime from, LocalDateTime to,
+                              Consumer<AccountTransactionView> consumer) {
+        validateRange(from, to);
+        accountTransactionHistoryRepository.stream(accountId, from, to,
+                appConfig.getAccountHistory().getExportFetchSize(), consumer);
+    }
+    
+    public void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+    }
+    
+    /**
+     * Position of the last row of a page, encoded as URL-safe base64 of {@code createdAt|id}.
+     */
+    private record Cursor(LocalDateTime createdAt, UUID id) {
+        
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        static Cursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf('|');
+                return new Cursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                        UUID.fromString(decoded.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+}
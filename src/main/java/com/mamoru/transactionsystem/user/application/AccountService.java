@@ -1,22 +1,36 @@
 package com.mamoru.transactionsystem.user.application;
 
+import com.mamoru.transactionsystem.audit.application.AuditTrailService;
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import com.mamoru.transactionsystem.common.concurrency.ContentionContext;
+import com.mamoru.transactionsystem.common.concurrency.ContentionManaged;
+import com.mamoru.transactionsystem.common.config.AppConfig;
 import com.mamoru.transactionsystem.common.exception.InsufficientBalanceException;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.UuidV7Generator;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPostingType;
 import com.mamoru.transactionsystem.payment.gateway.application.PaymentGatewayService;
 import com.mamoru.transactionsystem.user.domain.Account;
 import com.mamoru.transactionsystem.user.domain.AccountTransaction;
 import com.mamoru.transactionsystem.user.domain.AccountTransactionType;
 import com.mamoru.transactionsystem.user.infrastructure.repository.AccountRepository;
 import com.mamoru.transactionsystem.user.infrastructure.repository.AccountTransactionRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
+import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -27,6 +41,10 @@ public class AccountService {
     private final AccountRepository accountRepository;
     private final AccountTransactionRepository accountTransactionRepository;
     private final PaymentGatewayService paymentGatewayService;
+    private final LedgerService ledgerService;
+    private final AuditTrailService auditTrailService;
+    private final AppConfig appConfig;
+    private final EntityManager entityManager;
     
     @Transactional(readOnly = true)
     public Account getAccountByUserId(UUID userId) {
@@ -35,19 +53,28 @@ public class AccountService {
                 .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
     }
     
+    /**
+     * Returns the account's balance, from the ledger while the ledger holds balances.
+     */
     @Transactional(readOnly = true)
     public BigDecimal getBalanceByUserId(UUID userId) {
         Account account = getAccountByUserId(userId);
+        if (appConfig.getLedger().isEnabled()) {
+            return ledgerService.getBalance(LedgerAccount.user(userId));
+        }
         return account.getBalance();
     }
     
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
+    @ContentionManaged("account")
     public Account rechargeAccount(UUID userId, BigDecimal amount) {
         log.info("Recharging account for user ID: {} with amount: {}", userId, amount);
         
-        Account account = accountRepository.findByUserIdWithLock(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
+        if (appConfig.getLedger().isEnabled()) {
+            return rechargeInLedger(userId, amount);
+        }
+        
+        Account account = lockAccount(userId);
         
         BigDecimal balanceBefore = account.getBalance();
         
@@ -69,19 +96,32 @@ public class AccountService {
                 .balanceAfter(balanceAfter)
                 .referenceId(transactionId)
                 .build();
-        accountTransactionRepository.save(transaction);
+        saveAuditTrail(transaction);
+        
+        ledgerService.post(LedgerPosting.transfer(LedgerPostingType.RECHARGE,
+                LedgerAccount.GATEWAY, LedgerAccount.user(userId), amount, account.getCurrency(), transactionId));
         
         log.info("Account recharged successfully. Balance before: {}, after: {}", balanceBefore, balanceAfter);
         return account;
     }
     
+    /**
+     * Debits the account. While the ledger holds balances this only checks the balance and writes the audit row;
+     * the caller journals the posting that moves the money in the same transaction.
+     */
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
+    @ContentionManaged("account")
     public Account debitAccount(UUID userId, BigDecimal amount, String referenceId) {
         log.info("Debiting account for user ID: {} with amount: {}", userId, amount);
         
-        Account account = accountRepository.findByUserIdWithLock(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
+        if (appConfig.getLedger().isEnabled()) {
+            return changeInLedger(userId, AccountTransactionType.DEBIT, amount, referenceId);
+        }
+        if (appConfig.getUserAccount().getDebitStrategy() == AppConfig.UserAccount.DebitStrategy.GUARDED_UPDATE) {
+            return debitAccountGuarded(userId, amount, referenceId);
+        }
+        
+        Account account = lockAccount(userId);
         
         BigDecimal balanceBefore = account.getBalance();
         
@@ -104,19 +144,25 @@ public class AccountService {
                 .balanceAfter(balanceAfter)
                 .referenceId(referenceId)
                 .build();
-        accountTransactionRepository.save(transaction);
+        saveAuditTrail(transaction);
         
         log.info("Account debited successfully. Balance before: {}, after: {}", balanceBefore, balanceAfter);
         return account;
     }
     
+    /**
+     * Credits the account. While the ledger holds balances the caller journals the posting, as for {@link #debitAccount}.
+     */
     @Transactional
-    @Retryable(value = ObjectOptimisticLockingFailureException.class, maxAttempts = 3, backoff = @Backoff(delay = 100))
+    @ContentionManaged("account")
     public Account creditAccount(UUID userId, BigDecimal amount, String referenceId) {
         log.info("Crediting account for user ID: {} with amount: {}", userId, amount);
         
-        Account account = accountRepository.findByUserIdWithLock(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
+        if (appConfig.getLedger().isEnabled()) {
+            return changeInLedger(userId, AccountTransactionType.CREDIT, amount, referenceId);
+        }
+        
+        Account account = lockAccount(userId);
         
         BigDecimal balanceBefore = account.getBalance();
         
@@ -134,10 +180,209 @@ public class AccountService {
                 .balanceAfter(balanceAfter)
                 .referenceId(referenceId)
                 .build();
-        accountTransactionRepository.save(transaction);
+        saveAuditTrail(transaction);
         
         log.info("Account credited successfully. Balance before: {}, after: {}", balanceBefore, balanceAfter);
         return account;
     }
+    
+    /**
+     * Debits several amounts from an already loaded account with a single update,
+     * writing one audit row per reference with the running balance. While the ledger holds balances,
+     * only the balance is checked under the account's ledger lock, as in {@link #debitAccount}.
+     */
+    @Transactional
+    public Account debitAccountBatch(Account account, Map<String, BigDecimal> amountsByReference) {
+        log.info("Debiting {} amounts from account ID: {}", amountsByReference.size(), account.getId());
+        
+        boolean inLedger = appConfig.getLedger().isEnabled();
+        BigDecimal totalAmount = amountsByReference.values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal balanceBefore = inLedger
+                ? ledgerService.lockBalance(LedgerAccount.user(account.getUser().getId()))
+                : account.getBalance();
+        
+        if (balanceBefore.compareTo(totalAmount) < 0) {
+            throw new InsufficientBalanceException(balanceBefore, totalAmount);
+        }
+
+        if (!inLedger) {
+            account.debit(totalAmount);
+            account = accountRepository.save(account);
+        }
+
+        // Create audit trail, one entry per reference
+        List<AccountTransaction> transactions = new ArrayList<>(amountsByReference.size());
+        BigDecimal runningBalance = balanceBefore;
+        for (Map.Entry<String, BigDecimal> debit : amountsByReference.entrySet()) {
+            BigDecimal balanceAfter = runningBalance.subtract(debit.getValue());
+            transactions.add(AccountTransaction.builder()
+                    .account(account)
+                    .transactionType(AccountTransactionType.DEBIT)
+                    .amount(debit.getValue())
+                    .balanceBefore(runningBalance)
+                    .balanceAfter(balanceAfter)
+                    .referenceId(debit.getKey())
+                    .build());
+            runningBalance = balanceAfter;
+        }
+        saveAuditTrail(transactions);
+        
+        log.info("Account debited successfully. Balance before: {}, after: {}", balanceBefore, runningBalance);
+        return account;
+    }
+    
+    /**
+     * Debits with a single conditional UPDATE ... RETURNING. The balance check happens in the
+     * database, so there is no read beforehand and no version conflict to retry; the audit row
+     * is built from the returned balance.
+     */
+    private Account debitAccountGuarded(UUID userId, BigDecimal amount, String referenceId) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Debit amount must be positive");
+        }
+        
+        AccountRepository.BalanceUpdate update = accountRepository.debitIfSufficient(userId, amount)
+                .orElseThrow(() -> debitRejected(userId, amount));
+        
+        BigDecimal balanceAfter = update.getBalance();
+        BigDecimal balanceBefore = balanceAfter.add(amount);
+        
+        Account account = accountRepository.getReferenceById(update.getId());
+        if (Hibernate.isInitialized(account)) {
+            // A copy loaded earlier in this transaction still holds the pre-debit balance
+            entityManager.refresh(account);
+        }
+        
+        // Create audit trail
+        AccountTransaction transaction = AccountTransaction.builder()
+                .account(account)
+                .transactionType(AccountTransactionType.DEBIT)
+                .amount(amount)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .referenceId(referenceId)
+                .build();
+        saveAuditTrail(transaction);
+        
+        log.info("Account debited successfully. Balance before: {}, after: {}", balanceBefore, balanceAfter);
+        return account;
+    }
+    
+    /**
+     * Recharges by journaling the gateway posting; the account row is not written. The account's ledger lock
+     * is only taken after the gateway call, so the audit row's balances are exact without holding it that long.
+     */
+    private Account rechargeInLedger(UUID userId, BigDecimal amount) {
+        Account account = getAccountByUserId(userId);
+        
+        // Call payment gateway to process recharge
+        String transactionId = paymentGatewayService.processRecharge(userId, amount);
+        
+        BigDecimal balanceBefore = ledgerService.lockBalance(LedgerAccount.user(userId));
+        ledgerService.post(LedgerPosting.transfer(LedgerPostingType.RECHARGE,
+                LedgerAccount.GATEWAY, LedgerAccount.user(userId), amount, account.getCurrency(), transactionId));
+        BigDecimal balanceAfter = balanceBefore.add(amount);
+        
+        // Create audit trail
+        AccountTransaction transaction = AccountTransaction.builder()
+                .account(account)
+                .transactionType(AccountTransactionType.RECHARGE)
+                .amount(amount)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .referenceId(transactionId)
+                .build();
+        saveAuditTrail(transaction);
+        
+        log.info("Account recharged successfully. Balance before: {}, after: {}", balanceBefore, balanceAfter);
+        return account;
+    }
+    
+    /**
+     * Checks a debit or credit against the ledger balance under the account's ledger lock and writes its
+     * audit row. The money is moved by the posting the caller journals in the same transaction, such as the
+     * order payment; the lock is held until commit, so no other debit can spend the same balance meanwhile.
+     */
+    private Account changeInLedger(UUID userId, AccountTransactionType transactionType, BigDecimal amount,
+                                   String referenceId) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        
+        Account account = getAccountByUserId(userId);
+        BigDecimal balanceBefore = ledgerService.lockBalance(LedgerAccount.user(userId));
+        
+        BigDecimal balanceAfter;
+        if (transactionType == AccountTransactionType.DEBIT) {
+            if (balanceBefore.compareTo(amount) < 0) {
+                throw new InsufficientBalanceException(balanceBefore, amount);
+            }
+            balanceAfter = balanceBefore.subtract(amount);
+        } else {
+            balanceAfter = balanceBefore.add(amount);
+        }
+        
+        // Create audit trail
+        AccountTransaction transaction = AccountTransaction.builder()
+                .account(account)
+                .transactionType(transactionType)
+                .amount(amount)
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .referenceId(referenceId)
+                .build();
+        saveAuditTrail(transaction);
+        
+        log.info("Account checked against the ledger. Balance before: {}, after: {}", balanceBefore, balanceAfter);
+        return account;
+    }
+    
+    private void saveAuditTrail(AccountTransaction transaction) {
+        if (auditTrailService.isWriteBehind()) {
+            auditTrailService.record(List.of(toAuditRecord(transaction)));
+        } else {
+            accountTransactionRepository.save(transaction);
+        }
+    }
+    
+    private void saveAuditTrail(List<AccountTransaction> transactions) {
+        if (auditTrailService.isWriteBehind()) {
+            auditTrailService.record(transactions.stream().map(this::toAuditRecord).toList());
+        } else {
+            accountTransactionRepository.saveAll(transactions);
+        }
+    }
+    
+    private AuditRecord toAuditRecord(AccountTransaction transaction) {
+        return AuditRecord.builder()
+                .type(AuditRecordType.ACCOUNT_TRANSACTION)
+                .id(UuidV7Generator.next())
+                .subjectId(transaction.getAccount().getId())
+                .transactionType(transaction.getTransactionType().name())
+                .amount(transaction.getAmount())
+                .before(transaction.getBalanceBefore())
+                .after(transaction.getBalanceAfter())
+                .referenceId(transaction.getReferenceId())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+    
+    /**
+     * Loads the account for an update: under an optimistic version check, or with a row lock
+     * when the contention manager has found the account to be hot.
+     */
+    private Account lockAccount(UUID userId) {
+        return (ContentionContext.isPessimistic()
+                ? accountRepository.findByUserIdForUpdate(userId)
+                : accountRepository.findByUserIdWithLock(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
+    }
+    
+    private RuntimeException debitRejected(UUID userId, BigDecimal amount) {
+        Account account = accountRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Account", "userId", userId));
+        return new InsufficientBalanceException(account.getBalance(), amount);
+    }
 }
 
@@ -0,0 +1,21 @@
+package com.mamoru.transactionsystem.user.domain;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only row of an account's transaction history.
+ */
+@Value
+public class AccountTransactionView {
+    UUID id;
+    AccountTransactionType transactionType;
+    BigDecimal amount;
+    BigDecimal balanceBefore;
+    BigDecimal balanceAfter;
+    String referenceId;
+    LocalDateTime createdAt;
+}
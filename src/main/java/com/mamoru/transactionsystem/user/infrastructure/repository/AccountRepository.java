@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
+import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,5 +27,26 @@ public interface AccountRepository extends JpaRepository<Account, UUID> {
     @Lock(LockModeType.OPTIMISTIC)
     @Query("SELECT a FROM Account a WHERE a.user.id = :userId")
     Optional<Account> findByUserIdWithLock(@Param("userId") UUID userId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.user.id = :userId")
+    Optional<Account> findByUserIdForUpdate(@Param("userId") UUID userId);
+    
+    /**
+     * Debits the balance with one conditional statement, bumping the version so optimistic
+     * writers notice the change. Returns no row if the account is missing or the balance is too low.
+     */
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1, " +
+                   "updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE user_id = :userId AND balance >= :amount " +
+                   "RETURNING id, balance",
+           nativeQuery = true)
+    Optional<BalanceUpdate> debitIfSufficient(@Param("userId") UUID userId, @Param("amount") BigDecimal amount);
+    
+    interface BalanceUpdate {
+        UUID getId();
+        
+        BigDecimal getBalance();
+    }
 }
 
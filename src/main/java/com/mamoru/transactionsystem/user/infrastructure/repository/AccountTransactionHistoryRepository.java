@@ -0,0 +1,98 @@
+package com.mamoru.transactionsystem.user.infrastructure.repository;
+
+import com.mamoru.transactionsystem.user.domain.AccountTransactionType;
+import com.mamoru.transactionsystem.user.domain.AccountTransactionView;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Reads account transaction history over JDBC. Pages seek past the last row seen on (created_at, id)
+ * instead of using OFFSET, so every page costs the same however deep it is.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountTransactionHistoryRepository {
+    
+    private static final String SELECT_HISTORY =
+            "SELECT id, transaction_type, amount, balance_before, balance_after, reference_id, created_at " +
+            "FROM account_transactions WHERE account_id = ?";
+    
+    private static final RowMapper<AccountTransactionView> ROW_MAPPER = (rs, rowNum) -> new AccountTransactionView(
+            rs.getObject("id", UUID.class),
+            AccountTransactionType.valueOf(rs.getString("transaction_type")),
+            rs.getBigDecimal("amount"),
+            rs.getBigDecimal("balance_before"),
+            rs.getBigDecimal("balance_after"),
+            rs.getString("reference_id"),
+            rs.getTimestamp("created_at").toLocalDateTime());
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Returns up to {@code limit} transactions of an account, newest first.
+     * @param from inclusive lower bound of created_at, or null
+     * @param to exclusive upper bound of created_at, or null
+     * @param afterCreatedAt created_at of the last row of the previous page, or null for the first page
+     * @param afterId id of the last row of the previous page, or null for the first page
+     */
+    public List<AccountTransactionView> findPage(UUID accountId, LocalDateTime from, LocalDateTime to,
+                                                 LocalDateTime afterCreatedAt, UUID afterId, int limit) {
+        StringBuilder sql = new StringBuilder(SELECT_HISTORY);
+        List<Object> args = new ArrayList<>();
+        args.add(accountId);
+        appendRange(sql, args, from, to);
+        if (afterCreatedAt != null) {
+            sql.append(" AND (created_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(afterCreatedAt));
+            args.add(afterId);
+        }
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+    
+    /**
+     * Streams all transactions of an account in the range, oldest first, through a server-side cursor
+     * that holds {@code fetchSize} rows at a time. Must run inside a transaction, or the driver reads
+     * the whole result into memory.
+     */
+    public void stream(UUID accountId, LocalDateTime from, LocalDateTime to, int fetchSize,
+                       Consumer<AccountTransactionView> consumer) {
+        StringBuilder sql = new StringBuilder(SELECT_HISTORY);
+        List<Object> args = new ArrayList<>();
+        args.add(accountId);
+        appendRange(sql, args, from, to);
+        sql.append(" ORDER BY created_at, id");
+        
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(ROW_MAPPER.mapRow(resultSet, resultSet.getRow())));
+    }
+    
+    private static void appendRange(StringBuilder sql, List<Object> args, LocalDateTime from, LocalDateTime to) {
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+    }
+}
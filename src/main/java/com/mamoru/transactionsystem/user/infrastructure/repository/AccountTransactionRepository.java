@@ -6,11 +6,8 @@ import com.mamoru.transactionsystem.user.domain.AccountTransactionType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,12 +19,5 @@ public interface AccountTransactionRepository extends JpaRepository<AccountTrans
     Page<AccountTransaction> findByAccount(Account account, Pageable pageable);
     
     List<AccountTransaction> findByAccountAndTransactionType(Account account, AccountTransactionType type);
-    
-    @Query("SELECT at FROM AccountTransaction at WHERE at.account.id = :accountId " +
-           "AND at.createdAt BETWEEN :startDate AND :endDate ORDER BY at.createdAt DESC")
-    List<AccountTransaction> findByAccountIdAndDateRange(
-            @Param("accountId") UUID accountId,
-            @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate);
 }
 
@@ -1,11 +1,19 @@
 package com.mamoru.transactionsystem.user.presentation;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mamoru.transactionsystem.common.dto.ApiResponse;
+import com.mamoru.transactionsystem.idempotency.application.IdempotencyService;
+import com.mamoru.transactionsystem.user.application.AccountHistoryPage;
+import com.mamoru.transactionsystem.user.application.AccountHistoryService;
 import com.mamoru.transactionsystem.user.application.AccountService;
 import com.mamoru.transactionsystem.user.application.UserService;
+import com.mamoru.transactionsystem.user.domain.AccountTransactionView;
 import com.mamoru.transactionsystem.user.domain.User;
 import com.mamoru.transactionsystem.user.presentation.dto.AccountBalanceResponse;
 import com.mamoru.transactionsystem.user.presentation.dto.AccountRechargeRequest;
+import com.mamoru.transactionsystem.user.presentation.dto.AccountTransactionPageResponse;
+import com.mamoru.transactionsystem.user.presentation.dto.AccountTransactionResponse;
 import com.mamoru.transactionsystem.user.presentation.dto.UserRequest;
 import com.mamoru.transactionsystem.user.presentation.dto.UserResponse;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,10 +22,16 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 @RestController
@@ -29,6 +43,9 @@ public class UserController {
     
     private final UserService userService;
     private final AccountService accountService;
+    private final AccountHistoryService accountHistoryService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
     
     @PostMapping
     @Operation(summary = "Create a new user", description = "Creates a new user and automatically creates a prepaid account")
@@ -74,21 +91,18 @@ public class UserController {
     }
     
     @PostMapping("/{userId}/accounts/recharge")
-    @Operation(summary = "Recharge user account", description = "Recharges the user's prepaid account via mocked payment gateway")
+    @Operation(summary = "Recharge user account", description = "Recharges the user's prepaid account via mocked payment gateway. "
+            + "Retries carrying the same Idempotency-Key replay the original response instead of charging again.")
     public ResponseEntity<ApiResponse<AccountBalanceResponse>> rechargeAccount(
             @Parameter(description = "User ID", required = true) @PathVariable UUID userId,
+            @Parameter(description = "Client-generated key making the request safe to retry")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody AccountRechargeRequest request) {
         log.info("Recharging account for user ID: {} with amount: {}", userId, request.getAmount());
         
-        var account = accountService.rechargeAccount(userId, request.getAmount());
-        
-        AccountBalanceResponse response = AccountBalanceResponse.builder()
-                .accountId(account.getId())
-                .balance(account.getBalance())
-                .currency(account.getCurrency())
-                .build();
-        
-        return ResponseEntity.ok(ApiResponse.success("Account recharged successfully", response));
+        return idempotencyService.execute(IdempotencyService.SCOPE_RECHARGE, userId, idempotencyKey, request,
+                new TypeReference<ApiResponse<AccountBalanceResponse>>() {},
+                () -> doRechargeAccount(userId, request));
     }
     
     @GetMapping("/{userId}/accounts/balance")
@@ -108,5 +122,84 @@ public class UserController {
         
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+    
+    @GetMapping("/{userId}/accounts/transactions")
+    @Operation(summary = "Get account transaction history", description = "Returns the account's transactions newest first, "
+            + "one page at a time. Pass the nextCursor of a page as cursor to get the next one; it is null on the last page.")
+    public ResponseEntity<ApiResponse<AccountTransactionPageResponse>> getAccountTransactions(
+            @Parameter(description = "User ID", required = true) @PathVariable UUID userId,
+            @Parameter(description = "Only transactions created at or after this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Only transactions created before this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Cursor returned with the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size")
+            @RequestParam(required = false) Integer limit) {
+        log.info("Fetching account transactions for user ID: {}", userId);
+        
+        AccountHistoryPage page = accountHistoryService.getHistory(userId, from, to, cursor, limit);
+        
+        AccountTransactionPageResponse response = AccountTransactionPageResponse.builder()
+                .transactions(page.getTransactions().stream().map(this::toResponse).toList())
+                .nextCursor(page.getNextCursor())
+                .build();
+        
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    @GetMapping(value = "/{userId}/accounts/transactions/export", produces = "application/x-ndjson")
+    @Operation(summary = "Export account transaction history", description = "Streams every transaction of the account "
+            + "in the range as newline-delimited JSON, oldest first")
+    public ResponseEntity<StreamingResponseBody> exportAccountTransactions(
+            @Parameter(description = "User ID", required = true) @PathVariable UUID userId,
+            @Parameter(description = "Only transactions created at or after this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Only transactions created before this time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Exporting account transactions for user ID: {}", userId);
+
+        // Fail before the response is committed; errors while streaming can only cut the body short
+        accountHistoryService.validateRange(from, to);
+        UUID accountId = accountService.getAccountByUserId(userId).getId();
+        
+        StreamingResponseBody body = outputStream -> accountHistoryService.exportHistory(accountId, from, to,
+                transaction -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(toResponse(transaction)));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+    
+    private AccountTransactionResponse toResponse(AccountTransactionView transaction) {
+        return AccountTransactionResponse.builder()
+                .id(transaction.getId())
+                .transactionType(transaction.getTransactionType())
+                .amount(transaction.getAmount())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .referenceId(transaction.getReferenceId())
+                .createdAt(transaction.getCreatedAt())
+                .build();
+    }
+    
+    private ResponseEntity<ApiResponse<AccountBalanceResponse>> doRechargeAccount(UUID userId, AccountRechargeRequest request) {
+        var account = accountService.rechargeAccount(userId, request.getAmount());
+        
+        AccountBalanceResponse response = AccountBalanceResponse.builder()
+                .accountId(account.getId())
+                .balance(accountService.getBalanceByUserId(userId))
+                .currency(account.getCurrency())
+                .build();
+        
+        return ResponseEntity.ok(ApiResponse.success("Account recharged successfully", response));
+    }
 }
 
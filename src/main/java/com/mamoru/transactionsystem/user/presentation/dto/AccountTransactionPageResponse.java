@@ -0,0 +1,17 @@
+package com.mamoru.transactionsystem.user.presentation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransactionPageResponse {
+    private List<AccountTransactionResponse> transactions;
+    private String nextCursor;
+}
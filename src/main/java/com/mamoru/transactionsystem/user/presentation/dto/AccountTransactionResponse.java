@@ -0,0 +1,25 @@
+package com.mamoru.transactionsystem.user.presentation.dto;
+
+import com.mamoru.transactionsystem.user.domain.AccountTransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountTransactionResponse {
+    private UUID id;
+    private AccountTransactionType transactionType;
+    private BigDecimal amount;
+    private BigDecimal balanceBefore;
+    private BigDecimal balanceAfter;
+    private String referenceId;
+    private LocalDateTime createdAt;
+}
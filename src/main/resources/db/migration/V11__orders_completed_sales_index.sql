@@ -0,0 +1,6 @@
+-- Set-based reconciliation aggregates the completed sales of all merchants for a day in one query.
+-- The partial covering index serves it with an index-only range scan over that day, within the one
+-- monthly partition the day falls in, reading only completed orders.
+
+CREATE INDEX idx_orders_completed_created_at_merchant ON orders(created_at, merchant_id)
+    INCLUDE (total_amount) WHERE status = 'COMPLETED';
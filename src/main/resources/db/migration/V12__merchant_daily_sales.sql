@@ -0,0 +1,33 @@
+-- Completed sales per merchant and day, kept up to date as orders complete, so reconciliation reads
+-- one row per merchant instead of aggregating orders. sales_date is the date of the order's created_at,
+-- the same day an order counts towards when orders are aggregated directly.
+
+CREATE TABLE merchant_daily_sales (
+    merchant_id UUID NOT NULL REFERENCES merchants(id) ON DELETE CASCADE,
+    sales_date DATE NOT NULL,
+    sales_value DECIMAL(19, 2) NOT NULL,
+    order_count BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (merchant_id, sales_date)
+);
+
+CREATE INDEX idx_merchant_daily_sales_sales_date ON merchant_daily_sales(sales_date, merchant_id);
+
+-- Sales appended by order transactions in BATCHED mode, without touching the shared rollup row.
+-- The applier folds them into merchant_daily_sales and deletes them in the same transaction.
+CREATE TABLE merchant_daily_sales_deltas (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    merchant_id UUID NOT NULL,
+    sales_date DATE NOT NULL,
+    sales_value DECIMAL(19, 2) NOT NULL,
+    order_count BIGINT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_merchant_daily_sales_deltas_sales_date ON merchant_daily_sales_deltas(sales_date, merchant_id);
+
+INSERT INTO merchant_daily_sales (merchant_id, sales_date, sales_value, order_count)
+SELECT merchant_id, created_at::DATE, SUM(total_amount), COUNT(*)
+FROM orders
+WHERE status = 'COMPLETED'
+GROUP BY merchant_id, created_at::DATE;
@@ -0,0 +1,36 @@
+-- Reconciliation backfill jobs re-run reconciliation over a range of report dates.
+-- A job is split into one chunk per report date. A chunk is claimed by locking its row inside the
+-- transaction that writes its reports and marks it completed, so the chunk table is the checkpoint:
+-- after a crash or restart a job resumes with exactly the chunks that did not commit.
+
+CREATE TABLE reconciliation_backfill_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    from_date DATE NOT NULL,
+    to_date DATE NOT NULL,
+    merchant_ids UUID[],
+    replace_existing BOOLEAN NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP,
+    CONSTRAINT chk_reconciliation_backfill_jobs_dates CHECK (from_date <= to_date),
+    CONSTRAINT chk_reconciliation_backfill_jobs_status CHECK (status IN ('RUNNING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE INDEX idx_reconciliation_backfill_jobs_status ON reconciliation_backfill_jobs(status);
+
+CREATE TABLE reconciliation_backfill_chunks (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    job_id UUID NOT NULL REFERENCES reconciliation_backfill_jobs(id) ON DELETE CASCADE,
+    report_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    merchants_reconciled BIGINT,
+    discrepancies BIGINT,
+    last_error VARCHAR(1000),
+    completed_at TIMESTAMP,
+    CONSTRAINT uk_reconciliation_backfill_chunks_job_date UNIQUE (job_id, report_date),
+    CONSTRAINT chk_reconciliation_backfill_chunks_status CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE INDEX idx_reconciliation_backfill_chunks_pending ON reconciliation_backfill_chunks(job_id, report_date)
+    WHERE status = 'PENDING';
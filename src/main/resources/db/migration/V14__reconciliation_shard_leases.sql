@@ -0,0 +1,20 @@
+-- Shard leases spread the nightly reconciliation run across instances.
+-- Merchants are split into a fixed number of shards by a hash of their id. Every instance creates the
+-- report date's shard rows, then claims unleased shards one at a time, renews the lease while it works
+-- and marks the shard completed. A lease that is not renewed expires, so another instance takes over
+-- the shards of one that died.
+
+CREATE TABLE reconciliation_shard_leases (
+    report_date DATE NOT NULL,
+    shard INTEGER NOT NULL,
+    shard_count INTEGER NOT NULL,
+    owner VARCHAR(255),
+    leased_until TIMESTAMP,
+    completed_at TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT pk_reconciliation_shard_leases PRIMARY KEY (report_date, shard),
+    CONSTRAINT chk_reconciliation_shard_leases_shard CHECK (shard >= 0 AND shard < shard_count)
+);
+
+CREATE INDEX idx_reconciliation_shard_leases_incomplete ON reconciliation_shard_leases(report_date)
+    WHERE completed_at IS NULL;
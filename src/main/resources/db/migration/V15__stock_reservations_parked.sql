@@ -0,0 +1,8 @@
+-- Reservations the flusher could not deduct because the inventory row no longer covers them.
+-- They are parked instead of retried, so one short batch does not stall the flusher, and are
+-- left for an operator to settle with the orders they belong to.
+
+ALTER TABLE stock_reservations ADD COLUMN parked_at TIMESTAMP;
+
+CREATE INDEX idx_stock_reservations_parked_at
+    ON stock_reservations(parked_at) WHERE parked_at IS NOT NULL;
@@ -0,0 +1,4 @@
+-- Count the claims of each shard, so a shard whose run keeps failing or killing its instance is given up
+-- after a bounded number of attempts instead of being claimed again every takeover interval.
+
+ALTER TABLE reconciliation_shard_leases ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,4 @@
+-- Applied journal entries are only kept for the retention period; the cleanup deletes them by applied time.
+
+CREATE INDEX idx_merchant_credit_journal_applied_at
+    ON merchant_credit_journal(applied_at) WHERE applied_at IS NOT NULL;
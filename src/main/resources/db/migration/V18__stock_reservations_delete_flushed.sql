@@ -0,0 +1,13 @@
+-- The flusher now deletes reservations once their quantity is deducted, in the same transaction;
+-- the deduction stays recorded in inventory_transactions. Reservations left are pending or parked.
+
+DELETE FROM stock_reservations WHERE flushed_at IS NOT NULL;
+
+DROP INDEX idx_stock_reservations_pending_created_at;
+DROP INDEX idx_stock_reservations_pending_product_id;
+ALTER TABLE stock_reservations DROP COLUMN flushed_at;
+
+CREATE INDEX idx_stock_reservations_pending_created_at
+    ON stock_reservations(created_at) WHERE parked_at IS NULL;
+CREATE INDEX idx_stock_reservations_pending_product_id
+    ON stock_reservations(product_id) WHERE parked_at IS NULL;
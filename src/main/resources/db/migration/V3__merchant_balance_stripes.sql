@@ -0,0 +1,13 @@
+-- Striped sub-balances for hot merchant accounts
+-- A merchant's total balance is merchants.account_balance plus the sum of its stripes.
+
+CREATE TABLE merchant_balance_stripes (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    merchant_id UUID NOT NULL REFERENCES merchants(id) ON DELETE CASCADE,
+    stripe_index INTEGER NOT NULL,
+    balance DECIMAL(19, 2) DEFAULT 0.00 NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT uk_merchant_balance_stripes_merchant_stripe UNIQUE(merchant_id, stripe_index),
+    CONSTRAINT chk_merchant_balance_stripes_index CHECK (stripe_index >= 0)
+);
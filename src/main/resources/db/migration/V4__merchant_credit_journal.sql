@@ -0,0 +1,18 @@
+-- Asynchronous merchant credit journal
+-- Orders append a pending entry; a background applier settles pending entries per merchant in batches.
+
+CREATE TABLE merchant_credit_journal (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    merchant_id UUID NOT NULL REFERENCES merchants(id) ON DELETE CASCADE,
+    amount DECIMAL(19, 2) NOT NULL,
+    reference_id VARCHAR(100),
+    applied_at TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT chk_merchant_credit_journal_amount CHECK (amount > 0)
+);
+
+-- Only pending entries are ever scanned, so keep the indexes small
+CREATE INDEX idx_merchant_credit_journal_pending_created_at
+    ON merchant_credit_journal(created_at) WHERE applied_at IS NULL;
+CREATE INDEX idx_merchant_credit_journal_pending_merchant_id
+    ON merchant_credit_journal(merchant_id) WHERE applied_at IS NULL;
@@ -0,0 +1,21 @@
+-- Write-behind stock reservations for the in-memory reservation inventory mode
+-- Orders reserve stock from an in-process counter and insert a pending row in the same transaction;
+-- a background flusher deducts the summed quantities from inventory in batches.
+-- Pending rows are what the counters are rebuilt from after a restart.
+
+CREATE TABLE stock_reservations (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    inventory_id UUID NOT NULL REFERENCES inventory(id) ON DELETE CASCADE,
+    product_id UUID NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    quantity INTEGER NOT NULL,
+    reference_id VARCHAR(100),
+    flushed_at TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT chk_stock_reservations_quantity CHECK (quantity > 0)
+);
+
+-- Only pending reservations are ever scanned, so keep the indexes small
+CREATE INDEX idx_stock_reservations_pending_created_at
+    ON stock_reservations(created_at) WHERE flushed_at IS NULL;
+CREATE INDEX idx_stock_reservations_pending_product_id
+    ON stock_reservations(product_id) WHERE flushed_at IS NULL;
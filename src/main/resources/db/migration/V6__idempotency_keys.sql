@@ -0,0 +1,20 @@
+-- Idempotency keys for order placement and account recharge
+-- A key is claimed (IN_PROGRESS) before the request runs and stores the response once it completes,
+-- so a retry with the same key replays the stored response instead of running the request again.
+
+CREATE TABLE idempotency_keys (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    scope VARCHAR(30) NOT NULL,
+    owner_id UUID NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    response_status INTEGER,
+    response_body TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_idempotency_keys_scope_owner_key UNIQUE (scope, owner_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
@@ -0,0 +1,63 @@
+-- Append-only double-entry ledger
+-- Every balance movement is journaled as balanced debit and credit legs sharing a journal_id.
+-- Balances: credits minus debits, seen from the account holder. The GATEWAY clearing account
+-- goes negative by the money that entered the system through recharges.
+
+CREATE TABLE ledger_entries (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    journal_id UUID NOT NULL,
+    account_type VARCHAR(20) NOT NULL,
+    account_id UUID NOT NULL,
+    direction VARCHAR(6) NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    posting_type VARCHAR(30) NOT NULL,
+    reference_id VARCHAR(100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    -- Id of the inserting transaction; the snapshot refresh only folds in entries of finished transactions
+    tx_id XID8 DEFAULT pg_current_xact_id() NOT NULL,
+    CONSTRAINT chk_ledger_entries_amount CHECK (amount > 0),
+    CONSTRAINT chk_ledger_entries_direction CHECK (direction IN ('DEBIT', 'CREDIT'))
+);
+
+CREATE INDEX idx_ledger_entries_account ON ledger_entries(account_type, account_id, tx_id);
+CREATE INDEX idx_ledger_entries_tx_id ON ledger_entries(tx_id);
+CREATE INDEX idx_ledger_entries_reference_id ON ledger_entries(reference_id);
+CREATE INDEX idx_ledger_entries_journal_id ON ledger_entries(journal_id);
+
+-- Balances materialized from the journal, up to the watermark below
+CREATE TABLE ledger_balances (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    account_type VARCHAR(20) NOT NULL,
+    account_id UUID NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL DEFAULT 0,
+    currency VARCHAR(3) NOT NULL,
+    entry_count BIGINT NOT NULL DEFAULT 0,
+    refreshed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT uk_ledger_balances_account UNIQUE(account_type, account_id)
+);
+
+-- Entries of transactions with an id below applied_below are included in ledger_balances
+CREATE TABLE ledger_snapshot_watermark (
+    id SMALLINT PRIMARY KEY,
+    applied_below XID8 NOT NULL,
+    refreshed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT chk_ledger_snapshot_watermark_single_row CHECK (id = 1)
+);
+
+INSERT INTO ledger_snapshot_watermark (id, applied_below) VALUES (1, '0'::xid8);
+
+-- Opening balances: what accounts and merchants held before the ledger existed. Merchant balances include
+-- balance stripes and journaled credits not applied yet.
+INSERT INTO ledger_balances (account_type, account_id, balance, currency)
+SELECT 'USER', a.user_id, a.balance, a.currency
+FROM accounts a;
+
+INSERT INTO ledger_balances (account_type, account_id, balance, currency)
+SELECT 'MERCHANT', m.id,
+       m.account_balance
+       + COALESCE((SELECT SUM(s.balance) FROM merchant_balance_stripes s WHERE s.merchant_id = m.id), 0)
+       + COALESCE((SELECT SUM(j.amount) FROM merchant_credit_journal j
+                   WHERE j.merchant_id = m.id AND j.applied_at IS NULL), 0),
+       m.currency
+FROM merchants m;
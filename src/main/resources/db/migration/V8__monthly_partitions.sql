@@ -0,0 +1,152 @@
+-- Monthly range partitions on created_at for the append-heavy history tables
+-- Partitions are named <table>_pYYYYMM. The partition maintenance job keeps future months created
+-- and detaches months past the retention period; detached partitions stay behind as plain tables.
+--
+-- A primary or unique key on a partitioned table must include the partition key, so the primary keys
+-- become (id, created_at) and order_number is only unique per created_at. Orders are stamped with the time
+-- encoded in their order number, so a reused order number has the same created_at and is rejected by
+-- uk_orders_order_number, which only has to look in the one partition that time falls in.
+--
+-- For the same reason payments can only reference orders through (id, created_at). A payment carries its
+-- order's created_at, so it sits in the same month as its order and is detached with it.
+
+CREATE OR REPLACE FUNCTION ensure_monthly_partitions(parent_table TEXT, from_month DATE, to_month DATE)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_month DATE := date_trunc('month', from_month)::DATE;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    WHILE partition_month <= to_month LOOP
+        partition_name := parent_table || '_p' || to_char(partition_month, 'YYYYMM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, parent_table, partition_month, (partition_month + INTERVAL '1 month')::DATE);
+            created := created + 1;
+        END IF;
+        partition_month := (partition_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Replaced by fk_payments_order on the partitioned tables
+ALTER TABLE payments DROP CONSTRAINT IF EXISTS payments_order_id_fkey;
+
+ALTER TABLE account_transactions RENAME TO account_transactions_unpartitioned;
+ALTER TABLE inventory_transactions RENAME TO inventory_transactions_unpartitioned;
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER TABLE payments RENAME TO payments_unpartitioned;
+
+-- The old index and constraint names are taken until the old tables are dropped
+DROP INDEX IF EXISTS idx_orders_user_id;
+DROP INDEX IF EXISTS idx_orders_merchant_id;
+DROP INDEX IF EXISTS idx_orders_status;
+DROP INDEX IF EXISTS idx_orders_order_number;
+DROP INDEX IF EXISTS idx_account_transactions_account_id;
+DROP INDEX IF EXISTS idx_account_transactions_created_at;
+DROP INDEX IF EXISTS idx_inventory_transactions_inventory_id;
+DROP INDEX IF EXISTS idx_inventory_transactions_created_at;
+DROP INDEX IF EXISTS idx_payments_order_id;
+ALTER TABLE orders_unpartitioned DROP CONSTRAINT IF EXISTS uk_orders_order_number;
+ALTER TABLE account_transactions_unpartitioned DROP CONSTRAINT IF EXISTS account_transactions_pkey;
+ALTER TABLE inventory_transactions_unpartitioned DROP CONSTRAINT IF EXISTS inventory_transactions_pkey;
+ALTER TABLE orders_unpartitioned DROP CONSTRAINT IF EXISTS orders_pkey;
+ALTER TABLE payments_unpartitioned DROP CONSTRAINT IF EXISTS payments_pkey;
+
+CREATE TABLE account_transactions (
+    id UUID DEFAULT gen_random_uuid() NOT NULL,
+    account_id UUID NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    transaction_type VARCHAR(20) NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    balance_before DECIMAL(19, 2) NOT NULL,
+    balance_after DECIMAL(19, 2) NOT NULL,
+    reference_id VARCHAR(100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_account_transaction_type CHECK (transaction_type IN ('RECHARGE', 'DEBIT', 'CREDIT'))
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE inventory_transactions (
+    id UUID DEFAULT gen_random_uuid() NOT NULL,
+    inventory_id UUID NOT NULL REFERENCES inventory(id) ON DELETE CASCADE,
+    transaction_type VARCHAR(20) NOT NULL,
+    quantity INTEGER NOT NULL,
+    quantity_before INTEGER NOT NULL,
+    quantity_after INTEGER NOT NULL,
+    reference_id VARCHAR(100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_inventory_transaction_type CHECK (transaction_type IN ('ADD', 'DEDUCT'))
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE orders (
+    id UUID DEFAULT gen_random_uuid() NOT NULL,
+    order_number VARCHAR(50) NOT NULL,
+    user_id UUID NOT NULL REFERENCES users(id) ON DELETE RESTRICT,
+    product_id UUID NOT NULL REFERENCES products(id) ON DELETE RESTRICT,
+    merchant_id UUID NOT NULL REFERENCES merchants(id) ON DELETE RESTRICT,
+    sku VARCHAR(100) NOT NULL,
+    quantity INTEGER NOT NULL,
+    unit_price DECIMAL(19, 2) NOT NULL,
+    total_amount DECIMAL(19, 2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT chk_orders_quantity CHECK (quantity > 0),
+    CONSTRAINT chk_orders_total_amount CHECK (total_amount >= 0),
+    CONSTRAINT chk_orders_status CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED', 'REFUNDED')),
+    CONSTRAINT uk_orders_order_number UNIQUE (order_number, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE payments (
+    id UUID DEFAULT gen_random_uuid() NOT NULL,
+    order_id UUID NOT NULL,
+    payment_method VARCHAR(50) NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    transaction_id VARCHAR(100),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_payments_order FOREIGN KEY (order_id, created_at) REFERENCES orders(id, created_at),
+    CONSTRAINT chk_payments_amount CHECK (amount >= 0),
+    CONSTRAINT chk_payments_status CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED'))
+) PARTITION BY RANGE (created_at);
+
+-- Indexes are created on every partition
+CREATE INDEX idx_orders_user_id ON orders(user_id, created_at);
+CREATE INDEX idx_orders_merchant_id ON orders(merchant_id, created_at);
+CREATE INDEX idx_orders_status ON orders(status);
+CREATE INDEX idx_account_transactions_account_id ON account_transactions(account_id, created_at);
+CREATE INDEX idx_inventory_transactions_inventory_id ON inventory_transactions(inventory_id, created_at);
+CREATE INDEX idx_payments_order_id ON payments(order_id);
+
+-- Partitions for every month with existing rows, up to three months ahead
+SELECT ensure_monthly_partitions('account_transactions',
+    COALESCE((SELECT MIN(created_at) FROM account_transactions_unpartitioned), CURRENT_DATE)::DATE,
+    (CURRENT_DATE + INTERVAL '3 months')::DATE);
+SELECT ensure_monthly_partitions('inventory_transactions',
+    COALESCE((SELECT MIN(created_at) FROM inventory_transactions_unpartitioned), CURRENT_DATE)::DATE,
+    (CURRENT_DATE + INTERVAL '3 months')::DATE);
+SELECT ensure_monthly_partitions('orders',
+    COALESCE((SELECT MIN(created_at) FROM orders_unpartitioned), CURRENT_DATE)::DATE,
+    (CURRENT_DATE + INTERVAL '3 months')::DATE);
+SELECT ensure_monthly_partitions('payments',
+    COALESCE((SELECT MIN(created_at) FROM orders_unpartitioned), CURRENT_DATE)::DATE,
+    (CURRENT_DATE + INTERVAL '3 months')::DATE);
+
+INSERT INTO account_transactions SELECT id, account_id, transaction_type, amount, balance_before, balance_after,
+    reference_id, created_at FROM account_transactions_unpartitioned;
+INSERT INTO inventory_transactions SELECT id, inventory_id, transaction_type, quantity, quantity_before,
+    quantity_after, reference_id, created_at FROM inventory_transactions_unpartitioned;
+INSERT INTO orders SELECT id, order_number, user_id, product_id, merchant_id, sku, quantity, unit_price,
+    total_amount, status, created_at, updated_at FROM orders_unpartitioned;
+INSERT INTO payments SELECT p.id, p.order_id, p.payment_method, p.amount, p.status, p.transaction_id, o.created_at,
+    p.updated_at FROM payments_unpartitioned p JOIN orders_unpartitioned o ON o.id = p.order_id;
+
+DROP TABLE payments_unpartitioned;
+DROP TABLE orders_unpartitioned;
+DROP TABLE inventory_transactions_unpartitioned;
+DROP TABLE account_transactions_unpartitioned;
@@ -0,0 +1,4 @@
+-- Keyset pagination over an account's history seeks on (created_at, id), so the index carries both.
+-- It supersedes the (account_id, created_at) index; indexes on the partitioned table cascade to partitions.
+CREATE INDEX idx_account_transactions_account_history ON account_transactions(account_id, created_at, id);
+DROP INDEX IF EXISTS idx_account_transactions_account_id;
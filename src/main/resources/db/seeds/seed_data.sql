@@ -54,6 +54,20 @@ INSERT INTO accounts (id, user_id, balance, currency, version, created_at, updat
 ('660e8400-e29b-41d4-a716-446655440004', '550e8400-e29b-41d4-a716-446655440004', 100.00, 'USD', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
 ON CONFLICT (user_id) DO NOTHING;
 
+-- Journal the initial balances as recharges from the gateway, for when the ledger holds balances
+INSERT INTO ledger_entries (id, journal_id, account_type, account_id, direction, amount, currency, posting_type, reference_id, created_at) VALUES
+('bb0e8400-e29b-41d4-a716-446655440000', 'cc0e8400-e29b-41d4-a716-446655440000', 'GATEWAY', '00000000-0000-0000-0000-000000000000', 'DEBIT', 1000.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440000', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440100', 'cc0e8400-e29b-41d4-a716-446655440000', 'USER', '550e8400-e29b-41d4-a716-446655440000', 'CREDIT', 1000.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440000', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440001', 'cc0e8400-e29b-41d4-a716-446655440001', 'GATEWAY', '00000000-0000-0000-0000-000000000000', 'DEBIT', 500.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440001', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440101', 'cc0e8400-e29b-41d4-a716-446655440001', 'USER', '550e8400-e29b-41d4-a716-446655440001', 'CREDIT', 500.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440001', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440002', 'cc0e8400-e29b-41d4-a716-446655440002', 'GATEWAY', '00000000-0000-0000-0000-000000000000', 'DEBIT', 750.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440002', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440102', 'cc0e8400-e29b-41d4-a716-446655440002', 'USER', '550e8400-e29b-41d4-a716-446655440002', 'CREDIT', 750.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440002', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440003', 'cc0e8400-e29b-41d4-a716-446655440003', 'GATEWAY', '00000000-0000-0000-0000-000000000000', 'DEBIT', 2000.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440003', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440103', 'cc0e8400-e29b-41d4-a716-446655440003', 'USER', '550e8400-e29b-41d4-a716-446655440003', 'CREDIT', 2000.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440003', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440004', 'cc0e8400-e29b-41d4-a716-446655440004', 'GATEWAY', '00000000-0000-0000-0000-000000000000', 'DEBIT', 100.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440004', CURRENT_TIMESTAMP),
+('bb0e8400-e29b-41d4-a716-446655440104', 'cc0e8400-e29b-41d4-a716-446655440004', 'USER', '550e8400-e29b-41d4-a716-446655440004', 'CREDIT', 100.00, 'USD', 'RECHARGE', 'SEED-RECHARGE-660e8400-e29b-41d4-a716-446655440004', CURRENT_TIMESTAMP)
+ON CONFLICT (id) DO NOTHING;
+
 -- Seed Merchants
 INSERT INTO merchants (id, name, account_balance, currency, version, created_at, updated_at) VALUES
 ('770e8400-e29b-41d4-a716-446655440000', 'Tech Store', 0.00, 'USD', 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
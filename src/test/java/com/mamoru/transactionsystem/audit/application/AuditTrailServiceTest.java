@@ -0,0 +1,175 @@
+package com.mamoru.transactionsystem.audit.application;
+
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import com.mamoru.transactionsystem.audit.infrastructure.journal.AuditJournal;
+import com.mamoru.transactionsystem.audit.infrastructure.repository.AuditRecordRepository;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditTrailServiceTest {
+    
+    @Mock
+    private AuditJournal auditJournal;
+    
+    @Mock
+    private AuditRecordRepository auditRecordRepository;
+    
+    private AuditTrailService auditTrailService;
+    
+    private final AppConfig appConfig = new AppConfig();
+    
+    @BeforeEach
+    void setUp() {
+        appConfig.getAudit().setMode(AppConfig.Audit.Mode.JOURNAL);
+        auditTrailService = new AuditTrailService(auditJournal, auditRecordRepository, appConfig, new SimpleMeterRegistry());
+        TransactionSynchronizationManager.initSynchronization();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+    
+    @Test
+    void testRecord_CommittedTransactionLoaded() {
+        openEmptyJournal();
+        AuditRecord record = record("ORD-001");
+        when(auditRecordRepository.currentTransactionId()).thenReturn(41L);
+        when(auditJournal.appendTransaction(41L, List.of(record))).thenReturn(new AuditJournal.Position(1L, 7L));
+        
+        auditTrailService.record(List.of(record));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        
+        InOrder inOrder = inOrder(auditJournal);
+        inOrder.verify(auditJournal).awaitDurable(7L);
+        inOrder.verify(auditJournal).appendOutcome(41L, true);
+        
+        assertEquals(1, auditTrailService.loadPendingBatch());
+        verify(auditRecordRepository, times(1)).load(AuditRecordType.ACCOUNT_TRANSACTION, List.of(record));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        verify(auditJournal, times(1)).release(1L);
+    }
+    
+    @Test
+    void testRecord_FailedCommitDiscarded() {
+        openEmptyJournal();
+        when(auditRecordRepository.currentTransactionId()).thenReturn(41L);
+        when(auditJournal.appendTransaction(anyLong(), any())).thenReturn(new AuditJournal.Position(1L, 7L));
+        
+        auditTrailService.record(List.of(record("ORD-001")));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        verify(auditJournal, times(1)).appendOutcome(41L, false);
+        verify(auditJournal, times(1)).release(1L);
+        assertEquals(0, auditTrailService.loadPendingBatch());
+    }
+    
+    @Test
+    void testRecord_RollbackBeforeCommitJournalsNothing() {
+        openEmptyJournal();
+        
+        auditTrailService.record(List.of(record("ORD-001")));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        
+        verifyNoInteractions(auditRecordRepository);
+        verify(auditJournal, never()).appendTransaction(anyLong(), any());
+        assertNull(TransactionSynchronizationManager.getResource(auditTrailService));
+    }
+    
+    @Test
+    void testRecord_RequiresTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+        
+        assertThrows(IllegalStateException.class, () -> auditTrailService.record(List.of(record("ORD-001"))));
+        
+        TransactionSynchronizationManager.initSynchronization();
+    }
+    
+    @Test
+    void testLoadPendingBatch_FailedLoadRetried() {
+        openEmptyJournal();
+        when(auditRecordRepository.currentTransactionId()).thenReturn(41L);
+        when(auditJournal.appendTransaction(anyLong(), any())).thenReturn(new AuditJournal.Position(1L, 7L));
+        auditTrailService.record(List.of(record("ORD-001")));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        
+        auditTrailService.loadPendingBatch();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        
+        verify(auditJournal, never()).release(anyLong());
+        assertEquals(1, auditTrailService.loadPendingBatch());
+    }
+    
+    @Test
+    void testInit_ResolvesInDoubtTransactionsFromDatabase() {
+        AuditJournal.JournaledTransaction committed = new AuditJournal.JournaledTransaction(1L, 41L, List.of(record("ORD-001")));
+        AuditJournal.JournaledTransaction aborted = new AuditJournal.JournaledTransaction(1L, 42L, List.of(record("ORD-002")));
+        AuditJournal.JournaledTransaction inDoubt = new AuditJournal.JournaledTransaction(2L, 43L, List.of(record("ORD-003")));
+        when(auditJournal.open(any(Path.class), anyInt())).thenReturn(new AuditJournal.Recovery(
+                List.of(committed, aborted, inDoubt), Map.of(41L, true, 42L, false)));
+        when(auditRecordRepository.findTransactionStatuses(any())).thenReturn(Map.of(43L, "committed"));
+        
+        auditTrailService.init();
+        
+        verify(auditJournal, times(1)).release(1L);
+        assertEquals(2, auditTrailService.loadPendingBatch());
+        verify(auditRecordRepository, times(1)).load(eq(AuditRecordType.ACCOUNT_TRANSACTION),
+                argThat(records -> records.size() == 2));
+    }
+    
+    private void openEmptyJournal() {
+        when(auditJournal.open(any(Path.class), anyInt())).thenReturn(new AuditJournal.Recovery(List.of(), Map.of()));
+        auditTrailService.init();
+    }
+    
+    /**
+     * Runs the registered synchronizations as for a transaction that attempted to commit.
+     */
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+    
+    private AuditRecord record(String referenceId) {
+        return AuditRecord.builder()
+                .type(AuditRecordType.ACCOUNT_TRANSACTION)
+                .id(UUID.randomUUID())
+                .subjectId(UUID.randomUUID())
+                .transactionType("DEBIT")
+                .amount(BigDecimal.valueOf(30.00))
+                .before(BigDecimal.valueOf(100.00))
+                .after(BigDecimal.valueOf(70.00))
+                .referenceId(referenceId)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
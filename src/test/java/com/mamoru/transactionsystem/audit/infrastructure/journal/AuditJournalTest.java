@@ -0,0 +1,109 @@
+package com.mamoru.transactionsystem.audit.infrastructure.journal;
+
+import com.mamoru.transactionsystem.audit.domain.AuditRecord;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditJournalTest {
+    
+    private static final int SEGMENT_SIZE = 4096;
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void testOpen_RecoversTransactionsAndOutcomes() {
+        AuditJournal journal = new AuditJournal();
+        journal.open(directory, SEGMENT_SIZE);
+        AuditRecord record = record("ORD-001");
+        AuditJournal.Position position = journal.appendTransaction(41L, List.of(record));
+        journal.appendTransaction(42L, List.of(record("ORD-002"), record(null)));
+        journal.appendOutcome(41L, true);
+        journal.awaitDurable(position.sequence());
+        journal.close();
+        
+        AuditJournal.Recovery recovery = new AuditJournal().open(directory, SEGMENT_SIZE);
+        
+        assertEquals(2, recovery.transactions().size());
+        assertEquals(List.of(record), recovery.transactions().get(0).records());
+        assertEquals(2, recovery.transactions().get(1).records().size());
+        assertNull(recovery.transactions().get(1).records().get(1).getReferenceId());
+        assertEquals(Boolean.TRUE, recovery.outcomes().get(41L));
+        assertFalse(recovery.outcomes().containsKey(42L));
+    }
+    
+    @Test
+    void testOpen_StopsAtTornFrame() throws IOException {
+        AuditJournal journal = new AuditJournal();
+        journal.open(directory, SEGMENT_SIZE);
+        journal.appendTransaction(41L, List.of(record("ORD-001")));
+        journal.appendTransaction(42L, List.of(record("ORD-002")));
+        journal.close();
+        
+        // Corrupt the last byte of the second frame's payload
+        Path segment = segments().get(0);
+        int firstFrame = ByteBuffer.wrap(Files.readAllBytes(segment)).getInt();
+        int secondFrame = ByteBuffer.wrap(Files.readAllBytes(segment), 8 + firstFrame, 4).getInt();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), 8 + firstFrame + 8 + secondFrame - 1);
+        }
+        
+        AuditJournal.Recovery recovery = new AuditJournal().open(directory, SEGMENT_SIZE);
+        
+        assertEquals(1, recovery.transactions().size());
+        assertEquals(41L, recovery.transactions().get(0).transactionId());
+    }
+    
+    @Test
+    void testRelease_DeletesSealedSegmentOnceEmpty() throws IOException {
+        AuditJournal journal = new AuditJournal();
+        journal.open(directory, SEGMENT_SIZE);
+        AuditJournal.Position first = journal.appendTransaction(1L, List.of(record("ORD-001")));
+        long transactionId = 2;
+        while (journal.appendTransaction(transactionId, List.of(record("ORD-002"))).segment() == first.segment()) {
+            journal.release(first.segment());
+            transactionId++;
+        }
+        assertEquals(2, segments().size());
+        
+        journal.release(first.segment());
+        
+        assertEquals(1, segments().size());
+        journal.close();
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.sorted().toList();
+        }
+    }
+    
+    private AuditRecord record(String referenceId) {
+        return AuditRecord.builder()
+                .type(AuditRecordType.ACCOUNT_TRANSACTION)
+                .id(UUID.randomUUID())
+                .subjectId(UUID.randomUUID())
+                .transactionType("DEBIT")
+                .amount(new BigDecimal("30.00"))
+                .before(new BigDecimal("100.00"))
+                .after(new BigDecimal("70.00"))
+                .referenceId(referenceId)
+                .createdAt(LocalDateTime.of(2024, 1, 2, 10, 30, 15, 123456000))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mamoru.transactionsystem.common.cache;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationBusTest {
+    
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private CacheInvalidationBus cacheInvalidationBus;
+    
+    @Test
+    void testPublish_Disabled() {
+        cacheInvalidationBus.publish("product", "key");
+        
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+    
+    @Test
+    void testPublish_OnlyEnabledEntities() {
+        appConfig.getCacheInvalidation().setEnabled(true);
+        UUID merchantId = UUID.randomUUID();
+        
+        cacheInvalidationBus.publish("product", merchantId + "/SKU-1");
+        cacheInvalidationBus.publish("account", UUID.randomUUID());
+        
+        verify(jdbcTemplate, times(1)).query(eq("SELECT pg_notify('cache_invalidation', ?)"), any(RowCallbackHandler.class),
+                eq("product:" + merchantId + "/SKU-1"));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+    
+    @Test
+    void testDispatch_EvictsRegisteredEntity() {
+        List<String> evicted = new ArrayList<>();
+        List<String> cleared = new ArrayList<>();
+        cacheInvalidationBus.register("product", evicted::add, () -> cleared.add("product"));
+        
+        cacheInvalidationBus.dispatch("product:abc/SKU:1");
+        cacheInvalidationBus.dispatch("merchant:abc");
+        cacheInvalidationBus.dispatch("malformed");
+        cacheInvalidationBus.clearAll();
+        
+        assertEquals(List.of("abc/SKU:1"), evicted);
+        assertEquals(List.of("product"), cleared);
+    }
+}
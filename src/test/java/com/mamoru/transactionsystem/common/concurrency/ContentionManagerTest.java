@@ -0,0 +1,152 @@
+package com.mamoru.transactionsystem.common.concurrency;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContentionManagerTest {
+    
+    @Mock
+    private EntityManager entityManager;
+    
+    private ContentionManager contentionManager;
+    
+    private static final String KEY = "account:550e8400-e29b-41d4-a716-446655440000";
+    
+    @BeforeEach
+    void setUp() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.getContention().setBaseDelayMs(1);
+        appConfig.getContention().setMaxDelayMs(2);
+        contentionManager = new ContentionManager(appConfig, entityManager, new SimpleMeterRegistry());
+        contentionManager.init();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    
+    @Test
+    void testExecute_RetriesConflictAndSucceeds() throws Throwable {
+        List<Boolean> lockModes = new ArrayList<>();
+        
+        Object result = contentionManager.execute("account", KEY, () -> {
+            lockModes.add(ContentionContext.isPessimistic());
+            if (lockModes.size() == 1) {
+                throw conflict();
+            }
+            return "done";
+        });
+        
+        assertEquals("done", result);
+        assertEquals(List.of(false, false), lockModes);
+        assertTrue(contentionManager.conflictRate(KEY) > 0);
+        assertFalse(ContentionContext.isPessimistic());
+    }
+    
+    @Test
+    void testExecute_LastAttemptLocksPessimistically() throws Throwable {
+        List<Boolean> lockModes = new ArrayList<>();
+        
+        contentionManager.execute("account", "account:other", () -> {
+            lockModes.add(ContentionContext.isPessimistic());
+            if (lockModes.size() < 5 && !ContentionContext.isPessimistic()) {
+                throw conflict();
+            }
+            return null;
+        });
+        
+        assertTrue(lockModes.get(lockModes.size() - 1));
+    }
+    
+    @Test
+    void testExecute_HotKeyLocksPessimisticallyFromFirstAttempt() throws Throwable {
+        makeHot();
+        
+        List<Boolean> lockModes = new ArrayList<>();
+        contentionManager.execute("account", KEY, () -> lockModes.add(ContentionContext.isPessimistic()));
+        
+        assertEquals(List.of(true), lockModes);
+    }
+    
+    @Test
+    void testExecute_HotKeyCoolsDownAfterSuccesses() throws Throwable {
+        makeHot();
+        
+        for (int i = 0; i < 20; i++) {
+            contentionManager.execute("account", KEY, () -> null);
+        }
+        
+        List<Boolean> lockModes = new ArrayList<>();
+        contentionManager.execute("account", KEY, () -> lockModes.add(ContentionContext.isPessimistic()));
+        assertEquals(List.of(false), lockModes);
+    }
+    
+    @Test
+    void testExecute_OtherExceptionsNotRetried() {
+        int[] attempts = new int[1];
+        
+        assertThrows(IllegalStateException.class, () -> contentionManager.execute("account", KEY, () -> {
+            attempts[0]++;
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(1, attempts[0]);
+        assertEquals(0, contentionManager.conflictRate(KEY));
+    }
+    
+    @Test
+    void testExecute_InCallerTransactionFlushesWithoutRetry() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        int[] attempts = new int[1];
+        
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> contentionManager.execute("account", KEY, () -> {
+            attempts[0]++;
+            throw conflict();
+        }));
+        assertEquals(1, attempts[0]);
+        assertTrue(contentionManager.conflictRate(KEY) > 0);
+    }
+    
+    @Test
+    void testExecute_InCallerTransactionConflictOnFlushIsRecorded() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        doThrow(new OptimisticLockException("stale")).when(entityManager).flush();
+        
+        assertThrows(OptimisticLockException.class,
+                () -> contentionManager.execute("account", KEY, () -> "updated"));
+        assertTrue(contentionManager.conflictRate(KEY) > 0);
+    }
+    
+    private void makeHot() throws Throwable {
+        for (int call = 0; call < 2; call++) {
+            int[] attempts = new int[1];
+            contentionManager.execute("account", KEY, () -> {
+                if (attempts[0]++ == 0) {
+                    throw conflict();
+                }
+                return null;
+            });
+        }
+    }
+    
+    private static ObjectOptimisticLockingFailureException conflict() {
+        return new ObjectOptimisticLockingFailureException("Account", "id");
+    }
+}
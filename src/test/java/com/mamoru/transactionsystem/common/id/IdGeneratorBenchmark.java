@@ -0,0 +1,70 @@
+package com.mamoru.transactionsystem.common.id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the Snowflake reference generator with the timestamp plus random UUID references it replaced.
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.mamoru.transactionsystem.common.id.IdGeneratorBenchmark
+ * </pre>
+ * Add {@code -prof gc} to the runner options to compare allocation per reference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGeneratorBenchmark {
+    
+    private final SnowflakeIdGenerator snowflake = new SnowflakeIdGenerator(1, System::currentTimeMillis);
+    
+    @Benchmark
+    public String uuidTimestampReference() {
+        return "ORD-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "-" + UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+    }
+    
+    @Benchmark
+    public String snowflakeReference() {
+        return snowflake.nextId("ORD");
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public String uuidTimestampReferenceContended() {
+        return uuidTimestampReference();
+    }
+    
+    @Benchmark
+    @Threads(8)
+    public String snowflakeReferenceContended() {
+        return snowflakeReference();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdGeneratorBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
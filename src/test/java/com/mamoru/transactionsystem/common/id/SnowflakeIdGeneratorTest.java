@@ -0,0 +1,152 @@
+package com.mamoru.transactionsystem.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+    
+    private static final long NOW = SnowflakeIdGenerator.EPOCH_MILLIS + 86_400_000L;
+    
+    @Test
+    void testNextId_PrefixedCrockfordBase32() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, () -> NOW);
+        
+        String id = generator.nextId("ORD");
+        
+        assertTrue(id.matches("ORD-[0-9A-HJKMNP-TV-Z]{13}"), id);
+    }
+    
+    @Test
+    void testIssuedAt_DecodesTimestamp() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID, () -> NOW);
+        
+        assertEquals(Optional.of(Instant.ofEpochMilli(NOW)), generator.issuedAt(generator.nextId("ORD")));
+        assertEquals(Optional.empty(), generator.issuedAt("ORD-20240101120000-AB12CD"));
+        assertEquals(Optional.empty(), generator.issuedAt("ORD-ZZZZZZZZZZZZZ"));
+    }
+    
+    @Test
+    void testNextId_SortsInIssueOrder() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        
+        String previous = generator.nextId("ORD");
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 1000 == 0) {
+                clock.addAndGet(1);
+            }
+            String next = generator.nextId("ORD");
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            previous = next;
+        }
+    }
+    
+    @Test
+    void testNextLong_EmbedsTimestampNodeAndSequence() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(5, () -> NOW);
+        
+        long first = generator.nextLong();
+        long second = generator.nextLong();
+        
+        int shift = SnowflakeIdGenerator.NODE_BITS + SnowflakeIdGenerator.SEQUENCE_BITS;
+        assertEquals(NOW - SnowflakeIdGenerator.EPOCH_MILLIS, first >>> shift);
+        assertEquals(5, (first >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_NODE_ID);
+        assertEquals(first + 1, second);
+    }
+    
+    @Test
+    void testNextLong_SequenceOverflowBorrowsNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, () -> NOW);
+        
+        long last = 0;
+        for (int i = 0; i <= 1 << SnowflakeIdGenerator.SEQUENCE_BITS; i++) {
+            last = generator.nextLong();
+        }
+        
+        int shift = SnowflakeIdGenerator.NODE_BITS + SnowflakeIdGenerator.SEQUENCE_BITS;
+        assertEquals(NOW - SnowflakeIdGenerator.EPOCH_MILLIS + 1, last >>> shift);
+    }
+    
+    @Test
+    void testNextLong_ClockMovingBackStaysMonotonic() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, clock::get);
+        
+        long before = generator.nextLong();
+        clock.set(NOW - 5_000);
+        
+        assertTrue(generator.nextLong() > before);
+    }
+    
+    @Test
+    void testNextId_DifferentNodesNeverCollide() {
+        SnowflakeIdGenerator first = new SnowflakeIdGenerator(1, () -> NOW);
+        SnowflakeIdGenerator second = new SnowflakeIdGenerator(2, () -> NOW);
+        
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ids.add(first.nextId("ORD")));
+            assertTrue(ids.add(second.nextId("ORD")));
+        }
+    }
+    
+    @Test
+    void testNextId_UniqueUnderConcurrency() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(0, System::currentTimeMillis);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        ids.add(generator.nextId("ORD"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(8 * 20_000, ids.size());
+    }
+    
+    @Test
+    void testConstructor_RejectsInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(-1, () -> NOW));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID + 1, () -> NOW));
+    }
+    
+    @Test
+    void testResolveNodeId_UnsetOnlyAllowedLocally() {
+        assertEquals(7, SnowflakeIdGenerator.resolveNodeId(7, new String[]{"prod"}));
+        assertEquals(0, SnowflakeIdGenerator.resolveNodeId(null, new String[]{"local"}));
+        assertThrows(IllegalStateException.class, () -> SnowflakeIdGenerator.resolveNodeId(null, new String[]{"prod"}));
+        assertThrows(IllegalStateException.class,
+                () -> SnowflakeIdGenerator.resolveNodeId(null, new String[]{"local", "staging"}));
+    }
+    
+    @Test
+    void testResolveNodeId_UnsetRejectedWithoutProfile() {
+        assertThrows(IllegalStateException.class, () -> SnowflakeIdGenerator.resolveNodeId(null, new String[0]));
+        assertEquals(3, SnowflakeIdGenerator.resolveNodeId(3, new String[0]));
+    }
+}
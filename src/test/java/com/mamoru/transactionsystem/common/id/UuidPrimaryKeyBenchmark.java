@@ -0,0 +1,95 @@
+package com.mamoru.transactionsystem.common.id;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Compares random UUIDv4 with time-ordered UUIDv7 primary keys by inserting rows shaped like
+ * account_transactions into an indexed table, reporting insert throughput and primary key index size
+ * every checkpoint. Needs a PostgreSQL database to write to. Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.mamoru.transactionsystem.common.id.UuidPrimaryKeyBenchmark \
+ *     -Dbenchmark.url=jdbc:postgresql://localhost:5432/bench -Dbenchmark.user=postgres -Dbenchmark.password=postgres
+ * </pre>
+ * {@code -Dbenchmark.rows} (default 50,000,000) and {@code -Dbenchmark.checkpoint} (default 5,000,000) change the
+ * scale. Once the v4 index outgrows shared_buffers its inserts touch random leaf pages, so throughput falls
+ * while v7 stays flat; v7 leaf pages also fill up completely instead of being split half-empty.
+ */
+public class UuidPrimaryKeyBenchmark {
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    public static void main(String[] args) throws SQLException {
+        String url = System.getProperty("benchmark.url", "jdbc:postgresql://localhost:5432/transaction_system");
+        long rows = Long.getLong("benchmark.rows", 50_000_000L);
+        long checkpoint = Long.getLong("benchmark.checkpoint", 5_000_000L);
+        
+        try (Connection connection = DriverManager.getConnection(url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true",
+                System.getProperty("benchmark.user", "postgres"), System.getProperty("benchmark.password", "postgres"))) {
+            run(connection, "uuid_bench_v4", UUID::randomUUID, rows, checkpoint);
+            run(connection, "uuid_bench_v7", UuidV7Generator::next, rows, checkpoint);
+        }
+    }
+    
+    private static void run(Connection connection, String table, Supplier<UUID> ids, long rows, long checkpoint)
+            throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (" +
+                    "id UUID PRIMARY KEY, account_id UUID NOT NULL, amount DECIMAL(19, 2) NOT NULL, " +
+                    "reference_id VARCHAR(100), created_at TIMESTAMP NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        
+        System.out.printf("%n%s%n%12s %12s %14s %12s%n", table, "rows", "rows/s", "index MB", "table MB");
+        UUID accountId = UUID.randomUUID();
+        BigDecimal amount = new BigDecimal("10.00");
+        long intervalStart = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table +
+                " (id, account_id, amount, reference_id, created_at) VALUES (?, ?, ?, ?, ?)")) {
+            for (long inserted = 1; inserted <= rows; inserted++) {
+                insert.setObject(1, ids.get());
+                insert.setObject(2, accountId);
+                insert.setBigDecimal(3, amount);
+                insert.setString(4, "ORD-" + inserted);
+                insert.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                insert.addBatch();
+                
+                if (inserted % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+                if (inserted % checkpoint == 0) {
+                    double seconds = (System.nanoTime() - intervalStart) / 1e9;
+                    System.out.printf("%12d %12.0f %14.1f %12.1f%n", inserted, checkpoint / seconds,
+                            relationSizeMb(connection, table + "_pkey"), relationSizeMb(connection, table));
+                    intervalStart = System.nanoTime();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+    
+    private static double relationSizeMb(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_relation_size(?::regclass)")) {
+            statement.setString(1, relation);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1) / (1024.0 * 1024.0);
+            }
+        }
+    }
+}
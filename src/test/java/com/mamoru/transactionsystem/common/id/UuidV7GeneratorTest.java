@@ -0,0 +1,72 @@
+package com.mamoru.transactionsystem.common.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7GeneratorTest {
+    
+    private static final long NOW = 1704067200000L;
+    
+    @Test
+    void testGenerate_VersionVariantAndTimestamp() {
+        UuidV7Generator generator = new UuidV7Generator(() -> NOW, ThreadLocalRandom::current);
+        
+        UUID uuid = generator.generate();
+        
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(Instant.ofEpochMilli(NOW), UuidV7Generator.timestamp(uuid));
+    }
+    
+    @Test
+    void testGenerate_SortsInIssueOrder() {
+        AtomicLong clock = new AtomicLong(NOW);
+        UuidV7Generator generator = new UuidV7Generator(clock::get, ThreadLocalRandom::current);
+        
+        // The canonical string sorts like the unsigned bytes Postgres compares
+        String previous = generator.generate().toString();
+        for (int i = 0; i < 20_000; i++) {
+            if (i % 5000 == 0) {
+                clock.addAndGet(1);
+            }
+            String next = generator.generate().toString();
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            previous = next;
+        }
+    }
+    
+    @Test
+    void testGenerate_CounterOverflowRunsAheadOfClock() {
+        UuidV7Generator generator = new UuidV7Generator(() -> NOW, ThreadLocalRandom::current);
+        
+        UUID last = null;
+        for (int i = 0; i <= 1 << UuidV7Generator.COUNTER_BITS; i++) {
+            last = generator.generate();
+        }
+        
+        assertEquals(Instant.ofEpochMilli(NOW + 1), UuidV7Generator.timestamp(last));
+    }
+    
+    @Test
+    void testGenerate_ClockSteppingBackKeepsOrder() {
+        AtomicLong clock = new AtomicLong(NOW);
+        UuidV7Generator generator = new UuidV7Generator(clock::get, ThreadLocalRandom::current);
+        
+        String before = generator.generate().toString();
+        clock.set(NOW - 1000);
+        String after = generator.generate().toString();
+        
+        assertTrue(after.compareTo(before) > 0, before + " >= " + after);
+    }
+    
+    @Test
+    void testTimestamp_RejectsOtherVersions() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7Generator.timestamp(UUID.randomUUID()));
+    }
+}
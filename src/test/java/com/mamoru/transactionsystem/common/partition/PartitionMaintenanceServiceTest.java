@@ -0,0 +1,71 @@
+package com.mamoru.transactionsystem.common.partition;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionMaintenanceServiceTest {
+    
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private PartitionMaintenanceService partitionMaintenanceService;
+    
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 14);
+    
+    @Test
+    void testMaintain_CreatesMonthsAheadForEveryTable() {
+        partitionMaintenanceService.maintain(TODAY);
+        
+        for (String table : PartitionMaintenanceService.PARTITIONED_TABLES) {
+            verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(Integer.class),
+                    eq(table), eq(LocalDate.of(2025, 3, 1)), eq(LocalDate.of(2025, 6, 1)));
+        }
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class), any());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+    
+    @Test
+    void testMaintain_DetachesPartitionsPastRetention() {
+        appConfig.getPartition().setRetentionMonths(2);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(eq(PartitionMaintenanceService.FIND_PARTITIONS), eq(String.class), eq("orders")))
+                .thenReturn(List.of("orders_p202412", "orders_p202501", "orders_archive", "orders_p202502"));
+        
+        partitionMaintenanceService.maintain(TODAY);
+        
+        verify(jdbcTemplate, times(1)).execute("ALTER TABLE \"orders\" DETACH PARTITION \"orders_p202412\" CONCURRENTLY");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE \"orders\" DETACH PARTITION \"orders_p202501\" CONCURRENTLY");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE \"orders\" DETACH PARTITION \"orders_archive\" CONCURRENTLY");
+        verify(jdbcTemplate, times(1)).execute(anyString());
+    }
+    
+    @Test
+    void testMaintain_FinalizesInterruptedDetach() {
+        appConfig.getPartition().setRetentionMonths(2);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForList(eq(PartitionMaintenanceService.FIND_DETACH_PENDING), eq(String.class), eq("payments")))
+                .thenReturn(List.of("payments_p202411"));
+        
+        partitionMaintenanceService.maintain(TODAY);
+        
+        verify(jdbcTemplate, times(1)).execute("ALTER TABLE \"payments\" DETACH PARTITION \"payments_p202411\" FINALIZE");
+        verify(jdbcTemplate, times(1)).execute(anyString());
+    }
+}
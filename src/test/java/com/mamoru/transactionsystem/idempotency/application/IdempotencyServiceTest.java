@@ -0,0 +1,203 @@
+package com.mamoru.transactionsystem.idempotency.application;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.IdempotencyConflictException;
+import com.mamoru.transactionsystem.idempotency.domain.IdempotencyRecord;
+import com.mamoru.transactionsystem.idempotency.domain.IdempotencyStatus;
+import com.mamoru.transactionsystem.idempotency.infrastructure.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+    
+    @Mock
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+    
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    
+    private IdempotencyService idempotencyService;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final AtomicInteger executions = new AtomicInteger();
+    
+    private static final UUID USER_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final String KEY = "order-key-1";
+    private static final TypeReference<Map<String, Object>> RESPONSE_TYPE = new TypeReference<>() {};
+    
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, objectMapper,
+                new AppConfig(), new SimpleMeterRegistry(), transactionManager);
+        idempotencyService.init();
+    }
+    
+    @Test
+    void testExecute_NoKeyRunsAction() {
+        ResponseEntity<Map<String, Object>> response = execute(null, Map.of("sku", "SKU-001"));
+        
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, executions.get());
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+    
+    @Test
+    void testExecute_FirstRequestRunsAndStoresResponse() {
+        when(idempotencyKeyRepository.tryClaim(any(), eq(IdempotencyService.SCOPE_ORDER), eq(USER_ID), eq(KEY), anyString(), any()))
+                .thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), anyInt(), anyString(), any())).thenReturn(1);
+        
+        ResponseEntity<Map<String, Object>> response = execute(KEY, Map.of("sku", "SKU-001"));
+        
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, executions.get());
+        ArgumentCaptor<UUID> claimId = ArgumentCaptor.forClass(UUID.class);
+        verify(idempotencyKeyRepository).tryClaim(claimId.capture(), any(), any(), any(), anyString(), any());
+        verify(idempotencyKeyRepository, times(1)).complete(eq(claimId.getValue()), eq(201), eq("{\"execution\":1}"), any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+    
+    @Test
+    void testExecute_RetryOnSameInstanceReplaysFromMemory() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), anyInt(), anyString(), any())).thenReturn(1);
+        
+        execute(KEY, Map.of("sku", "SKU-001"));
+        ResponseEntity<Map<String, Object>> replayed = execute(KEY, Map.of("sku", "SKU-001"));
+        
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals(1, replayed.getBody().get("execution"));
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository, times(1)).tryClaim(any(), any(), any(), any(), anyString(), any());
+    }
+    
+    @Test
+    void testExecute_CompletedRecordReplaysFromDatabase() {
+        Map<String, Object> request = Map.of("sku", "SKU-001");
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByScopeAndOwnerIdAndIdempotencyKey(IdempotencyService.SCOPE_ORDER, USER_ID, KEY))
+                .thenReturn(Optional.of(record(idempotencyService.fingerprint(IdempotencyService.SCOPE_ORDER, request), IdempotencyStatus.COMPLETED)));
+        
+        ResponseEntity<Map<String, Object>> replayed = execute(KEY, request);
+        
+        assertEquals(HttpStatus.CREATED, replayed.getStatusCode());
+        assertEquals(7, replayed.getBody().get("execution"));
+        assertEquals(0, executions.get());
+        verify(idempotencyKeyRepository, never()).complete(any(), anyInt(), any(), any());
+    }
+    
+    @Test
+    void testExecute_DifferentRequestWithSameKeyConflicts() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByScopeAndOwnerIdAndIdempotencyKey(IdempotencyService.SCOPE_ORDER, USER_ID, KEY))
+                .thenReturn(Optional.of(record(idempotencyService.fingerprint(IdempotencyService.SCOPE_ORDER, Map.of("sku", "SKU-002")), IdempotencyStatus.COMPLETED)));
+        
+        assertThrows(IdempotencyConflictException.class, () -> execute(KEY, Map.of("sku", "SKU-001")));
+        assertEquals(0, executions.get());
+    }
+    
+    @Test
+    void testExecute_RequestStillInProgressConflicts() {
+        Map<String, Object> request = Map.of("sku", "SKU-001");
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(0);
+        when(idempotencyKeyRepository.findByScopeAndOwnerIdAndIdempotencyKey(IdempotencyService.SCOPE_ORDER, USER_ID, KEY))
+                .thenReturn(Optional.of(record(idempotencyService.fingerprint(IdempotencyService.SCOPE_ORDER, request), IdempotencyStatus.IN_PROGRESS)));
+        
+        assertThrows(IdempotencyConflictException.class, () -> execute(KEY, request));
+        assertEquals(0, executions.get());
+    }
+    
+    @Test
+    void testExecute_FailedRequestReleasesKey() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(1);
+        
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(
+                IdempotencyService.SCOPE_ORDER, USER_ID, KEY, Map.of("sku", "SKU-001"), RESPONSE_TYPE,
+                () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        
+        verify(idempotencyKeyRepository, times(1)).release(any(UUID.class));
+        verify(idempotencyKeyRepository, never()).complete(any(), anyInt(), any(), any());
+        
+        when(idempotencyKeyRepository.complete(any(), anyInt(), anyString(), any())).thenReturn(1);
+        ResponseEntity<Map<String, Object>> retried = execute(KEY, Map.of("sku", "SKU-001"));
+        assertEquals(HttpStatus.CREATED, retried.getStatusCode());
+        assertEquals(1, executions.get());
+    }
+    
+    @Test
+    void testExecute_ClaimTakenOverRollsBack() {
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(1);
+        when(idempotencyKeyRepository.complete(any(), anyInt(), anyString(), any())).thenReturn(0);
+        
+        assertThrows(IdempotencyConflictException.class, () -> execute(KEY, Map.of("sku", "SKU-001")));
+        
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(idempotencyKeyRepository, times(1)).release(any(UUID.class));
+    }
+    
+    @Test
+    void testExecute_AbandonedClaimIsTakenOver() {
+        Map<String, Object> request = Map.of("sku", "SKU-001");
+        IdempotencyRecord abandoned = record(idempotencyService.fingerprint(IdempotencyService.SCOPE_ORDER, request), IdempotencyStatus.IN_PROGRESS);
+        abandoned.setCreatedAt(LocalDateTime.now().minusHours(1));
+        when(idempotencyKeyRepository.tryClaim(any(), any(), any(), any(), anyString(), any())).thenReturn(0, 1);
+        when(idempotencyKeyRepository.findByScopeAndOwnerIdAndIdempotencyKey(IdempotencyService.SCOPE_ORDER, USER_ID, KEY))
+                .thenReturn(Optional.of(abandoned));
+        when(idempotencyKeyRepository.complete(any(), anyInt(), anyString(), any())).thenReturn(1);
+        
+        ResponseEntity<Map<String, Object>> response = execute(KEY, request);
+        
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, executions.get());
+        verify(idempotencyKeyRepository, times(1)).deleteStale(eq(abandoned.getId()), any());
+    }
+    
+    private ResponseEntity<Map<String, Object>> execute(String key, Map<String, Object> request) {
+        return idempotencyService.execute(IdempotencyService.SCOPE_ORDER, USER_ID, key, request, RESPONSE_TYPE,
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(Map.of("execution", executions.incrementAndGet())));
+    }
+    
+    private IdempotencyRecord record(String requestHash, IdempotencyStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        return IdempotencyRecord.builder()
+                .id(UUID.randomUUID())
+                .scope(IdempotencyService.SCOPE_ORDER)
+                .ownerId(USER_ID)
+                .idempotencyKey(KEY)
+                .requestHash(requestHash)
+                .status(status)
+                .responseStatus(201)
+                .responseBody("{\"execution\":7}")
+                .createdAt(now)
+                .completedAt(status == IdempotencyStatus.COMPLETED ? now : null)
+                .expiresAt(now.plusHours(24))
+                .build();
+    }
+}
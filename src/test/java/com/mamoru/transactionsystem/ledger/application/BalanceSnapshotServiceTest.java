@@ -0,0 +1,133 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.ledger.domain.BalanceSnapshot;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccountType;
+import com.mamoru.transactionsystem.ledger.infrastructure.repository.BalanceSnapshotRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceSnapshotServiceTest {
+    
+    @Mock
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private BalanceSnapshotService balanceSnapshotService;
+    
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    private static final LedgerAccount MERCHANT = LedgerAccount.merchant(MERCHANT_ID);
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(2024, 1, 1, 0, 0);
+    
+    @Test
+    void testLatestSettledCutoff_AlignedToIntervalAfterSettleDelay() {
+        appConfig.getBalanceSnapshot().setIntervalMinutes(60);
+        appConfig.getBalanceSnapshot().setSettleDelayMs(300000);
+        
+        assertEquals(LocalDateTime.of(2024, 1, 2, 10, 0),
+                balanceSnapshotService.latestSettledCutoff(LocalDateTime.of(2024, 1, 2, 11, 4)));
+        assertEquals(LocalDateTime.of(2024, 1, 2, 11, 0),
+                balanceSnapshotService.latestSettledCutoff(LocalDateTime.of(2024, 1, 2, 11, 5)));
+        assertEquals(LocalDateTime.of(2024, 1, 1, 23, 0),
+                balanceSnapshotService.latestSettledCutoff(LocalDateTime.of(2024, 1, 2, 0, 1)));
+    }
+    
+    @Test
+    void testTakeSnapshots_FromPreviousCutoff() {
+        LocalDateTime previous = LocalDateTime.of(2024, 1, 2, 9, 0);
+        when(balanceSnapshotRepository.findLatestCutoff()).thenReturn(Optional.of(previous));
+        when(balanceSnapshotRepository.insertSnapshots(previous, LocalDateTime.of(2024, 1, 2, 10, 0))).thenReturn(3);
+        
+        assertEquals(3, balanceSnapshotService.takeSnapshots(LocalDateTime.of(2024, 1, 2, 10, 30)));
+    }
+    
+    @Test
+    void testTakeSnapshots_UsesDatabaseClock() {
+        LocalDateTime previous = LocalDateTime.of(2024, 1, 2, 9, 0);
+        when(balanceSnapshotRepository.currentTime()).thenReturn(LocalDateTime.of(2024, 1, 2, 10, 30));
+        when(balanceSnapshotRepository.findLatestCutoff()).thenReturn(Optional.of(previous));
+        when(balanceSnapshotRepository.insertSnapshots(previous, LocalDateTime.of(2024, 1, 2, 10, 0))).thenReturn(3);
+        
+        assertEquals(3, balanceSnapshotService.takeSnapshots());
+    }
+    
+    @Test
+    void testTakeSnapshots_FillsMissedCutoffs() {
+        LocalDateTime previous = LocalDateTime.of(2024, 1, 2, 22, 0);
+        when(balanceSnapshotRepository.findLatestCutoff()).thenReturn(Optional.of(previous));
+        when(balanceSnapshotRepository.insertSnapshots(previous, LocalDateTime.of(2024, 1, 2, 23, 0))).thenReturn(3);
+        when(balanceSnapshotRepository.insertSnapshots(LocalDateTime.of(2024, 1, 2, 23, 0), LocalDateTime.of(2024, 1, 3, 0, 0)))
+                .thenReturn(3);
+        when(balanceSnapshotRepository.insertSnapshots(LocalDateTime.of(2024, 1, 3, 0, 0), LocalDateTime.of(2024, 1, 3, 1, 0)))
+                .thenReturn(2);
+        
+        assertEquals(8, balanceSnapshotService.takeSnapshots(LocalDateTime.of(2024, 1, 3, 1, 30)));
+        verify(balanceSnapshotRepository, times(3)).insertSnapshots(any(), any());
+    }
+    
+    @Test
+    void testNextCutoff_RestartsAtMidnight() {
+        appConfig.getBalanceSnapshot().setIntervalMinutes(420);
+        
+        assertEquals(LocalDateTime.of(2024, 1, 2, 21, 0), balanceSnapshotService.nextCutoff(LocalDateTime.of(2024, 1, 2, 14, 0)));
+        assertEquals(LocalDateTime.of(2024, 1, 3, 0, 0), balanceSnapshotService.nextCutoff(LocalDateTime.of(2024, 1, 2, 21, 0)));
+    }
+    
+    @Test
+    void testTakeSnapshots_CutoffAlreadyTaken() {
+        when(balanceSnapshotRepository.findLatestCutoff()).thenReturn(Optional.of(LocalDateTime.of(2024, 1, 2, 10, 0)));
+        
+        assertEquals(0, balanceSnapshotService.takeSnapshots(LocalDateTime.of(2024, 1, 2, 10, 30)));
+        verify(balanceSnapshotRepository, never()).insertSnapshots(any(), any());
+    }
+    
+    @Test
+    void testGetBalanceAsOf_SnapshotPlusReplayedEntries() {
+        LocalDateTime snapshotAt = LocalDateTime.of(2024, 1, 2, 10, 0);
+        LocalDateTime time = LocalDateTime.of(2024, 1, 2, 10, 45);
+        when(balanceSnapshotRepository.findEarliestCutoff()).thenReturn(Optional.of(EARLIEST));
+        when(balanceSnapshotRepository.findLatestAtOrBefore(LedgerAccountType.MERCHANT, MERCHANT_ID, time))
+                .thenReturn(Optional.of(new BalanceSnapshot(snapshotAt, BigDecimal.valueOf(100.00))));
+        when(balanceSnapshotRepository.sumEntries(LedgerAccountType.MERCHANT, MERCHANT_ID, snapshotAt, time))
+                .thenReturn(BigDecimal.valueOf(25.00));
+        
+        assertEquals(Optional.of(BigDecimal.valueOf(125.00)), balanceSnapshotService.getBalanceAsOf(MERCHANT, time));
+    }
+    
+    @Test
+    void testGetBalanceAsOf_OnSnapshotCutoff() {
+        LocalDateTime time = LocalDateTime.of(2024, 1, 2, 0, 0);
+        when(balanceSnapshotRepository.findEarliestCutoff()).thenReturn(Optional.of(EARLIEST));
+        when(balanceSnapshotRepository.findLatestAtOrBefore(LedgerAccountType.MERCHANT, MERCHANT_ID, time))
+                .thenReturn(Optional.of(new BalanceSnapshot(time, BigDecimal.valueOf(100.00))));
+        
+        assertEquals(Optional.of(BigDecimal.valueOf(100.00)), balanceSnapshotService.getBalanceAsOf(MERCHANT, time));
+        verify(balanceSnapshotRepository, never()).sumEntries(any(), any(), any(), any());
+    }
+    
+    @Test
+    void testGetBalanceAsOf_BeforeSnapshotsBegin() {
+        when(balanceSnapshotRepository.findEarliestCutoff()).thenReturn(Optional.of(EARLIEST));
+        
+        assertTrue(balanceSnapshotService.getBalanceAsOf(MERCHANT, EARLIEST.minusDays(1)).isEmpty());
+        verify(balanceSnapshotRepository, never()).findLatestAtOrBefore(any(), any(), any());
+    }
+}
@@ -0,0 +1,86 @@
+package com.mamoru.transactionsystem.ledger.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerDirection;
+import com.mamoru.transactionsystem.ledger.domain.LedgerEntry;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPostingType;
+import com.mamoru.transactionsystem.ledger.infrastructure.repository.LedgerJdbcRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerServiceTest {
+    
+    @Mock
+    private LedgerJdbcRepository ledgerJdbcRepository;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private LedgerService ledgerService;
+    
+    private static final UUID USER_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    
+    @Test
+    void testPost_BalancedLegsPerPosting() {
+        ledgerService.post(List.of(
+                payment("ORD-001", BigDecimal.valueOf(30.00)),
+                payment("ORD-002", BigDecimal.valueOf(20.00))));
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LedgerEntry>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ledgerJdbcRepository, times(1)).insertEntries(captor.capture());
+        List<LedgerEntry> entries = captor.getValue();
+        
+        assertEquals(4, entries.size());
+        BigDecimal net = entries.stream()
+                .map(entry -> entry.getDirection() == LedgerDirection.CREDIT ? entry.getAmount() : entry.getAmount().negate())
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, net.compareTo(BigDecimal.ZERO));
+        
+        LedgerEntry debit = entries.get(0);
+        LedgerEntry credit = entries.get(1);
+        assertEquals(debit.getJournalId(), credit.getJournalId());
+        assertNotEquals(debit.getJournalId(), entries.get(2).getJournalId());
+        assertEquals(USER_ID, debit.getAccountId());
+        assertEquals(LedgerDirection.DEBIT, debit.getDirection());
+        assertEquals(MERCHANT_ID, credit.getAccountId());
+        assertEquals(LedgerDirection.CREDIT, credit.getDirection());
+    }
+    
+    @Test
+    void testPost_SkippedWhenDisabled() {
+        appConfig.getLedger().setEnabled(false);
+        
+        ledgerService.post(payment("ORD-001", BigDecimal.TEN));
+        
+        verify(ledgerJdbcRepository, never()).insertEntries(any());
+    }
+    
+    @Test
+    void testTransfer_RejectsNonPositiveAmount() {
+        assertThrows(IllegalArgumentException.class, () -> payment("ORD-001", BigDecimal.ZERO));
+    }
+    
+    private LedgerPosting payment(String orderNumber, BigDecimal amount) {
+        return LedgerPosting.transfer(LedgerPostingType.ORDER_PAYMENT,
+                LedgerAccount.user(USER_ID), LedgerAccount.merchant(MERCHANT_ID), amount, "USD", orderNumber);
+    }
+}
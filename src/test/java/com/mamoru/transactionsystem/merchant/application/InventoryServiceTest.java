@@ -1,16 +1,21 @@
 package com.mamoru.transactionsystem.merchant.application;
 
+import com.mamoru.transactionsystem.audit.application.AuditTrailService;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
 import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
 import com.mamoru.transactionsystem.merchant.domain.Inventory;
 import com.mamoru.transactionsystem.merchant.domain.Product;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryTransactionRepository;
 import com.mamoru.transactionsystem.merchant.infrastructure.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Optional;
@@ -32,6 +37,18 @@ class InventoryServiceTest {
     @Mock
     private ProductRepository productRepository;
     
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+    
+    @Mock
+    private AuditTrailService auditTrailService;
+    
+    @Mock
+    private EntityManager entityManager;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
     @InjectMocks
     private InventoryService inventoryService;
     
@@ -98,5 +115,44 @@ class InventoryServiceTest {
         assertThrows(ResourceNotFoundException.class, 
                 () -> inventoryService.deductInventory(PRODUCT_ID, 30, "REF-001"));
     }
+    
+    @Test
+    void testDeductInventory_GuardedUpdate() {
+        appConfig.getInventory().setDeductionStrategy(AppConfig.Inventory.DeductionStrategy.GUARDED_UPDATE);
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 10)).thenReturn(Optional.of(stockUpdate(90)));
+        when(inventoryRepository.getReferenceById(INVENTORY_ID)).thenReturn(inventory);
+        
+        inventoryService.deductInventory(PRODUCT_ID, 10, "ORD-001");
+        
+        verify(inventoryRepository, never()).findByProductIdWithLock(any());
+        verify(inventoryRepository, never()).save(any());
+        verify(inventoryTransactionRepository, times(1)).save(argThat(transaction ->
+                transaction.getQuantityBefore() == 100 && transaction.getQuantityAfter() == 90));
+    }
+
+    @Test
+    void testDeductInventory_GuardedUpdateInsufficientStock() {
+        appConfig.getInventory().setDeductionStrategy(AppConfig.Inventory.DeductionStrategy.GUARDED_UPDATE);
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 500)).thenReturn(Optional.empty());
+        when(inventoryRepository.findByProductId(PRODUCT_ID)).thenReturn(Optional.of(inventory));
+
+        assertThrows(InvalidOperationException.class, 
+                () -> inventoryService.deductInventory(PRODUCT_ID, 500, "ORD-001"));
+        verify(inventoryTransactionRepository, never()).save(any());
+    }
+    
+    private InventoryRepository.StockUpdate stockUpdate(int quantity) {
+        return new InventoryRepository.StockUpdate() {
+            @Override
+            public UUID getId() {
+                return INVENTORY_ID;
+            }
+            
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
 }
 
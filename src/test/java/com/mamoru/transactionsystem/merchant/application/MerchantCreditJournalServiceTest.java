@@ -0,0 +1,115 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import com.mamoru.transactionsystem.merchant.domain.MerchantCreditJournalEntry;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantCreditJournalRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantCreditJournalServiceTest {
+    
+    @Mock
+    private MerchantCreditJournalRepository merchantCreditJournalRepository;
+    
+    @Mock
+    private MerchantService merchantService;
+    
+    private SimpleMeterRegistry meterRegistry;
+    
+    private MerchantCreditJournalService journalService;
+    
+    private static final UUID MERCHANT_A = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final UUID MERCHANT_B = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        journalService = new MerchantCreditJournalService(
+                merchantCreditJournalRepository, merchantService, new AppConfig(), meterRegistry);
+        journalService.registerMetrics();
+    }
+    
+    @Test
+    void testApplyPendingBatch_OneSummedCreditPerMerchant() {
+        when(merchantCreditJournalRepository.lockPendingBatch(anyInt())).thenReturn(List.of(
+                entry(MERCHANT_A, "10.00"),
+                entry(MERCHANT_B, "5.00"),
+                entry(MERCHANT_A, "2.50")));
+        
+        int applied = journalService.applyPendingBatch();
+        
+        assertEquals(3, applied);
+        verify(merchantService, times(1)).applyCredit(MERCHANT_A, new BigDecimal("12.50"));
+        verify(merchantService, times(1)).applyCredit(MERCHANT_B, new BigDecimal("5.00"));
+        verify(merchantCreditJournalRepository, times(1)).markApplied(argThat(ids -> ids.size() == 3), any());
+    }
+    
+    @Test
+    void testApplyPendingBatch_NothingPending() {
+        when(merchantCreditJournalRepository.lockPendingBatch(anyInt())).thenReturn(List.of());
+        
+        assertEquals(0, journalService.applyPendingBatch());
+        verify(merchantService, never()).applyCredit(any(), any());
+        verify(merchantCreditJournalRepository, never()).markApplied(any(), any());
+    }
+    
+    @Test
+    void testDrain_AppliesOnlyRequestedMerchant() {
+        when(merchantCreditJournalRepository.lockPendingByMerchantId(MERCHANT_A)).thenReturn(List.of(
+                entry(MERCHANT_A, "1.00"),
+                entry(MERCHANT_A, "4.00")));
+        
+        int applied = journalService.drain(MERCHANT_A);
+        
+        assertEquals(2, applied);
+        verify(merchantService, times(1)).applyCredit(MERCHANT_A, new BigDecimal("5.00"));
+        verify(merchantService, never()).applyCredit(eq(MERCHANT_B), any());
+    }
+    
+    @Test
+    void testPurgeAppliedBatch_DeletesPastRetention() {
+        when(merchantCreditJournalRepository.deleteAppliedBefore(any(), eq(500))).thenReturn(42);
+        
+        assertEquals(42, journalService.purgeAppliedBatch());
+        verify(merchantCreditJournalRepository, times(1)).deleteAppliedBefore(
+                argThat(before -> before.isBefore(LocalDateTime.now().minusHours(167))), eq(500));
+    }
+    
+    @Test
+    void testRefreshBacklogMetrics() {
+        MerchantCreditJournalRepository.JournalBacklog backlog = mock(MerchantCreditJournalRepository.JournalBacklog.class);
+        when(backlog.getPending()).thenReturn(7L);
+        when(backlog.getOldestCreatedAt()).thenReturn(LocalDateTime.now().minusSeconds(30));
+        when(merchantCreditJournalRepository.findBacklog()).thenReturn(backlog);
+        
+        journalService.refreshBacklogMetrics();
+        
+        assertEquals(7.0, meterRegistry.get("merchant.credit.journal.pending").gauge().value());
+        assertTrue(meterRegistry.get("merchant.credit.journal.lag").gauge().value() >= 30.0);
+    }
+    
+    private MerchantCreditJournalEntry entry(UUID merchantId, String amount) {
+        return MerchantCreditJournalEntry.builder()
+                .id(UUID.randomUUID())
+                .merchant(Merchant.builder().id(merchantId).build())
+                .amount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.domain.MerchantDailySales;
+import com.mamoru.transactionsystem.merchant.domain.MerchantSale;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantDailySalesRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantDailySalesServiceTest {
+    
+    @Mock
+    private MerchantDailySalesRepository merchantDailySalesRepository;
+    
+    private MerchantDailySalesService merchantDailySalesService;
+    
+    private final AppConfig appConfig = new AppConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    private static final UUID OTHER_MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440002");
+    private static final LocalDate SALES_DATE = LocalDate.of(2024, 1, 2);
+    
+    @BeforeEach
+    void setUp() {
+        merchantDailySalesService = new MerchantDailySalesService(merchantDailySalesRepository, appConfig, meterRegistry);
+    }
+    
+    @Test
+    void testRecordSales_InlineUpsertsOneRowPerMerchantAndDay() {
+        appConfig.getSalesRollup().setMode(AppConfig.SalesRollup.Mode.INLINE);
+        
+        merchantDailySalesService.recordSales(List.of(
+                sale(OTHER_MERCHANT_ID, SALES_DATE.atTime(9, 0), "5.00"),
+                sale(MERCHANT_ID, SALES_DATE.atTime(10, 0), "10.00"),
+                sale(MERCHANT_ID, SALES_DATE.atTime(23, 59, 59), "20.00"),
+                sale(MERCHANT_ID, SALES_DATE.plusDays(1).atStartOfDay(), "40.00")));
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MerchantDailySales>> rows = ArgumentCaptor.forClass(List.class);
+        verify(merchantDailySalesRepository, times(1)).upsert(rows.capture());
+        verify(merchantDailySalesRepository, never()).insertDeltas(any());
+        assertEquals(List.of(
+                new MerchantDailySales(MERCHANT_ID, SALES_DATE, new BigDecimal("30.00"), 2),
+                new MerchantDailySales(MERCHANT_ID, SALES_DATE.plusDays(1), new BigDecimal("40.00"), 1),
+                new MerchantDailySales(OTHER_MERCHANT_ID, SALES_DATE, new BigDecimal("5.00"), 1)), rows.getValue());
+    }
+    
+    @Test
+    void testRecordSales_BatchedAppendsDeltas() {
+        merchantDailySalesService.recordSales(List.of(sale(MERCHANT_ID, SALES_DATE.atTime(10, 0), "10.00")));
+        
+        verify(merchantDailySalesRepository, times(1)).insertDeltas(
+                List.of(new MerchantDailySales(MERCHANT_ID, SALES_DATE, new BigDecimal("10.00"), 1)));
+        verify(merchantDailySalesRepository, never()).upsert(any());
+    }
+    
+    @Test
+    void testVerify_CountsDrift() {
+        when(merchantDailySalesRepository.findDrift(SALES_DATE)).thenReturn(List.of(new MerchantDailySalesRepository.Drift(
+                MERCHANT_ID, new BigDecimal("30.00"), 2, new BigDecimal("10.00"), 1)));
+        
+        assertEquals(1, merchantDailySalesService.verify(SALES_DATE));
+        assertEquals(1.0, meterRegistry.counter("merchant.daily.sales.drift").count());
+    }
+    
+    private MerchantSale sale(UUID merchantId, LocalDateTime orderCreatedAt, String amount) {
+        return new MerchantSale(merchantId, orderCreatedAt, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,144 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import com.mamoru.transactionsystem.merchant.domain.MerchantCreditJournalEntry;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantBalanceStripeRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantCreditJournalRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MerchantServiceTest {
+    
+    @Mock
+    private MerchantRepository merchantRepository;
+    
+    @Mock
+    private MerchantBalanceStripeRepository merchantBalanceStripeRepository;
+    
+    @Mock
+    private MerchantCreditJournalRepository merchantCreditJournalRepository;
+    
+    @Mock
+    private LedgerService ledgerService;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private MerchantService merchantService;
+    
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    
+    private Merchant merchant;
+    
+    @BeforeEach
+    void setUp() {
+        merchant = Merchant.builder()
+                .id(MERCHANT_ID)
+                .name("Test Merchant")
+                .accountBalance(BigDecimal.valueOf(500.00))
+                .version(0L)
+                .build();
+        // Most tests cover the in-place balance updates; the ledger tests enable it again
+        appConfig.getLedger().setEnabled(false);
+    }
+    
+    @Test
+    void testCreditMerchantAccount_SingleRow() {
+        when(merchantRepository.findByIdWithLock(MERCHANT_ID)).thenReturn(Optional.of(merchant));
+        when(merchantRepository.save(any(Merchant.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        Merchant result = merchantService.creditMerchantAccount(MERCHANT_ID, BigDecimal.valueOf(25.00), "ORD-001");
+        
+        assertEquals(BigDecimal.valueOf(525.00), result.getAccountBalance());
+        verify(merchantBalanceStripeRepository, never()).addToStripe(any(), any(), anyInt(), any());
+    }
+    
+    @Test
+    void testCreditMerchantAccount_Striped() {
+        appConfig.getMerchantAccount().setBalanceStripes(8);
+        when(merchantRepository.getReferenceById(MERCHANT_ID)).thenReturn(merchant);
+        
+        merchantService.creditMerchantAccount(MERCHANT_ID, BigDecimal.valueOf(25.00), "ORD-001");
+        
+        verify(merchantBalanceStripeRepository, times(1))
+                .addToStripe(any(UUID.class), eq(MERCHANT_ID), intThat(i -> i >= 0 && i < 8), eq(BigDecimal.valueOf(25.00)));
+        verify(merchantRepository, never()).findByIdWithLock(any());
+        verify(merchantRepository, never()).save(any());
+    }
+    
+    @Test
+    void testCreditMerchantAccount_StripedRejectsNonPositiveAmount() {
+        appConfig.getMerchantAccount().setBalanceStripes(8);
+        
+        assertThrows(IllegalArgumentException.class,
+                () -> merchantService.creditMerchantAccount(MERCHANT_ID, BigDecimal.ZERO, "ORD-001"));
+        verify(merchantBalanceStripeRepository, never()).addToStripe(any(), any(), anyInt(), any());
+    }
+    
+    @Test
+    void testCreditMerchantAccount_JournalModeOnlyAppendsEntry() {
+        appConfig.getMerchantAccount().setCreditMode(AppConfig.MerchantAccount.CreditMode.JOURNAL);
+        when(merchantRepository.getReferenceById(MERCHANT_ID)).thenReturn(merchant);
+        
+        merchantService.creditMerchantAccount(MERCHANT_ID, BigDecimal.valueOf(25.00), "ORD-001");
+        
+        verify(merchantCreditJournalRepository, times(1)).save(argThat((MerchantCreditJournalEntry entry) ->
+                entry.getAmount().equals(BigDecimal.valueOf(25.00)) && "ORD-001".equals(entry.getReferenceId())));
+        verify(merchantRepository, never()).findByIdWithLock(any());
+        verify(merchantRepository, never()).save(any());
+        assertEquals(BigDecimal.valueOf(500.00), merchant.getAccountBalance());
+    }
+    
+    @Test
+    void testGetAccountBalance_SumsStripes() {
+        when(merchantRepository.findById(MERCHANT_ID)).thenReturn(Optional.of(merchant));
+        when(merchantBalanceStripeRepository.sumBalanceByMerchantId(MERCHANT_ID)).thenReturn(BigDecimal.valueOf(75.00));
+        
+        BigDecimal balance = merchantService.getAccountBalance(MERCHANT_ID);
+        
+        assertEquals(BigDecimal.valueOf(575.00), balance);
+    }
+    
+    @Test
+    void testCreditMerchantAccount_LedgerWritesNothing() {
+        appConfig.getLedger().setEnabled(true);
+        when(merchantRepository.getReferenceById(MERCHANT_ID)).thenReturn(merchant);
+        
+        merchantService.creditMerchantAccount(MERCHANT_ID, BigDecimal.valueOf(25.00), "ORD-001");
+        
+        verify(merchantRepository, never()).save(any());
+        verify(merchantBalanceStripeRepository, never()).addToStripe(any(), any(), anyInt(), any());
+        verify(merchantCreditJournalRepository, never()).save(any());
+    }
+    
+    @Test
+    void testGetAccountBalance_FromLedger() {
+        appConfig.getLedger().setEnabled(true);
+        when(merchantRepository.findById(MERCHANT_ID)).thenReturn(Optional.of(merchant));
+        when(ledgerService.getBalance(LedgerAccount.merchant(MERCHANT_ID))).thenReturn(BigDecimal.valueOf(620.00));
+        
+        assertEquals(BigDecimal.valueOf(620.00), merchantService.getAccountBalance(MERCHANT_ID));
+        verify(merchantBalanceStripeRepository, never()).sumBalanceByMerchantId(any());
+    }
+}
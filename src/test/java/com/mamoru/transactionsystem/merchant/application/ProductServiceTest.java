@@ -0,0 +1,99 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.cache.CacheInvalidationBus;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.merchant.domain.Merchant;
+import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.domain.ProductSnapshot;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceTest {
+    
+    @Mock
+    private ProductRepository productRepository;
+    
+    @Mock
+    private MerchantRepository merchantRepository;
+    
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+    
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProductService productService;
+    
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    private static final UUID PRODUCT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440002");
+    
+    private Product product;
+    
+    @BeforeEach
+    void setUp() {
+        ProductCatalogCache productCatalogCache = new ProductCatalogCache(new AppConfig(), meterRegistry, cacheInvalidationBus);
+        productCatalogCache.init();
+        productService = new ProductService(productRepository, merchantRepository, productCatalogCache);
+        
+        product = Product.builder()
+                .id(PRODUCT_ID)
+                .merchant(Merchant.builder().id(MERCHANT_ID).name("Test Merchant").build())
+                .sku("TEST-001")
+                .name("Test Product")
+                .price(BigDecimal.valueOf(10.00))
+                .build();
+    }
+    
+    @Test
+    void testGetProductSnapshots_LoadsOnlyMisses() {
+        when(productRepository.findByMerchantIdAndSkuIn(MERCHANT_ID, List.of("TEST-001"))).thenReturn(List.of(product));
+        when(productRepository.findByMerchantIdAndSkuIn(MERCHANT_ID, List.of("UNKNOWN"))).thenReturn(List.of());
+        
+        List<ProductSnapshot> first = productService.getProductSnapshots(MERCHANT_ID, List.of("TEST-001"));
+        List<ProductSnapshot> second = productService.getProductSnapshots(MERCHANT_ID, Set.of("TEST-001", "UNKNOWN"));
+        
+        assertEquals(List.of(ProductSnapshot.from(product)), first);
+        assertEquals(first, second);
+        verify(productRepository, times(1)).findByMerchantIdAndSkuIn(MERCHANT_ID, List.of("TEST-001"));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "products").tag("result", "hit").functionCounter().count());
+    }
+    
+    @Test
+    void testUpdatePrice_EvictsSnapshot() {
+        when(productRepository.findByMerchantIdAndSkuIn(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(product));
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+        productService.getProductSnapshots(MERCHANT_ID, List.of("TEST-001"));
+        
+        productService.updatePrice(MERCHANT_ID, PRODUCT_ID, BigDecimal.valueOf(12.50));
+        List<ProductSnapshot> snapshots = productService.getProductSnapshots(MERCHANT_ID, List.of("TEST-001"));
+        
+        assertEquals(BigDecimal.valueOf(12.50), snapshots.get(0).getPrice());
+        verify(productRepository, times(2)).findByMerchantIdAndSkuIn(eq(MERCHANT_ID), anyCollection());
+        verify(cacheInvalidationBus, times(1)).publish("product", MERCHANT_ID + "/TEST-001");
+    }
+    
+    @Test
+    void testUpdatePrice_OtherMerchantsProduct() {
+        when(productRepository.findById(PRODUCT_ID)).thenReturn(Optional.of(product));
+        
+        assertThrows(ResourceNotFoundException.class,
+                () -> productService.updatePrice(UUID.randomUUID(), PRODUCT_ID, BigDecimal.ONE));
+        assertEquals(BigDecimal.valueOf(10.00), product.getPrice());
+    }
+}
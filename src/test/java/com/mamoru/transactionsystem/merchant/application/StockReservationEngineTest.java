@@ -0,0 +1,226 @@
+package com.mamoru.transactionsystem.merchant.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.merchant.domain.Inventory;
+import com.mamoru.transactionsystem.merchant.domain.InventoryTransaction;
+import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.domain.StockReservation;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.InventoryTransactionRepository;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.StockReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationEngineTest {
+    
+    @Mock
+    private InventoryRepository inventoryRepository;
+    
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+    
+    @Mock
+    private StockReservationRepository stockReservationRepository;
+    
+    private StockReservationEngine engine;
+    
+    private static final UUID PRODUCT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final UUID INVENTORY_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    
+    private Inventory inventory;
+    
+    @BeforeEach
+    void setUp() {
+        engine = new StockReservationEngine(inventoryRepository, inventoryTransactionRepository,
+                stockReservationRepository, new AppConfig(), new SimpleMeterRegistry());
+        inventory = Inventory.builder()
+                .id(INVENTORY_ID)
+                .product(Product.builder().id(PRODUCT_ID).build())
+                .quantity(10)
+                .build();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+    
+    @Test
+    void testReserve_RebuildsCounterFromInventoryMinusUnflushed() {
+        stubCounterLoad(3L);
+        when(stockReservationRepository.save(any(StockReservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        StockReservation reservation = engine.reserve(PRODUCT_ID, 5, "ORD-001");
+        
+        assertEquals(5, reservation.getQuantity());
+        assertEquals("ORD-001", reservation.getReferenceId());
+        assertEquals(2, engine.getAvailableStock(PRODUCT_ID));
+        verify(inventoryRepository, times(1)).findStockLevelByProductId(PRODUCT_ID);
+    }
+    
+    @Test
+    void testReserve_InsufficientStock() {
+        stubCounterLoad(0L);
+        
+        assertThrows(InvalidOperationException.class, () -> engine.reserve(PRODUCT_ID, 11, "ORD-001"));
+        assertEquals(10, engine.getAvailableStock(PRODUCT_ID));
+        verify(stockReservationRepository, never()).save(any());
+    }
+    
+    @Test
+    void testReserve_RollbackReleasesStock() {
+        stubCounterLoad(0L);
+        when(stockReservationRepository.save(any(StockReservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        engine.reserve(PRODUCT_ID, 4, "ORD-001");
+        assertEquals(6, engine.getAvailableStock(PRODUCT_ID));
+        
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(10, engine.getAvailableStock(PRODUCT_ID));
+    }
+    
+    @Test
+    void testReserve_CommitKeepsStockTaken() {
+        stubCounterLoad(0L);
+        when(stockReservationRepository.save(any(StockReservation.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        engine.reserve(PRODUCT_ID, 4, "ORD-001");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        
+        assertEquals(6, engine.getAvailableStock(PRODUCT_ID));
+    }
+    
+    @Test
+    void testReserve_RequiresTransaction() {
+        TransactionSynchronizationManager.clearSynchronization();
+        
+        assertThrows(IllegalStateException.class, () -> engine.reserve(PRODUCT_ID, 1, "ORD-001"));
+        
+        TransactionSynchronizationManager.initSynchronization();
+    }
+    
+    @Test
+    void testOnStockAdded_AppliedAfterCommit() {
+        stubCounterLoad(0L);
+        assertEquals(10, engine.getAvailableStock(PRODUCT_ID));
+        
+        engine.onStockAdded(PRODUCT_ID, 5);
+        assertEquals(10, engine.getAvailableStock(PRODUCT_ID));
+        
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(15, engine.getAvailableStock(PRODUCT_ID));
+    }
+    
+    @Test
+    void testFlushPendingBatch_OneDeductionPerInventory() {
+        when(stockReservationRepository.lockPendingBatch(anyInt())).thenReturn(List.of(
+                reservation(3, "ORD-001"),
+                reservation(2, "ORD-002")));
+        when(inventoryRepository.getReferenceById(INVENTORY_ID)).thenReturn(inventory);
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 5)).thenReturn(Optional.of(stockUpdate(5)));
+        
+        int flushed = engine.flushPendingBatch();
+        
+        assertEquals(2, flushed);
+        verify(inventoryRepository, times(1)).deductIfSufficient(eq(PRODUCT_ID), anyInt());
+        verify(inventoryTransactionRepository, times(1)).saveAll(argThat(transactions ->
+                transactions instanceof List<?> list && list.size() == 2
+                        && ((InventoryTransaction) list.get(0)).getQuantityBefore() == 10
+                        && ((InventoryTransaction) list.get(1)).getQuantityAfter() == 5));
+        verify(stockReservationRepository, times(1)).deleteFlushed(argThat(ids -> ids.size() == 2));
+        verify(stockReservationRepository, never()).markParked(any(), any());
+    }
+    
+    @Test
+    void testFlushPendingBatch_ParksReservationsTheInventoryDoesNotCover() {
+        StockReservation covered = reservation(3, "ORD-001");
+        StockReservation uncovered = reservation(8, "ORD-002");
+        when(stockReservationRepository.lockPendingBatch(anyInt())).thenReturn(List.of(covered, uncovered));
+        when(inventoryRepository.getReferenceById(INVENTORY_ID)).thenReturn(inventory);
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 11)).thenReturn(Optional.empty());
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 3)).thenReturn(Optional.of(stockUpdate(7)));
+        when(inventoryRepository.deductIfSufficient(PRODUCT_ID, 8)).thenReturn(Optional.empty());
+        
+        assertEquals(2, engine.flushPendingBatch());
+        
+        verify(stockReservationRepository, times(1)).deleteFlushed(List.of(covered.getId()));
+        verify(stockReservationRepository, times(1)).markParked(eq(List.of(uncovered.getId())), any());
+        verify(inventoryTransactionRepository, times(1)).saveAll(argThat(transactions ->
+                transactions instanceof List<?> list && list.size() == 1));
+    }
+    
+    @Test
+    void testFlushPendingBatch_NothingPending() {
+        when(stockReservationRepository.lockPendingBatch(anyInt())).thenReturn(List.of());
+        
+        assertEquals(0, engine.flushPendingBatch());
+        verify(stockReservationRepository, never()).deleteFlushed(any());
+    }
+    
+    private void stubCounterLoad(long unflushed) {
+        when(inventoryRepository.findStockLevelByProductId(PRODUCT_ID)).thenReturn(Optional.of(new InventoryRepository.StockLevel() {
+            @Override
+            public UUID getId() {
+                return INVENTORY_ID;
+            }
+            
+            @Override
+            public Integer getQuantity() {
+                return inventory.getQuantity();
+            }
+            
+            @Override
+            public Long getUnflushed() {
+                return unflushed;
+            }
+        }));
+    }
+    
+    private InventoryRepository.StockUpdate stockUpdate(int quantity) {
+        return new InventoryRepository.StockUpdate() {
+            @Override
+            public UUID getId() {
+                return INVENTORY_ID;
+            }
+            
+            @Override
+            public Integer getQuantity() {
+                return quantity;
+            }
+        };
+    }
+    
+    private void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+    }
+    
+    private StockReservation reservation(int quantity, String referenceId) {
+        return StockReservation.builder()
+                .id(UUID.randomUUID())
+                .inventory(inventory)
+                .productId(PRODUCT_ID)
+                .quantity(quantity)
+                .referenceId(referenceId)
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.mamoru.transactionsystem.presentation;
+
+import com.mamoru.transactionsystem.reconciliation.application.ReconciliationService;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReportView;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import com.mamoru.transactionsystem.reconciliation.presentation.ReconciliationReportExportController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ReconciliationReportExportController.class)
+class ReconciliationReportExportControllerTest {
+    
+    private static final LocalDate REPORT_DATE = LocalDate.of(2024, 1, 2);
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 3, 0, 5);
+    private static final UUID REPORT_ID = UUID.fromString("018cc251-f400-7000-8000-000000000001");
+    private static final UUID MERCHANT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @MockBean
+    private ReconciliationService reconciliationService;
+    
+    @Test
+    void testExportReports_CsvQuotesNames() throws Exception {
+        stubReports(report("Plain"), report("Acme, Inc."), report("The \"Best\" Shop"), report("Two\nLines"));
+        
+        String body = export("csv");
+        
+        String row = "," + MERCHANT_ID + ",%s,2024-01-02,10.00,40.00,30.00,0.00,MATCHED,2024-01-03T00:05\n";
+        assertEquals("id,merchant_id,merchant_name,report_date,opening_balance,account_balance,"
+                + "calculated_sales_value,discrepancy,status,created_at\n"
+                + REPORT_ID + row.formatted("Plain")
+                + REPORT_ID + row.formatted("\"Acme, Inc.\"")
+                + REPORT_ID + row.formatted("\"The \"\"Best\"\" Shop\"")
+                + REPORT_ID + row.formatted("\"Two\nLines\""), body);
+    }
+    
+    @Test
+    void testExportReports_NdjsonOneObjectPerLine() throws Exception {
+        stubReports(report("Acme, Inc."), report("Two\nLines"));
+        
+        String body = export("ndjson");
+        
+        String[] lines = body.split("\n", -1);
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{") && lines[0].endsWith("}"));
+        assertTrue(lines[0].contains("\"merchantName\":\"Acme, Inc.\""));
+        assertTrue(lines[1].contains("\"merchantName\":\"Two\\nLines\""));
+        assertEquals("", lines[2]);
+    }
+    
+    @Test
+    void testExportReports_UnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/v1/reconciliation/reports/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        verify(reconciliationService, never()).exportReports(any(), any(), any(), any());
+    }
+    
+    private String export(String format) throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/v1/reconciliation/reports/export").param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"reconciliation-reports." + format + "\""))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void stubReports(ReconciliationReportView... reports) {
+        doAnswer(invocation -> {
+            Consumer<ReconciliationReportView> consumer = invocation.getArgument(3);
+            for (ReconciliationReportView report : reports) {
+                consumer.accept(report);
+            }
+            return null;
+        }).when(reconciliationService).exportReports(isNull(), isNull(), isNull(), any(Consumer.class));
+    }
+    
+    private static ReconciliationReportView report(String merchantName) {
+        return new ReconciliationReportView(REPORT_ID, MERCHANT_ID, merchantName, REPORT_DATE, new BigDecimal("10.00"),
+                new BigDecimal("40.00"), new BigDecimal("30.00"), new BigDecimal("0.00"), ReconciliationStatus.MATCHED,
+                CREATED_AT);
+    }
+}
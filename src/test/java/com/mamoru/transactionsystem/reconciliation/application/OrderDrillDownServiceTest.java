@@ -0,0 +1,108 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.merchant.application.MerchantService;
+import com.mamoru.transactionsystem.reconciliation.domain.OrderDiscrepancy;
+import com.mamoru.transactionsystem.reconciliation.domain.OrderDiscrepancyType;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.OrderDrillDownRepository;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.OrderDrillDownRepository.OrderAmount;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderDrillDownServiceTest {
+    
+    @Mock
+    private OrderDrillDownRepository orderDrillDownRepository;
+    
+    @Mock
+    private MerchantService merchantService;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private OrderDrillDownService orderDrillDownService;
+    
+    private static final UUID MERCHANT_ID = UUID.randomUUID();
+    private static final LocalDate REPORT_DATE = LocalDate.of(2024, 1, 2);
+    
+    @Test
+    void testMerge_MatchingStreams() {
+        List<OrderAmount> rows = List.of(row("ORD-1", "10.00"), row("ORD-2", "20.00"));
+        List<OrderDiscrepancy> found = new ArrayList<>();
+        
+        long count = OrderDrillDownService.merge(rows.iterator(), List.of(row("ORD-1", "10.0"), row("ORD-2", "20.00")).iterator(),
+                rows.iterator(), found::add);
+        
+        assertEquals(0, count);
+        assertTrue(found.isEmpty());
+    }
+    
+    @Test
+    void testMerge_EmitsMismatchesInOrderNumberOrder() {
+        List<OrderAmount> orders = List.of(row("ORD-1", "10.00"), row("ORD-3", "30.00"), row("ORD-4", "40.00"));
+        List<OrderAmount> credits = List.of(row("ORD-1", "10.00"), row("ORD-2", "5.00"), row("ORD-4", "45.00"));
+        List<OrderAmount> payments = List.of(row("ORD-1", "10.00"), row("ORD-3", "30.00"), row("ORD-4", "40.00"),
+                row("ORD-5", "50.00"));
+        List<OrderDiscrepancy> found = new ArrayList<>();
+        
+        long count = OrderDrillDownService.merge(orders.iterator(), credits.iterator(), payments.iterator(), found::add);
+        
+        assertEquals(4, count);
+        assertEquals(List.of("ORD-2", "ORD-3", "ORD-4", "ORD-5"), found.stream().map(OrderDiscrepancy::getOrderNumber).toList());
+        assertEquals(Set.of(OrderDiscrepancyType.CREDIT_WITHOUT_ORDER), found.get(0).getTypes());
+        assertNull(found.get(0).getOrderAmount());
+        assertEquals(Set.of(OrderDiscrepancyType.MISSING_CREDIT), found.get(1).getTypes());
+        assertEquals(Set.of(OrderDiscrepancyType.CREDIT_AMOUNT_MISMATCH), found.get(2).getTypes());
+        assertEquals(new BigDecimal("45.00"), found.get(2).getCreditAmount());
+        assertEquals(Set.of(OrderDiscrepancyType.PAYMENT_WITHOUT_ORDER), found.get(3).getTypes());
+    }
+    
+    @Test
+    void testFindDiscrepancies_ClosesStreams() {
+        List<String> closed = new ArrayList<>();
+        when(orderDrillDownRepository.streamCompletedOrders(MERCHANT_ID, REPORT_DATE, 1000))
+                .thenReturn(Stream.of(row("ORD-1", "10.00")).onClose(() -> closed.add("orders")));
+        when(orderDrillDownRepository.streamCredits(MERCHANT_ID, REPORT_DATE, 1000))
+                .thenReturn(Stream.<OrderAmount>empty().onClose(() -> closed.add("credits")));
+        when(orderDrillDownRepository.streamPayments(MERCHANT_ID, REPORT_DATE, 1000))
+                .thenReturn(Stream.of(row("ORD-1", "10.00")).onClose(() -> closed.add("payments")));
+        List<OrderDiscrepancy> found = new ArrayList<>();
+        
+        assertEquals(1, orderDrillDownService.findDiscrepancies(MERCHANT_ID, REPORT_DATE, found::add));
+        
+        assertEquals(Set.of(OrderDiscrepancyType.MISSING_CREDIT), found.get(0).getTypes());
+        assertEquals(Set.of("orders", "credits", "payments"), Set.copyOf(closed));
+    }
+    
+    @Test
+    void testFindDiscrepancies_RejectedWhileLedgerDisabled() {
+        appConfig.getLedger().setEnabled(false);
+        
+        assertThrows(InvalidOperationException.class, () -> orderDrillDownService.validateRequest(MERCHANT_ID));
+        assertThrows(InvalidOperationException.class,
+                () -> orderDrillDownService.findDiscrepancies(MERCHANT_ID, REPORT_DATE, discrepancy -> { }));
+        verifyNoInteractions(merchantService, orderDrillDownRepository);
+    }
+    
+    private static OrderAmount row(String orderNumber, String amount) {
+        return new OrderAmount(orderNumber, new BigDecimal(amount));
+    }
+}
@@ -0,0 +1,165 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.ledger.application.BalanceSnapshotService;
+import com.mamoru.transactionsystem.reconciliation.domain.BackfillJobStatus;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillJob;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationBackfillProgress;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationBackfillRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationBackfillServiceTest {
+    
+    @Mock
+    private ReconciliationBackfillRepository reconciliationBackfillRepository;
+    
+    @Mock
+    private ReconciliationService reconciliationService;
+    
+    @Mock
+    private BalanceSnapshotService balanceSnapshotService;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private ReconciliationBackfillService reconciliationBackfillService;
+    
+    private static final LocalDate REPORT_DATE = LocalDate.of(2024, 1, 2);
+    private static final List<UUID> MERCHANT_IDS = List.of(UUID.randomUUID());
+    
+    private final ReconciliationBackfillJob job = ReconciliationBackfillJob.builder()
+            .id(UUID.randomUUID())
+            .fromDate(REPORT_DATE)
+            .toDate(REPORT_DATE.plusDays(1))
+            .merchantIds(MERCHANT_IDS)
+            .replaceExisting(true)
+            .status(BackfillJobStatus.RUNNING)
+            .createdAt(LocalDateTime.now())
+            .build();
+    
+    private final ReconciliationBackfillRepository.Chunk chunk =
+            new ReconciliationBackfillRepository.Chunk(UUID.randomUUID(), job.getId(), REPORT_DATE, 0);
+    
+    @Test
+    void testCreateJob_InvalidRange() {
+        LocalDate today = LocalDate.now();
+        
+        assertThrows(InvalidOperationException.class,
+                () -> reconciliationBackfillService.createJob(REPORT_DATE, REPORT_DATE.minusDays(1), null, false));
+        assertThrows(InvalidOperationException.class,
+                () -> reconciliationBackfillService.createJob(today.minusDays(1), today, null, false));
+        assertThrows(InvalidOperationException.class,
+                () -> reconciliationBackfillService.createJob(today.minusDays(400), today.minusDays(1), null, false));
+        verify(reconciliationBackfillRepository, never()).insertJob(any(), any(), any(), anyBoolean());
+    }
+    
+    @Test
+    void testCreateJob_RejectsDatesBeforeSnapshots() {
+        LocalDate firstCovered = LocalDate.now().minusDays(10);
+        when(balanceSnapshotService.getEarliestCutoff()).thenReturn(Optional.of(firstCovered.atStartOfDay()));
+        
+        assertThrows(InvalidOperationException.class,
+                () -> reconciliationBackfillService.createJob(firstCovered.minusDays(1), firstCovered.plusDays(1), null, true));
+        verify(reconciliationBackfillRepository, never()).insertJob(any(), any(), any(), anyBoolean());
+        
+        when(reconciliationBackfillRepository.insertJob(firstCovered, firstCovered.plusDays(1), null, true)).thenReturn(job);
+        assertEquals(job, reconciliationBackfillService.createJob(firstCovered, firstCovered.plusDays(1), null, true));
+    }
+    
+    @Test
+    void testCreateJob_RejectedWhileLedgerDisabled() {
+        appConfig.getLedger().setEnabled(false);
+        LocalDate today = LocalDate.now();
+        
+        assertThrows(InvalidOperationException.class,
+                () -> reconciliationBackfillService.createJob(today.minusDays(2), today.minusDays(1), null, false));
+        verify(balanceSnapshotService, never()).getEarliestCutoff();
+        verify(reconciliationBackfillRepository, never()).insertJob(any(), any(), any(), anyBoolean());
+    }
+    
+    @Test
+    void testRunNextChunk_DateBeforeSnapshotsFailsWithoutReconciling() {
+        when(reconciliationBackfillRepository.lockNextPendingChunk(job.getId())).thenReturn(Optional.of(chunk));
+        when(balanceSnapshotService.getEarliestCutoff()).thenReturn(Optional.empty());
+        
+        assertThrows(BackfillChunkFailedException.class, () -> reconciliationBackfillService.runNextChunk(job));
+        verify(reconciliationService, never()).reconcileMerchants(any(), any(), anyBoolean(), any());
+    }
+    
+    @Test
+    void testRunNextChunk_CompletesChunk() {
+        when(reconciliationBackfillRepository.lockNextPendingChunk(job.getId())).thenReturn(Optional.of(chunk));
+        stubSnapshotCoverage();
+        when(reconciliationService.reconcileMerchants(eq(REPORT_DATE), eq(MERCHANT_IDS), eq(true), any(ReconciliationRun.class)))
+                .thenReturn(Map.of(ReconciliationStatus.MATCHED, 3L, ReconciliationStatus.DISCREPANCY, 1L));
+        
+        assertEquals(Optional.of(chunk), reconciliationBackfillService.runNextChunk(job));
+        verify(reconciliationBackfillRepository, times(1)).completeChunk(chunk.id(), 4L, 1L);
+    }
+    
+    @Test
+    void testRunNextChunk_FailureCarriesChunk() {
+        when(reconciliationBackfillRepository.lockNextPendingChunk(job.getId())).thenReturn(Optional.of(chunk));
+        stubSnapshotCoverage();
+        when(reconciliationService.reconcileMerchants(any(), any(), anyBoolean(), any()))
+                .thenThrow(new IllegalStateException("connection lost"));
+        
+        BackfillChunkFailedException exception = assertThrows(BackfillChunkFailedException.class,
+                () -> reconciliationBackfillService.runNextChunk(job));
+        
+        assertEquals(chunk, exception.getChunk());
+        verify(reconciliationBackfillRepository, never()).completeChunk(any(), anyLong(), anyLong());
+        
+        reconciliationBackfillService.recordChunkFailure(exception.getChunk(), exception);
+        verify(reconciliationBackfillRepository, times(1))
+                .recordChunkFailure(chunk.id(), "java.lang.IllegalStateException: connection lost", 3);
+    }
+    
+    @Test
+    void testFinishJob_FailedChunks() {
+        when(reconciliationBackfillRepository.findJob(job.getId())).thenReturn(Optional.of(job));
+        when(reconciliationBackfillRepository.findProgress(job))
+                .thenReturn(new ReconciliationBackfillProgress(job, 2, 1, 1, 10, 0));
+        
+        reconciliationBackfillService.finishJob(job.getId());
+        
+        verify(reconciliationBackfillRepository, times(1))
+                .updateJobStatus(eq(job.getId()), eq(BackfillJobStatus.FAILED), any(LocalDateTime.class));
+    }
+    
+    @Test
+    void testFinishJob_PendingChunksKeepJobRunning() {
+        when(reconciliationBackfillRepository.findJob(job.getId())).thenReturn(Optional.of(job));
+        when(reconciliationBackfillRepository.findProgress(job))
+                .thenReturn(new ReconciliationBackfillProgress(job, 2, 1, 0, 5, 0));
+        
+        ReconciliationBackfillProgress progress = reconciliationBackfillService.finishJob(job.getId());
+        
+        assertEquals(1, progress.getPendingChunks());
+        verify(reconciliationBackfillRepository, never()).updateJobStatus(any(), any(), any());
+    }
+    
+    private void stubSnapshotCoverage() {
+        when(balanceSnapshotService.getEarliestCutoff()).thenReturn(Optional.of(REPORT_DATE.minusDays(1).atStartOfDay()));
+    }
+}
@@ -0,0 +1,191 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.merchant.infrastructure.repository.MerchantRepository;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReport;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationRunnerTest {
+    
+    private static final LocalDate REPORT_DATE = LocalDate.of(2024, 1, 2);
+    
+    @Mock
+    private ReconciliationService reconciliationService;
+    
+    @Mock
+    private MerchantRepository merchantRepository;
+    
+    @Mock
+    private ReconciliationShardLeases reconciliationShardLeases;
+    
+    private ReconciliationRunner reconciliationRunner;
+    
+    private final AppConfig appConfig = new AppConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    
+    @BeforeEach
+    void setUp() {
+        appConfig.getReconciliation().setMode(AppConfig.Reconciliation.Mode.PARALLEL);
+        appConfig.getReconciliation().setParallelism(2);
+        appConfig.getReconciliation().setPageSize(2);
+        reconciliationRunner = new ReconciliationRunner(reconciliationService, merchantRepository,
+                reconciliationShardLeases, appConfig, meterRegistry);
+    }
+    
+    @Test
+    void testReconcileAllMerchants_PagesAndCountsOutcomes() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        when(merchantRepository.findIdsAfter(eq(new UUID(0L, 0L)), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(merchantRepository.findIdsAfter(eq(second), any(Pageable.class))).thenReturn(List.of(third));
+        when(reconciliationService.reconcileMerchant(first, REPORT_DATE)).thenReturn(report(ReconciliationStatus.MATCHED));
+        when(reconciliationService.reconcileMerchant(second, REPORT_DATE)).thenThrow(new IllegalStateException("boom"));
+        when(reconciliationService.reconcileMerchant(third, REPORT_DATE)).thenReturn(report(ReconciliationStatus.DISCREPANCY));
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertTrue(run.isFinished());
+        assertEquals(3, run.getSubmitted());
+        assertEquals(3, run.getCompleted());
+        assertEquals(1, run.getMatched());
+        assertEquals(1, run.getDiscrepancies());
+        assertEquals(1, run.getFailed());
+        assertEquals(List.of(second), run.getFailedMerchantIds());
+        assertEquals(1.0, meterRegistry.counter("reconciliation.merchants", "outcome", "failed").count());
+        assertSame(run, reconciliationRunner.getLatestRun().orElseThrow());
+    }
+    
+    @Test
+    void testReconcileAllMerchants_NoMerchants() {
+        when(merchantRepository.findIdsAfter(any(UUID.class), any(Pageable.class))).thenReturn(List.of());
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertTrue(run.isFinished());
+        assertEquals(0, run.getSubmitted());
+        verifyNoInteractions(reconciliationService);
+    }
+    
+    @Test
+    void testReconcileAllMerchants_SetBasedRollbackCountsUncommittedAsFailed() {
+        appConfig.getReconciliation().setMode(AppConfig.Reconciliation.Mode.SET_BASED);
+        when(reconciliationService.reconcileAllMerchants(eq(REPORT_DATE), any(ReconciliationRun.class))).thenAnswer(invocation -> {
+            // One page committed, the next one failed to commit
+            ReconciliationRun run = invocation.getArgument(1);
+            run.recordSubmitted(1);
+            run.recordCompleted(ReconciliationStatus.MATCHED);
+            run.recordSubmitted(2);
+            throw new IllegalStateException("boom");
+        });
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertTrue(run.isFinished());
+        assertEquals(2, run.getFailed());
+        assertEquals(1, run.getMatched());
+        assertEquals(2.0, meterRegistry.counter("reconciliation.merchants", "outcome", "failed").count());
+        verifyNoInteractions(merchantRepository);
+    }
+    
+    @Test
+    void testReconcileAllMerchants_ClusteredReconcilesLeasedShards() {
+        appConfig.getReconciliation().setMode(AppConfig.Reconciliation.Mode.SET_BASED);
+        appConfig.getReconciliation().getCluster().setEnabled(true);
+        UUID merchantId = UUID.randomUUID();
+        ReconciliationShardLeases.ShardLease first = new ReconciliationShardLeases.ShardLease(REPORT_DATE, 0, 2);
+        ReconciliationShardLeases.ShardLease second = new ReconciliationShardLeases.ShardLease(REPORT_DATE, 1, 2);
+        when(reconciliationShardLeases.claim(REPORT_DATE))
+                .thenReturn(Optional.of(first))
+                .thenReturn(Optional.of(second))
+                .thenReturn(Optional.empty());
+        when(merchantRepository.findShardIdsAfter(0, 2, new UUID(0L, 0L), 2)).thenReturn(List.of(merchantId));
+        when(merchantRepository.findShardIdsAfter(1, 2, new UUID(0L, 0L), 2)).thenReturn(List.of());
+        when(reconciliationService.reconcileMerchants(eq(REPORT_DATE), eq(List.of(merchantId)), eq(false), any(ReconciliationRun.class)))
+                .thenAnswer(invocation -> {
+                    ReconciliationRun shardRun = invocation.getArgument(3);
+                    shardRun.recordSubmitted();
+                    shardRun.recordCompleted(ReconciliationStatus.MATCHED);
+                    return Map.of(ReconciliationStatus.MATCHED, 1L);
+                });
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertTrue(run.isFinished());
+        assertEquals(1, run.getMatched());
+        verify(reconciliationShardLeases, times(1)).prepare(REPORT_DATE);
+        verify(reconciliationShardLeases, times(1)).complete(first);
+        verify(reconciliationShardLeases, times(1)).complete(second);
+        verify(reconciliationService, never()).reconcileAllMerchants(any(), any());
+    }
+    
+    @Test
+    void testReconcileAllMerchants_ClusteredAbandonsFailedShard() {
+        appConfig.getReconciliation().setMode(AppConfig.Reconciliation.Mode.SET_BASED);
+        appConfig.getReconciliation().getCluster().setEnabled(true);
+        ReconciliationShardLeases.ShardLease shard = new ReconciliationShardLeases.ShardLease(REPORT_DATE, 0, 1);
+        when(reconciliationShardLeases.claim(REPORT_DATE))
+                .thenReturn(Optional.of(shard))
+                .thenReturn(Optional.empty());
+        when(merchantRepository.findShardIdsAfter(eq(0), eq(1), any(UUID.class), anyInt())).thenReturn(List.of(UUID.randomUUID()));
+        when(reconciliationService.reconcileMerchants(eq(REPORT_DATE), anyList(), eq(false), any(ReconciliationRun.class)))
+                .thenAnswer(invocation -> {
+                    invocation.<ReconciliationRun>getArgument(3).recordSubmitted();
+                    throw new IllegalStateException("boom");
+                });
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertEquals(1, run.getFailed());
+        verify(reconciliationShardLeases, times(1)).abandon(shard);
+        verify(reconciliationShardLeases, never()).complete(any());
+    }
+    
+    @Test
+    void testReconcileAllMerchants_ParallelShardWithFailedMerchantIsAbandoned() {
+        appConfig.getReconciliation().getCluster().setEnabled(true);
+        UUID succeeded = UUID.randomUUID();
+        UUID failed = UUID.randomUUID();
+        ReconciliationShardLeases.ShardLease shard = new ReconciliationShardLeases.ShardLease(REPORT_DATE, 0, 1);
+        when(reconciliationShardLeases.claim(REPORT_DATE))
+                .thenReturn(Optional.of(shard))
+                .thenReturn(Optional.empty());
+        when(merchantRepository.findShardIdsAfter(0, 1, new UUID(0L, 0L), 2)).thenReturn(List.of(succeeded, failed));
+        when(merchantRepository.findShardIdsAfter(0, 1, failed, 2)).thenReturn(List.of());
+        when(reconciliationService.reconcileMerchant(succeeded, REPORT_DATE)).thenReturn(report(ReconciliationStatus.MATCHED));
+        when(reconciliationService.reconcileMerchant(failed, REPORT_DATE)).thenThrow(new IllegalStateException("boom"));
+        
+        ReconciliationRun run = reconciliationRunner.reconcileAllMerchants(REPORT_DATE);
+        
+        assertEquals(1, run.getMatched());
+        assertEquals(List.of(failed), run.getFailedMerchantIds());
+        verify(reconciliationShardLeases, times(1)).abandon(shard);
+        verify(reconciliationShardLeases, never()).complete(any());
+    }
+    
+    private ReconciliationReport report(ReconciliationStatus status) {
+        return ReconciliationReport.builder()
+                .reportDate(REPORT_DATE)
+                .status(status)
+                .build();
+    }
+}
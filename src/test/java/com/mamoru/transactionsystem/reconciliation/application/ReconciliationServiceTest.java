@@ -0,0 +1,171 @@
+package com.mamoru.transactionsystem.reconciliation.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.ledger.application.BalanceSnapshotService;
+import com.mamoru.transactionsystem.merchant.application.MerchantCreditJournalService;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationReportView;
+import com.mamoru.transactionsystem.reconciliation.domain.ReconciliationStatus;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.DailyReconciliationRepository;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.DailyReconciliationRepository.MerchantBalances;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.DailyReconciliationRepository.MerchantSales;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.DailyReconciliationRepository.NewReport;
+import com.mamoru.transactionsystem.reconciliation.infrastructure.ReconciliationReportExportRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReconciliationServiceTest {
+    
+    @Mock
+    private BalanceSnapshotService balanceSnapshotService;
+    
+    @Mock
+    private MerchantCreditJournalService merchantCreditJournalService;
+    
+    @Mock
+    private DailyReconciliationRepository dailyReconciliationRepository;
+    
+    @Mock
+    private ReconciliationReportExportRepository reconciliationReportExportRepository;
+    
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private ReconciliationService reconciliationService;
+    
+    private static final LocalDate REPORT_DATE = LocalDate.of(2024, 1, 2);
+    private static final LocalDateTime START = REPORT_DATE.atStartOfDay();
+    private static final LocalDateTime END = REPORT_DATE.plusDays(1).atStartOfDay();
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(2024, 1, 1, 0, 0);
+    
+    // Ordered as Postgres orders them; the second sorts last under UUID.compareTo
+    private static final UUID FIRST = UUID.fromString("00000000-0000-7000-8000-000000000001");
+    private static final UUID SECOND = UUID.fromString("80000000-0000-7000-8000-000000000002");
+    private static final UUID THIRD = UUID.fromString("ffffffff-0000-7000-8000-000000000003");
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    
+    @Test
+    void testReconcileAllMerchants_MergesSalesWithSnapshotBalancesPageByPage() {
+        appConfig.getReconciliation().setPageSize(2);
+        when(balanceSnapshotService.getEarliestCutoff()).thenReturn(Optional.of(EARLIEST));
+        when(dailyReconciliationRepository.findSnapshotBalances(START, END, EARLIEST, null, FIRST_ID, 2)).thenReturn(List.of(
+                new MerchantBalances(FIRST, new BigDecimal("100.00"), new BigDecimal("100.00")),
+                new MerchantBalances(SECOND, BigDecimal.ZERO, new BigDecimal("30.00"))));
+        when(dailyReconciliationRepository.findSnapshotBalances(START, END, EARLIEST, null, SECOND, 2)).thenReturn(List.of(
+                new MerchantBalances(THIRD, new BigDecimal("10.00"), new BigDecimal("50.00"))));
+        when(dailyReconciliationRepository.findSales(REPORT_DATE, List.of(FIRST, SECOND))).thenReturn(List.of(
+                new MerchantSales(SECOND, new BigDecimal("30.00"))));
+        when(dailyReconciliationRepository.findSales(REPORT_DATE, List.of(THIRD))).thenReturn(List.of(
+                new MerchantSales(THIRD, new BigDecimal("50.00"))));
+        // The first merchant already has a report, so only the second one of the first page is written
+        when(dailyReconciliationRepository.insertReports(anyList(), eq(false)))
+                .thenReturn(List.of(ReconciliationStatus.MATCHED))
+                .thenReturn(List.of(ReconciliationStatus.DISCREPANCY));
+        ReconciliationRun run = new ReconciliationRun(REPORT_DATE);
+        
+        Map<ReconciliationStatus, Long> counts = reconciliationService.reconcileAllMerchants(REPORT_DATE, run);
+        
+        assertEquals(Map.of(ReconciliationStatus.MATCHED, 1L, ReconciliationStatus.DISCREPANCY, 1L), counts);
+        assertEquals(2, run.getSubmitted());
+        assertEquals(1, run.getMatched());
+        assertEquals(1, run.getDiscrepancies());
+        verify(transactionManager, times(2)).commit(any());
+        verify(merchantCreditJournalService, never()).applyPendingBatch();
+        
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<NewReport>> batches = ArgumentCaptor.forClass(List.class);
+        verify(dailyReconciliationRepository, times(2)).insertReports(batches.capture(), eq(false));
+        List<NewReport> reports = batches.getAllValues().stream().flatMap(List::stream).toList();
+        assertEquals(List.of(FIRST, SECOND, THIRD), reports.stream().map(NewReport::merchantId).toList());
+        assertEquals(0, BigDecimal.ZERO.compareTo(reports.get(0).calculatedSalesValue()));
+        assertEquals(ReconciliationStatus.MATCHED, reports.get(1).status());
+        assertEquals(0, new BigDecimal("-10.00").compareTo(reports.get(2).discrepancy()));
+        assertEquals(ReconciliationStatus.DISCREPANCY, reports.get(2).status());
+    }
+    
+    @Test
+    void testReconcileAllMerchants_LedgerDisabledUsesCurrentBalances() {
+        appConfig.getLedger().setEnabled(false);
+        when(merchantCreditJournalService.applyPendingBatch()).thenReturn(3).thenReturn(0);
+        when(dailyReconciliationRepository.findCurrentBalances(isNull(), eq(FIRST_ID), anyInt())).thenReturn(List.of(
+                new MerchantBalances(FIRST, null, new BigDecimal("75.00"))));
+        when(dailyReconciliationRepository.findSales(REPORT_DATE, List.of(FIRST))).thenReturn(List.of(
+                new MerchantSales(FIRST, new BigDecimal("75.00"))));
+        when(dailyReconciliationRepository.insertReports(anyList(), eq(false))).thenReturn(List.of(ReconciliationStatus.MATCHED));
+        
+        Map<ReconciliationStatus, Long> counts = reconciliationService.reconcileAllMerchants(REPORT_DATE,
+                new ReconciliationRun(REPORT_DATE));
+        
+        assertEquals(Map.of(ReconciliationStatus.MATCHED, 1L), counts);
+        verify(merchantCreditJournalService, times(2)).applyPendingBatch();
+        // Snapshots replay the ledger, so they are not used while it is disabled
+        verify(balanceSnapshotService, never()).getEarliestCutoff();
+        verify(dailyReconciliationRepository, never()).findSnapshotBalances(any(), any(), any(), any(), any(), anyInt());
+    }
+    
+    @Test
+    void testReconcileAllMerchants_CurrentLedgerBalancesBeforeSnapshotsBegin() {
+        when(balanceSnapshotService.getEarliestCutoff()).thenReturn(Optional.of(END));
+        when(dailyReconciliationRepository.findCurrentLedgerBalances(isNull(), eq(FIRST_ID), anyInt())).thenReturn(List.of(
+                new MerchantBalances(FIRST, null, new BigDecimal("75.00"))));
+        when(dailyReconciliationRepository.findSales(REPORT_DATE, List.of(FIRST))).thenReturn(List.of(
+                new MerchantSales(FIRST, new BigDecimal("75.00"))));
+        when(dailyReconciliationRepository.insertReports(anyList(), eq(false))).thenReturn(List.of(ReconciliationStatus.MATCHED));
+        
+        Map<ReconciliationStatus, Long> counts = reconciliationService.reconcileAllMerchants(REPORT_DATE,
+                new ReconciliationRun(REPORT_DATE));
+        
+        assertEquals(Map.of(ReconciliationStatus.MATCHED, 1L), counts);
+        verify(merchantCreditJournalService, never()).applyPendingBatch();
+        verify(dailyReconciliationRepository, never()).findCurrentBalances(any(), any(), anyInt());
+    }
+    
+    @Test
+    void testExportReports_StreamsWithFetchSize() {
+        appConfig.getReconciliation().setExportFetchSize(500);
+        Consumer<ReconciliationReportView> consumer = report -> { };
+        
+        reconciliationService.exportReports(REPORT_DATE, REPORT_DATE.plusDays(30), FIRST, consumer);
+        
+        verify(reconciliationReportExportRepository, times(1)).stream(REPORT_DATE, REPORT_DATE.plusDays(30), FIRST, 500, consumer);
+    }
+    
+    @Test
+    void testExportReports_InvalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> reconciliationService.exportReports(REPORT_DATE, REPORT_DATE.minusDays(1), null, report -> { }));
+        verifyNoInteractions(reconciliationReportExportRepository);
+    }
+    
+    @Test
+    void testCompareIds_UnsignedOrder() {
+        assertTrue(ReconciliationService.compareIds(FIRST, SECOND) < 0);
+        assertTrue(ReconciliationService.compareIds(SECOND, THIRD) < 0);
+        assertTrue(SECOND.compareTo(FIRST) < 0);
+        assertEquals(0, ReconciliationService.compareIds(SECOND, UUID.fromString(SECOND.toString())));
+    }
+}
@@ -1,15 +1,29 @@
 package com.mamoru.transactionsystem.transaction.application;
 
+import com.mamoru.transactionsystem.common.config.AppConfig;
 import com.mamoru.transactionsystem.common.exception.InvalidOperationException;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.common.id.IdGenerator;
+import com.mamoru.transactionsystem.common.id.SnowflakeIdGenerator;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPostingType;
 import com.mamoru.transactionsystem.merchant.application.InventoryService;
+import com.mamoru.transactionsystem.merchant.application.MerchantDailySalesService;
 import com.mamoru.transactionsystem.merchant.application.MerchantService;
 import com.mamoru.transactionsystem.merchant.application.ProductService;
+import com.mamoru.transactionsystem.merchant.application.StockReservationEngine;
 import com.mamoru.transactionsystem.merchant.domain.Inventory;
 import com.mamoru.transactionsystem.merchant.domain.Merchant;
 import com.mamoru.transactionsystem.merchant.domain.Product;
+import com.mamoru.transactionsystem.merchant.domain.ProductSnapshot;
+import com.mamoru.transactionsystem.merchant.domain.StockReservation;
 import com.mamoru.transactionsystem.transaction.domain.Order;
 import com.mamoru.transactionsystem.transaction.domain.OrderStatus;
+import com.mamoru.transactionsystem.transaction.domain.PaymentStatus;
 import com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderRepository;
+import com.mamoru.transactionsystem.transaction.infrastructure.repository.OrderValidationSnapshot;
 import com.mamoru.transactionsystem.transaction.infrastructure.repository.PaymentRepository;
 import com.mamoru.transactionsystem.user.application.AccountService;
 import com.mamoru.transactionsystem.user.domain.Account;
@@ -18,11 +32,17 @@ import com.mamoru.transactionsystem.user.infrastructure.repository.UserRepositor
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -54,6 +74,21 @@ class OrderServiceTest {
     @Mock
     private AccountService accountService;
     
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+    
+    @Mock
+    private LedgerService ledgerService;
+    
+    @Mock
+    private MerchantDailySalesService merchantDailySalesService;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @Spy
+    private IdGenerator idGenerator = new SnowflakeIdGenerator(new AppConfig(), testEnvironment());
+    
     @InjectMocks
     private OrderService orderService;
     
@@ -92,14 +127,13 @@ class OrderServiceTest {
                 .product(product)
                 .quantity(100)
                 .build();
+        // Most tests cover the in-place balance updates; the ledger tests enable it again
+        appConfig.getLedger().setEnabled(false);
     }
     
     @Test
     void testProcessOrder_Success() {
-        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
-        when(productService.getProductByMerchantIdAndSku(MERCHANT_ID, "TEST-001")).thenReturn(product);
-        when(inventoryService.getInventoryByProductId(PRODUCT_ID)).thenReturn(inventory);
-        when(accountService.getBalanceByUserId(USER_ID)).thenReturn(BigDecimal.valueOf(100.00));
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
             Order order = invocation.getArgument(0);
             order.setId(ORDER_ID);
@@ -109,7 +143,7 @@ class OrderServiceTest {
         when(paymentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
         
         when(accountService.debitAccount(any(UUID.class), any(), anyString())).thenReturn(account);
-        doReturn(merchant).when(merchantService).creditMerchantAccount(any(UUID.class), any());
+        doReturn(merchant).when(merchantService).creditMerchantAccount(any(UUID.class), any(), anyString());
         doReturn(inventory).when(inventoryService).deductInventory(any(UUID.class), anyInt(), anyString());
         
         Order order = orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5);
@@ -118,35 +152,288 @@ class OrderServiceTest {
         assertEquals(OrderStatus.COMPLETED, order.getStatus());
         verify(orderRepository, atLeastOnce()).save(any(Order.class));
         verify(accountService, times(1)).debitAccount(any(UUID.class), any(), anyString());
-        verify(merchantService, times(1)).creditMerchantAccount(any(UUID.class), any());
+        verify(merchantService, times(1)).creditMerchantAccount(any(UUID.class), any(), anyString());
         verify(inventoryService, times(1)).deductInventory(any(UUID.class), anyInt(), anyString());
+        verify(ledgerService, times(1)).post(argThat((LedgerPosting posting) ->
+                posting.getPostingType() == LedgerPostingType.ORDER_PAYMENT
+                        && posting.getDebitAccount().equals(LedgerAccount.user(USER_ID))
+                        && posting.getCreditAccount().equals(LedgerAccount.merchant(MERCHANT_ID))
+                        && posting.getAmount().compareTo(BigDecimal.valueOf(50.00)) == 0));
+        verify(merchantDailySalesService, times(1)).recordSales(argThat(sales -> sales.size() == 1
+                && sales.get(0).getMerchantId().equals(MERCHANT_ID)
+                && sales.get(0).getAmount().compareTo(BigDecimal.valueOf(50.00)) == 0));
+    }
+    
+    @Test
+    void testProcessOrder_InventoryDeductedAfterPayment() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        Order order = orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5);
+        
+        assertEquals(OrderStatus.COMPLETED, order.getStatus());
+        InOrder inOrder = inOrder(accountService, merchantService, inventoryService);
+        inOrder.verify(accountService).debitAccount(eq(USER_ID), any(), eq(order.getOrderNumber()));
+        inOrder.verify(merchantService).creditMerchantAccount(eq(MERCHANT_ID), any(), eq(order.getOrderNumber()));
+        inOrder.verify(inventoryService).deductInventory(eq(PRODUCT_ID), eq(5), eq(order.getOrderNumber()));
+        verify(inventoryService, never()).getInventoryByProductId(any());
+    }
+    
+    @Test
+    void testProcessOrder_GuardedDeductionInsufficientStockFailsOrder() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(inventoryService.deductInventory(eq(PRODUCT_ID), eq(5), anyString()))
+                .thenThrow(new InvalidOperationException("Insufficient stock. Available: 3, Requested: 5"));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+        assertInstanceOf(InvalidOperationException.class, exception.getCause());
+        verify(paymentRepository, times(1)).save(argThat(payment -> payment.getStatus() == PaymentStatus.FAILED));
+    }
+    
+    @Test
+    void testProcessOrder_StockReservation() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        Order order = orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5);
+        
+        assertEquals(OrderStatus.COMPLETED, order.getStatus());
+        verify(stockReservationEngine, times(1)).reserve(eq(PRODUCT_ID), eq(5), eq(order.getOrderNumber()));
+        verify(inventoryService, never()).getInventoryByProductId(any());
+        verify(inventoryService, never()).deductInventory(any(), anyInt(), anyString());
+    }
+    
+    @Test
+    void testProcessOrderBatch_StockReservation() {
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(ProductSnapshot.from(product)));
+        when(merchantService.getMerchantReference(MERCHANT_ID)).thenReturn(merchant);
+        when(inventoryService.getInventoriesByProductIds(anyCollection())).thenReturn(List.of(inventory));
+        when(stockReservationEngine.isEnabled()).thenReturn(true);
+        when(stockReservationEngine.tryReserve(eq(PRODUCT_ID), eq(2), anyString())).thenReturn(Optional.of(new StockReservation()));
+        when(stockReservationEngine.tryReserve(eq(PRODUCT_ID), eq(3), anyString())).thenReturn(Optional.empty());
+        
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2),
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 3)));
+        
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        verify(inventoryService, never()).deductInventoryBatch(any(), any());
+        verify(merchantService, times(1)).creditMerchantAccount(eq(MERCHANT_ID), eq(BigDecimal.valueOf(20.0)), anyString());
     }
     
     @Test
     void testProcessOrder_InsufficientStock() {
+        stubValidationSnapshot(3, BigDecimal.valueOf(100.00));
+        
+        assertThrows(InvalidOperationException.class, 
+                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+        verify(orderRepository, never()).save(any());
+    }
+    
+    @Test
+    void testProcessOrder_InsufficientBalance() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(10.00)); // Low balance
+        
+        assertThrows(InvalidOperationException.class, 
+                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+    }
+    
+    @Test
+    void testProcessOrder_ValidatedWithSingleQuery() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5);
+        
+        verify(orderRepository, times(1)).findValidationSnapshot(USER_ID, MERCHANT_ID, "TEST-001");
+        verify(userRepository, never()).findById(any());
+        verify(productService, never()).getProductByMerchantIdAndSku(any(), any());
+        verify(inventoryService, never()).getInventoryByProductId(any());
+        verify(accountService, never()).getBalanceByUserId(any());
+    }
+    
+    @Test
+    void testProcessOrder_UserNotFound() {
+        when(orderRepository.findValidationSnapshot(USER_ID, MERCHANT_ID, "TEST-001")).thenReturn(Optional.empty());
+        
+        assertThrows(ResourceNotFoundException.class, 
+                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+    }
+    
+    @Test
+    void testProcessOrder_ProductNotFound() {
+        when(orderRepository.findValidationSnapshot(USER_ID, MERCHANT_ID, "TEST-001"))
+                .thenReturn(Optional.of(new OrderValidationSnapshot(user, null, null, BigDecimal.valueOf(100.00))));
+        
+        assertThrows(ResourceNotFoundException.class, 
+                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+        verify(orderRepository, never()).save(any());
+    }
+    
+    @Test
+    void testGetOrderByOrderNumber_BoundedByIssueTime() {
+        String orderNumber = idGenerator.nextId("ORD");
+        when(orderRepository.findByOrderNumberAndCreatedAtBetween(eq(orderNumber), any(), any()))
+                .thenReturn(Optional.of(Order.builder().orderNumber(orderNumber).build()));
+        
+        assertEquals(orderNumber, orderService.getOrderByOrderNumber(orderNumber).getOrderNumber());
+        verify(orderRepository, times(1)).findByOrderNumberAndCreatedAtBetween(eq(orderNumber),
+                argThat(from -> from.isBefore(LocalDateTime.now())),
+                argThat(to -> to.isAfter(LocalDateTime.now())));
+        verify(orderRepository, never()).findByOrderNumber(any());
+    }
+    
+    @Test
+    void testGetOrderByOrderNumber_LegacyNumberNotPruned() {
+        when(orderRepository.findByOrderNumber("ORD-20240101120000-AB12CD")).thenReturn(Optional.empty());
+        
+        assertThrows(ResourceNotFoundException.class,
+                () -> orderService.getOrderByOrderNumber("ORD-20240101120000-AB12CD"));
+    }
+    
+    @Test
+    void testProcessOrderBatch_PartialSuccess() {
         when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
-        when(productService.getProductByMerchantIdAndSku(MERCHANT_ID, "TEST-001")).thenReturn(product);
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(ProductSnapshot.from(product)));
+        when(merchantService.getMerchantReference(MERCHANT_ID)).thenReturn(merchant);
+        when(inventoryService.getInventoriesByProductIds(anyCollection())).thenReturn(List.of(inventory));
+        
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2),
+                new BatchOrderItem(MERCHANT_ID, "UNKNOWN", 1),
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 3)));
         
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(OrderStatus.COMPLETED, results.get(0).getOrder().getStatus());
+        
+        verify(accountService, times(1)).debitAccountBatch(eq(account), argThat(debits -> debits.size() == 2));
+        verify(inventoryService, times(1)).deductInventoryBatch(eq(inventory), argThat(deductions -> deductions.size() == 2));
+        verify(merchantService, times(1)).creditMerchantAccount(eq(MERCHANT_ID), eq(BigDecimal.valueOf(50.0)), anyString());
+        verify(orderRepository, times(1)).saveAll(argThat(orders -> ((List<Order>) orders).size() == 2));
+        verify(paymentRepository, times(1)).saveAll(anyList());
+        verify(ledgerService, times(1)).post(argThat((List<LedgerPosting> postings) -> postings.size() == 2));
+        verify(merchantDailySalesService, times(1)).recordSales(argThat(sales -> sales.size() == 2));
+    }
+    
+    @Test
+    void testProcessOrderBatch_PricesFromCurrentProductRow() {
+        ProductSnapshot cached = ProductSnapshot.from(product);
+        product.setPrice(BigDecimal.valueOf(12.50));
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(cached));
+        when(merchantService.getMerchantReference(MERCHANT_ID)).thenReturn(merchant);
+        when(inventoryService.getInventoriesByProductIds(anyCollection())).thenReturn(List.of(inventory));
+        
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2)));
+        
+        assertEquals(BigDecimal.valueOf(12.50), results.get(0).getOrder().getUnitPrice());
+        verify(merchantService, times(1)).creditMerchantAccount(eq(MERCHANT_ID), eq(BigDecimal.valueOf(25.0)), anyString());
+    }
+    
+    @Test
+    void testProcessOrderBatch_RunningBalanceAndStock() {
         Inventory lowInventory = Inventory.builder()
                 .id(INVENTORY_ID)
                 .product(product)
-                .quantity(3)
+                .quantity(6)
                 .build();
-        when(inventoryService.getInventoryByProductId(PRODUCT_ID)).thenReturn(lowInventory);
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(ProductSnapshot.from(product)));
+        when(merchantService.getMerchantReference(MERCHANT_ID)).thenReturn(merchant);
+        when(inventoryService.getInventoriesByProductIds(anyCollection())).thenReturn(List.of(lowInventory));
         
-        assertThrows(InvalidOperationException.class, 
-                () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+        // Balance 100, stock 6: the second item exceeds the remaining stock, the third the remaining balance
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 5),
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2),
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 1)));
+        
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError().startsWith("Insufficient stock"));
+        assertTrue(results.get(2).isSuccess());
     }
     
     @Test
-    void testProcessOrder_InsufficientBalance() {
+    void testProcessOrderBatch_AllRejected() {
         when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
-        when(productService.getProductByMerchantIdAndSku(MERCHANT_ID, "TEST-001")).thenReturn(product);
-        when(inventoryService.getInventoryByProductId(PRODUCT_ID)).thenReturn(inventory);
-        when(accountService.getBalanceByUserId(USER_ID)).thenReturn(BigDecimal.valueOf(10.00)); // Low balance
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of());
         
-        assertThrows(InvalidOperationException.class, 
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "UNKNOWN", 1)));
+        
+        assertFalse(results.get(0).isSuccess());
+        verify(accountService, never()).debitAccountBatch(any(), any());
+        verify(merchantService, never()).creditMerchantAccount(any(), any(), any());
+        verify(orderRepository, never()).saveAll(any());
+    }
+    
+    @Test
+    void testProcessOrder_StampedWithOrderNumberIssueTime() {
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        Order order = orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5);
+        
+        LocalDateTime issuedAt = LocalDateTime.ofInstant(idGenerator.issuedAt(order.getOrderNumber()).orElseThrow(),
+                ZoneId.systemDefault());
+        assertEquals(issuedAt, order.getCreatedAt());
+        verify(paymentRepository, times(1)).save(argThat(payment -> issuedAt.equals(payment.getCreatedAt())));
+    }
+    
+    @Test
+    void testProcessOrder_LedgerBalanceChecked() {
+        appConfig.getLedger().setEnabled(true);
+        stubValidationSnapshot(inventory.getQuantity(), BigDecimal.valueOf(100.00));
+        when(ledgerService.getBalance(LedgerAccount.user(USER_ID))).thenReturn(BigDecimal.valueOf(10.00));
+        
+        assertThrows(InvalidOperationException.class,
                 () -> orderService.processOrder(USER_ID, MERCHANT_ID, "TEST-001", 5));
+        verify(orderRepository, never()).save(any());
+    }
+    
+    @Test
+    void testProcessOrderBatch_LedgerBalanceLockedUpFront() {
+        appConfig.getLedger().setEnabled(true);
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+        when(accountService.getAccountByUserId(USER_ID)).thenReturn(account);
+        when(ledgerService.lockBalance(LedgerAccount.user(USER_ID))).thenReturn(BigDecimal.valueOf(30.00));
+        when(productService.getProductSnapshots(eq(MERCHANT_ID), anyCollection())).thenReturn(List.of(ProductSnapshot.from(product)));
+        when(merchantService.getMerchantReference(MERCHANT_ID)).thenReturn(merchant);
+        when(inventoryService.getInventoriesByProductIds(anyCollection())).thenReturn(List.of(inventory));
+        
+        // The account row says 100, the ledger 30
+        List<BatchOrderResult> results = orderService.processOrderBatch(USER_ID, List.of(
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2),
+                new BatchOrderItem(MERCHANT_ID, "TEST-001", 2)));
+        
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).getError().startsWith("Insufficient balance"));
+    }
+    
+    private static MockEnvironment testEnvironment() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("test");
+        return environment;
+    }
+    
+    private void stubValidationSnapshot(Integer availableStock, BigDecimal accountBalance) {
+        when(orderRepository.findValidationSnapshot(USER_ID, MERCHANT_ID, "TEST-001"))
+                .thenReturn(Optional.of(new OrderValidationSnapshot(user, product, availableStock, accountBalance)));
     }
 }
 
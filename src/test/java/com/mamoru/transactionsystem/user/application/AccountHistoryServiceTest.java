@@ -0,0 +1,114 @@
+package com.mamoru.transactionsystem.user.application;
+
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.user.domain.Account;
+import com.mamoru.transactionsystem.user.domain.AccountTransactionType;
+import com.mamoru.transactionsystem.user.domain.AccountTransactionView;
+import com.mamoru.transactionsystem.user.infrastructure.repository.AccountTransactionHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountHistoryServiceTest {
+    
+    @Mock
+    private AccountService accountService;
+    
+    @Mock
+    private AccountTransactionHistoryRepository accountTransactionHistoryRepository;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private AccountHistoryService accountHistoryService;
+    
+    private static final UUID USER_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final UUID ACCOUNT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 14, 12, 0);
+    
+    @BeforeEach
+    void setUp() {
+        lenient().when(accountService.getAccountByUserId(USER_ID)).thenReturn(Account.builder().id(ACCOUNT_ID).build());
+    }
+    
+    @Test
+    void testGetHistory_LastPageHasNoCursor() {
+        when(accountTransactionHistoryRepository.findPage(ACCOUNT_ID, null, null, null, null, 51))
+                .thenReturn(transactions(3));
+        
+        AccountHistoryPage page = accountHistoryService.getHistory(USER_ID, null, null, null, null);
+        
+        assertEquals(3, page.getTransactions().size());
+        assertNull(page.getNextCursor());
+    }
+    
+    @Test
+    void testGetHistory_CursorSeeksPastLastRow() {
+        List<AccountTransactionView> rows = transactions(3);
+        when(accountTransactionHistoryRepository.findPage(ACCOUNT_ID, null, null, null, null, 3)).thenReturn(rows);
+        
+        AccountHistoryPage first = accountHistoryService.getHistory(USER_ID, null, null, null, 2);
+        
+        assertEquals(2, first.getTransactions().size());
+        assertNotNull(first.getNextCursor());
+        
+        AccountTransactionView last = rows.get(1);
+        when(accountTransactionHistoryRepository.findPage(ACCOUNT_ID, null, null, last.getCreatedAt(), last.getId(), 3))
+                .thenReturn(List.of(rows.get(2)));
+        
+        AccountHistoryPage second = accountHistoryService.getHistory(USER_ID, null, null, first.getNextCursor(), 2);
+        
+        assertEquals(List.of(rows.get(2)), second.getTransactions());
+        assertNull(second.getNextCursor());
+    }
+    
+    @Test
+    void testGetHistory_LimitCappedAtMaximum() {
+        when(accountTransactionHistoryRepository.findPage(eq(ACCOUNT_ID), isNull(), isNull(), isNull(), isNull(), eq(501)))
+                .thenReturn(List.of());
+        
+        accountHistoryService.getHistory(USER_ID, null, null, null, 10_000);
+        
+        verify(accountTransactionHistoryRepository, times(1))
+                .findPage(eq(ACCOUNT_ID), isNull(), isNull(), isNull(), isNull(), eq(501));
+    }
+    
+    @Test
+    void testGetHistory_InvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> accountHistoryService.getHistory(USER_ID, null, null, "not-a-cursor", null));
+        verify(accountTransactionHistoryRepository, never()).findPage(any(), any(), any(), any(), any(), anyInt());
+    }
+    
+    @Test
+    void testGetHistory_InvalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> accountHistoryService.getHistory(USER_ID, NOW, NOW.minusDays(1), null, null));
+    }
+    
+    private List<AccountTransactionView> transactions(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new AccountTransactionView(UUID.randomUUID(), AccountTransactionType.DEBIT,
+                        BigDecimal.TEN, BigDecimal.valueOf(100 - 10L * i), BigDecimal.valueOf(90 - 10L * i),
+                        "ORD-" + i, NOW.minusMinutes(i)))
+                .toList();
+    }
+}
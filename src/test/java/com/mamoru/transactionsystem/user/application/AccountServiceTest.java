@@ -0,0 +1,216 @@
+package com.mamoru.transactionsystem.user.application;
+
+import com.mamoru.transactionsystem.audit.application.AuditTrailService;
+import com.mamoru.transactionsystem.audit.domain.AuditRecordType;
+import com.mamoru.transactionsystem.common.config.AppConfig;
+import com.mamoru.transactionsystem.common.exception.InsufficientBalanceException;
+import com.mamoru.transactionsystem.common.exception.ResourceNotFoundException;
+import com.mamoru.transactionsystem.ledger.application.LedgerService;
+import com.mamoru.transactionsystem.ledger.domain.LedgerAccount;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPosting;
+import com.mamoru.transactionsystem.ledger.domain.LedgerPostingType;
+import com.mamoru.transactionsystem.payment.gateway.application.PaymentGatewayService;
+import com.mamoru.transactionsystem.user.domain.Account;
+import com.mamoru.transactionsystem.user.domain.AccountTransaction;
+import com.mamoru.transactionsystem.user.infrastructure.repository.AccountRepository;
+import com.mamoru.transactionsystem.user.infrastructure.repository.AccountTransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountServiceTest {
+    
+    @Mock
+    private AccountRepository accountRepository;
+    
+    @Mock
+    private AccountTransactionRepository accountTransactionRepository;
+    
+    @Mock
+    private PaymentGatewayService paymentGatewayService;
+    
+    @Mock
+    private LedgerService ledgerService;
+    
+    @Mock
+    private AuditTrailService auditTrailService;
+    
+    @Mock
+    private EntityManager entityManager;
+    
+    @Spy
+    private AppConfig appConfig = new AppConfig();
+    
+    @InjectMocks
+    private AccountService accountService;
+    
+    private static final UUID USER_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440000");
+    private static final UUID ACCOUNT_ID = UUID.fromString("550e8400-e29b-41d4-a716-446655440001");
+    
+    private Account account;
+    
+    @BeforeEach
+    void setUp() {
+        account = Account.builder()
+                .id(ACCOUNT_ID)
+                .balance(BigDecimal.valueOf(100.00))
+                .version(0L)
+                .build();
+        // Most tests cover the in-place balance updates; the ledger tests enable it again
+        appConfig.getLedger().setEnabled(false);
+    }
+    
+    @Test
+    void testDebitAccount_Optimistic() {
+        when(accountRepository.findByUserIdWithLock(USER_ID)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        Account result = accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001");
+        
+        assertEquals(BigDecimal.valueOf(70.00), result.getBalance());
+        verify(accountRepository, never()).debitIfSufficient(any(), any());
+        verify(accountTransactionRepository, times(1)).save(any(AccountTransaction.class));
+    }
+    
+    @Test
+    void testDebitAccount_GuardedUpdate() {
+        appConfig.getUserAccount().setDebitStrategy(AppConfig.UserAccount.DebitStrategy.GUARDED_UPDATE);
+        when(accountRepository.debitIfSufficient(USER_ID, BigDecimal.valueOf(30.00)))
+                .thenReturn(Optional.of(balanceUpdate(BigDecimal.valueOf(70.00))));
+        when(accountRepository.getReferenceById(ACCOUNT_ID)).thenReturn(account);
+        
+        accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001");
+        
+        verify(accountRepository, never()).findByUserIdWithLock(any());
+        verify(accountRepository, never()).save(any());
+        verify(accountTransactionRepository, times(1)).save(argThat(transaction ->
+                transaction.getBalanceBefore().compareTo(BigDecimal.valueOf(100.00)) == 0
+                        && transaction.getBalanceAfter().compareTo(BigDecimal.valueOf(70.00)) == 0
+                        && "ORD-001".equals(transaction.getReferenceId())));
+    }
+    
+    @Test
+    void testDebitAccount_GuardedUpdateInsufficientBalance() {
+        appConfig.getUserAccount().setDebitStrategy(AppConfig.UserAccount.DebitStrategy.GUARDED_UPDATE);
+        when(accountRepository.debitIfSufficient(USER_ID, BigDecimal.valueOf(300.00))).thenReturn(Optional.empty());
+        when(accountRepository.findByUserId(USER_ID)).thenReturn(Optional.of(account));
+        
+        assertThrows(InsufficientBalanceException.class,
+                () -> accountService.debitAccount(USER_ID, BigDecimal.valueOf(300.00), "ORD-001"));
+        verify(accountTransactionRepository, never()).save(any());
+    }
+    
+    @Test
+    void testDebitAccount_GuardedUpdateAccountNotFound() {
+        appConfig.getUserAccount().setDebitStrategy(AppConfig.UserAccount.DebitStrategy.GUARDED_UPDATE);
+        when(accountRepository.debitIfSufficient(USER_ID, BigDecimal.valueOf(30.00))).thenReturn(Optional.empty());
+        when(accountRepository.findByUserId(USER_ID)).thenReturn(Optional.empty());
+        
+        assertThrows(ResourceNotFoundException.class,
+                () -> accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001"));
+    }
+    
+    @Test
+    void testDebitAccount_WriteBehindAuditTrail() {
+        when(auditTrailService.isWriteBehind()).thenReturn(true);
+        when(accountRepository.findByUserIdWithLock(USER_ID)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001");
+        
+        verify(accountTransactionRepository, never()).save(any());
+        verify(auditTrailService, times(1)).record(argThat(records -> records.size() == 1
+                && records.get(0).getType() == AuditRecordType.ACCOUNT_TRANSACTION
+                && records.get(0).getSubjectId().equals(ACCOUNT_ID)
+                && records.get(0).getBefore().compareTo(BigDecimal.valueOf(100.00)) == 0
+                && records.get(0).getAfter().compareTo(BigDecimal.valueOf(70.00)) == 0
+                && "ORD-001".equals(records.get(0).getReferenceId())));
+    }
+    
+    @Test
+    void testRechargeAccount_JournalsPosting() {
+        when(accountRepository.findByUserIdWithLock(USER_ID)).thenReturn(Optional.of(account));
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(paymentGatewayService.processRecharge(USER_ID, BigDecimal.valueOf(50.00))).thenReturn("TXN-001");
+        
+        Account result = accountService.rechargeAccount(USER_ID, BigDecimal.valueOf(50.00));
+        
+        assertEquals(BigDecimal.valueOf(150.00), result.getBalance());
+        verify(ledgerService, times(1)).post(argThat((LedgerPosting posting) ->
+                posting.getPostingType() == LedgerPostingType.RECHARGE
+                        && posting.getDebitAccount().equals(LedgerAccount.GATEWAY)
+                        && posting.getCreditAccount().equals(LedgerAccount.user(USER_ID))
+                        && "TXN-001".equals(posting.getReferenceId())));
+    }
+    
+    @Test
+    void testDebitAccount_LedgerChecksLockedBalance() {
+        appConfig.getLedger().setEnabled(true);
+        when(accountRepository.findByUserId(USER_ID)).thenReturn(Optional.of(account));
+        when(ledgerService.lockBalance(LedgerAccount.user(USER_ID))).thenReturn(BigDecimal.valueOf(80.00));
+        
+        accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001");
+        
+        verify(accountRepository, never()).save(any());
+        verify(accountRepository, never()).debitIfSufficient(any(), any());
+        verify(accountTransactionRepository, times(1)).save(argThat(transaction ->
+                transaction.getBalanceBefore().compareTo(BigDecimal.valueOf(80.00)) == 0
+                        && transaction.getBalanceAfter().compareTo(BigDecimal.valueOf(50.00)) == 0));
+    }
+    
+    @Test
+    void testDebitAccount_LedgerInsufficientBalance() {
+        appConfig.getLedger().setEnabled(true);
+        when(accountRepository.findByUserId(USER_ID)).thenReturn(Optional.of(account));
+        when(ledgerService.lockBalance(LedgerAccount.user(USER_ID))).thenReturn(BigDecimal.valueOf(20.00));
+        
+        assertThrows(InsufficientBalanceException.class,
+                () -> accountService.debitAccount(USER_ID, BigDecimal.valueOf(30.00), "ORD-001"));
+        verify(accountTransactionRepository, never()).save(any());
+    }
+    
+    @Test
+    void testRechargeAccount_LedgerWritesNoAccountRow() {
+        appConfig.getLedger().setEnabled(true);
+        when(accountRepository.findByUserId(USER_ID)).thenReturn(Optional.of(account));
+        when(paymentGatewayService.processRecharge(USER_ID, BigDecimal.valueOf(50.00))).thenReturn("TXN-001");
+        when(ledgerService.lockBalance(LedgerAccount.user(USER_ID))).thenReturn(BigDecimal.valueOf(80.00));
+        
+        accountService.rechargeAccount(USER_ID, BigDecimal.valueOf(50.00));
+        
+        verify(accountRepository, never()).findByUserIdWithLock(any());
+        verify(accountRepository, never()).save(any());
+        verify(ledgerService, times(1)).post(argThat((LedgerPosting posting) ->
+                posting.getPostingType() == LedgerPostingType.RECHARGE && "TXN-001".equals(posting.getReferenceId())));
+        verify(accountTransactionRepository, times(1)).save(argThat(transaction ->
+                transaction.getBalanceAfter().compareTo(BigDecimal.valueOf(130.00)) == 0));
+    }
+    
+    private AccountRepository.BalanceUpdate balanceUpdate(BigDecimal balance) {
+        return new AccountRepository.BalanceUpdate() {
+            @Override
+            public UUID getId() {
+                return ACCOUNT_ID;
+            }
+            
+            @Override
+            public BigDecimal getBalance() {
+                return balance;
+            }
+        };
+    }
+}